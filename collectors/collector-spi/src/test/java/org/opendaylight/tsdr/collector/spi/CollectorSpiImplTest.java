@@ -23,9 +23,9 @@ import java.util.concurrent.TimeoutException;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.StoreTSDRLogRecordInput;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.StoreTSDRLogRecordOutputBuilder;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.TsdrLogDataService;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.StoreTSDRLogRecordInput;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.StoreTSDRLogRecordOutputBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.TsdrLogDataService;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.StoreTSDRMetricRecordInput;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.StoreTSDRMetricRecordOutputBuilder;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.TsdrMetricDataService;
@@ -132,7 +132,7 @@ public class CollectorSpiImplTest {
         StoreTSDRLogRecordInput storeLogInput = storeLogInputCaptor.getValue();
 
         assertEquals(1, storeLogInput.getTSDRLogRecord().size());
-        org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.storetsdrlogrecord.input.TSDRLogRecord
+        org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord
             storeLogRecord = storeLogInput.getTSDRLogRecord().iterator().next();
 
         assertEquals(inputLogRecord.getNodeID(), storeLogRecord.getNodeID());
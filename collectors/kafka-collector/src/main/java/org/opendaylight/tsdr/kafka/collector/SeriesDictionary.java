@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2019 Bell, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.kafka.collector;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.avro.AvroRuntimeException;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.RetriableException;
+import org.apache.kafka.common.errors.WakeupException;
+import org.opendaylight.tsdr.persistence.kafka.AvroRecordSerializer;
+import org.opendaylight.tsdr.persistence.kafka.AvroRecordSerializer.Series;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The series of the batch messages, read from every partition of the series topic from its beginning. The series
+ * topic is expected to be compacted, so it holds one message per series. The partitions are assigned again after
+ * the retry backoff as long as the topic cannot be read, for instance when it is not created yet.
+ */
+final class SeriesDictionary implements Runnable, AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(SeriesDictionary.class);
+    private static final Duration POLL_TIMEOUT = Duration.ofSeconds(1);
+
+    private final Consumer<String, byte[]> consumer;
+    private final String topic;
+    private final AvroRecordSerializer serializer;
+    private final long retryBackoffMillis;
+    private final Map<Long, Series> series = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    SeriesDictionary(Consumer<String, byte[]> consumer, String topic, AvroRecordSerializer serializer,
+            long retryBackoffMillis) {
+        this.consumer = consumer;
+        this.topic = topic;
+        this.serializer = serializer;
+        this.retryBackoffMillis = retryBackoffMillis;
+    }
+
+    /**
+     * Assigns all the partitions of the series topic to the consumer, from their beginning.
+     *
+     * @return false if the partitions of the topic could not be read
+     */
+    boolean assign() {
+        List<PartitionInfo> infos;
+        try {
+            infos = consumer.partitionsFor(topic);
+        } catch (WakeupException e) {
+            throw e;
+        } catch (KafkaException e) {
+            LOG.error("Failed to read the partitions of the series topic {}, retrying in {} ms", topic,
+                    retryBackoffMillis, e);
+            return false;
+        }
+        if (infos == null || infos.isEmpty()) {
+            LOG.error("The series topic {} has no partitions, retrying in {} ms", topic, retryBackoffMillis);
+            return false;
+        }
+
+        List<TopicPartition> partitions = new ArrayList<>();
+        for (PartitionInfo info : infos) {
+            partitions.add(new TopicPartition(info.topic(), info.partition()));
+        }
+        consumer.assign(partitions);
+        consumer.seekToBeginning(partitions);
+        return true;
+    }
+
+    /**
+     * Reads the next series messages.
+     *
+     * @return the number of series read
+     */
+    int poll() {
+        int count = 0;
+        for (ConsumerRecord<String, byte[]> record : consumer.poll(POLL_TIMEOUT)) {
+            try {
+                Series read = serializer.deserializeSeries(record.value());
+                series.put(read.getId(), read);
+                count++;
+            } catch (IOException | AvroRuntimeException e) {
+                LOG.warn("Skipping the message at offset {} of {}: {}", record.offset(), record.topic(),
+                        e.getMessage());
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!closed && !assign()) {
+                backOff();
+            }
+            while (!closed) {
+                try {
+                    poll();
+                } catch (RetriableException e) {
+                    LOG.warn("Failed to read the series topic {}, retrying in {} ms", topic, retryBackoffMillis, e);
+                    backOff();
+                }
+            }
+        } catch (WakeupException e) {
+            if (!closed) {
+                throw e;
+            }
+        } finally {
+            consumer.close();
+        }
+    }
+
+    private synchronized void backOff() {
+        if (closed) {
+            return;
+        }
+        try {
+            wait(retryBackoffMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            closed = true;
+        }
+    }
+
+    /**
+     * Returns the series of the given id, or null if it is unknown.
+     */
+    Series get(long id) {
+        return series.get(id);
+    }
+
+    int size() {
+        return series.size();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        consumer.wakeup();
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+}
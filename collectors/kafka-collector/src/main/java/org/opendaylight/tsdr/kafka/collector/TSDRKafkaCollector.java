@@ -0,0 +1,423 @@
+/*
+ * Copyright (c) 2019 Bell, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.kafka.collector;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.util.concurrent.Uninterruptibles;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.apache.avro.AvroRuntimeException;
+import org.apache.kafka.clients.consumer.CommitFailedException;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.RetriableException;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.opendaylight.tsdr.persistence.kafka.AvroRecordSerializer;
+import org.opendaylight.tsdr.persistence.kafka.FileSchemaRegistry;
+import org.opendaylight.tsdr.spi.util.ConfigFileUtil;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.TSDRLog;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.TSDRMetric;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.TSDRRecord;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.controller.config.tsdr.collector.spi.rev150915.InsertTSDRLogRecordInputBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.controller.config.tsdr.collector.spi.rev150915.InsertTSDRMetricRecordInputBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.controller.config.tsdr.collector.spi.rev150915.TsdrCollectorSpiService;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.controller.config.tsdr.collector.spi.rev150915.inserttsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.controller.config.tsdr.collector.spi.rev150915.inserttsdrlogrecord.input.TSDRLogRecordBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.controller.config.tsdr.collector.spi.rev150915.inserttsdrmetricrecord.input.TSDRMetricRecord;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.controller.config.tsdr.collector.spi.rev150915.inserttsdrmetricrecord.input.TSDRMetricRecordBuilder;
+import org.opendaylight.yangtools.yang.common.RpcResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collector consuming the metric and log records published to kafka by the kafka persistence, with its avro
+ * serializer, and storing them through the collector SPI.
+ *
+ * <p>
+ * The consumers of all the collectors share a consumer group, so the partitions of the topics are spread among them
+ * and the intake scales with the number of controllers. The offsets are committed only once the records of a poll
+ * are stored; if storing fails, the consumer goes back to the first record of the poll and tries again, so a record
+ * is stored at least once.
+ *
+ * <p>
+ * A batch message whose series was not read yet from the series topic holds off its partition: the consumer goes
+ * back to the message and pauses the partition, without committing its offset, until more series are read, then
+ * reads the message again. If no series is read for series-wait-ms, the message is skipped and its offset committed,
+ * so the partition does not stall on a series which never comes. The other partitions are consumed meanwhile, and
+ * the consumer keeps polling so it stays in the group.
+ */
+@Singleton
+public class TSDRKafkaCollector implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(TSDRKafkaCollector.class);
+    private static final String CONF_FILE = "./etc/tsdr-kafka-collector.properties";
+    private static final String COLLECTOR_CODE_NAME = TSDRKafkaCollector.class.getSimpleName();
+    private static final String DEFAULT_GROUP_ID = "tsdr-kafka-collector";
+    static final String TOPICS_KEY = "topics";
+    private static final String DEFAULT_TOPICS = "tsdr";
+    static final String SERIES_TOPIC_KEY = "series-topic";
+    private static final String DEFAULT_SERIES_TOPIC = "tsdr-series";
+    static final String CONSUMER_THREADS_KEY = "consumer-threads";
+    static final String SCHEMA_REGISTRY_DIRECTORY_KEY = "schema-registry-directory";
+    private static final String DEFAULT_SCHEMA_REGISTRY_DIRECTORY = "./etc/tsdr-kafka-schemas";
+    static final String SERIES_WAIT_KEY = "series-wait-ms";
+    private static final long DEFAULT_SERIES_WAIT = 10_000;
+    static final String RETRY_BACKOFF_KEY = "retry-backoff-ms";
+    private static final long DEFAULT_RETRY_BACKOFF = 5_000;
+    private static final Duration POLL_TIMEOUT = Duration.ofSeconds(1);
+
+    // The settings of the configuration file which are not passed to the consumers
+    private static final Set<String> TSDR_KEYS = new HashSet<>(Arrays.asList(TOPICS_KEY, SERIES_TOPIC_KEY,
+            CONSUMER_THREADS_KEY, SCHEMA_REGISTRY_DIRECTORY_KEY, SERIES_WAIT_KEY, RETRY_BACKOFF_KEY));
+
+    /**
+     * A partition paused at a message whose series is unknown.
+     */
+    private static final class WaitingPartition {
+        final long offset;
+        final int knownSeries;
+        final long since = System.currentTimeMillis();
+
+        WaitingPartition(long offset, int knownSeries) {
+            this.offset = offset;
+            this.knownSeries = knownSeries;
+        }
+    }
+
+    private final TsdrCollectorSpiService collectorSPIService;
+    private final Supplier<Consumer<String, byte[]>> consumerFactory;
+    private final List<String> topics;
+    private final int consumerThreads;
+    private final long seriesWaitMillis;
+    private final long retryBackoffMillis;
+    private final AvroRecordSerializer serializer;
+    private final SeriesDictionary dictionary;
+    private final List<Consumer<String, byte[]>> consumers = new ArrayList<>();
+    private final AtomicLong storedCount = new AtomicLong();
+    private final AtomicLong skippedCount = new AtomicLong();
+    private final Map<TopicPartition, WaitingPartition> waitingPartitions = new ConcurrentHashMap<>();
+    private ExecutorService executor;
+    private volatile boolean closed;
+
+    @Inject
+    public TSDRKafkaCollector(TsdrCollectorSpiService collectorSPIService) throws IOException {
+        this(collectorSPIService, loadConfig());
+    }
+
+    private TSDRKafkaCollector(TsdrCollectorSpiService collectorSPIService, Map<String, String> configFile)
+            throws IOException {
+        this(collectorSPIService, configFile, () -> new KafkaConsumer<>(consumerProperties(configFile, true)),
+            () -> new KafkaConsumer<>(consumerProperties(configFile, false)));
+    }
+
+    @VisibleForTesting
+    TSDRKafkaCollector(TsdrCollectorSpiService collectorSPIService, Map<String, String> configFile,
+            Supplier<Consumer<String, byte[]>> consumerFactory, Supplier<Consumer<String, byte[]>> seriesConsumer)
+            throws IOException {
+        this.collectorSPIService = collectorSPIService;
+        this.consumerFactory = consumerFactory;
+        topics = Splitter.on(',').trimResults().omitEmptyStrings().splitToList(
+                configFile.getOrDefault(TOPICS_KEY, DEFAULT_TOPICS));
+        consumerThreads = (int) Math.max(1, parseLong(configFile, CONSUMER_THREADS_KEY, 1));
+        seriesWaitMillis = parseLong(configFile, SERIES_WAIT_KEY, DEFAULT_SERIES_WAIT);
+        retryBackoffMillis = parseLong(configFile, RETRY_BACKOFF_KEY, DEFAULT_RETRY_BACKOFF);
+        serializer = new AvroRecordSerializer(new FileSchemaRegistry(Paths.get(configFile.getOrDefault(
+                SCHEMA_REGISTRY_DIRECTORY_KEY, DEFAULT_SCHEMA_REGISTRY_DIRECTORY))));
+        dictionary = new SeriesDictionary(seriesConsumer.get(),
+                configFile.getOrDefault(SERIES_TOPIC_KEY, DEFAULT_SERIES_TOPIC), serializer, retryBackoffMillis);
+    }
+
+    private static Map<String, String> loadConfig() {
+        final Map<String, String> configFile = new HashMap<>();
+        try {
+            configFile.putAll(ConfigFileUtil.loadConfig(CONF_FILE));
+        } catch (IOException e) {
+            LOG.error("Error while loading config file", e);
+        }
+        return configFile;
+    }
+
+    private static Properties consumerProperties(Map<String, String> configFile, boolean grouped) {
+        final Properties props = new Properties();
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, DEFAULT_GROUP_ID);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        configFile.forEach((key, value) -> {
+            if (!TSDR_KEYS.contains(key)) {
+                props.put(key, value);
+            }
+        });
+
+        // The series are read from the beginning by every collector, outside of the group
+        if (!grouped) {
+            props.remove(ConsumerConfig.GROUP_ID_CONFIG);
+        }
+        // The offsets are committed once the records are stored
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+        return props;
+    }
+
+    private static long parseLong(Map<String, String> configFile, String key, long defaultValue) {
+        String value = configFile.get(key);
+        if (Strings.isNullOrEmpty(value)) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            LOG.warn("Invalid {} value {}, using {}", key, value, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newFixedThreadPool(consumerThreads + 1, runnable -> {
+            Thread thread = new Thread(runnable, "TSDR Kafka Collector");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.execute(dictionary);
+        for (int i = 0; i < consumerThreads; i++) {
+            Consumer<String, byte[]> consumer = consumerFactory.get();
+            synchronized (consumers) {
+                consumers.add(consumer);
+            }
+            executor.execute(() -> run(consumer));
+        }
+        LOG.info("TSDRKafkaCollector initialized, consuming {} with {} consumers", topics, consumerThreads);
+    }
+
+    private void run(Consumer<String, byte[]> consumer) {
+        try {
+            consumer.subscribe(topics);
+            while (!closed) {
+                if (!consumeOnce(consumer)) {
+                    Uninterruptibles.sleepUninterruptibly(retryBackoffMillis, TimeUnit.MILLISECONDS);
+                }
+            }
+        } catch (WakeupException e) {
+            if (!closed) {
+                LOG.error("Kafka consumer woken up unexpectedly", e);
+            }
+        } catch (KafkaException e) {
+            LOG.error("Kafka consumer failed, the collector stops consuming", e);
+        } finally {
+            consumer.close();
+        }
+    }
+
+    /**
+     * Polls the consumer once, the failures to commit and the transient failures being logged.
+     *
+     * @return false if the consumer backs off before polling again
+     */
+    @VisibleForTesting
+    boolean consumeOnce(Consumer<String, byte[]> consumer) {
+        try {
+            return pollOnce(consumer);
+        } catch (CommitFailedException e) {
+            // The partitions were assigned to other consumers, which read the records not committed again
+            LOG.warn("Failed to commit the offsets of the records stored, they may be stored again", e);
+            return false;
+        } catch (RetriableException e) {
+            LOG.warn("Kafka consumer failed, retrying in {} ms", retryBackoffMillis, e);
+            return false;
+        }
+    }
+
+    /**
+     * Polls the consumer once, stores the records read and commits their offsets.
+     *
+     * @return false if the records could not be stored, the consumer then goes back to the first one
+     */
+    @VisibleForTesting
+    boolean pollOnce(Consumer<String, byte[]> consumer) {
+        resumeWaitingPartitions(consumer);
+        // Read before decoding, so a series read meanwhile resumes the partitions waiting for it
+        final int knownSeries = dictionary.size();
+        ConsumerRecords<String, byte[]> records = consumer.poll(POLL_TIMEOUT);
+        if (records.isEmpty()) {
+            return true;
+        }
+
+        List<TSDRMetricRecord> metrics = new ArrayList<>();
+        List<TSDRLogRecord> logs = new ArrayList<>();
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        for (TopicPartition partition : records.partitions()) {
+            for (ConsumerRecord<String, byte[]> record : records.records(partition)) {
+                List<TSDRRecord> decoded;
+                try {
+                    decoded = serializer.deserialize(record.value(), dictionary::get);
+                } catch (IOException | AvroRuntimeException e) {
+                    LOG.warn("Skipping the message at offset {} of {} partition {}: {}", record.offset(),
+                            record.topic(), record.partition(), e.getMessage());
+                    skippedCount.incrementAndGet();
+                    offsets.put(partition, new OffsetAndMetadata(record.offset() + 1));
+                    continue;
+                }
+                if (decoded == null) {
+                    // The next records of the partition are read again once the series is read
+                    waitForSeries(consumer, partition, record.offset(), knownSeries);
+                    break;
+                }
+                add(decoded, metrics, logs);
+                offsets.put(partition, new OffsetAndMetadata(record.offset() + 1));
+            }
+        }
+
+        if (!store(metrics, logs)) {
+            for (TopicPartition partition : records.partitions()) {
+                consumer.seek(partition, records.records(partition).get(0).offset());
+            }
+            return false;
+        }
+        storedCount.addAndGet(metrics.size() + logs.size());
+        if (!offsets.isEmpty()) {
+            consumer.commitSync(offsets);
+        }
+        return true;
+    }
+
+    private void add(List<TSDRRecord> decoded, List<TSDRMetricRecord> metrics, List<TSDRLogRecord> logs) {
+        for (TSDRRecord tsdrRecord : decoded) {
+            if (tsdrRecord instanceof TSDRMetric) {
+                metrics.add(new TSDRMetricRecordBuilder((TSDRMetric) tsdrRecord).build());
+            } else if (tsdrRecord instanceof TSDRLog) {
+                logs.add(new TSDRLogRecordBuilder((TSDRLog) tsdrRecord).build());
+            } else {
+                // The collector SPI has no binary records
+                skippedCount.incrementAndGet();
+            }
+        }
+    }
+
+    private void waitForSeries(Consumer<String, byte[]> consumer, TopicPartition partition, long offset,
+            int knownSeries) {
+        LOG.debug("Pausing {} at offset {}, the series of the message is unknown", partition, offset);
+        consumer.seek(partition, offset);
+        consumer.pause(Collections.singleton(partition));
+        waitingPartitions.put(partition, new WaitingPartition(offset, knownSeries));
+    }
+
+    private void resumeWaitingPartitions(Consumer<String, byte[]> consumer) {
+        Set<TopicPartition> paused = consumer.paused();
+        if (paused.isEmpty()) {
+            return;
+        }
+        List<TopicPartition> resumed = new ArrayList<>();
+        for (TopicPartition partition : paused) {
+            WaitingPartition waiting = waitingPartitions.get(partition);
+            if (waiting != null && dictionary.size() == waiting.knownSeries) {
+                if (System.currentTimeMillis() - waiting.since < seriesWaitMillis) {
+                    continue;
+                }
+                // Reading the message again would pause the partition at it again, and again
+                LOG.warn("Skipping the message at offset {} of {}, its series is still unknown after {} ms; the "
+                        + "series topic must be compacted so it keeps every series", waiting.offset, partition,
+                        seriesWaitMillis);
+                skippedCount.incrementAndGet();
+                consumer.seek(partition, waiting.offset + 1);
+                consumer.commitSync(Collections.singletonMap(partition, new OffsetAndMetadata(waiting.offset + 1)));
+            }
+            waitingPartitions.remove(partition);
+            resumed.add(partition);
+        }
+        consumer.resume(resumed);
+    }
+
+    private boolean store(List<TSDRMetricRecord> metrics, List<TSDRLogRecord> logs) {
+        try {
+            if (!metrics.isEmpty() && !isSuccessful(collectorSPIService.insertTSDRMetricRecord(
+                    new InsertTSDRMetricRecordInputBuilder().setTSDRMetricRecord(metrics)
+                            .setCollectorCodeName(COLLECTOR_CODE_NAME).build()).get(), metrics.size())) {
+                return false;
+            }
+            return logs.isEmpty() || isSuccessful(collectorSPIService.insertTSDRLogRecord(
+                    new InsertTSDRLogRecordInputBuilder().setTSDRLogRecord(logs)
+                            .setCollectorCodeName(COLLECTOR_CODE_NAME).build()).get(), logs.size());
+        } catch (ExecutionException e) {
+            LOG.warn("Error while storing the records read from kafka", e);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static boolean isSuccessful(RpcResult<?> result, int size) {
+        if (!result.isSuccessful()) {
+            LOG.warn("Failed to store {} records read from kafka: {}", size, result.getErrors());
+        }
+        return result.isSuccessful();
+    }
+
+    long getStoredCount() {
+        return storedCount.get();
+    }
+
+    long getSkippedCount() {
+        return skippedCount.get();
+    }
+
+    @VisibleForTesting
+    SeriesDictionary getDictionary() {
+        return dictionary;
+    }
+
+    @Override
+    @PreDestroy
+    public void close() {
+        closed = true;
+        synchronized (consumers) {
+            consumers.forEach(Consumer::wakeup);
+        }
+        dictionary.close();
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        LOG.info("TSDRKafkaCollector closed, {} records stored and {} skipped", storedCount.get(),
+                skippedCount.get());
+    }
+}
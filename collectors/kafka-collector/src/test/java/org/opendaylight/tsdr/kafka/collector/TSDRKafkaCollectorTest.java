@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2019 Bell, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.kafka.collector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.kafka.clients.consumer.CommitFailedException;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opendaylight.tsdr.persistence.kafka.AvroRecordSerializer;
+import org.opendaylight.tsdr.persistence.kafka.FileSchemaRegistry;
+import org.opendaylight.tsdr.spi.util.FormatUtil;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.tsdrrecord.RecordKeysBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.controller.config.tsdr.collector.spi.rev150915.InsertTSDRLogRecordInput;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.controller.config.tsdr.collector.spi.rev150915.InsertTSDRLogRecordOutputBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.controller.config.tsdr.collector.spi.rev150915.InsertTSDRMetricRecordInput;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.controller.config.tsdr.collector.spi.rev150915.InsertTSDRMetricRecordOutputBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.controller.config.tsdr.collector.spi.rev150915.TsdrCollectorSpiService;
+import org.opendaylight.yangtools.yang.common.RpcError.ErrorType;
+import org.opendaylight.yangtools.yang.common.RpcResultBuilder;
+
+/**
+ * Unit tests of the {@link TSDRKafkaCollector}, consuming from mock consumers.
+ */
+public class TSDRKafkaCollectorTest {
+    private static final String TOPIC = "tsdr";
+    private static final String SERIES_TOPIC = "tsdr-series";
+    private static final TopicPartition PARTITION = new TopicPartition(TOPIC, 0);
+    private static final TopicPartition SERIES_PARTITION = new TopicPartition(SERIES_TOPIC, 0);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final TsdrCollectorSpiService mockSpiService = mock(TsdrCollectorSpiService.class);
+    private final List<InsertTSDRMetricRecordInput> storedMetrics = new ArrayList<>();
+    private final List<InsertTSDRLogRecordInput> storedLogs = new ArrayList<>();
+    private final AtomicBoolean failNextCommit = new AtomicBoolean();
+    private final MockConsumer<String, byte[]> consumer = new MockConsumer<String, byte[]>(
+            OffsetResetStrategy.EARLIEST) {
+        @Override
+        public synchronized void commitSync(Map<TopicPartition, OffsetAndMetadata> offsets) {
+            if (failNextCommit.getAndSet(false)) {
+                throw new CommitFailedException();
+            }
+            super.commitSync(offsets);
+        }
+    };
+    private final MockConsumer<String, byte[]> seriesConsumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+    private AvroRecordSerializer serializer;
+    private TSDRKafkaCollector collector;
+
+    @Before
+    public void setUp() throws Exception {
+        doAnswer(invocation -> {
+            storedMetrics.add((InsertTSDRMetricRecordInput) invocation.getArguments()[0]);
+            return RpcResultBuilder.success(new InsertTSDRMetricRecordOutputBuilder().build()).buildFuture();
+        }).when(mockSpiService).insertTSDRMetricRecord(any());
+        doAnswer(invocation -> {
+            storedLogs.add((InsertTSDRLogRecordInput) invocation.getArguments()[0]);
+            return RpcResultBuilder.success(new InsertTSDRLogRecordOutputBuilder().build()).buildFuture();
+        }).when(mockSpiService).insertTSDRLogRecord(any());
+
+        Map<String, String> config = new HashMap<>();
+        config.put(TSDRKafkaCollector.SCHEMA_REGISTRY_DIRECTORY_KEY, folder.getRoot().getPath());
+        config.put(TSDRKafkaCollector.SERIES_WAIT_KEY, "0");
+        serializer = new AvroRecordSerializer(new FileSchemaRegistry(folder.getRoot().toPath()));
+        collector = new TSDRKafkaCollector(mockSpiService, config, () -> consumer, () -> seriesConsumer);
+
+        seriesConsumer.updatePartitions(SERIES_TOPIC, Collections.singletonList(
+                new PartitionInfo(SERIES_TOPIC, 0, null, null, null)));
+        seriesConsumer.updateBeginningOffsets(Collections.singletonMap(SERIES_PARTITION, 0L));
+        collector.getDictionary().assign();
+
+        consumer.subscribe(Collections.singletonList(TOPIC));
+        consumer.rebalance(Collections.singletonList(PARTITION));
+        consumer.updateBeginningOffsets(Collections.singletonMap(PARTITION, 0L));
+    }
+
+    private static TSDRMetricRecord createMetricRecord(long timeStamp) {
+        return new TSDRMetricRecordBuilder()
+                .setNodeID("openflow:1")
+                .setTimeStamp(timeStamp)
+                .setTSDRDataCategory(DataCategory.PORTSTATS)
+                .setMetricName("TransmittedPackets")
+                .setMetricValue(new BigDecimal(timeStamp))
+                .setRecordKeys(Collections.singletonList(new RecordKeysBuilder()
+                        .setKeyName("Port")
+                        .setKeyValue("1")
+                        .build()))
+                .build();
+    }
+
+    private void addMetrics(long offset, List<TSDRMetricRecord> records) {
+        addSeries(offset, records.get(0));
+        addBatch(offset, records);
+    }
+
+    private void addSeries(long offset, TSDRMetricRecord record) {
+        String seriesKey = FormatUtil.getTSDRMetricKey(record);
+        seriesConsumer.addRecord(new ConsumerRecord<>(SERIES_TOPIC, 0, offset, seriesKey,
+                serializer.serializeSeries(seriesKey, record)));
+    }
+
+    private void addBatch(long offset, List<TSDRMetricRecord> records) {
+        String seriesKey = FormatUtil.getTSDRMetricKey(records.get(0));
+        consumer.addRecord(new ConsumerRecord<>(TOPIC, 0, offset, seriesKey,
+                serializer.serializeMetrics(seriesKey, records)));
+    }
+
+    @Test
+    public void testRecordsAreStoredThenCommitted() {
+        addMetrics(0, Arrays.asList(createMetricRecord(1000L), createMetricRecord(2000L)));
+        TSDRLogRecord log = new TSDRLogRecordBuilder()
+                .setNodeID("openflow:1")
+                .setTimeStamp(3000L)
+                .setTSDRDataCategory(DataCategory.SYSLOG)
+                .setIndex(0)
+                .setRecordFullText("Interface eth0 is down")
+                .setRecordKeys(Collections.emptyList())
+                .setRecordAttributes(Collections.emptyList())
+                .build();
+        String logSeriesKey = FormatUtil.getTSDRLogKey(log);
+        seriesConsumer.addRecord(new ConsumerRecord<>(SERIES_TOPIC, 0, 1, logSeriesKey,
+                serializer.serializeSeries(logSeriesKey, log)));
+        consumer.addRecord(new ConsumerRecord<>(TOPIC, 0, 1, logSeriesKey,
+                serializer.serializeLogs(logSeriesKey, Collections.singletonList(log))));
+        assertEquals(2, collector.getDictionary().poll());
+
+        assertTrue(collector.pollOnce(consumer));
+        assertEquals(1, storedMetrics.size());
+        assertEquals(2, storedMetrics.get(0).getTSDRMetricRecord().size());
+        assertEquals(new BigDecimal(2000), storedMetrics.get(0).getTSDRMetricRecord().get(1).getMetricValue());
+        assertEquals("openflow:1", storedMetrics.get(0).getTSDRMetricRecord().get(0).getNodeID());
+        assertEquals(1, storedLogs.size());
+        assertEquals("Interface eth0 is down", storedLogs.get(0).getTSDRLogRecord().get(0).getRecordFullText());
+        assertEquals(3, collector.getStoredCount());
+        assertEquals(2, consumer.committed(PARTITION).offset());
+    }
+
+    @Test
+    public void testFailedStoreIsRetried() {
+        doReturn(RpcResultBuilder.failed().withError(ErrorType.APPLICATION, "test").buildFuture())
+                .when(mockSpiService).insertTSDRMetricRecord(any());
+        addMetrics(0, Collections.singletonList(createMetricRecord(1000L)));
+        collector.getDictionary().poll();
+
+        // The offset is not committed and the consumer goes back to the record
+        assertFalse(collector.pollOnce(consumer));
+        assertNull(consumer.committed(PARTITION));
+        assertEquals(0, consumer.position(PARTITION));
+        assertEquals(0, collector.getStoredCount());
+    }
+
+    @Test
+    public void testUndecodableMessagesAreSkipped() {
+        consumer.addRecord(new ConsumerRecord<>(TOPIC, 0, 0, "key", "{}".getBytes(StandardCharsets.UTF_8)));
+
+        assertTrue(collector.pollOnce(consumer));
+        assertEquals(1, collector.getSkippedCount());
+        assertEquals(1, consumer.committed(PARTITION).offset());
+    }
+
+    @Test
+    public void testUnknownSeriesIsWaitedFor() {
+        // The series of this batch is not read yet, the partition is paused at the batch
+        List<TSDRMetricRecord> records = Collections.singletonList(createMetricRecord(1000L));
+        addBatch(0, records);
+        assertTrue(collector.pollOnce(consumer));
+        verify(mockSpiService, never()).insertTSDRMetricRecord(any());
+        assertNull(consumer.committed(PARTITION));
+        assertEquals(0, consumer.position(PARTITION));
+        assertEquals(Collections.singleton(PARTITION), consumer.paused());
+        assertEquals(0, collector.getSkippedCount());
+
+        // The series is read, the partition is resumed and the batch read again
+        addSeries(0, records.get(0));
+        collector.getDictionary().poll();
+        addBatch(0, records);
+        assertTrue(collector.pollOnce(consumer));
+        assertEquals(1, storedMetrics.size());
+        assertEquals(1, consumer.committed(PARTITION).offset());
+        assertTrue(consumer.paused().isEmpty());
+    }
+
+    @Test
+    public void testUnknownSeriesIsSkippedAfterWait() {
+        // The series of this batch never comes
+        addBatch(0, Collections.singletonList(createMetricRecord(1000L)));
+        assertTrue(collector.pollOnce(consumer));
+        assertEquals(Collections.singleton(PARTITION), consumer.paused());
+
+        // No series was read for series-wait-ms, the batch is skipped and the partition resumed past it
+        assertTrue(collector.pollOnce(consumer));
+        assertEquals(1, collector.getSkippedCount());
+        assertEquals(1, consumer.committed(PARTITION).offset());
+        assertEquals(1, consumer.position(PARTITION));
+        assertTrue(consumer.paused().isEmpty());
+        verify(mockSpiService, never()).insertTSDRMetricRecord(any());
+
+        TSDRMetricRecord known = new TSDRMetricRecordBuilder(createMetricRecord(2000L)).setNodeID("openflow:2")
+                .build();
+        addSeries(0, known);
+        collector.getDictionary().poll();
+        addBatch(1, Collections.singletonList(known));
+        assertTrue(collector.pollOnce(consumer));
+        assertEquals(1, storedMetrics.size());
+        assertEquals(2, consumer.committed(PARTITION).offset());
+    }
+
+    @Test
+    public void testConsumingGoesOnAfterCommitFailure() {
+        failNextCommit.set(true);
+        addMetrics(0, Collections.singletonList(createMetricRecord(1000L)));
+        collector.getDictionary().poll();
+        assertFalse(collector.consumeOnce(consumer));
+        assertNull(consumer.committed(PARTITION));
+
+        addBatch(1, Collections.singletonList(createMetricRecord(2000L)));
+        assertTrue(collector.consumeOnce(consumer));
+        assertEquals(2, storedMetrics.size());
+        assertEquals(2, consumer.committed(PARTITION).offset());
+    }
+
+    @Test
+    public void testSeriesTopicIsAssignedOnceCreated() {
+        MockConsumer<String, byte[]> missingTopicConsumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        SeriesDictionary dictionary = new SeriesDictionary(missingTopicConsumer, SERIES_TOPIC, serializer, 0L);
+        assertFalse(dictionary.assign());
+
+        missingTopicConsumer.updatePartitions(SERIES_TOPIC, Collections.singletonList(
+                new PartitionInfo(SERIES_TOPIC, 0, null, null, null)));
+        missingTopicConsumer.updateBeginningOffsets(Collections.singletonMap(SERIES_PARTITION, 0L));
+        assertTrue(dictionary.assign());
+        assertEquals(Collections.singleton(SERIES_PARTITION), missingTopicConsumer.assignment());
+    }
+}
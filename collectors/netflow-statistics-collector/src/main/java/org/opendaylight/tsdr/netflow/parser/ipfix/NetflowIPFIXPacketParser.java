@@ -18,7 +18,7 @@ import java.util.stream.Collectors;
 import org.opendaylight.tsdr.netflow.parser.AbstractNetflowPacketParser;
 import org.opendaylight.tsdr.netflow.parser.MissingTemplateCache;
 import org.opendaylight.tsdr.netflow.parser.ipfix.InformationElementMappings.Converter;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.tsdrlog.RecordAttributes;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.tsdrlog.RecordAttributes;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.controller.config.tsdr.collector.spi.rev150915.inserttsdrlogrecord.input.TSDRLogRecordBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,7 +14,9 @@ import javax.ws.rs.core.Application;
 import org.opendaylight.tsdr.dataquery.rest.nbi.TSDRNbiRestAPI;
 import org.opendaylight.tsdr.dataquery.rest.query.TSDRLogQueryAPI;
 import org.opendaylight.tsdr.dataquery.rest.query.TSDRMetricsQueryAPI;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.TsdrLogDataService;
+import org.opendaylight.tsdr.dataquery.rest.tail.TSDRLiveTailAPI;
+import org.opendaylight.tsdr.dataquery.rest.tail.TSDRLiveTailHub;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.TsdrLogDataService;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.TsdrMetricDataService;
 
 /**
@@ -26,15 +28,22 @@ import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.Tsdr
 public class TSDRQueryServiceApplication extends Application {
     private final TsdrMetricDataService metricDataService;
     private final TsdrLogDataService logDataService;
+    private final TSDRLiveTailHub liveTailHub;
 
     public TSDRQueryServiceApplication(TsdrMetricDataService metricDataService, TsdrLogDataService logDataService) {
+        this(metricDataService, logDataService, new TSDRLiveTailHub());
+    }
+
+    public TSDRQueryServiceApplication(TsdrMetricDataService metricDataService, TsdrLogDataService logDataService,
+            TSDRLiveTailHub liveTailHub) {
         this.metricDataService = metricDataService;
         this.logDataService = logDataService;
+        this.liveTailHub = liveTailHub;
     }
 
     @Override
     public Set<Object> getSingletons() {
         return ImmutableSet.of(new TSDRNbiRestAPI(metricDataService), new TSDRMetricsQueryAPI(metricDataService),
-                new TSDRLogQueryAPI(logDataService));
+                new TSDRLogQueryAPI(logDataService), new TSDRLiveTailAPI(liveTailHub));
     }
 }
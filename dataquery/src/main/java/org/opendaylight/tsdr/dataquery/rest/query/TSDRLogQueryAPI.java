@@ -23,10 +23,10 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.UriInfo;
 import org.opendaylight.tsdr.dataquery.rest.nbi.TSDRNbiRestAPI;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.GetTSDRLogRecordsInputBuilder;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.GetTSDRLogRecordsOutput;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.TsdrLogDataService;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.gettsdrlogrecords.output.Logs;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.GetTSDRLogRecordsInputBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.GetTSDRLogRecordsOutput;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.TsdrLogDataService;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.gettsdrlogrecords.output.Logs;
 import org.opendaylight.yangtools.yang.common.RpcResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -51,13 +51,14 @@ public class TSDRLogQueryAPI {
     @Path("/{query}")
     @Produces("application/json")
     public Response get(@PathParam("query") String query, @QueryParam("tsdrkey") String tsdrkey,
-            @QueryParam("from") String from, @QueryParam("until") String until)
-            throws ExecutionException, InterruptedException {
+            @QueryParam("from") String from, @QueryParam("until") String until,
+            @QueryParam("search") String search) throws ExecutionException, InterruptedException {
 
         TSDRQueryRequest request = new TSDRQueryRequest();
         request.setTsdrkey(tsdrkey);
         request.setFrom(from);
         request.setUntil(until);
+        request.setSearch(search);
 
         return post(null, request);
     }
@@ -69,6 +70,7 @@ public class TSDRLogQueryAPI {
 
         GetTSDRLogRecordsInputBuilder input = new GetTSDRLogRecordsInputBuilder();
         input.setTSDRDataCategory(request.getTsdrkey());
+        input.setSearch(request.getSearch());
 
         final String fromString = request.getFrom();
         final String untilString = request.getUntil();
@@ -12,8 +12,9 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
 import javax.xml.bind.annotation.XmlRootElement;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.gettsdrlogrecords.output.Logs;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.tsdrlog.RecordAttributes;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.TSDRLog;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.gettsdrlogrecords.output.Logs;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.tsdrlog.RecordAttributes;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.tsdrrecord.RecordKeys;
 
 /**
@@ -51,7 +52,7 @@ public class TSDRLogQueryReply {
         private final List<LogRecordKeys> recordKeys = new ArrayList<>();
         private final List<LogRecordAttributes> recordAttributes = new ArrayList<>();
 
-        public LogRecords(Logs mr) {
+        public LogRecords(TSDRLog mr) {
             Calendar calendar = Calendar.getInstance();
             calendar.setTimeInMillis(mr.getTimeStamp());
             this.timeStamp = calendar.getTime().toString();
@@ -13,6 +13,7 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
 import javax.xml.bind.annotation.XmlRootElement;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.TSDRMetric;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.gettsdraggregatedmetrics.output.AggregatedMetrics;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.gettsdrmetrics.output.Metrics;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.tsdrrecord.RecordKeys;
@@ -63,7 +64,7 @@ public class TSDRMetricsQueryReply {
 
         private final List<MetricRecordKeys> recordKeys = new ArrayList<>();
 
-        public MetricRecord(Metrics mr) {
+        public MetricRecord(TSDRMetric mr) {
             this.metricName = mr.getMetricName();
             this.metricValue = mr.getMetricValue();
             Calendar calendar = Calendar.getInstance();
@@ -21,6 +21,7 @@ public class TSDRQueryRequest {
     public String until;
     public String maxDataPoints;
     public String aggregation;
+    public String search;
 
     public String getTsdrkey() {
         return tsdrkey;
@@ -61,4 +62,12 @@ public class TSDRQueryRequest {
     public void setAggregation(String aggregation) {
         this.aggregation = aggregation;
     }
+
+    public String getSearch() {
+        return search;
+    }
+
+    public void setSearch(String search) {
+        this.search = search;
+    }
 }
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.dataquery.rest.tail;
+
+import com.google.gson.Gson;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
+import org.opendaylight.tsdr.dataquery.rest.query.TSDRLogQueryReply.LogRecords;
+import org.opendaylight.tsdr.dataquery.rest.query.TSDRMetricsQueryReply.MetricRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.TSDRLog;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.TSDRMetric;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.TSDRRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Live-tail REST endpoint. Streams newly stored metric or log records matching a tsdrkey selector to the
+ * client as Server-Sent Events, e.g. <code>GET /tsdr/tail/logs?tsdrkey=SYSLOG</code>.
+ *
+ * <p>
+ * Each record is sent as a <code>metric</code> or <code>log</code> event whose data is the same JSON record
+ * the query APIs return. A comment line is sent when nothing arrived for a while so that closed connections
+ * are detected. If the client falls behind and its buffer overflows, a <code>disconnect</code> event is sent
+ * and the stream is ended.
+ * </p>
+ */
+@Path("/tail")
+public class TSDRLiveTailAPI {
+    private static final Logger LOG = LoggerFactory.getLogger(TSDRLiveTailAPI.class);
+
+    static final String EVENT_STREAM = "text/event-stream";
+    private static final long KEEP_ALIVE_SECONDS = 15;
+    private static final int MAX_RECORDS_PER_WRITE = 256;
+
+    private final TSDRLiveTailHub hub;
+    private final Gson gson = new Gson();
+
+    public TSDRLiveTailAPI(TSDRLiveTailHub hub) {
+        this.hub = hub;
+    }
+
+    @GET
+    @Path("/metrics")
+    @Produces(EVENT_STREAM)
+    public Response tailMetrics(@QueryParam("tsdrkey") String tsdrkey) {
+        try {
+            return subscribe(TSDRTailSelector.forMetrics(tsdrkey));
+        } catch (IllegalArgumentException e) {
+            return Response.status(Status.BAD_REQUEST).entity(e.getMessage()).build();
+        }
+    }
+
+    @GET
+    @Path("/logs")
+    @Produces(EVENT_STREAM)
+    public Response tailLogs(@QueryParam("tsdrkey") String tsdrkey) {
+        try {
+            return subscribe(TSDRTailSelector.forLogs(tsdrkey));
+        } catch (IllegalArgumentException e) {
+            return Response.status(Status.BAD_REQUEST).entity(e.getMessage()).build();
+        }
+    }
+
+    private Response subscribe(TSDRTailSelector selector) {
+        final TSDRTailSubscription subscription;
+        try {
+            subscription = hub.subscribe(selector);
+        } catch (IllegalStateException e) {
+            return Response.status(Status.SERVICE_UNAVAILABLE).entity(e.getMessage()).build();
+        }
+
+        StreamingOutput stream = output -> stream(subscription, output);
+        return Response.ok(stream, EVENT_STREAM).header("Cache-Control", "no-cache").build();
+    }
+
+    private void stream(TSDRTailSubscription subscription, OutputStream output) throws IOException {
+        LOG.debug("Streaming live-tail records for {}", subscription.getSelector());
+        final Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+        final List<TSDRRecord> records = new ArrayList<>(MAX_RECORDS_PER_WRITE);
+        try {
+            writer.write(": subscribed\n\n");
+            writer.flush();
+
+            while (true) {
+                TSDRRecord first = subscription.poll(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+                if (first == null) {
+                    if (subscription.isClosed()) {
+                        break;
+                    }
+
+                    writer.write(": keep-alive\n\n");
+                    writer.flush();
+                    continue;
+                }
+
+                records.add(first);
+                subscription.drainTo(records, MAX_RECORDS_PER_WRITE - 1);
+                for (TSDRRecord record : records) {
+                    writeEvent(writer, record);
+                }
+                records.clear();
+                writer.flush();
+
+                if (subscription.isClosed()) {
+                    subscription.drainTo(records, Integer.MAX_VALUE);
+                    for (TSDRRecord record : records) {
+                        writeEvent(writer, record);
+                    }
+                    break;
+                }
+            }
+
+            writer.write("event: disconnect\ndata: " + gson.toJson(subscription.getCloseReason()) + "\n\n");
+            writer.flush();
+        } catch (InterruptedException e) {
+            LOG.debug("Interrupted while streaming live-tail records for {}", subscription.getSelector());
+            Thread.currentThread().interrupt();
+        } finally {
+            subscription.close();
+            LOG.debug("Stopped streaming live-tail records for {}", subscription.getSelector());
+        }
+    }
+
+    private void writeEvent(Writer writer, TSDRRecord record) throws IOException {
+        if (record instanceof TSDRMetric) {
+            writer.write("event: metric\ndata: ");
+            writer.write(gson.toJson(new MetricRecord((TSDRMetric) record)));
+        } else {
+            writer.write("event: log\ndata: ");
+            writer.write(gson.toJson(new LogRecords((TSDRLog) record)));
+        }
+        writer.write("\n\n");
+    }
+}
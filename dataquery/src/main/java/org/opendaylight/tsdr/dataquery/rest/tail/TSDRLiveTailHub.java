@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.dataquery.rest.tail;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.opendaylight.tsdr.spi.persistence.TSDRRecordListener;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fans out newly stored records to the live-tail subscribers. This is registered as a
+ * {@link TSDRRecordListener} so it is fed directly from the storage service's ingest path.
+ */
+public class TSDRLiveTailHub implements TSDRRecordListener, AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(TSDRLiveTailHub.class);
+
+    public static final int DEFAULT_BUFFER_SIZE = 1024;
+    public static final int DEFAULT_MAX_SUBSCRIBERS = 64;
+
+    private final Set<TSDRTailSubscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final int bufferSize;
+    private final int maxSubscribers;
+
+    public TSDRLiveTailHub() {
+        this(DEFAULT_BUFFER_SIZE, DEFAULT_MAX_SUBSCRIBERS);
+    }
+
+    public TSDRLiveTailHub(int bufferSize, int maxSubscribers) {
+        this.bufferSize = bufferSize;
+        this.maxSubscribers = maxSubscribers;
+    }
+
+    /**
+     * Adds a subscriber.
+     *
+     * @param selector - selects the records to deliver
+     * @return the subscription, which must be closed by the caller when done
+     * @throws IllegalStateException if the maximum number of subscribers is reached
+     */
+    public TSDRTailSubscription subscribe(TSDRTailSelector selector) {
+        if (subscriptions.size() >= maxSubscribers) {
+            throw new IllegalStateException("The maximum of " + maxSubscribers + " live-tail subscribers is reached");
+        }
+
+        TSDRTailSubscription subscription = new TSDRTailSubscription(selector, bufferSize, this);
+        subscriptions.add(subscription);
+        LOG.debug("Added live-tail subscriber {}", selector);
+        return subscription;
+    }
+
+    void remove(TSDRTailSubscription subscription) {
+        if (subscriptions.remove(subscription)) {
+            LOG.debug("Removed live-tail subscriber {}", subscription.getSelector());
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    @Override
+    public void onMetricRecords(List<TSDRMetricRecord> metricRecords) {
+        for (TSDRTailSubscription subscription : subscriptions) {
+            if (!subscription.getSelector().isForLogs()) {
+                subscription.offer(metricRecords);
+            }
+        }
+    }
+
+    @Override
+    public void onLogRecords(List<TSDRLogRecord> logRecords) {
+        for (TSDRTailSubscription subscription : subscriptions) {
+            if (subscription.getSelector().isForLogs()) {
+                subscription.offer(logRecords);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        for (TSDRTailSubscription subscription : subscriptions) {
+            subscription.close("shutdown");
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.dataquery.rest.tail;
+
+import java.util.Collections;
+import java.util.List;
+import org.opendaylight.tsdr.spi.util.FormatUtil;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.TSDRMetric;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.TSDRRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.tsdrrecord.RecordKeys;
+
+/**
+ * Selects the records a live-tail subscriber is interested in. A selector is built from the same tsdrkey
+ * syntax the query APIs accept, either a bare data category or a TSDR key such as
+ * <code>[NID=openflow:1][DC=FLOWSTATS][MN=PacketCount][RK=Table:0]</code>. Sub keys that are missing or
+ * empty match any value, and the record keys of the selector must all be present on a matching record.
+ */
+public final class TSDRTailSelector {
+    private final boolean logs;
+    private final DataCategory category;
+    private final String nodeId;
+    private final String metricName;
+    private final List<RecordKeys> recordKeys;
+
+    private TSDRTailSelector(boolean logs, DataCategory category, String nodeId, String metricName,
+            List<RecordKeys> recordKeys) {
+        this.logs = logs;
+        this.category = category;
+        this.nodeId = nodeId;
+        this.metricName = metricName;
+        this.recordKeys = recordKeys;
+    }
+
+    public static TSDRTailSelector forMetrics(String tsdrKey) {
+        return parse(false, tsdrKey);
+    }
+
+    public static TSDRTailSelector forLogs(String tsdrKey) {
+        return parse(true, tsdrKey);
+    }
+
+    private static TSDRTailSelector parse(boolean logs, String tsdrKey) {
+        if (tsdrKey == null || tsdrKey.trim().isEmpty()) {
+            throw new IllegalArgumentException("A tsdrkey is required");
+        }
+
+        final String key = tsdrKey.trim();
+        if (!key.contains(FormatUtil.KEY_CATEGORY)) {
+            return new TSDRTailSelector(logs, toCategory(key), null, null, Collections.emptyList());
+        }
+
+        List<RecordKeys> keys = FormatUtil.getRecordKeysFromTSDRKey(key);
+        return new TSDRTailSelector(logs, toCategory(FormatUtil.getDataCategoryFromTSDRKey(key)),
+                emptyToNull(FormatUtil.getNodeIdFromTSDRKey(key)),
+                emptyToNull(FormatUtil.getMetriNameFromTSDRKey(key)),
+                keys != null ? keys : Collections.emptyList());
+    }
+
+    private static DataCategory toCategory(String name) {
+        if (name == null || !FormatUtil.isDataCategory(name)) {
+            throw new IllegalArgumentException("Unknown data category " + name);
+        }
+
+        return DataCategory.valueOf(name);
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    public boolean isForLogs() {
+        return logs;
+    }
+
+    public DataCategory getCategory() {
+        return category;
+    }
+
+    public boolean matches(TSDRRecord record) {
+        if (category != record.getTSDRDataCategory()) {
+            return false;
+        }
+
+        if (nodeId != null && !nodeId.equals(record.getNodeID())) {
+            return false;
+        }
+
+        if (metricName != null && record instanceof TSDRMetric
+                && !metricName.equals(((TSDRMetric) record).getMetricName())) {
+            return false;
+        }
+
+        if (recordKeys.isEmpty()) {
+            return true;
+        }
+
+        List<RecordKeys> actual = record.getRecordKeys();
+        if (actual == null) {
+            return false;
+        }
+
+        for (RecordKeys wanted : recordKeys) {
+            if (!containsKey(actual, wanted)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean containsKey(List<RecordKeys> keys, RecordKeys wanted) {
+        for (RecordKeys key : keys) {
+            if (wanted.getKeyName().equals(key.getKeyName()) && wanted.getKeyValue().equals(key.getKeyValue())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "TSDRTailSelector [logs=" + logs + ", category=" + category + ", nodeId=" + nodeId
+                + ", metricName=" + metricName + ", recordKeys=" + recordKeys + "]";
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.dataquery.rest.tail;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.TSDRRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A single live-tail subscriber. Matching records are handed over from the ingest thread into a bounded
+ * buffer which is drained by the thread streaming the response. The ingest thread never waits: if the
+ * buffer is full the subscriber is considered too slow and is disconnected.
+ */
+public final class TSDRTailSubscription implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(TSDRTailSubscription.class);
+
+    private final TSDRTailSelector selector;
+    private final BlockingQueue<TSDRRecord> buffer;
+    private final TSDRLiveTailHub hub;
+    private volatile String closeReason;
+
+    TSDRTailSubscription(TSDRTailSelector selector, int bufferSize, TSDRLiveTailHub hub) {
+        this.selector = selector;
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        this.hub = hub;
+    }
+
+    public TSDRTailSelector getSelector() {
+        return selector;
+    }
+
+    /**
+     * Offers the records matching the selector of this subscription.
+     *
+     * @param records - the newly stored records
+     * @return false if the subscription is, or has just become, closed
+     */
+    boolean offer(List<? extends TSDRRecord> records) {
+        for (TSDRRecord record : records) {
+            if (closeReason != null) {
+                return false;
+            }
+
+            if (selector.matches(record) && !buffer.offer(record)) {
+                LOG.info("Disconnecting live-tail subscriber {} - buffer of {} records is full", selector,
+                        buffer.size());
+                close("slow consumer");
+                return false;
+            }
+        }
+
+        return closeReason == null;
+    }
+
+    /**
+     * Waits for the next record.
+     *
+     * @param timeout - how long to wait
+     * @param unit - the unit of the timeout
+     * @return the next record or null if none arrived in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public TSDRRecord poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return buffer.poll(timeout, unit);
+    }
+
+    /**
+     * Drains the records that are immediately available.
+     *
+     * @param into - the list to add the records to
+     * @param maxRecords - the maximum number of records to drain
+     * @return the number of drained records
+     */
+    public int drainTo(List<TSDRRecord> into, int maxRecords) {
+        return buffer.drainTo(into, maxRecords);
+    }
+
+    public boolean isClosed() {
+        return closeReason != null;
+    }
+
+    public String getCloseReason() {
+        return closeReason;
+    }
+
+    void close(String reason) {
+        if (closeReason == null) {
+            closeReason = reason;
+            hub.remove(this);
+        }
+    }
+
+    @Override
+    public void close() {
+        close("closed");
+    }
+}
@@ -16,7 +16,8 @@ import org.opendaylight.aaa.web.WebContextSecurer;
 import org.opendaylight.aaa.web.WebServer;
 import org.opendaylight.aaa.web.servlet.ServletSupport;
 import org.opendaylight.tsdr.dataquery.TSDRQueryServiceApplication;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.TsdrLogDataService;
+import org.opendaylight.tsdr.dataquery.rest.tail.TSDRLiveTailHub;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.TsdrLogDataService;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.TsdrMetricDataService;
 
 /**
@@ -28,10 +29,11 @@ public class WebInitializer {
     private final WebContextRegistration registraton;
 
     public WebInitializer(WebServer webServer, WebContextSecurer webContextSecurer, ServletSupport servletSupport,
-            TsdrMetricDataService metricDataService, TsdrLogDataService logDataService) throws ServletException {
+            TsdrMetricDataService metricDataService, TsdrLogDataService logDataService, TSDRLiveTailHub liveTailHub)
+            throws ServletException {
         WebContextBuilder webContextBuilder = WebContext.builder().contextPath("tsdr").supportsSessions(true)
             .addServlet(ServletDetails.builder().servlet(servletSupport.createHttpServletBuilder(
-                    new TSDRQueryServiceApplication(metricDataService, logDataService)).build())
+                    new TSDRQueryServiceApplication(metricDataService, logDataService, liveTailHub)).build())
                 .addUrlPattern("/*").build());
 
         webContextSecurer.requireAuthentication(webContextBuilder, "/*");
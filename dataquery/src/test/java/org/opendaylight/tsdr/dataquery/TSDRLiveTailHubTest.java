@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.dataquery;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.opendaylight.tsdr.dataquery.rest.tail.TSDRLiveTailHub;
+import org.opendaylight.tsdr.dataquery.rest.tail.TSDRTailSelector;
+import org.opendaylight.tsdr.dataquery.rest.tail.TSDRTailSubscription;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.TSDRRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.tsdrrecord.RecordKeys;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.tsdrrecord.RecordKeysBuilder;
+
+/**
+ * Unit tests for the live-tail hub.
+ */
+public class TSDRLiveTailHubTest {
+    private final TSDRLiveTailHub hub = new TSDRLiveTailHub(2, 2);
+
+    @Test
+    public void testSelectorMatching() {
+        TSDRMetricRecord record = metric("openflow:1", "PacketCount", "Table", "0");
+
+        assertTrue(TSDRTailSelector.forMetrics("FLOWSTATS").matches(record));
+        assertFalse(TSDRTailSelector.forMetrics("PORTSTATS").matches(record));
+        assertTrue(TSDRTailSelector.forMetrics("[NID=openflow:1][DC=FLOWSTATS][MN=][RK=]").matches(record));
+        assertFalse(TSDRTailSelector.forMetrics("[NID=openflow:2][DC=FLOWSTATS][MN=][RK=]").matches(record));
+        assertTrue(TSDRTailSelector.forMetrics("[NID=][DC=FLOWSTATS][MN=PacketCount][RK=Table:0]")
+                .matches(record));
+        assertFalse(TSDRTailSelector.forMetrics("[NID=][DC=FLOWSTATS][MN=ByteCount][RK=]").matches(record));
+        assertFalse(TSDRTailSelector.forMetrics("[NID=][DC=FLOWSTATS][MN=][RK=Table:1]").matches(record));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSelector() {
+        TSDRTailSelector.forLogs("NOSUCHCATEGORY");
+    }
+
+    @Test
+    public void testRecordsAreRoutedToMatchingSubscribers() throws InterruptedException {
+        TSDRTailSubscription metrics = hub.subscribe(TSDRTailSelector.forMetrics("FLOWSTATS"));
+        TSDRTailSubscription logs = hub.subscribe(TSDRTailSelector.forLogs("SYSLOG"));
+
+        TSDRMetricRecord metric = metric("openflow:1", "PacketCount", "Table", "0");
+        TSDRLogRecord log = new TSDRLogRecordBuilder().setNodeID("node1").setTSDRDataCategory(DataCategory.SYSLOG)
+                .setTimeStamp(1L).setRecordFullText("text").build();
+        hub.onMetricRecords(Arrays.asList(metric, metricOf(DataCategory.PORTSTATS)));
+        hub.onLogRecords(Collections.singletonList(log));
+
+        assertSame(metric, metrics.poll(1, TimeUnit.SECONDS));
+        assertNull(metrics.poll(0, TimeUnit.SECONDS));
+        assertSame(log, logs.poll(1, TimeUnit.SECONDS));
+
+        metrics.close();
+        logs.close();
+        assertEquals(0, hub.getSubscriberCount());
+    }
+
+    @Test
+    public void testSlowConsumerIsDisconnected() {
+        TSDRTailSubscription subscription = hub.subscribe(TSDRTailSelector.forMetrics("FLOWSTATS"));
+
+        List<TSDRMetricRecord> records = Arrays.asList(metricOf(DataCategory.FLOWSTATS),
+                metricOf(DataCategory.FLOWSTATS), metricOf(DataCategory.FLOWSTATS));
+        hub.onMetricRecords(records);
+
+        assertTrue(subscription.isClosed());
+        assertEquals(0, hub.getSubscriberCount());
+
+        List<TSDRRecord> buffered = new ArrayList<>();
+        subscription.drainTo(buffered, 10);
+        assertEquals(2, buffered.size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMaxSubscribers() {
+        hub.subscribe(TSDRTailSelector.forMetrics("FLOWSTATS"));
+        hub.subscribe(TSDRTailSelector.forMetrics("FLOWSTATS"));
+        hub.subscribe(TSDRTailSelector.forMetrics("FLOWSTATS"));
+    }
+
+    private static TSDRMetricRecord metricOf(DataCategory category) {
+        return new TSDRMetricRecordBuilder().setNodeID("openflow:1").setTSDRDataCategory(category)
+                .setMetricName("PacketCount").setMetricValue(BigDecimal.ONE).setTimeStamp(1L).build();
+    }
+
+    private static TSDRMetricRecord metric(String nodeId, String metricName, String keyName, String keyValue) {
+        List<RecordKeys> recordKeys = Collections.singletonList(
+                new RecordKeysBuilder().setKeyName(keyName).setKeyValue(keyValue).build());
+        return new TSDRMetricRecordBuilder().setNodeID(nodeId).setTSDRDataCategory(DataCategory.FLOWSTATS)
+                .setMetricName(metricName).setMetricValue(BigDecimal.TEN).setTimeStamp(1L)
+                .setRecordKeys(recordKeys).build();
+    }
+}
@@ -11,32 +11,44 @@ import com.google.common.base.Optional;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.PeekingIterator;
+import com.google.common.math.LongMath;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ServiceLoader;
 import java.util.concurrent.ExecutionException;
 import javax.annotation.PreDestroy;
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.inject.Singleton;
 import org.opendaylight.tsdr.datastorage.aggregate.AggregationFunction;
 import org.opendaylight.tsdr.datastorage.aggregate.IntervalGenerator;
+import org.opendaylight.tsdr.spi.model.TSDRConstants;
+import org.opendaylight.tsdr.spi.persistence.AggregatingMetricPersistenceService;
+import org.opendaylight.tsdr.spi.persistence.AggregatingMetricPersistenceService.Bucket;
+import org.opendaylight.tsdr.spi.persistence.SearchableLogPersistenceService;
 import org.opendaylight.tsdr.spi.persistence.TSDRBinaryPersistenceService;
 import org.opendaylight.tsdr.spi.persistence.TSDRLogPersistenceService;
 import org.opendaylight.tsdr.spi.persistence.TSDRMetricPersistenceService;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.GetTSDRLogRecordsInput;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.GetTSDRLogRecordsOutput;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.GetTSDRLogRecordsOutputBuilder;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.StoreTSDRLogRecordInput;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.StoreTSDRLogRecordOutput;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.StoreTSDRLogRecordOutputBuilder;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.TsdrLogDataService;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.gettsdrlogrecords.output.Logs;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.gettsdrlogrecords.output.LogsBuilder;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.tsdr.spi.persistence.TSDRRecordListener;
+import org.opendaylight.tsdr.spi.util.LogSearch;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.GetTSDRLogRecordsInput;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.GetTSDRLogRecordsOutput;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.GetTSDRLogRecordsOutputBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.StoreTSDRLogRecordInput;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.StoreTSDRLogRecordOutput;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.StoreTSDRLogRecordOutputBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.TsdrLogDataService;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.gettsdrlogrecords.output.Logs;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.gettsdrlogrecords.output.LogsBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.AggregationType;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.GetTSDRAggregatedMetricsInput;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.GetTSDRAggregatedMetricsOutput;
@@ -93,12 +105,21 @@ public class TSDRStorageServiceImpl implements TSDRService,TsdrMetricDataService
 
     private final TSDRBinaryPersistenceService binaryPersistenceService;
 
-    @Inject
+    private final List<TSDRRecordListener> recordListeners;
+
     public TSDRStorageServiceImpl(TSDRMetricPersistenceService metricService, TSDRLogPersistenceService logService,
             TSDRBinaryPersistenceService binaryPersistenceService) {
+        this(metricService, logService, binaryPersistenceService, Collections.emptyList());
+    }
+
+    @Inject
+    public TSDRStorageServiceImpl(TSDRMetricPersistenceService metricService, TSDRLogPersistenceService logService,
+            TSDRBinaryPersistenceService binaryPersistenceService,
+            @Named("tsdrRecordListeners") List<TSDRRecordListener> recordListeners) {
         this.metricPersistenceService = metricService;
         this.logPersistenceService = logService;
         this.binaryPersistenceService = binaryPersistenceService;
+        this.recordListeners = recordListeners;
         aggregationFunctions = ServiceLoader.load(AggregationFunction.class, this.getClass().getClassLoader());
     }
 
@@ -126,6 +147,8 @@ public class TSDRStorageServiceImpl implements TSDRService,TsdrMetricDataService
                     "The persistence service is not available", e).buildFuture();
         }
 
+        notifyMetricListeners(tsdrMetricRecordList);
+
         LOG.debug("Exiting TSDRStorageService.storeTSDRMetrics()");
         return RpcResultBuilder.success(new StoreTSDRMetricRecordOutputBuilder().build()).buildFuture();
     }
@@ -239,6 +262,33 @@ public class TSDRStorageServiceImpl implements TSDRService,TsdrMetricDataService
                     .buildFuture();
         }
 
+        //Fix for bug 5655 - Do not aggregate when # of points is less than requested
+        long numberOfPoints = (input.getEndTime() - input.getStartTime()) / input.getInterval();
+
+        // Let the data store aggregate the metrics when it can. The raw points of a MEAN are read first, as they are
+        // returned as is when there are fewer of them than requested, so a MEAN is aggregated here.
+        final List<Bucket> buckets = input.getAggregation() != AggregationType.MEAN ? aggregateInDataStore(input)
+                : null;
+        if (buckets != null) {
+            final List<AggregatedMetrics> aggregatedMetrics = Lists.newArrayList();
+            final PeekingIterator<Bucket> bucketIterator = Iterators.peekingIterator(buckets.iterator());
+            for (Long intervalStartInclusive : new IntervalGenerator(input.getStartTime(), input.getEndTime(),
+                    input.getInterval())) {
+                BigDecimal value = null;
+                while (bucketIterator.hasNext() && bucketIterator.peek().getTimeStamp() <= intervalStartInclusive) {
+                    Bucket bucket = bucketIterator.next();
+                    if (bucket.getTimeStamp() == intervalStartInclusive) {
+                        value = bucket.getValue();
+                    }
+                }
+                aggregatedMetrics.add(new AggregatedMetricsBuilder()
+                        .setTimeStamp(intervalStartInclusive)
+                        .setMetricValue(value).build());
+            }
+            return RpcResultBuilder.success(new GetTSDRAggregatedMetricsOutputBuilder()
+                    .setAggregatedMetrics(aggregatedMetrics).build()).buildFuture();
+        }
+
         // Gather the metrics for the given time span
         final GetTSDRMetricsInput metricsInput = new GetTSDRMetricsInputBuilder()
                 .setTSDRDataCategory(input.getTSDRDataCategory())
@@ -246,8 +296,6 @@ public class TSDRStorageServiceImpl implements TSDRService,TsdrMetricDataService
                 .setEndTime(input.getEndTime()).build();
         final ListenableFuture<RpcResult<GetTSDRMetricsOutput>> result = getTSDRMetrics(metricsInput);
 
-        //Fix for bug 5655 - Do not aggregate when # of points is less than requested
-        long numberOfPoints = (input.getEndTime() - input.getStartTime()) / input.getInterval();
         try {
             if (result.isDone() && !result.get().isSuccessful()) {
                 return RpcResultBuilder.<GetTSDRAggregatedMetricsOutput>failed().withRpcErrors(result.get()
@@ -309,11 +357,38 @@ public class TSDRStorageServiceImpl implements TSDRService,TsdrMetricDataService
         }, MoreExecutors.directExecutor());
     }
 
+    /**
+     * Aggregates the metrics in the bound data store if it supports the aggregation.
+     *
+     * @return the aggregated metrics of the intervals holding metrics, or null if they are to be aggregated here
+     */
+    @SuppressWarnings("checkstyle:IllegalCatch")
+    private List<Bucket> aggregateInDataStore(GetTSDRAggregatedMetricsInput input) {
+        try {
+            AggregatingMetricPersistenceService service = metricPersistenceService.getAggregatingService();
+            if (service == null || !service.isAggregationSupported(input.getAggregation())) {
+                return null;
+            }
+            return service.getTSDRAggregatedMetrics(input.getTSDRDataCategory(), input.getStartTime(),
+                    input.getEndTime(), input.getInterval(), input.getAggregation());
+        } catch (ServiceUnavailableException e) {
+            // The raw metrics are read from the data store anyway, which fails the same way
+            return null;
+        } catch (RuntimeException e) {
+            LOG.warn("Failed to aggregate the metrics in the data store, the raw metrics are aggregated", e);
+            return null;
+        }
+    }
+
     @Override
     public ListenableFuture<RpcResult<GetTSDRLogRecordsOutput>> getTSDRLogRecords(GetTSDRLogRecordsInput input) {
         try {
-            List<TSDRLogRecord> result = this.logPersistenceService.getTSDRLogRecords(input.getTSDRDataCategory(),
-                    input.getStartTime(), input.getEndTime());
+            final LogSearch search = LogSearch.parse(input.getSearch());
+            List<TSDRLogRecord> result = search.isEmpty() ? null : searchInDataStore(input, search);
+            if (result == null) {
+                result = search.isEmpty() ? this.logPersistenceService.getTSDRLogRecords(input.getTSDRDataCategory(),
+                        input.getStartTime(), input.getEndTime()) : filterLogs(input, search);
+            }
             GetTSDRLogRecordsOutputBuilder output = new GetTSDRLogRecordsOutputBuilder();
             List<Logs> logs = new LinkedList<>();
             for (TSDRLogRecord log : result) {
@@ -336,6 +411,61 @@ public class TSDRStorageServiceImpl implements TSDRService,TsdrMetricDataService
         }
     }
 
+    /**
+     * Searches the logs in the bound data store if it indexes them, otherwise they are filtered by
+     * {@link #filterLogs(GetTSDRLogRecordsInput, LogSearch)}.
+     *
+     * @return the matching logs, or null if they are to be filtered here
+     */
+    @SuppressWarnings("checkstyle:IllegalCatch")
+    private List<TSDRLogRecord> searchInDataStore(GetTSDRLogRecordsInput input, LogSearch search) {
+        try {
+            SearchableLogPersistenceService service = logPersistenceService.getSearchableService();
+            if (service == null) {
+                return null;
+            }
+            return service.searchTSDRLogRecords(input.getTSDRDataCategory(), input.getStartTime(),
+                    input.getEndTime(), search, TSDRConstants.MAX_RESULTS_FROM_LIST_METRICS_COMMAND);
+        } catch (ServiceUnavailableException e) {
+            // The raw logs are read from the data store anyway, which fails the same way
+            return null;
+        } catch (RuntimeException e) {
+            LOG.warn("Failed to search the logs in the data store, the logs are filtered", e);
+            return null;
+        }
+    }
+
+    /**
+     * Filters the logs of the time range read from the data store. A data store returns at most
+     * {@link TSDRConstants#MAX_RESULTS_FROM_LIST_METRICS_COMMAND} logs per query, so the time ranges holding more
+     * logs are split in halves which are read in turn, until as many logs match.
+     */
+    private List<TSDRLogRecord> filterLogs(GetTSDRLogRecordsInput input, LogSearch search) {
+        final int maxResults = TSDRConstants.MAX_RESULTS_FROM_LIST_METRICS_COMMAND;
+        final List<TSDRLogRecord> result = new ArrayList<>();
+        final Deque<long[]> ranges = new ArrayDeque<>();
+        ranges.push(new long[] {input.getStartTime(), input.getEndTime()});
+        while (!ranges.isEmpty() && result.size() < maxResults) {
+            long[] range = ranges.pop();
+            List<TSDRLogRecord> logs = this.logPersistenceService.getTSDRLogRecords(input.getTSDRDataCategory(),
+                    range[0], range[1]);
+            if (logs == null) {
+                continue;
+            }
+            if (logs.size() >= maxResults) {
+                if (range[0] < range[1]) {
+                    long middle = LongMath.mean(range[0], range[1]);
+                    ranges.push(new long[] {middle + 1, range[1]});
+                    ranges.push(new long[] {range[0], middle});
+                    continue;
+                }
+                LOG.warn("More than {} logs at {}, only the ones returned are searched", maxResults, range[0]);
+            }
+            logs.stream().filter(search::matches).forEach(result::add);
+        }
+        return result.size() > maxResults ? result.subList(0, maxResults) : result;
+    }
+
     @Override
     public ListenableFuture<RpcResult<StoreTSDRLogRecordOutput>> storeTSDRLogRecord(StoreTSDRLogRecordInput input) {
         LOG.debug("Entering TSDRStorageService.storeTSDRLog()");
@@ -349,6 +479,7 @@ public class TSDRStorageServiceImpl implements TSDRService,TsdrMetricDataService
 
         try {
             this.logPersistenceService.storeLog(tsdrLogRecordList);
+            notifyLogListeners(tsdrLogRecordList);
         } catch (ServiceUnavailableException e) {
             LOG.debug("storeTSDRLogRecord: cannot store the record -- persistence service is not available");
         }
@@ -356,4 +487,26 @@ public class TSDRStorageServiceImpl implements TSDRService,TsdrMetricDataService
         LOG.debug("Exiting TSDRStorageService.storeTSDRMetrics()");
         return RpcResultBuilder.success(new StoreTSDRLogRecordOutputBuilder().build()).buildFuture();
     }
+
+    @SuppressWarnings("checkstyle:IllegalCatch")
+    private void notifyMetricListeners(List<TSDRMetricRecord> metricRecords) {
+        for (TSDRRecordListener listener : recordListeners) {
+            try {
+                listener.onMetricRecords(metricRecords);
+            } catch (RuntimeException e) {
+                LOG.warn("Record listener {} failed to process metric records", listener, e);
+            }
+        }
+    }
+
+    @SuppressWarnings("checkstyle:IllegalCatch")
+    private void notifyLogListeners(List<TSDRLogRecord> logRecords) {
+        for (TSDRRecordListener listener : recordListeners) {
+            try {
+                listener.onLogRecords(logRecords);
+            } catch (RuntimeException e) {
+                LOG.warn("Record listener {} failed to process log records", listener, e);
+            }
+        }
+    }
 }
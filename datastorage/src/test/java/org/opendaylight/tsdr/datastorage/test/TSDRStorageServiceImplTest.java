@@ -16,6 +16,8 @@ import static org.mockito.Mockito.mock;
 import com.google.common.collect.ImmutableMap;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -23,6 +25,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -30,12 +33,19 @@ import org.mockito.Mockito;
 import org.mockito.stubbing.Answer;
 import org.opendaylight.tsdr.datastorage.TSDRStorageServiceImpl;
 import org.opendaylight.tsdr.spi.model.TSDRConstants;
+import org.opendaylight.tsdr.spi.persistence.AggregatingMetricPersistenceService;
+import org.opendaylight.tsdr.spi.persistence.AggregatingMetricPersistenceService.Bucket;
+import org.opendaylight.tsdr.spi.persistence.SearchableLogPersistenceService;
 import org.opendaylight.tsdr.spi.persistence.TSDRLogPersistenceService;
 import org.opendaylight.tsdr.spi.persistence.TSDRMetricPersistenceService;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.GetTSDRLogRecordsInputBuilder;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.StoreTSDRLogRecordInputBuilder;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.storetsdrlogrecord.input.TSDRLogRecord;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.storetsdrlogrecord.input.TSDRLogRecordBuilder;
+import org.opendaylight.tsdr.spi.util.LogSearch;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.GetTSDRLogRecordsInputBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.GetTSDRLogRecordsOutput;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.StoreTSDRLogRecordInputBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.gettsdrlogrecords.output.Logs;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.tsdrlog.RecordAttributesBuilder;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.AggregationType;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.GetTSDRAggregatedMetricsInputBuilder;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.GetTSDRAggregatedMetricsOutput;
@@ -327,6 +337,138 @@ public class TSDRStorageServiceImplTest {
         assertEquals(99,  metrics.get(3).getMetricValue().doubleValue(), delta);
         assertEquals(101, metrics.get(4).getMetricValue().doubleValue(), delta);
         assertEquals(108, metrics.get(5).getMetricValue().doubleValue(), delta);
+        Mockito.verify(metricPersistenceService, Mockito.never()).getAggregatingService();
+    }
+
+    @Test
+    public void testGetTSDRAggregatedMetricsInDataStore() throws InterruptedException, ExecutionException {
+        AggregatingMetricPersistenceService aggregatingService = mock(AggregatingMetricPersistenceService.class);
+        Mockito.when(aggregatingService.isAggregationSupported(AggregationType.MAX)).thenReturn(true);
+        Mockito.when(aggregatingService.getTSDRAggregatedMetrics(GROUP_METRICS_TABLE_NAME, 0L, 6L, 2L,
+                AggregationType.MAX)).thenReturn(Arrays.asList(new Bucket(0L, BigDecimal.valueOf(130d), 2L),
+                        new Bucket(4L, BigDecimal.valueOf(108d), 2L)));
+        Mockito.when(metricPersistenceService.getAggregatingService()).thenReturn(aggregatingService);
+
+        Future<RpcResult<GetTSDRAggregatedMetricsOutput>> future = storageService.getTSDRAggregatedMetrics(
+            new GetTSDRAggregatedMetricsInputBuilder()
+                .setTSDRDataCategory(GROUP_METRICS_TABLE_NAME)
+                .setStartTime(0L)
+                .setEndTime(6L)
+                .setAggregation(AggregationType.MAX)
+                .setInterval(2L)
+                .build());
+        List<AggregatedMetrics> metrics = future.get().getResult().getAggregatedMetrics();
+
+        // Verify the raw metrics were not read, the empty intervals have no value
+        double delta = 0.00001;
+        assertEquals(4, metrics.size());
+        assertEquals(130, metrics.get(0).getMetricValue().doubleValue(), delta);
+        assertEquals(null, metrics.get(1).getMetricValue());
+        assertEquals(108, metrics.get(2).getMetricValue().doubleValue(), delta);
+        assertEquals(null, metrics.get(3).getMetricValue());
+        Mockito.verify(metricPersistenceService, Mockito.never()).getTSDRMetricRecords(any(String.class),
+                any(long.class), any(long.class));
+    }
+
+    @Test
+    public void testGetTSDRAggregatedMetricsDataStoreFailure() throws InterruptedException, ExecutionException {
+        AggregatingMetricPersistenceService aggregatingService = mock(AggregatingMetricPersistenceService.class);
+        Mockito.when(aggregatingService.isAggregationSupported(AggregationType.MAX)).thenReturn(true);
+        Mockito.when(aggregatingService.getTSDRAggregatedMetrics(any(String.class), any(long.class), any(long.class),
+                any(long.class), any(AggregationType.class))).thenThrow(new IllegalStateException("not running"));
+        Mockito.when(metricPersistenceService.getAggregatingService()).thenReturn(aggregatingService);
+        List<TSDRMetricRecord> metricCol = new ArrayList<>();
+        for (long timeStamp = 0L; timeStamp < 4L; timeStamp++) {
+            metricCol.add(new TSDRMetricRecordBuilder().setMetricName("PacketCount")
+                    .setMetricValue(BigDecimal.valueOf(100d + timeStamp))
+                    .setNodeID("node1")
+                    .setTSDRDataCategory(DataCategory.FLOWGROUPSTATS)
+                    .setTimeStamp(timeStamp).build());
+        }
+        storageService.storeTSDRMetricRecord(new StoreTSDRMetricRecordInputBuilder()
+                .setTSDRMetricRecord(metricCol).build());
+
+        Future<RpcResult<GetTSDRAggregatedMetricsOutput>> future = storageService.getTSDRAggregatedMetrics(
+            new GetTSDRAggregatedMetricsInputBuilder()
+                .setTSDRDataCategory(GROUP_METRICS_TABLE_NAME)
+                .setStartTime(0L)
+                .setEndTime(3L)
+                .setAggregation(AggregationType.MAX)
+                .setInterval(2L)
+                .build());
+        List<AggregatedMetrics> metrics = future.get().getResult().getAggregatedMetrics();
+
+        // Verify the raw metrics were aggregated instead
+        double delta = 0.00001;
+        assertEquals(2, metrics.size());
+        assertEquals(101, metrics.get(0).getMetricValue().doubleValue(), delta);
+        assertEquals(103, metrics.get(1).getMetricValue().doubleValue(), delta);
+    }
+
+    private static TSDRLogRecord createLogRecord(String text, String severity, long timeStamp) {
+        return new TSDRLogRecordBuilder().setIndex(1).setRecordFullText(text).setNodeID("node1.example.com")
+                .setTSDRDataCategory(DataCategory.SYSLOG).setTimeStamp(timeStamp)
+                .setRecordKeys(Collections.emptyList())
+                .setRecordAttributes(Collections.singletonList(new RecordAttributesBuilder().setName("severity")
+                        .setValue(severity).build()))
+                .build();
+    }
+
+    @Test
+    public void testGetTSDRLogRecordsFilteredBySearch() throws InterruptedException, ExecutionException {
+        storageService.storeTSDRLogRecord(new StoreTSDRLogRecordInputBuilder().setTSDRLogRecord(Arrays.asList(
+                createLogRecord("su root failed for lonvick", "error", 1L),
+                createLogRecord("su root succeeded for lonvick", "info", 2L))).build());
+
+        List<Logs> logs = storageService.getTSDRLogRecords(new GetTSDRLogRecordsInputBuilder().setStartTime(0L)
+                .setEndTime(10L).setTSDRDataCategory(SYS_LOG_TABLE_NAME).setSearch("FAILED root").build())
+                .get().getResult().getLogs();
+        assertEquals(1, logs.size());
+        assertEquals("su root failed for lonvick", logs.get(0).getRecordFullText());
+
+        logs = storageService.getTSDRLogRecords(new GetTSDRLogRecordsInputBuilder().setStartTime(0L)
+                .setEndTime(10L).setTSDRDataCategory(SYS_LOG_TABLE_NAME).setSearch("lonvick severity=info").build())
+                .get().getResult().getLogs();
+        assertEquals(1, logs.size());
+        assertEquals(2L, logs.get(0).getTimeStamp().longValue());
+    }
+
+    @Test
+    public void testGetTSDRLogRecordsSearchPagesTheTimeRange() throws InterruptedException, ExecutionException {
+        // The data store returns the first 1000 logs of a time range holding 2000 logs
+        List<TSDRLogRecord> stored = new ArrayList<>();
+        for (long timeStamp = 0; timeStamp < 2000; timeStamp++) {
+            stored.add(createLogRecord(timeStamp == 1500 ? "su root failed for lonvick" : "su root succeeded",
+                    "info", timeStamp));
+        }
+        doAnswer(invocation -> stored.stream().filter(log -> log.getTimeStamp() >= (Long) invocation.getArguments()[1]
+                && log.getTimeStamp() <= (Long) invocation.getArguments()[2]).limit(1000)
+                .collect(Collectors.toList())).when(logPersistenceService).getTSDRLogRecords(any(String.class),
+                        any(long.class), any(long.class));
+
+        List<Logs> logs = storageService.getTSDRLogRecords(new GetTSDRLogRecordsInputBuilder().setStartTime(0L)
+                .setEndTime(1999L).setTSDRDataCategory(SYS_LOG_TABLE_NAME).setSearch("failed").build())
+                .get().getResult().getLogs();
+        assertEquals(1, logs.size());
+        assertEquals(1500L, logs.get(0).getTimeStamp().longValue());
+    }
+
+    @Test
+    public void testGetTSDRLogRecordsSearchedInDataStore() throws InterruptedException, ExecutionException {
+        SearchableLogPersistenceService searchableService = mock(SearchableLogPersistenceService.class);
+        Mockito.when(searchableService.searchTSDRLogRecords(any(String.class), any(long.class), any(long.class),
+                any(LogSearch.class), any(int.class))).thenReturn(Collections.singletonList(
+                        createLogRecord("su root failed for lonvick", "error", 1L)));
+        Mockito.when(logPersistenceService.getSearchableService()).thenReturn(searchableService);
+
+        Future<RpcResult<GetTSDRLogRecordsOutput>> future = storageService.getTSDRLogRecords(
+                new GetTSDRLogRecordsInputBuilder().setStartTime(0L).setEndTime(10L)
+                        .setTSDRDataCategory(SYS_LOG_TABLE_NAME).setSearch("failed").build());
+        assertEquals(1, future.get().getResult().getLogs().size());
+
+        // Verify the raw logs were not read
+        Mockito.verify(logPersistenceService, Mockito.never()).getTSDRLogRecords(any(String.class), any(long.class),
+                any(long.class));
     }
 
     private static String getTableNameFrom(DataCategory datacategory) {
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.cassandra;
+
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The pending statements of one caller of the {@link CassandraStore}, grouped by partition key.
+ *
+ * <p>
+ * A batch is created by {@link CassandraStore#startBatch()} for a single caller and is not shared, so
+ * concurrent callers never add to or send each other's statements. The statements of a partition are sent
+ * together as an unlogged batch, and the futures of the sent statements are kept until
+ * {@link CassandraStore#executeBatch(CassandraBatch)} waits for them.
+ * </p>
+ */
+public class CassandraBatch {
+    private final Map<Object, List<Statement>> partitions = new LinkedHashMap<>();
+    private final List<ResultSetFuture> futures = new ArrayList<>();
+    private int size;
+
+    CassandraBatch() {
+    }
+
+    void add(Object partitionKey, Statement statement) {
+        partitions.computeIfAbsent(partitionKey, key -> new ArrayList<>()).add(statement);
+        size++;
+    }
+
+    /**
+     * Returns the number of statements that were added and not sent yet.
+     */
+    public int size() {
+        return size;
+    }
+
+    Collection<List<Statement>> drainPartitions() {
+        List<List<Statement>> drained = new ArrayList<>(partitions.values());
+        partitions.clear();
+        size = 0;
+        return drained;
+    }
+
+    void addFuture(ResultSetFuture future) {
+        futures.add(future);
+    }
+
+    List<ResultSetFuture> drainFutures() {
+        List<ResultSetFuture> drained = new ArrayList<>(futures);
+        futures.clear();
+        return drained;
+    }
+}
@@ -0,0 +1,388 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.cassandra;
+
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.exceptions.InvalidQueryException;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import org.opendaylight.tsdr.spi.util.FormatUtil;
+import org.opendaylight.tsdr.spi.util.KeyFilter;
+import org.opendaylight.tsdr.spi.util.TSDRKeyCache.TSDRCacheEntry;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The dictionary of the series stored in the keyspace, shared by all the controllers writing to it.
+ *
+ * <p>
+ * The series keys are kept in the SeriesDictionary table, partitioned by data category, so the series of a
+ * category are read from a single partition. The dictionary is cached locally: a category is read through
+ * from the table when it is queried and its cached series are older than {@link #REFRESH_INTERVAL}. New
+ * series are added to the cache right away and written behind to the table asynchronously by
+ * {@link #flush()}; a failed write is queued again for the next flush.
+ * </p>
+ *
+ * <p>
+ * With the bucketed schema, the dictionary also keeps the oldest bucket each series was written to, so the queries
+ * of a series start there rather than at the oldest bucket the records could be in. A new series is added along with
+ * its first bucket if no controller added it yet, and a series written to an older bucket later on is only updated
+ * if its bucket in the table is newer, with lightweight transactions, so concurrent controllers keep the oldest one.
+ * The series added by the earlier versions have no oldest bucket, their queries look back as far as the records
+ * could go.
+ * </p>
+ *
+ * <p>
+ * The series known from the local key cache file of the earlier versions are imported once by
+ * {@link #importKeyCache(Path)}.
+ * </p>
+ */
+class CassandraSeriesDictionary {
+    private static final Logger LOG = LoggerFactory.getLogger(CassandraSeriesDictionary.class);
+
+    static final String TABLE = "SeriesDictionary";
+    static final long REFRESH_INTERVAL = TimeUnit.SECONDS.toMillis(30);
+    // The oldest bucket of a series added here, before it was written to any bucket
+    private static final long NO_BUCKET = Long.MAX_VALUE;
+
+    private final Map<String, TSDRCacheEntry> entries = new ConcurrentHashMap<>();
+    // The oldest bucket of the series, the series added by the earlier versions having none
+    private final Map<String, Long> firstBuckets = new ConcurrentHashMap<>();
+    // The series whose oldest bucket was added or moved back since it was last written to the table
+    private final Queue<TSDRCacheEntry> pendingBuckets = new ConcurrentLinkedQueue<>();
+    private final Map<DataCategory, Long> refreshTimes = new ConcurrentHashMap<>();
+    private final Queue<TSDRCacheEntry> pending = new ConcurrentLinkedQueue<>();
+    private final Session session;
+    private final int fetchSize;
+    private final PreparedStatement insert;
+    private final PreparedStatement insertWithBucket;
+    private final PreparedStatement updateBucket;
+    private final PreparedStatement select;
+
+    CassandraSeriesDictionary(Session session, int fetchSize) {
+        this.session = session;
+        this.fetchSize = fetchSize;
+        if (session != null) {
+            insert = session.prepare("INSERT INTO tsdr." + TABLE + " (Category, KeyA, KeyB, TsdrKey) "
+                    + "VALUES (?, ?, ?, ?)");
+            insertWithBucket = session.prepare("INSERT INTO tsdr." + TABLE + " (Category, KeyA, KeyB, TsdrKey, "
+                    + "FirstBucket) VALUES (?, ?, ?, ?, ?) IF NOT EXISTS");
+            updateBucket = session.prepare("UPDATE tsdr." + TABLE + " SET FirstBucket=? "
+                    + "WHERE Category=? AND KeyA=? AND KeyB=? IF FirstBucket > ?");
+            select = session.prepare("SELECT TsdrKey, FirstBucket FROM tsdr." + TABLE + " WHERE Category=?");
+        } else {
+            insert = null;
+            insertWithBucket = null;
+            updateBucket = null;
+            select = null;
+        }
+    }
+
+    static void createTable(Session session) {
+        session.execute("CREATE TABLE IF NOT EXISTS " + TABLE + " (Category text, KeyA bigint, KeyB bigint, "
+                + "TsdrKey text, FirstBucket bigint, PRIMARY KEY (Category, KeyA, KeyB))");
+        try {
+            // The table of the earlier versions has no FirstBucket column
+            session.execute("ALTER TABLE " + TABLE + " ADD FirstBucket bigint");
+        } catch (InvalidQueryException e) {
+            LOG.debug("The {} table already has the FirstBucket column", TABLE, e);
+        }
+    }
+
+    /**
+     * Returns the entry of a series, adding it to the dictionary if it is new.
+     */
+    TSDRCacheEntry getOrAdd(String tsdrKey) {
+        TSDRCacheEntry entry = entries.get(tsdrKey);
+        if (entry == null) {
+            TSDRCacheEntry newEntry = new TSDRCacheEntry(tsdrKey);
+            entry = entries.putIfAbsent(tsdrKey, newEntry);
+            if (entry == null) {
+                firstBuckets.putIfAbsent(tsdrKey, NO_BUCKET);
+                pending.add(newEntry);
+                entry = newEntry;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Records that a series is written to a bucket, moving its oldest bucket back if the bucket is older. The series
+     * without an oldest bucket, added by the earlier versions, are left as they are.
+     */
+    void addBucket(TSDRCacheEntry entry, long bucket) {
+        for (Long first = firstBuckets.get(entry.getTsdrKey()); first != null && bucket < first;
+                first = firstBuckets.get(entry.getTsdrKey())) {
+            if (firstBuckets.replace(entry.getTsdrKey(), first, bucket)) {
+                if (first != NO_BUCKET) {
+                    // A new series is written with its oldest bucket
+                    pendingBuckets.add(entry);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the oldest bucket a series was written to, or null if it is not known.
+     */
+    Long getFirstBucket(TSDRCacheEntry entry) {
+        Long first = firstBuckets.get(entry.getTsdrKey());
+        return first == null || first == NO_BUCKET ? null : first;
+    }
+
+    /**
+     * Returns the entry of a series, or null if the key is not the exact key of a known series.
+     */
+    TSDRCacheEntry get(String tsdrKey) {
+        TSDRCacheEntry entry = entries.get(tsdrKey);
+        if (entry == null) {
+            DataCategory category = getDataCategory(tsdrKey);
+            if (category != null && refresh(category)) {
+                entry = entries.get(tsdrKey);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Returns the entries of the series of a data category.
+     */
+    List<TSDRCacheEntry> getEntries(DataCategory category) {
+        refresh(category);
+        List<TSDRCacheEntry> result = new ArrayList<>();
+        for (TSDRCacheEntry entry : entries.values()) {
+            if (entry.getDataCategory() == category) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the entries of the series matching a pseudo key. The pseudo key can be a data category name, or a
+     * partial TSDR key giving any of the data category, node ID, metric name and record keys.
+     */
+    List<TSDRCacheEntry> find(String tsdrKey) {
+        final DataCategory category = getDataCategory(tsdrKey);
+        final Collection<TSDRCacheEntry> candidates;
+        if (category != null) {
+            candidates = getEntries(category);
+        } else {
+            for (DataCategory dataCategory : DataCategory.values()) {
+                refresh(dataCategory);
+            }
+            candidates = entries.values();
+        }
+
+        // An empty key part, as in [NID=] or [RK=], matches any series
+        final KeyFilter filter = KeyFilter.parse(tsdrKey);
+        final List<TSDRCacheEntry> result = new ArrayList<>();
+        for (TSDRCacheEntry entry : candidates) {
+            if (filter.matches(entry.getDataCategory(), entry.getNodeID(), entry.getMetricName(),
+                    entry.getRecordKeys())) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Send the new series to the dictionary table. The writes are not waited for.
+     */
+    @SuppressWarnings("checkstyle:IllegalCatch")
+    void flush() {
+        if (session == null) {
+            return;
+        }
+
+        // Drain the queue first, a failed write is queued again for the next flush.
+        List<TSDRCacheEntry> toWrite = new ArrayList<>();
+        for (TSDRCacheEntry entry = pending.poll(); entry != null; entry = pending.poll()) {
+            toWrite.add(entry);
+        }
+
+        for (TSDRCacheEntry entry : toWrite) {
+            final Long firstBucket = getFirstBucket(entry);
+            final ResultSetFuture future;
+            try {
+                future = session.executeAsync(firstBucket == null ? insert.bind(entry.getDataCategory().name(),
+                        entry.getMd5ID().getMd5Long1(), entry.getMd5ID().getMd5Long2(), entry.getTsdrKey())
+                        : insertWithBucket.bind(entry.getDataCategory().name(), entry.getMd5ID().getMd5Long1(),
+                                entry.getMd5ID().getMd5Long2(), entry.getTsdrKey(), firstBucket));
+            } catch (RuntimeException e) {
+                LOG.warn("Failed to add {} to the series dictionary, will retry", entry.getTsdrKey(), e);
+                pending.add(entry);
+                continue;
+            }
+            Futures.addCallback(future, new FutureCallback<ResultSet>() {
+                @Override
+                public void onSuccess(ResultSet result) {
+                    LOG.debug("Added {} to the series dictionary", entry.getTsdrKey());
+                    if (firstBucket != null && !result.wasApplied()) {
+                        // Added by another controller meanwhile, its oldest bucket may be newer
+                        pendingBuckets.add(entry);
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable throwable) {
+                    LOG.warn("Failed to add {} to the series dictionary, will retry", entry.getTsdrKey(), throwable);
+                    pending.add(entry);
+                }
+            }, MoreExecutors.directExecutor());
+        }
+
+        flushBuckets();
+    }
+
+    /**
+     * Move back the oldest bucket of the series in the dictionary table, unless it is older already.
+     */
+    @SuppressWarnings("checkstyle:IllegalCatch")
+    private void flushBuckets() {
+        List<TSDRCacheEntry> toWrite = new ArrayList<>();
+        for (TSDRCacheEntry entry = pendingBuckets.poll(); entry != null; entry = pendingBuckets.poll()) {
+            toWrite.add(entry);
+        }
+
+        for (TSDRCacheEntry entry : toWrite) {
+            final Long firstBucket = getFirstBucket(entry);
+            if (firstBucket == null) {
+                continue;
+            }
+            final ResultSetFuture future;
+            try {
+                future = session.executeAsync(updateBucket.bind(firstBucket, entry.getDataCategory().name(),
+                        entry.getMd5ID().getMd5Long1(), entry.getMd5ID().getMd5Long2(), firstBucket));
+            } catch (RuntimeException e) {
+                LOG.warn("Failed to update the oldest bucket of {}, will retry", entry.getTsdrKey(), e);
+                pendingBuckets.add(entry);
+                continue;
+            }
+            Futures.addCallback(future, new FutureCallback<ResultSet>() {
+                @Override
+                public void onSuccess(ResultSet result) {
+                    LOG.debug("Updated the oldest bucket of {}", entry.getTsdrKey());
+                }
+
+                @Override
+                public void onFailure(Throwable throwable) {
+                    LOG.warn("Failed to update the oldest bucket of {}, will retry", entry.getTsdrKey(), throwable);
+                    pendingBuckets.add(entry);
+                }
+            }, MoreExecutors.directExecutor());
+        }
+    }
+
+    /**
+     * Read the series of a category from the dictionary table, if they were not read within the refresh interval.
+     * @return true if the category was read
+     */
+    boolean refresh(DataCategory category) {
+        if (session == null) {
+            return false;
+        }
+
+        final long now = System.currentTimeMillis();
+        Long refreshTime = refreshTimes.get(category);
+        if (refreshTime != null && now - refreshTime < REFRESH_INTERVAL) {
+            return false;
+        }
+
+        Statement statement = select.bind(category.name());
+        statement.setFetchSize(fetchSize);
+        for (Row row : session.execute(statement)) {
+            String tsdrKey = row.getString(0);
+            if (tsdrKey == null) {
+                continue;
+            }
+            if (!entries.containsKey(tsdrKey)) {
+                entries.putIfAbsent(tsdrKey, new TSDRCacheEntry(tsdrKey));
+            }
+            if (!row.isNull(1)) {
+                // Another controller may have written the series to an older bucket
+                firstBuckets.merge(tsdrKey, row.getLong(1), Math::min);
+            }
+        }
+        // Stamped once read, a failed read is retried by the next lookup
+        refreshTimes.put(category, now);
+        return true;
+    }
+
+    /**
+     * Add the series of a local key cache file to the dictionary table, then rename the file so that it is
+     * only imported once. The file is kept, and imported again on the next start, if a write fails.
+     * @param keyCacheFile - the key cache file, whose lines start with a TSDR key followed by '|'
+     */
+    @SuppressWarnings("checkstyle:IllegalCatch")
+    void importKeyCache(Path keyCacheFile) {
+        if (session == null || !Files.isRegularFile(keyCacheFile)) {
+            return;
+        }
+
+        int count = 0;
+        try (BufferedReader in = Files.newBufferedReader(keyCacheFile, StandardCharsets.UTF_8)) {
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                int end = line.indexOf('|');
+                if (end <= 0) {
+                    continue;
+                }
+                String tsdrKey = line.substring(0, end);
+                if (FormatUtil.getDataCategoryFromTSDRKey(tsdrKey) == null || getDataCategory(tsdrKey) == null) {
+                    LOG.warn("Skipping the invalid key cache line {}", line);
+                    continue;
+                }
+                TSDRCacheEntry entry = new TSDRCacheEntry(tsdrKey);
+                session.execute(insert.bind(entry.getDataCategory().name(), entry.getMd5ID().getMd5Long1(),
+                        entry.getMd5ID().getMd5Long2(), entry.getTsdrKey()));
+                entries.putIfAbsent(entry.getTsdrKey(), entry);
+                count++;
+            }
+            Files.move(keyCacheFile, keyCacheFile.resolveSibling(keyCacheFile.getFileName() + ".imported"));
+            LOG.info("Imported {} series from {} to the series dictionary", count, keyCacheFile);
+        } catch (IOException | RuntimeException e) {
+            LOG.error("Failed to import the series of {} to the series dictionary after {} series, will retry on "
+                    + "the next start", keyCacheFile, count, e);
+        }
+    }
+
+    private static DataCategory getDataCategory(String tsdrKey) {
+        String category = FormatUtil.getDataCategoryFromTSDRKey(tsdrKey);
+        // The key may also be the name of a data category, as given by the tsdr:list command
+        if (category == null) {
+            category = tsdrKey;
+        }
+        for (DataCategory dataCategory : DataCategory.values()) {
+            if (dataCategory.name().equals(category)) {
+                return dataCategory;
+            }
+        }
+        return null;
+    }
+}
@@ -9,35 +9,48 @@ package org.opendaylight.tsdr.persistence.cassandra;
 
 import com.datastax.driver.core.BatchStatement;
 import com.datastax.driver.core.Cluster;
-import com.datastax.driver.core.RegularStatement;
+import com.datastax.driver.core.PreparedStatement;
 import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
 import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
 import com.datastax.driver.core.exceptions.AuthenticationException;
 import com.datastax.driver.core.exceptions.InvalidQueryException;
 import com.datastax.driver.core.exceptions.NoHostAvailableException;
-import com.datastax.driver.core.querybuilder.QueryBuilder;
-import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
-import java.io.BufferedReader;
-import java.io.FileInputStream;
+import com.datastax.driver.core.policies.DCAwareRoundRobinPolicy;
+import com.datastax.driver.core.policies.TokenAwarePolicy;
+import com.datastax.driver.core.utils.Bytes;
+import com.google.common.util.concurrent.MoreExecutors;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import org.opendaylight.tsdr.spi.util.ConfigFileUtil;
 import org.opendaylight.tsdr.spi.util.FormatUtil;
 import org.opendaylight.tsdr.spi.util.TSDRKeyCache;
 import org.opendaylight.tsdr.spi.util.TSDRKeyCache.TSDRCacheEntry;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data.rev160325.storetsdrbinaryrecord.input.TSDRBinaryRecord;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data.rev160325.storetsdrbinaryrecord.input.TSDRBinaryRecordBuilder;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.storetsdrlogrecord.input.TSDRLogRecord;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.storetsdrlogrecord.input.TSDRLogRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecordBuilder;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecordBuilder;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
@@ -47,6 +60,20 @@ import org.slf4j.LoggerFactory;
 /**
  * The back-end Cassandra store.
  *
+ * <p>
+ * Records are written with prepared statements, grouped per partition into unlogged batches by the
+ * {@link CassandraBatch} of each caller and sent asynchronously. The number of requests in flight is
+ * bounded, so a caller blocks rather than overwhelming the cluster, and the driver routes each request
+ * to a replica of its partition.
+ * </p>
+ *
+ * <p>
+ * With the bucketed schema, each series is partitioned by time bucket in tables using the
+ * TimeWindowCompactionStrategy, and the records are written with the time to live of their data category.
+ * The partitions stay bounded and expired buckets are dropped by compaction as whole SSTables, so the
+ * retention does not need any deletes.
+ * </p>
+ *
  * @author Sharon Aicler(saichler@gmail.com)
  */
 @Singleton
@@ -54,68 +81,118 @@ public class CassandraStore implements AutoCloseable {
     private static final Logger LOG = LoggerFactory.getLogger(CassandraStore.class);
 
     private static final int MAX_BATCH_SIZE = 500;
+    private static final int MAX_PARTITION_BATCH_SIZE = 50;
+    private static final int MAX_REQUESTS_IN_FLIGHT = 256;
+    private static final int MAX_PARALLEL_READS = 16;
+    // The number of buckets a bucketed query or purge looks back when the records do not expire.
+    private static final int MAX_QUERY_BUCKETS = 400;
     private static final String CONF_FILE = "./etc/tsdr-persistence-cassandra.properties";
 
-    private final TSDRKeyCache cache = new TSDRKeyCache();
+    static final String BUCKETED_SUFFIX = "Bucketed";
+    private static final String[] TABLES = {"MetricVal", "MetricLog", "MetricBlob"};
 
+    private final Semaphore inFlightRequests = new Semaphore(MAX_REQUESTS_IN_FLIGHT);
+    private final Map<DataCategory, Long> purgedBuckets = new EnumMap<>(DataCategory.class);
+    private final CassandraStoreContext context;
+    private final CassandraSeriesDictionary dictionary;
     private final Session session;
-    private BatchStatement batch;
+    private final PreparedStatement insertMetric;
+    private final PreparedStatement insertLog;
+    private final PreparedStatement insertBinary;
+    private final Map<String, PreparedStatement> selects = new HashMap<>();
 
     @Inject
     public CassandraStore() {
-        LOG.info("Connecting to Cassandra...");
+        this(loadContext());
+    }
 
-        session = createSession();
+    private CassandraStore(CassandraStoreContext context) {
+        this(createSession(context), null, context);
     }
 
     public CassandraStore(Session session, Cluster cluster) {
+        this(session, cluster, new CassandraStoreContext());
+    }
+
+    public CassandraStore(Session session, Cluster cluster, CassandraStoreContext context) {
         LOG.info("Connecting to Cassandra...");
         this.session = session;
+        this.context = context;
+        this.dictionary = new CassandraSeriesDictionary(session, context.getFetchSize());
+        if (session != null) {
+            insertMetric = prepareInsert("MetricVal", "value");
+            insertLog = prepareInsert("MetricLog", "xIndex", "value");
+            insertBinary = prepareInsert("MetricBlob", "xIndex", "value");
+            selects.put("MetricVal", prepareSelect("MetricVal", "Time, value"));
+            selects.put("MetricLog", prepareSelect("MetricLog", "Time, xIndex, value"));
+            selects.put("MetricBlob", prepareSelect("MetricBlob", "Time, xIndex, value"));
+            // The series of the key cache file of the earlier versions are not in the dictionary table yet
+            dictionary.importKeyCache(Paths.get(TSDRKeyCache.TSDR_KEY_CACHE_FILENAME));
+        } else {
+            insertMetric = null;
+            insertLog = null;
+            insertBinary = null;
+        }
     }
 
-    @SuppressFBWarnings("DM_DEFAULT_ENCODING")
-    private static Map<String,String> loadConfig() throws IOException {
-        Map<String, String> result = new HashMap<>();
-        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(CONF_FILE)))) {
-            String line = in.readLine();
-            while (line != null) {
-                int index = line.indexOf("=");
-                String key = line.substring(0, index).trim();
-                String value = line.substring(index + 1).trim();
-                result.put(key, value);
-                line = in.readLine();
-            }
+    private static CassandraStoreContext loadContext() {
+        try {
+            return new CassandraStoreContext(ConfigFileUtil.loadConfig(CONF_FILE));
+        } catch (IOException e) {
+            LOG.error("Error loading config file", e);
+            return new CassandraStoreContext();
         }
+    }
 
-        return result;
+    private PreparedStatement prepareInsert(String table, String... columns) {
+        StringBuilder cql = new StringBuilder("INSERT INTO tsdr.").append(table);
+        if (context.isBucketed()) {
+            cql.append(BUCKETED_SUFFIX).append(" (KeyA, KeyB, Bucket, Time");
+        } else {
+            cql.append(" (KeyA, KeyB, Time");
+        }
+        for (String column : columns) {
+            cql.append(", ").append(column);
+        }
+        cql.append(context.isBucketed() ? ") VALUES (?, ?, ?, ?" : ") VALUES (?, ?, ?");
+        for (int i = 0; i < columns.length; i++) {
+            cql.append(", ?");
+        }
+        cql.append(context.isBucketed() ? ") USING TTL ?" : ")");
+        return session.prepare(cql.toString());
     }
 
-    public BatchStatement getBatch() {
-        return this.batch;
+    private PreparedStatement prepareSelect(String table, String columns) {
+        return session.prepare("SELECT " + columns + " FROM tsdr." + table
+                + (context.isBucketed() ? BUCKETED_SUFFIX + " WHERE KeyA=? AND KeyB=? AND Bucket=?"
+                        : " WHERE KeyA=? AND KeyB=?")
+                + " AND Time>=? AND Time<=? LIMIT ?");
     }
 
     @SuppressWarnings("checkstyle:IllegalCatch")
-    private static Session createSession() {
-        Map<String, String> config;
-        try {
-            config = loadConfig();
-        } catch (IOException e) {
-            LOG.error("Error loading config file", e);
+    private static Session createSession(CassandraStoreContext context) {
+        String host = context.getHost();
+        if (host == null) {
+            LOG.error("No Cassandra host is configured in {}", CONF_FILE);
             return null;
         }
 
-        String host = config.get("host");
-        boolean isMaster = Boolean.parseBoolean(config.get("master"));
-        int replicationFactor = Integer.parseInt(config.get("replication_factor"));
+        boolean isMaster = context.isMaster();
+        int replicationFactor = context.getReplicationFactor();
 
         LOG.info("Trying to work with {}, Which cassandra master is set to {}", host, isMaster);
-        Cluster cluster = Cluster.builder().addContactPoint(host).build();
+        Cluster cluster = Cluster.builder().addContactPoint(host)
+                .withLoadBalancingPolicy(new TokenAwarePolicy(DCAwareRoundRobinPolicy.builder().build())).build();
 
         // Try 5 times to connect to cassandra with a 5 seconds delay
         // between each try
         for (int index = 0; index < 5; index++) {
             try {
-                return cluster.connect("tsdr");
+                Session session = cluster.connect("tsdr");
+                if (isMaster) {
+                    createMissingTables(session, context);
+                }
+                return session;
             } catch (InvalidQueryException e) {
                 try {
                     LOG.info("Failed to get tsdr keyspace...");
@@ -126,6 +203,7 @@ public class CassandraStore implements AutoCloseable {
                                 + "= {'class':'SimpleStrategy', 'replication_factor':" + replicationFactor + "};");
                         session = cluster.connect("tsdr");
                         createTSDRTables(session);
+                        createMissingTables(session, context);
                         return session;
                     }
                 } catch (RuntimeException e2) {
@@ -160,167 +238,326 @@ public class CassandraStore implements AutoCloseable {
 
     }
 
-    public void startBatch() {
-        this.batch = new BatchStatement();
+    /**
+     * Create the tables added after the original schema, which may be missing from an existing keyspace.
+     */
+    @SuppressWarnings("checkstyle:IllegalCatch")
+    private static void createMissingTables(Session session, CassandraStoreContext context) {
+        try {
+            CassandraSeriesDictionary.createTable(session);
+            if (context.isBucketed()) {
+                createBucketedTables(session, context);
+            }
+        } catch (RuntimeException e) {
+            LOG.error("Failed to create the missing tables", e);
+        }
+    }
+
+    private static void createBucketedTables(Session session, CassandraStoreContext context) {
+        // A compaction window per bucket lets the SSTables of a bucket be dropped once all its records expired.
+        String options = ") WITH compaction = {'class':'TimeWindowCompactionStrategy', "
+                + "'compaction_window_unit':'HOURS', 'compaction_window_size':" + context.getBucketHours() + "}";
+        session.execute("CREATE TABLE IF NOT EXISTS MetricVal" + BUCKETED_SUFFIX + " (KeyA bigint, KeyB bigint, "
+                + "Bucket bigint, Time bigint, value double, PRIMARY KEY ((KeyA, KeyB, Bucket), Time)" + options);
+        session.execute("CREATE TABLE IF NOT EXISTS MetricLog" + BUCKETED_SUFFIX + " (KeyA bigint, KeyB bigint, "
+                + "Bucket bigint, Time bigint, xIndex int, value text, "
+                + "PRIMARY KEY ((KeyA, KeyB, Bucket), Time, xIndex)" + options);
+        session.execute("CREATE TABLE IF NOT EXISTS MetricBlob" + BUCKETED_SUFFIX + " (KeyA bigint, KeyB bigint, "
+                + "Bucket bigint, Time bigint, xIndex int, value blob, "
+                + "PRIMARY KEY ((KeyA, KeyB, Bucket), Time, xIndex)" + options);
+    }
+
+    /**
+     * Start a batch of writes. Each caller gets its own batch, which must not be shared between threads.
+     * @return the batch to add the records to
+     */
+    public CassandraBatch startBatch() {
+        return new CassandraBatch();
     }
 
+    /**
+     * Send the remaining statements of a batch and wait until all its statements were executed.
+     * @param batch - the batch
+     */
     @SuppressWarnings("checkstyle:IllegalCatch")
-    public void executeBatch() {
+    public void executeBatch(CassandraBatch batch) {
         try {
-            this.session.execute(this.batch);
+            sendBatch(batch);
         } catch (RuntimeException e) {
             LOG.error("Failed to run batch", e);
         }
+
+        for (ResultSetFuture future : batch.drainFutures()) {
+            try {
+                future.getUninterruptibly();
+            } catch (RuntimeException e) {
+                LOG.error("Failed to run batch", e);
+            }
+        }
+
+        // The new series are written behind, without waiting for them.
+        dictionary.flush();
     }
 
-    public void store(TSDRMetricRecord mr) {
+    public void store(CassandraBatch batch, TSDRMetricRecord mr) {
+        if (mr.getTimeStamp() == null || mr.getMetricValue() == null) {
+            LOG.warn("Skipping a metric record without time stamp or value {}", mr);
+            return;
+        }
+
         //create metric key
-        String tsdrKey = FormatUtil.getTSDRMetricKey(mr);
-        TSDRCacheEntry cacheEntry = cache.getCacheEntry(tsdrKey);
+        TSDRCacheEntry cacheEntry = getCacheEntry(FormatUtil.getTSDRMetricKey(mr));
+        add(batch, insertMetric, cacheEntry, mr.getTimeStamp(), mr.getMetricValue().doubleValue());
+    }
 
-        //if it does not exist, create it
-        if (cacheEntry == null) {
-            cacheEntry = cache.addTSDRCacheEntry(tsdrKey);
+    public void store(CassandraBatch batch, TSDRLogRecord lr) {
+        if (lr.getTimeStamp() == null) {
+            LOG.warn("Skipping a log record without time stamp {}", lr);
+            return;
         }
-        RegularStatement st = QueryBuilder.insertInto("tsdr", "MetricVal")
-                .value("KeyA", cacheEntry.getMd5ID().getMd5Long1()).value("KeyB", cacheEntry.getMd5ID().getMd5Long2())
-                .value("Time", mr.getTimeStamp()).value("value", mr.getMetricValue().doubleValue());
 
-        this.batch.add(st);
+        //create log key
+        TSDRCacheEntry cacheEntry = getCacheEntry(FormatUtil.getTSDRLogKey(lr));
+        add(batch, insertLog, cacheEntry, lr.getTimeStamp(), lr.getIndex(), lr.getRecordFullText());
+    }
 
-        if (this.batch.size() >= MAX_BATCH_SIZE) {
-            this.executeBatch();
-            this.startBatch();
+    public void store(CassandraBatch batch, TSDRBinaryRecord lr) {
+        if (lr.getTimeStamp() == null) {
+            LOG.warn("Skipping a binary record without time stamp {}", lr);
+            return;
         }
+
+        //create binary key
+        TSDRCacheEntry cacheEntry = getCacheEntry(FormatUtil.getTSDRBinaryKey(lr));
+        add(batch, insertBinary, cacheEntry, lr.getTimeStamp(), lr.getIndex(),
+                lr.getData() != null ? ByteBuffer.wrap(lr.getData()) : null);
     }
 
-    public void store(TSDRLogRecord lr) {
-        //create log key
-        String tsdrKey = FormatUtil.getTSDRLogKey(lr);
-        TSDRCacheEntry cacheEntry = cache.getCacheEntry(tsdrKey);
-        //if it does not exist, create it
-        if (cacheEntry == null) {
-            cacheEntry = cache.addTSDRCacheEntry(tsdrKey);
+    private TSDRCacheEntry getCacheEntry(String tsdrKey) {
+        //if it does not exist, it is added to the dictionary
+        return dictionary.getOrAdd(tsdrKey);
+    }
+
+    private void add(CassandraBatch batch, PreparedStatement insert, TSDRCacheEntry cacheEntry, long timeStamp,
+            Object... values) {
+        final long keyA = cacheEntry.getMd5ID().getMd5Long1();
+        final long keyB = cacheEntry.getMd5ID().getMd5Long2();
+        final List<Object> bindValues = new ArrayList<>(values.length + 5);
+        bindValues.add(keyA);
+        bindValues.add(keyB);
+        if (context.isBucketed()) {
+            long bucket = getBucket(timeStamp);
+            dictionary.addBucket(cacheEntry, bucket);
+            bindValues.add(bucket);
+            bindValues.add(timeStamp);
+            bindValues.addAll(Arrays.asList(values));
+            bindValues.add(context.getTimeToLive(cacheEntry.getDataCategory()));
+            add(batch, Arrays.asList(keyA, keyB, bucket), insert.bind(bindValues.toArray()));
+        } else {
+            bindValues.add(timeStamp);
+            bindValues.addAll(Arrays.asList(values));
+            add(batch, keyA, insert.bind(bindValues.toArray()));
+        }
+    }
+
+    private void add(CassandraBatch batch, Object partitionKey, Statement statement) {
+        batch.add(partitionKey, statement);
+        if (batch.size() >= MAX_BATCH_SIZE) {
+            sendBatch(batch);
         }
-        RegularStatement st = QueryBuilder.insertInto("tsdr", "MetricLog")
-                .value("KeyA", cacheEntry.getMd5ID().getMd5Long1()).value("KeyB", cacheEntry.getMd5ID().getMd5Long2())
-                .value("Time", lr.getTimeStamp()).value("xIndex", lr.getIndex()).value("value", lr.getRecordFullText());
+    }
 
-        this.batch.add(st);
+    /**
+     * Returns the start time of the bucket containing a time stamp.
+     */
+    long getBucket(long timeStamp) {
+        return timeStamp - Math.floorMod(timeStamp, context.getBucketMillis());
+    }
 
-        if (this.batch.size() >= MAX_BATCH_SIZE) {
-            this.executeBatch();
-            this.startBatch();
+    /**
+     * Returns the oldest bucket a series may have records in. This is the oldest bucket the series was written to
+     * when it is known, the series added by the earlier versions are bounded by the retention of the data category,
+     * or by the buckets purged and {@link #MAX_QUERY_BUCKETS} if its records do not expire.
+     */
+    private long getOldestBucket(TSDRCacheEntry entry, long now) {
+        final Long firstBucket = dictionary.getFirstBucket(entry);
+        final long bucketMillis = context.getBucketMillis();
+        final int timeToLive = context.getTimeToLive(entry.getDataCategory());
+        long oldest;
+        if (timeToLive > 0) {
+            oldest = getBucket(now - TimeUnit.SECONDS.toMillis(timeToLive));
+        } else {
+            oldest = getBucket(now) - MAX_QUERY_BUCKETS * bucketMillis;
+            synchronized (purgedBuckets) {
+                Long purged = purgedBuckets.get(entry.getDataCategory());
+                if (purged != null) {
+                    oldest = Math.max(oldest, purged + bucketMillis);
+                }
+            }
         }
+        return firstBucket != null ? Math.max(oldest, firstBucket) : oldest;
     }
 
-    public void store(TSDRBinaryRecord lr) {
-        //create log key
-        String tsdrKey = FormatUtil.getTSDRBinaryKey(lr);
-        TSDRCacheEntry cacheEntry = cache.getCacheEntry(tsdrKey);
-        //if it does not exist, create it
-        if (cacheEntry == null) {
-            cacheEntry = cache.addTSDRCacheEntry(tsdrKey);
+    /**
+     * Returns the buckets to read for the time range of a series, from the oldest bucket it may have records in.
+     */
+    List<Long> getBuckets(TSDRCacheEntry entry, long startTime, long endTime) {
+        final long bucketMillis = context.getBucketMillis();
+        final long now = System.currentTimeMillis();
+        final long oldest = getOldestBucket(entry, now);
+        final List<Long> buckets = new ArrayList<>();
+        final long last = getBucket(Math.min(endTime, now + bucketMillis));
+        for (long bucket = Math.max(getBucket(startTime), oldest); bucket <= last; bucket += bucketMillis) {
+            buckets.add(bucket);
+        }
+        return buckets;
+    }
+
+    /**
+     * Read the rows of a list of series from a table and pass them to a callback, in the order of the series
+     * and of their buckets. The partitions are read in parallel, up to {@link #MAX_PARALLEL_READS} ahead of
+     * the one being consumed, and each one is paged with the configured fetch size, so only a few pages are
+     * held in memory at any time.
+     */
+    private void selectRows(String table, List<TSDRCacheEntry> entries, long startDateTime, long endDateTime,
+            int recordLimit, RowCallback callback) {
+        final List<PartitionRead> partitions = new ArrayList<>();
+        for (TSDRCacheEntry entry : entries) {
+            if (context.isBucketed()) {
+                for (long bucket : getBuckets(entry, startDateTime, endDateTime)) {
+                    partitions.add(new PartitionRead(entry, bucket));
+                }
+            } else {
+                partitions.add(new PartitionRead(entry, 0));
+            }
         }
-        RegularStatement st = QueryBuilder.insertInto("tsdr", "MetricBlob")
-                .value("KeyA", cacheEntry.getMd5ID().getMd5Long1()).value("KeyB", cacheEntry.getMd5ID().getMd5Long2())
-                .value("Time", lr.getTimeStamp()).value("xIndex", lr.getIndex()).value("value", lr.getData());
 
-        this.batch.add(st);
+        final PreparedStatement select = selects.get(table);
+        final Deque<PartitionRead> pending = new ArrayDeque<>();
+        final Iterator<PartitionRead> toRead = partitions.iterator();
+        int count = 0;
+        try {
+            while (count < recordLimit) {
+                while (toRead.hasNext() && pending.size() < MAX_PARALLEL_READS) {
+                    PartitionRead read = toRead.next();
+                    Statement statement = context.isBucketed()
+                            ? select.bind(read.keyA(), read.keyB(), read.bucket, startDateTime, endDateTime,
+                                    recordLimit - count)
+                            : select.bind(read.keyA(), read.keyB(), startDateTime, endDateTime, recordLimit - count);
+                    statement.setFetchSize(context.getFetchSize());
+                    read.future = executeAsync(statement);
+                    pending.add(read);
+                }
+
+                PartitionRead read = pending.poll();
+                if (read == null) {
+                    break;
+                }
+                // Iterating the result set fetches the next pages as they are needed.
+                for (Row row : read.future.getUninterruptibly()) {
+                    callback.onRow(read.entry, row);
+                    if (++count >= recordLimit) {
+                        break;
+                    }
+                }
+            }
+        } finally {
+            for (PartitionRead read : pending) {
+                read.future.cancel(true);
+            }
+        }
+    }
+
+    private void sendBatch(CassandraBatch batch) {
+        for (List<Statement> statements : batch.drainPartitions()) {
+            for (int from = 0; from < statements.size(); from += MAX_PARTITION_BATCH_SIZE) {
+                List<Statement> chunk = statements.subList(from,
+                        Math.min(from + MAX_PARTITION_BATCH_SIZE, statements.size()));
+                if (chunk.size() == 1) {
+                    batch.addFuture(executeAsync(chunk.get(0)));
+                } else {
+                    // All the statements are to the same partition, so the batch log is not needed.
+                    BatchStatement partitionBatch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+                    partitionBatch.addAll(chunk);
+                    batch.addFuture(executeAsync(partitionBatch));
+                }
+            }
+        }
+    }
 
-        if (this.batch.size() >= MAX_BATCH_SIZE) {
-            this.executeBatch();
-            this.startBatch();
+    private ResultSetFuture executeAsync(Statement statement) {
+        inFlightRequests.acquireUninterruptibly();
+        final ResultSetFuture future;
+        try {
+            future = session.executeAsync(statement);
+        } catch (RuntimeException e) {
+            inFlightRequests.release();
+            throw e;
         }
+        future.addListener(inFlightRequests::release, MoreExecutors.directExecutor());
+        return future;
     }
 
     public List<TSDRMetricRecord> getTSDRMetricRecords(String tsdrMetricKey, long startDateTime, long endDateTime,
             int recordLimit) {
-        TSDRCacheEntry entry = this.cache.getCacheEntry(tsdrMetricKey);
+        final List<TSDRMetricRecord> result = new ArrayList<>();
+        getTSDRMetricRecords(tsdrMetricKey, startDateTime, endDateTime, recordLimit, result::add);
+        return result;
+    }
+
+    /**
+     * Stream the metric records of the series matching a TSDR key to a consumer.
+     * @param tsdrMetricKey - the TSDR key, a pseudo key matches several series
+     * @param startDateTime - the start time
+     * @param endDateTime - the end time
+     * @param recordLimit - the maximum number of records
+     * @param consumer - the consumer of the records
+     */
+    public void getTSDRMetricRecords(String tsdrMetricKey, long startDateTime, long endDateTime, int recordLimit,
+            Consumer<TSDRMetricRecord> consumer) {
+        final List<TSDRCacheEntry> entries;
+        TSDRCacheEntry entry = dictionary.get(tsdrMetricKey);
         //Exact match was found
         if (entry != null) {
-            final List<TSDRMetricRecord> result = new LinkedList<>();
-            String cql = "select * from MetricVal where KeyA=" + entry.getMd5ID().getMd5Long1()
-                    + " and KeyB=" + entry.getMd5ID().getMd5Long2() + " and Time>=" + startDateTime
-                    + " and Time<=" + endDateTime + " limit " + recordLimit;
-            ResultSet rs = session.execute(cql);
-            for (Row r : rs.all()) {
-                result.add(getTSDRMetricRecord(r.getLong("Time"), r.getDouble("value"), entry));
-            }
-            return result;
+            entries = Collections.singletonList(entry);
         } else {
-            final TSDRKeyCache.TSDRMetricCollectJob job = (entry1, startDateTime1, endDateTime1, recordLimit1,
-                    globalResult) -> {
-                String cql = "select * from MetricVal where KeyA=" + entry1.getMd5ID().getMd5Long1() + " and KeyB="
-                        + entry1.getMd5ID().getMd5Long2() + " and Time>=" + startDateTime1 + " and Time<="
-                        + endDateTime1 + " limit " + (recordLimit1 - globalResult.size());
-                ResultSet rs = session.execute(cql);
-                for (Row r : rs.all()) {
-                    globalResult.add(getTSDRMetricRecord(r.getLong("Time"), r.getDouble("value"), entry1));
-                }
-            };
-            return this.cache.getTSDRMetricRecords(tsdrMetricKey, startDateTime, endDateTime, recordLimit, job);
+            entries = dictionary.find(tsdrMetricKey);
         }
+        selectRows("MetricVal", entries, startDateTime, endDateTime, recordLimit,
+                (entry1, row) -> consumer.accept(getTSDRMetricRecord(row.getLong(0), row.getDouble(1), entry1)));
     }
 
     public List<TSDRLogRecord> getTSDRLogRecords(String tsdrLogKey, long startDateTime, long endDateTime,
             int recordLimit) {
-        TSDRCacheEntry entry = this.cache.getCacheEntry(tsdrLogKey);
-        // Exact match was found
+        final List<TSDRCacheEntry> entries;
+        TSDRCacheEntry entry = dictionary.get(tsdrLogKey);
+        //Exact match was found
         if (entry != null) {
-            final List<TSDRLogRecord> result = new LinkedList<>();
-            String cql = "select * from MetricLog where KeyA=" + entry.getMd5ID().getMd5Long1() + " and KeyB="
-                    + entry.getMd5ID().getMd5Long2() + " and Time>=" + startDateTime + " and Time<=" + endDateTime
-                    + " limit " + recordLimit;
-            ResultSet rs = session.execute(cql);
-            for (Row r : rs.all()) {
-                result.add(getTSDRLogRecord(r.getLong("Time"), r.getString("value"), r.getInt("xIndex"), entry));
-            }
-            return result;
+            entries = Collections.singletonList(entry);
         } else {
-            TSDRKeyCache.TSDRLogCollectJob job = (entry1, startDateTime1, endDateTime1, recordLimit1, globalResult) -> {
-                String cql = "select * from MetricLog where KeyA=" + entry1.getMd5ID().getMd5Long1() + " and KeyB="
-                        + entry1.getMd5ID().getMd5Long2() + " and Time>=" + startDateTime1 + " and Time<="
-                        + endDateTime1 + " limit " + (recordLimit1 - globalResult.size());
-                ResultSet rs = session.execute(cql);
-                for (Row r : rs.all()) {
-                    globalResult
-                            .add(getTSDRLogRecord(r.getLong("Time"), r.getString("value"), r.getInt("xIndex"), entry1));
-                }
-            };
-            return this.cache.getTSDRLogRecords(tsdrLogKey, startDateTime, endDateTime, recordLimit, job);
+            entries = dictionary.find(tsdrLogKey);
         }
+        final List<TSDRLogRecord> result = new ArrayList<>();
+        selectRows("MetricLog", entries, startDateTime, endDateTime, recordLimit, (entry1, row) ->
+                result.add(getTSDRLogRecord(row.getLong(0), row.getString(2), row.getInt(1), entry1)));
+        return result;
     }
 
     public List<TSDRBinaryRecord> getTSDRBinaryRecords(String tsdrBinaryKey, long startDateTime, long endDateTime,
             int recordLimit) {
-        TSDRCacheEntry entry = this.cache.getCacheEntry(tsdrBinaryKey);
-        // Exact match was found
+        final List<TSDRCacheEntry> entries;
+        TSDRCacheEntry entry = dictionary.get(tsdrBinaryKey);
+        //Exact match was found
         if (entry != null) {
-            final List<TSDRBinaryRecord> result = new LinkedList<>();
-            String cql = "select * from MetricBlob where KeyA=" + entry.getMd5ID().getMd5Long1() + " and KeyB="
-                    + entry.getMd5ID().getMd5Long2() + " and Time>=" + startDateTime + " and Time<=" + endDateTime
-                    + " limit " + recordLimit;
-            ResultSet rs = session.execute(cql);
-            for (Row r : rs.all()) {
-                result.add(
-                        getTSDRBinaryRecord(r.getLong("Time"), r.getBytes("value").array(), r.getInt("xIndex"), entry));
-            }
-            return result;
+            entries = Collections.singletonList(entry);
         } else {
-            TSDRKeyCache.TSDRBinaryCollectJob job = (entry1, startDateTime1, endDateTime1, recordLimit1,
-                    globalResult) -> {
-                String cql = "select * from MetricBlob where KeyA=" + entry1.getMd5ID().getMd5Long1() + " and KeyB="
-                        + entry1.getMd5ID().getMd5Long2() + " and Time>=" + startDateTime1 + " and Time<="
-                        + endDateTime1 + " limit " + (recordLimit1 - globalResult.size());
-                ResultSet rs = session.execute(cql);
-                for (Row r : rs.all()) {
-                    globalResult.add(getTSDRBinaryRecord(r.getLong("Time"), r.getBytes("value").array(),
-                            r.getInt("xIndex"), entry1));
-                }
-            };
-            return this.cache.getTSDRBinaryRecords(tsdrBinaryKey, startDateTime, endDateTime, recordLimit, job);
+            entries = dictionary.find(tsdrBinaryKey);
         }
+        final List<TSDRBinaryRecord> result = new ArrayList<>();
+        selectRows("MetricBlob", entries, startDateTime, endDateTime, recordLimit, (entry1, row) ->
+                result.add(getTSDRBinaryRecord(row.getLong(0), Bytes.getArray(row.getBytes(2)), row.getInt(1),
+                        entry1)));
+        return result;
     }
 
     private static TSDRMetricRecord getTSDRMetricRecord(long time, double value, TSDRCacheEntry entry) {
@@ -328,7 +565,7 @@ public class CassandraStore implements AutoCloseable {
         rb.setMetricName(entry.getMetricName());
         rb.setMetricValue(new BigDecimal(value));
         rb.setNodeID(entry.getNodeID());
-        rb.setRecordKeys(FormatUtil.getRecordKeysFromTSDRKey(entry.getTsdrKey()));
+        rb.setRecordKeys(entry.getRecordKeys());
         rb.setTimeStamp(time);
         rb.setTSDRDataCategory(entry.getDataCategory());
         return rb.build();
@@ -338,7 +575,7 @@ public class CassandraStore implements AutoCloseable {
         TSDRLogRecordBuilder lb = new TSDRLogRecordBuilder();
         lb.setTSDRDataCategory(entry.getDataCategory());
         lb.setTimeStamp(time);
-        lb.setRecordKeys(FormatUtil.getRecordKeysFromTSDRKey(entry.getTsdrKey()));
+        lb.setRecordKeys(entry.getRecordKeys());
         lb.setNodeID(entry.getNodeID());
         lb.setIndex(index);
         lb.setRecordAttributes(null);
@@ -350,7 +587,7 @@ public class CassandraStore implements AutoCloseable {
         TSDRBinaryRecordBuilder lb = new TSDRBinaryRecordBuilder();
         lb.setTSDRDataCategory(entry.getDataCategory());
         lb.setTimeStamp(time);
-        lb.setRecordKeys(FormatUtil.getRecordKeysFromTSDRKey(entry.getTsdrKey()));
+        lb.setRecordKeys(entry.getRecordKeys());
         lb.setNodeID(entry.getNodeID());
         lb.setIndex(index);
         lb.setRecordAttributes(null);
@@ -362,6 +599,7 @@ public class CassandraStore implements AutoCloseable {
     @PreDestroy
     @SuppressWarnings("checkstyle:IllegalCatch")
     public void close() {
+        dictionary.flush();
         if (this.session != null) {
             try {
                 this.session.close();
@@ -369,15 +607,54 @@ public class CassandraStore implements AutoCloseable {
                 LOG.error("Failed to close the cassandra session", e);
             }
         }
-        this.cache.shutdown();
     }
 
     public void purge(DataCategory category, long retentionTime) {
+        if (context.isBucketed()) {
+            purgeBuckets(category, retentionTime);
+            return;
+        }
         purgeMetrics(category,retentionTime);
         purgeLogs(category,retentionTime);
         purgeBinary(category,retentionTime);
     }
 
+    private void purgeBuckets(DataCategory category, long retentionTime) {
+        if (context.getTimeToLive(category) > 0) {
+            LOG.debug("The {} records expire with their time to live, skipping the purge", category);
+            return;
+        }
+
+        // The records do not expire, so the buckets which ended before the retention time are deleted with one
+        // partition delete each. Only the buckets that were not purged yet by this controller are deleted.
+        final long bucketMillis = context.getBucketMillis();
+        final long lastBucket = getBucket(retentionTime) - bucketMillis;
+        final long firstBucket;
+        synchronized (purgedBuckets) {
+            Long purged = purgedBuckets.get(category);
+            firstBucket = purged != null ? purged + bucketMillis : lastBucket - (MAX_QUERY_BUCKETS - 1) * bucketMillis;
+            if (lastBucket < 0 || firstBucket > lastBucket) {
+                return;
+            }
+            purgedBuckets.put(category, lastBucket);
+        }
+
+        for (String table : TABLES) {
+            final CassandraBatch batch = startBatch();
+            final String cql = "DELETE FROM " + table + BUCKETED_SUFFIX + " WHERE KeyA=? AND KeyB=? AND Bucket=?";
+            for (TSDRCacheEntry entry : dictionary.getEntries(category)) {
+                long keyA = entry.getMd5ID().getMd5Long1();
+                long keyB = entry.getMd5ID().getMd5Long2();
+                Long seriesBucket = dictionary.getFirstBucket(entry);
+                long from = seriesBucket != null ? Math.max(firstBucket, seriesBucket) : firstBucket;
+                for (long bucket = from; bucket <= lastBucket; bucket += bucketMillis) {
+                    add(batch, Arrays.asList(keyA, keyB, bucket), new SimpleStatement(cql, keyA, keyB, bucket));
+                }
+            }
+            executeBatch(batch);
+        }
+    }
+
     @SuppressWarnings("checkstyle:IllegalCatch")
     private void purgeMetrics(DataCategory category, long retentionTime) {
         //Cassandra does not support range delete prior to verison 3.
@@ -387,30 +664,21 @@ public class CassandraStore implements AutoCloseable {
         String cql2 = " and keyB = ";
         String cql3 = " and time < " + retentionTime;
         String dcql3 = " and time =";
-        this.startBatch();
-        for (TSDRCacheEntry entry : this.cache.getAll()) {
-            if (entry.getDataCategory() == category) {
-                String cql = cql1 + entry.getMd5ID().getMd5Long1() + cql2 + entry.getMd5ID().getMd5Long2() + cql3;
-                final ResultSet rs = session.execute(cql);
-                for (Row row : rs.all()) {
-                    String deleteCql = dcql1 + row.getLong("keyA") + cql2 + row.getLong("keyB") + dcql3
-                            + row.getLong("time");
-                    try {
-                        batch.add(new SimpleStatement(deleteCql));
-                    } catch (RuntimeException e) {
-                        LOG.error("Error creating simpleStatement", e);
-                    }
-                    if (this.batch.size() >= MAX_BATCH_SIZE) {
-                        this.executeBatch();
-                        this.startBatch();
-                    }
+        final CassandraBatch batch = startBatch();
+        for (TSDRCacheEntry entry : dictionary.getEntries(category)) {
+            String cql = cql1 + entry.getMd5ID().getMd5Long1() + cql2 + entry.getMd5ID().getMd5Long2() + cql3;
+            final ResultSet rs = session.execute(cql);
+            for (Row row : rs.all()) {
+                String deleteCql = dcql1 + row.getLong("keyA") + cql2 + row.getLong("keyB") + dcql3
+                        + row.getLong("time");
+                try {
+                    add(batch, row.getLong("keyA"), new SimpleStatement(deleteCql));
+                } catch (RuntimeException e) {
+                    LOG.error("Error creating simpleStatement", e);
                 }
             }
         }
-        if (this.batch.size() > 0) {
-            this.executeBatch();
-            this.startBatch();
-        }
+        executeBatch(batch);
     }
 
     private void purgeLogs(DataCategory category, long retentionTime) {
@@ -419,25 +687,17 @@ public class CassandraStore implements AutoCloseable {
         String cql1 = "Select * from MetricLog where keyA = ";
         String cql2 = " and keyB = ";
         String cql3 = " and time < " + retentionTime;
-        this.startBatch();
-        for (TSDRCacheEntry entry : this.cache.getAll()) {
-            if (entry.getDataCategory() == category) {
-                String cql = cql1 + entry.getMd5ID().getMd5Long1() + cql2 + entry.getMd5ID().getMd5Long2() + cql3;
-                session.execute(cql);
-                // TODO - the following causes a "Dead store to local variable" violation for 'row' since it's not
-                // used in the loop. What is this loop for - seems useless...
+        for (TSDRCacheEntry entry : dictionary.getEntries(category)) {
+            String cql = cql1 + entry.getMd5ID().getMd5Long1() + cql2 + entry.getMd5ID().getMd5Long2() + cql3;
+            session.execute(cql);
+            // TODO - the following causes a "Dead store to local variable" violation for 'row' since it's not
+            // used in the loop. What is this loop for - seems useless...
 //                final ResultSet rs = session.execute(cql);
 //                for (Row row : rs.all()) {
-//                    if (this.batch.size() >= MAX_BATCH_SIZE) {
-//                        this.executeBatch();
-//                        this.startBatch();
+//                    if (batch.size() >= MAX_BATCH_SIZE) {
+//                        executeBatch(batch);
 //                    }
 //                }
-            }
-        }
-        if (this.batch.size() > 0) {
-            this.executeBatch();
-            this.startBatch();
         }
     }
 
@@ -451,29 +711,44 @@ public class CassandraStore implements AutoCloseable {
         String cql3 = " and time < " + retentionTime;
         String dcql3 = " and time = ";
         String dcql4 = " and xIndex = ";
-        this.startBatch();
-        for (TSDRCacheEntry entry : this.cache.getAll()) {
-            if (entry.getDataCategory() == category) {
-                String cql = cql1 + entry.getMd5ID().getMd5Long1() + cql2 + entry.getMd5ID().getMd5Long2() + cql3;
-                final ResultSet rs = session.execute(cql);
-                for (Row row : rs.all()) {
-                    String deleteCql = dcql1 + row.getLong("keyA") + cql2 + row.getLong("keyB") + dcql3
-                            + row.getLong("time") + dcql4 + row.getInt("xIndex");
-                    try {
-                        batch.add(new SimpleStatement(deleteCql));
-                    } catch (RuntimeException e) {
-                        LOG.error("Error creating simpleStatement", e);
-                    }
-                    if (this.batch.size() >= MAX_BATCH_SIZE) {
-                        this.executeBatch();
-                        this.startBatch();
-                    }
+        final CassandraBatch batch = startBatch();
+        for (TSDRCacheEntry entry : dictionary.getEntries(category)) {
+            String cql = cql1 + entry.getMd5ID().getMd5Long1() + cql2 + entry.getMd5ID().getMd5Long2() + cql3;
+            final ResultSet rs = session.execute(cql);
+            for (Row row : rs.all()) {
+                String deleteCql = dcql1 + row.getLong("keyA") + cql2 + row.getLong("keyB") + dcql3
+                        + row.getLong("time") + dcql4 + row.getInt("xIndex");
+                try {
+                    add(batch, row.getLong("keyA"), new SimpleStatement(deleteCql));
+                } catch (RuntimeException e) {
+                    LOG.error("Error creating simpleStatement", e);
                 }
             }
         }
-        if (this.batch.size() > 0) {
-            this.executeBatch();
-            this.startBatch();
+        executeBatch(batch);
+    }
+
+    @FunctionalInterface
+    private interface RowCallback {
+        void onRow(TSDRCacheEntry entry, Row row);
+    }
+
+    private static final class PartitionRead {
+        private final TSDRCacheEntry entry;
+        private final long bucket;
+        private ResultSetFuture future;
+
+        PartitionRead(TSDRCacheEntry entry, long bucket) {
+            this.entry = entry;
+            this.bucket = bucket;
+        }
+
+        long keyA() {
+            return entry.getMd5ID().getMd5Long1();
+        }
+
+        long keyB() {
+            return entry.getMd5ID().getMd5Long2();
         }
     }
 }
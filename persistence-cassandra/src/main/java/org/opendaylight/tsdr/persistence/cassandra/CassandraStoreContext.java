@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.cassandra;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
+
+/**
+ * The configuration of the Cassandra store, read from tsdr-persistence-cassandra.properties.
+ */
+public class CassandraStoreContext {
+    static final String HOST_PROP = "host";
+    static final String MASTER_PROP = "master";
+    static final String REPLICATION_FACTOR_PROP = "replication_factor";
+    static final String SCHEMA_PROP = "schema";
+    static final String BUCKET_HOURS_PROP = "bucket_hours";
+    static final String RETENTION_HOURS_PROP = "retention_hours";
+    static final String FETCH_SIZE_PROP = "fetch_size";
+
+    // Cassandra rejects a TTL longer than 20 years.
+    static final int MAX_TIME_TO_LIVE = 630720000;
+
+    static final String SERIES_SCHEMA = "series";
+    static final String BUCKETED_SCHEMA = "bucketed";
+
+    private final String host;
+    private final boolean master;
+    private final int replicationFactor;
+
+    /*
+     * With the bucketed schema each series is partitioned by time bucket, so the partitions stay bounded
+     * and whole buckets expire together. The series schema keeps one partition per series.
+     */
+    private final boolean bucketed;
+    private final int bucketHours;
+
+    /*
+     * The number of rows fetched per page when reading a partition.
+     */
+    private final int fetchSize;
+
+    /*
+     * The number of hours the records of each data category are kept before they expire. It is read from
+     * retention_hours.CATEGORY, falling back to retention_hours. It is only applied by the bucketed schema.
+     */
+    private final Map<DataCategory, Long> retentionHours = new EnumMap<>(DataCategory.class);
+
+    CassandraStoreContext() {
+        this(Collections.emptyMap());
+    }
+
+    CassandraStoreContext(Map<String, String> from) {
+        host = from.get(HOST_PROP);
+        master = Boolean.parseBoolean(from.get(MASTER_PROP));
+        replicationFactor = Integer.parseInt(from.getOrDefault(REPLICATION_FACTOR_PROP, "1").trim());
+        bucketed = BUCKETED_SCHEMA.equalsIgnoreCase(from.getOrDefault(SCHEMA_PROP, SERIES_SCHEMA).trim());
+        bucketHours = Math.max(1, Integer.parseInt(from.getOrDefault(BUCKET_HOURS_PROP, "24").trim()));
+        fetchSize = Math.max(1, Integer.parseInt(from.getOrDefault(FETCH_SIZE_PROP, "1000").trim()));
+
+        String defaultRetention = from.getOrDefault(RETENTION_HOURS_PROP, "0");
+        for (DataCategory category : DataCategory.values()) {
+            long hours = Long.parseLong(
+                    from.getOrDefault(RETENTION_HOURS_PROP + "." + category.name(), defaultRetention).trim());
+            if (hours > 0) {
+                retentionHours.put(category, hours);
+            }
+        }
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public boolean isMaster() {
+        return master;
+    }
+
+    public int getReplicationFactor() {
+        return replicationFactor;
+    }
+
+    public boolean isBucketed() {
+        return bucketed;
+    }
+
+    public int getBucketHours() {
+        return bucketHours;
+    }
+
+    public long getBucketMillis() {
+        return TimeUnit.HOURS.toMillis(bucketHours);
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * Returns the time to live of the records of a data category in seconds, 0 if they do not expire.
+     */
+    public int getTimeToLive(DataCategory category) {
+        Long hours = retentionHours.get(category);
+        return hours == null ? 0 : (int) Math.min(MAX_TIME_TO_LIVE, TimeUnit.HOURS.toSeconds(hours));
+    }
+}
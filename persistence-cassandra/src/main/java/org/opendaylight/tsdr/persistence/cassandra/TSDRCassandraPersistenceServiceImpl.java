@@ -16,7 +16,7 @@ import org.opendaylight.tsdr.spi.persistence.TSDRBinaryPersistenceService;
 import org.opendaylight.tsdr.spi.persistence.TSDRLogPersistenceService;
 import org.opendaylight.tsdr.spi.persistence.TSDRMetricPersistenceService;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data.rev160325.storetsdrbinaryrecord.input.TSDRBinaryRecord;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
 import org.slf4j.Logger;
@@ -36,50 +36,50 @@ public class TSDRCassandraPersistenceServiceImpl implements TSDRMetricPersistenc
 
     @Override
     public void storeMetric(TSDRMetricRecord metricRecord) {
-        store.startBatch();
-        store.store(metricRecord);
-        store.executeBatch();
+        CassandraBatch batch = store.startBatch();
+        store.store(batch, metricRecord);
+        store.executeBatch(batch);
     }
 
     @Override
     public void storeMetric(List<TSDRMetricRecord> metricRecordList) {
-        store.startBatch();
+        CassandraBatch batch = store.startBatch();
         for (TSDRMetricRecord record : metricRecordList) {
-            store.store(record);
+            store.store(batch, record);
         }
-        store.executeBatch();
+        store.executeBatch(batch);
     }
 
     @Override
     public void storeLog(TSDRLogRecord logRecord) {
-        store.startBatch();
-        store.store(logRecord);
-        store.executeBatch();
+        CassandraBatch batch = store.startBatch();
+        store.store(batch, logRecord);
+        store.executeBatch(batch);
     }
 
     @Override
     public void storeLog(List<TSDRLogRecord> metricRecordList) {
-        store.startBatch();
+        CassandraBatch batch = store.startBatch();
         for (TSDRLogRecord record : metricRecordList) {
-            store.store(record);
+            store.store(batch, record);
         }
-        store.executeBatch();
+        store.executeBatch(batch);
     }
 
     @Override
     public void storeBinary(TSDRBinaryRecord binaryRecord) {
-        store.startBatch();
-        store.store(binaryRecord);
-        store.executeBatch();
+        CassandraBatch batch = store.startBatch();
+        store.store(batch, binaryRecord);
+        store.executeBatch(batch);
     }
 
     @Override
     public void storeBinary(List<TSDRBinaryRecord> recordList) {
-        store.startBatch();
+        CassandraBatch batch = store.startBatch();
         for (TSDRBinaryRecord record : recordList) {
-            store.store(record);
+            store.store(batch, record);
         }
-        store.executeBatch();
+        store.executeBatch(batch);
     }
 
     @Override
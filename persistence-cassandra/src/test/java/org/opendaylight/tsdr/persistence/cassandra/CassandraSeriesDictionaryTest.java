@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.cassandra;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.exceptions.NoHostAvailableException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import org.opendaylight.tsdr.spi.util.TSDRKeyCache.TSDRCacheEntry;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
+
+/**
+ * Unit tests for CassandraSeriesDictionary.
+ */
+public class CassandraSeriesDictionaryTest {
+    private static final String LOCAL_KEY = "[NID=openflow:1][DC=PORTSTATS][MN=TransmittedPackets][RK=Port:1]";
+    private static final String REMOTE_KEY = "[NID=openflow:2][DC=PORTSTATS][MN=TransmittedPackets][RK=Port:2]";
+
+    private final Session session = Mockito.mock(Session.class);
+    private final PreparedStatement preparedStatement = Mockito.mock(PreparedStatement.class);
+    private final BoundStatement boundStatement = Mockito.mock(BoundStatement.class);
+    private final ResultSet resultSet = Mockito.mock(ResultSet.class);
+    private final Row row = Mockito.mock(Row.class);
+    private CassandraSeriesDictionary dictionary;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void before() {
+        Mockito.when(session.prepare(Mockito.anyString())).thenReturn(preparedStatement);
+        Mockito.when(preparedStatement.bind(Mockito.anyVararg())).thenReturn(boundStatement);
+        Mockito.when(session.executeAsync(Mockito.any(Statement.class)))
+                .thenReturn(Mockito.mock(ResultSetFuture.class));
+        Mockito.when(session.execute(Mockito.any(Statement.class))).thenReturn(resultSet);
+        Mockito.when(resultSet.iterator()).thenAnswer(invocation -> Arrays.asList(row).iterator());
+        Mockito.when(row.getString(0)).thenReturn(REMOTE_KEY);
+        dictionary = new CassandraSeriesDictionary(session, 100);
+    }
+
+    @Test
+    public void testWriteBehind() {
+        TSDRCacheEntry entry = dictionary.getOrAdd(LOCAL_KEY);
+        assertSame(entry, dictionary.getOrAdd(LOCAL_KEY));
+        Mockito.verify(session, Mockito.never()).executeAsync(Mockito.any(Statement.class));
+
+        dictionary.flush();
+        Mockito.verify(preparedStatement).bind("PORTSTATS", entry.getMd5ID().getMd5Long1(),
+                entry.getMd5ID().getMd5Long2(), LOCAL_KEY);
+        Mockito.verify(session).executeAsync(boundStatement);
+
+        // The series is only written once.
+        dictionary.flush();
+        Mockito.verify(session).executeAsync(Mockito.any(Statement.class));
+    }
+
+    @Test
+    public void testReadThrough() {
+        dictionary.getOrAdd(LOCAL_KEY);
+        assertSame(dictionary.getOrAdd(LOCAL_KEY), dictionary.get(LOCAL_KEY));
+        Mockito.verify(session, Mockito.never()).execute(Mockito.any(Statement.class));
+
+        // A series written by another controller is read from the dictionary table.
+        TSDRCacheEntry remote = dictionary.get(REMOTE_KEY);
+        assertNotNull(remote);
+        assertEquals("openflow:2", remote.getNodeID());
+        Mockito.verify(boundStatement).setFetchSize(100);
+        assertEquals(2, dictionary.getEntries(DataCategory.PORTSTATS).size());
+        assertEquals(2, dictionary.find("PORTSTATS").size());
+        assertEquals(1, dictionary.find("[DC=PORTSTATS][RK=Port:1]").size());
+
+        // The category is not read again within the refresh interval.
+        assertNull(dictionary.get("[NID=openflow:3][DC=PORTSTATS][MN=TransmittedPackets][RK=Port:3]"));
+        Mockito.verify(session, Mockito.times(1)).execute(Mockito.any(Statement.class));
+
+        // Without a category, all the categories are read.
+        assertEquals(1, dictionary.find("[NID=openflow:2]").size());
+        Mockito.verify(session, Mockito.times(DataCategory.values().length)).execute(Mockito.any(Statement.class));
+    }
+
+    @Test
+    public void testEmptyKeyPartsMatchAnySeries() {
+        dictionary.getOrAdd(LOCAL_KEY);
+        assertEquals(2, dictionary.find("[NID=][DC=PORTSTATS][MN=][RK=]").size());
+        assertEquals(2, dictionary.find("[NID=][DC=PORTSTATS][MN=TransmittedPackets][RK=]").size());
+        assertEquals(1, dictionary.find("[NID=openflow:1][DC=PORTSTATS][MN=][RK=]").size());
+        assertEquals(0, dictionary.find("[NID=][DC=PORTSTATS][MN=ReceivedPackets][RK=]").size());
+    }
+
+    @Test
+    public void testFailedRefreshIsRetried() {
+        Mockito.when(session.execute(Mockito.any(Statement.class))).thenThrow(new NoHostAvailableException(
+                Collections.emptyMap())).thenReturn(resultSet);
+        try {
+            dictionary.get(REMOTE_KEY);
+            fail("Expected NoHostAvailableException");
+        } catch (NoHostAvailableException e) {
+            // The category was not read
+        }
+
+        assertNotNull(dictionary.get(REMOTE_KEY));
+    }
+
+    @Test
+    public void testImportKeyCache() throws IOException {
+        Path keyCacheFile = folder.getRoot().toPath().resolve("tsdrKeyCache.txt");
+        Files.write(keyCacheFile, Arrays.asList(LOCAL_KEY + "|1|2", "invalid|1|2"), StandardCharsets.UTF_8);
+
+        dictionary.importKeyCache(keyCacheFile);
+        TSDRCacheEntry entry = dictionary.getOrAdd(LOCAL_KEY);
+        Mockito.verify(preparedStatement).bind("PORTSTATS", entry.getMd5ID().getMd5Long1(),
+                entry.getMd5ID().getMd5Long2(), LOCAL_KEY);
+        Mockito.verify(session).execute(boundStatement);
+        assertFalse(Files.exists(keyCacheFile));
+        assertTrue(Files.exists(folder.getRoot().toPath().resolve("tsdrKeyCache.txt.imported")));
+
+        // The imported series is not written again
+        dictionary.flush();
+        Mockito.verify(session, Mockito.never()).executeAsync(Mockito.any(Statement.class));
+    }
+}
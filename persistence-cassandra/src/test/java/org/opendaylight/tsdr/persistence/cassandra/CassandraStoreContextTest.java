@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.cassandra;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
+
+/**
+ * Unit tests for CassandraStoreContext.
+ */
+public class CassandraStoreContextTest {
+    @Test
+    public void testDefaults() {
+        CassandraStoreContext context = new CassandraStoreContext();
+        assertNull(context.getHost());
+        assertFalse(context.isMaster());
+        assertEquals(1, context.getReplicationFactor());
+        assertFalse(context.isBucketed());
+        assertEquals(24, context.getBucketHours());
+        assertEquals(0, context.getTimeToLive(DataCategory.SYSLOG));
+    }
+
+    @Test
+    public void testBucketedSchema() {
+        Map<String, String> config = new HashMap<>();
+        config.put(CassandraStoreContext.HOST_PROP, "127.0.0.1");
+        config.put(CassandraStoreContext.MASTER_PROP, "true");
+        config.put(CassandraStoreContext.SCHEMA_PROP, "bucketed");
+        config.put(CassandraStoreContext.BUCKET_HOURS_PROP, "6");
+        config.put(CassandraStoreContext.RETENTION_HOURS_PROP, "2");
+        config.put(CassandraStoreContext.RETENTION_HOURS_PROP + ".SYSLOG", "0");
+        config.put(CassandraStoreContext.RETENTION_HOURS_PROP + ".NETFLOW", "1000000");
+
+        CassandraStoreContext context = new CassandraStoreContext(config);
+        assertEquals("127.0.0.1", context.getHost());
+        assertTrue(context.isMaster());
+        assertTrue(context.isBucketed());
+        assertEquals(6 * 3600000L, context.getBucketMillis());
+        assertEquals(7200, context.getTimeToLive(DataCategory.PORTSTATS));
+        assertEquals(0, context.getTimeToLive(DataCategory.SYSLOG));
+        assertEquals(CassandraStoreContext.MAX_TIME_TO_LIVE, context.getTimeToLive(DataCategory.NETFLOW));
+    }
+}
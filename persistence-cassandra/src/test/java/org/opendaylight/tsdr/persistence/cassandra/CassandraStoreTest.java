@@ -7,23 +7,33 @@
  */
 package org.opendaylight.tsdr.persistence.cassandra;
 
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.BoundStatement;
 import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.PreparedStatement;
 import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
 import java.io.File;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.opendaylight.tsdr.spi.util.FormatUtil;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.storetsdrlogrecord.input.TSDRLogRecord;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.storetsdrlogrecord.input.TSDRLogRecordBuilder;
+import org.opendaylight.tsdr.spi.util.TSDRKeyCache.TSDRCacheEntry;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecordBuilder;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecordBuilder;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
@@ -42,18 +52,32 @@ public class CassandraStoreTest {
     private final ResultSet resultSet = Mockito.mock(ResultSet.class);
     private final Row row = Mockito.mock(Row.class);
     private final List<Row> rows = new ArrayList<>();
+    private final PreparedStatement preparedStatement = Mockito.mock(PreparedStatement.class);
+    private final ResultSetFuture future = Mockito.mock(ResultSetFuture.class);
+    private final PreparedStatement seriesInsert = Mockito.mock(PreparedStatement.class);
+    private final BoundStatement seriesStatement = Mockito.mock(BoundStatement.class);
+    private CassandraBatch batch = null;
 
     @Before
     public void before() {
+        Mockito.when(session.prepare(Mockito.anyString())).thenReturn(preparedStatement);
+        Mockito.when(preparedStatement.bind(Mockito.anyVararg())).thenAnswer(
+            invocation -> Mockito.mock(BoundStatement.class));
+        Mockito.when(session.prepare(Mockito.startsWith("INSERT INTO tsdr.SeriesDictionary"))).thenReturn(seriesInsert);
+        Mockito.when(seriesInsert.bind(Mockito.anyVararg())).thenReturn(seriesStatement);
+        Mockito.when(session.executeAsync(Mockito.any(Statement.class))).thenReturn(future);
         store = new CassandraStore(session,cluster);
        // Mockito.when(queryBuilder.(Mockito.any(Session.class),Mockito.any(Cluster.class))).thenReturn(queryBuilder);
         Mockito.when(session.execute(Mockito.anyString())).thenReturn(resultSet);
+        Mockito.when(session.execute(Mockito.any(Statement.class))).thenReturn(resultSet);
         Mockito.when(resultSet.all()).thenReturn(rows);
+        Mockito.when(resultSet.iterator()).thenAnswer(invocation -> rows.iterator());
+        Mockito.when(future.getUninterruptibly()).thenReturn(resultSet);
         Mockito.when(row.getString("KeyPath")).thenReturn(FormatUtil.getTSDRMetricKey(createMetricRecord()));
-        Mockito.when(row.getDouble("value")).thenReturn(11d);
-        Mockito.when(row.getString("value")).thenReturn(createLogRecord().getRecordFullText());
+        Mockito.when(row.getDouble(1)).thenReturn(11d);
+        Mockito.when(row.getString(2)).thenReturn(createLogRecord().getRecordFullText());
         Mockito.when(session.getCluster()).thenReturn(cluster);
-        store.startBatch();
+        batch = store.startBatch();
         if (rows.isEmpty()) {
             rows.add(row);
         }
@@ -64,6 +88,9 @@ public class CassandraStoreTest {
         store.close();
         File dir = new File("./tsdr");
         File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
         for (File f : files) {
             f.delete();
         }
@@ -116,25 +143,34 @@ public class CassandraStoreTest {
 
     @Test
     public void testStoreTSDRMetric() {
-        store.store(createMetricRecord());
-        Assert.assertEquals(1,store.getBatch().size());
+        store.store(batch, createMetricRecord());
+        Assert.assertEquals(1,batch.size());
         store.close();
         Mockito.verify(session,Mockito.atLeast(1)).close();
     }
 
     @Test
     public void testStoreTSDRLog() {
-        store.store(createLogRecord());
-        Assert.assertEquals(1,store.getBatch().size());
+        store.store(batch, createLogRecord());
+        Assert.assertEquals(1,batch.size());
         store.close();
         Mockito.verify(session,Mockito.atLeast(1)).close();
     }
 
+    @Test
+    public void testRecordsWithoutTimeStampOrValueAreSkipped() {
+        store.store(batch, new TSDRMetricRecordBuilder(createMetricRecord()).setTimeStamp(null).build());
+        store.store(batch, new TSDRMetricRecordBuilder(createMetricRecord()).setMetricValue(null).build());
+        store.store(batch, new TSDRLogRecordBuilder(createLogRecord()).setTimeStamp(null).build());
+        Assert.assertEquals(0, batch.size());
+        Mockito.verify(preparedStatement, Mockito.never()).bind(Mockito.anyVararg());
+    }
+
     @Test
     public void testGetMetricRecords() {
         TSDRMetricRecord rec = createMetricRecord();
         String key = FormatUtil.getTSDRMetricKey(rec);
-        store.store(rec);
+        store.store(batch, rec);
         List<TSDRMetricRecord> list = store.getTSDRMetricRecords(key,0L,Long.MAX_VALUE,10);
         Assert.assertNotNull(list);
         Assert.assertTrue(list.size() == 1);
@@ -145,7 +181,7 @@ public class CassandraStoreTest {
     public void testGetMetricRecordsJob() {
         TSDRMetricRecord rec = createMetricRecord();
         String key = "[NID=Test]";
-        store.store(rec);
+        store.store(batch, rec);
         List<TSDRMetricRecord> list = store.getTSDRMetricRecords(key,0L,Long.MAX_VALUE,10);
         Assert.assertNotNull(list);
         Assert.assertTrue(list.size() == 1);
@@ -156,7 +192,7 @@ public class CassandraStoreTest {
     public void testGetLogRecords() {
         TSDRLogRecord rec = createLogRecord();
         String key = FormatUtil.getTSDRLogKey(rec);
-        store.store(rec);
+        store.store(batch, rec);
         List<TSDRLogRecord> list = store.getTSDRLogRecords(key,0L,Long.MAX_VALUE,10);
         Assert.assertNotNull(list);
         Assert.assertTrue(list.size() == 1);
@@ -167,7 +203,7 @@ public class CassandraStoreTest {
     public void testGetLogRecordsJob() {
         TSDRLogRecord rec = createLogRecord();
         String key = "[NID=Test]";
-        store.store(rec);
+        store.store(batch, rec);
         List<TSDRLogRecord> list = store.getTSDRLogRecords(key,0L,Long.MAX_VALUE,10);
         Assert.assertNotNull(list);
         Assert.assertTrue(list.size() == 1);
@@ -176,9 +212,95 @@ public class CassandraStoreTest {
 
     @Test
     public void testPurge() {
-        store.store(createMetricRecord());
-        Assert.assertEquals(1,store.getBatch().size());
+        store.store(batch, createMetricRecord());
+        Assert.assertEquals(1,batch.size());
         store.purge(DataCategory.EXTERNAL,0L);
         Mockito.verify(session,Mockito.atLeast(1)).execute(Mockito.anyString());
     }
+
+    @Test
+    public void testExecuteBatchGroupsByPartition() {
+        TSDRMetricRecord rec = createMetricRecord();
+        store.store(batch, rec);
+        store.store(batch, rec);
+        store.store(batch, createLogRecord());
+        store.executeBatch(batch);
+
+        // The two metrics share a partition and are sent as one unlogged batch, the log record on its own,
+        // then the two new series are written to the series dictionary.
+        ArgumentCaptor<Statement> statements = ArgumentCaptor.forClass(Statement.class);
+        Mockito.verify(session, Mockito.times(4)).executeAsync(statements.capture());
+        BatchStatement partitionBatch = (BatchStatement) statements.getAllValues().get(0);
+        Assert.assertEquals(2, partitionBatch.size());
+        Assert.assertTrue(statements.getAllValues().get(1) instanceof BoundStatement);
+        Assert.assertSame(seriesStatement, statements.getAllValues().get(2));
+        Assert.assertSame(seriesStatement, statements.getAllValues().get(3));
+        Mockito.verify(future, Mockito.times(2)).getUninterruptibly();
+        Mockito.verify(session, Mockito.never()).execute(Mockito.any(Statement.class));
+        Assert.assertEquals(0, batch.size());
+    }
+
+    @Test
+    public void testBucketedSchema() {
+        Map<String, String> config = new HashMap<>();
+        config.put(CassandraStoreContext.SCHEMA_PROP, CassandraStoreContext.BUCKETED_SCHEMA);
+        config.put(CassandraStoreContext.RETENTION_HOURS_PROP, "1");
+        CassandraStore bucketedStore = new CassandraStore(session, cluster, new CassandraStoreContext(config));
+        Mockito.verify(session).prepare("INSERT INTO tsdr.MetricValBucketed (KeyA, KeyB, Bucket, Time, value) "
+                + "VALUES (?, ?, ?, ?, ?) USING TTL ?");
+
+        TSDRMetricRecord rec = createMetricRecord();
+        long bucket = bucketedStore.getBucket(rec.getTimeStamp());
+        Assert.assertEquals(0, bucket % 86400000L);
+        Assert.assertTrue(bucket <= rec.getTimeStamp() && rec.getTimeStamp() < bucket + 86400000L);
+
+        CassandraBatch bucketedBatch = bucketedStore.startBatch();
+        bucketedStore.store(bucketedBatch, rec);
+        ArgumentCaptor<Object> values = ArgumentCaptor.forClass(Object.class);
+        Mockito.verify(preparedStatement).bind(values.capture());
+        Assert.assertEquals(bucket, values.getAllValues().get(2));
+        Assert.assertEquals(rec.getTimeStamp(), values.getAllValues().get(3));
+        Assert.assertEquals(3600, values.getAllValues().get(5));
+
+        // The series is read from the oldest bucket it was written to, the series of the earlier versions
+        // from the buckets within the retention.
+        List<Long> buckets = bucketedStore.getBuckets(new TSDRCacheEntry(FormatUtil.getTSDRMetricKey(rec)), 0L,
+                rec.getTimeStamp());
+        Assert.assertEquals(Collections.singletonList(bucket), buckets);
+        TSDRMetricRecord legacy = new TSDRMetricRecordBuilder(rec).setNodeID("legacy").build();
+        buckets = bucketedStore.getBuckets(new TSDRCacheEntry(FormatUtil.getTSDRMetricKey(legacy)), 0L,
+                rec.getTimeStamp());
+        Assert.assertTrue(buckets.contains(bucket));
+        Assert.assertTrue(buckets.size() <= 2);
+        Mockito.verify(session).prepare("SELECT Time, value FROM tsdr.MetricValBucketed "
+                + "WHERE KeyA=? AND KeyB=? AND Bucket=? AND Time>=? AND Time<=? LIMIT ?");
+        List<TSDRMetricRecord> list = bucketedStore.getTSDRMetricRecords(FormatUtil.getTSDRMetricKey(rec),
+                0L, rec.getTimeStamp(), 1);
+        Assert.assertEquals(1, list.size());
+
+        // The records expire with their TTL so the purge does not run any query.
+        Mockito.reset(session);
+        bucketedStore.purge(DataCategory.EXTERNAL, rec.getTimeStamp());
+        Mockito.verifyZeroInteractions(session);
+        Mockito.when(session.executeAsync(Mockito.any(Statement.class))).thenReturn(future);
+        bucketedStore.close();
+    }
+
+    @Test
+    public void testGetMetricRecordsPaged() {
+        TSDRMetricRecord rec = createMetricRecord();
+        store.store(batch, rec);
+        rows.add(row);
+        rows.add(row);
+
+        // The rows are read with the fetch size and the iteration stops at the limit.
+        List<TSDRMetricRecord> list = store.getTSDRMetricRecords(FormatUtil.getTSDRMetricKey(rec), 0L,
+                Long.MAX_VALUE, 2);
+        Assert.assertEquals(2, list.size());
+        Assert.assertEquals(rec.getRecordKeys(), list.get(0).getRecordKeys());
+        ArgumentCaptor<Statement> statements = ArgumentCaptor.forClass(Statement.class);
+        Mockito.verify(session).executeAsync(statements.capture());
+        Mockito.verify(statements.getValue()).setFetchSize(1000);
+        Mockito.verify(session, Mockito.never()).execute(Mockito.anyString());
+    }
 }
@@ -14,7 +14,7 @@ import java.util.List;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
 
@@ -29,24 +29,27 @@ public class TSDRCassandraPersistenceServiceImplTest {
     private final Session session = Mockito.mock(Session.class);
     private final CassandraStore store = Mockito.mock(CassandraStore.class);
     private final TSDRCassandraPersistenceServiceImpl impl = new TSDRCassandraPersistenceServiceImpl(store);
+    private final CassandraBatch batch = new CassandraBatch();
 
     @Before
     public void before(){
-
+        Mockito.when(store.startBatch()).thenReturn(batch);
     }
 
     @Test
     public void testStoreMetric() {
         TSDRMetricRecord metricRecord = CassandraStoreTest.createMetricRecord();
         impl.storeMetric(metricRecord);
-        Mockito.verify(store, Mockito.atLeast(1)).store(metricRecord);
+        Mockito.verify(store, Mockito.atLeast(1)).store(batch, metricRecord);
+        Mockito.verify(store).executeBatch(batch);
     }
 
     @Test
     public void testStoreLog() {
         TSDRLogRecord logRecord = CassandraStoreTest.createLogRecord();
         impl.storeLog(logRecord);
-        Mockito.verify(store, Mockito.atLeast(1)).store(logRecord);
+        Mockito.verify(store, Mockito.atLeast(1)).store(batch, logRecord);
+        Mockito.verify(store).executeBatch(batch);
     }
 
     @Test
@@ -55,7 +58,8 @@ public class TSDRCassandraPersistenceServiceImplTest {
         TSDRMetricRecord metricRecord = CassandraStoreTest.createMetricRecord();
         list.add(metricRecord);
         impl.storeMetric(list);
-        Mockito.verify(store, Mockito.atLeast(1)).store(metricRecord);
+        Mockito.verify(store, Mockito.atLeast(1)).store(batch, metricRecord);
+        Mockito.verify(store).executeBatch(batch);
     }
 
     @Test
@@ -64,7 +68,8 @@ public class TSDRCassandraPersistenceServiceImplTest {
         TSDRLogRecord logRecord = CassandraStoreTest.createLogRecord();
         list.add(logRecord);
         impl.storeLog(list);
-        Mockito.verify(store, Mockito.atLeast(1)).store(logRecord);
+        Mockito.verify(store, Mockito.atLeast(1)).store(batch, logRecord);
+        Mockito.verify(store).executeBatch(batch);
     }
 
     @Test
@@ -0,0 +1,427 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.elasticsearch;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.searchbox.core.Bulk;
+import io.searchbox.core.BulkResult;
+import io.searchbox.core.BulkResult.BulkResultItem;
+import io.searchbox.core.Index;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.TSDRRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends the records to the elasticsearch data store with bulk requests.
+ *
+ * <p>
+ * A bulk request is sent as soon as bulkActions records or bulkSizeBytes bytes are queued, and the queued records
+ * are also sent every syncInterval by {@link #flush()}. At most bulkConcurrentRequests bulk requests are in flight
+ * at once. The documents rejected by the data store because it is busy, or the whole request when it fails, are
+ * retried with an exponential backoff up to bulkMaxRetries times; the documents it cannot index, or which are
+ * still rejected after the last retry, are dropped and counted.
+ *
+ * <p>
+ * The records are held until they are indexed, at most bulkQueueCapacity of them. When the capacity is reached,
+ * the callers wait up to bulkOfferTimeout milliseconds, for all the records of a call, for the records to be sent;
+ * the records they could not add by then are dropped and counted. The counters are logged by {@link #report()}.
+ */
+class ElasticSearchBulkProcessor implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    static final String BULK_ACTIONS_PROP = "bulkActions";
+    static final String BULK_SIZE_BYTES_PROP = "bulkSizeBytes";
+    static final String BULK_CONCURRENT_REQUESTS_PROP = "bulkConcurrentRequests";
+    static final String BULK_QUEUE_CAPACITY_PROP = "bulkQueueCapacity";
+    static final String BULK_OFFER_TIMEOUT_PROP = "bulkOfferTimeout";
+    static final String BULK_MAX_RETRIES_PROP = "bulkMaxRetries";
+
+    private static final long INITIAL_BACKOFF_MILLIS = 500L;
+    private static final long MAX_BACKOFF_MILLIS = 30000L;
+
+    // The approximate size of the action line preceding each document in a bulk request.
+    private static final int ACTION_BYTES = 64;
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    /**
+     * Executes a bulk request, returning null if it could not be sent.
+     */
+    @FunctionalInterface
+    interface BulkExecutor {
+        BulkResult execute(Bulk bulk);
+    }
+
+    /**
+     * A record with its index action.
+     */
+    static final class Document {
+        private final TSDRRecord record;
+        private final Index action;
+        private final long bytes;
+
+        Document(TSDRRecord record, Index action, int sourceLength) {
+            this.record = record;
+            this.action = action;
+            this.bytes = sourceLength + ACTION_BYTES;
+        }
+    }
+
+    private final BulkExecutor bulkExecutor;
+    private final int bulkActions;
+    private final long bulkSizeBytes;
+    private final long offerTimeoutMillis;
+    private final int maxRetries;
+
+    private final Semaphore capacity;
+    private final Semaphore inFlight;
+    private final ExecutorService executor;
+
+    private final Queue<Document> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queuedCount = new AtomicInteger();
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private final Set<Document> sending = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong indexedCount = new AtomicLong();
+    private final AtomicLong retriedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private long reportedDropped;
+    private long reportedFailed;
+
+    private volatile boolean closed;
+    private final CountDownLatch closing = new CountDownLatch(1);
+
+    ElasticSearchBulkProcessor(Map<String, String> properties, BulkExecutor bulkExecutor) {
+        this.bulkExecutor = bulkExecutor;
+        this.bulkActions = getInt(properties, BULK_ACTIONS_PROP, 1000);
+        this.bulkSizeBytes = getInt(properties, BULK_SIZE_BYTES_PROP, 5 << 20);
+        this.offerTimeoutMillis = getInt(properties, BULK_OFFER_TIMEOUT_PROP, 5000);
+        this.maxRetries = getInt(properties, BULK_MAX_RETRIES_PROP, 8);
+        this.capacity = new Semaphore(Math.max(bulkActions, getInt(properties, BULK_QUEUE_CAPACITY_PROP, 100000)));
+
+        int concurrentRequests = getInt(properties, BULK_CONCURRENT_REQUESTS_PROP, 2);
+        this.inFlight = new Semaphore(concurrentRequests);
+        this.executor = Executors.newFixedThreadPool(concurrentRequests, new ThreadFactoryBuilder()
+                .setNameFormat("tsdr-elasticsearch-bulk-%d").setDaemon(true).build());
+    }
+
+    private static int getInt(Map<String, String> properties, String name, int defaultValue) {
+        String value = properties.get(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Invalid {} value {}, using {}", name, value, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Returns the deadline, in {@link System#nanoTime()} units, until which the records of a call made now may
+     * wait for capacity.
+     */
+    long newOfferDeadline() {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(offerTimeoutMillis);
+    }
+
+    /**
+     * Queues a document, waiting for capacity up to bulkOfferTimeout if too many records are not indexed yet.
+     * An {@link IllegalStateException} is thrown if the processor is closed.
+     *
+     * @return false if the document was dropped because there was no capacity left
+     */
+    boolean add(Document document) {
+        return add(document, newOfferDeadline());
+    }
+
+    /**
+     * Queues a document, waiting for capacity until the given deadline if too many records are not indexed yet.
+     * The records of a call share a deadline, so that a call never waits longer than bulkOfferTimeout; once it
+     * passed, the remaining records are dropped right away if there is no capacity.
+     * An {@link IllegalStateException} is thrown if the processor is closed.
+     *
+     * @param deadline - the deadline returned by {@link #newOfferDeadline()}
+     * @return false if the document was dropped because there was no capacity left
+     */
+    boolean add(Document document, long deadline) {
+        checkState(!closed, "The bulk processor is closed");
+
+        try {
+            if (!capacity.tryAcquire(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                droppedCount.incrementAndGet();
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            droppedCount.incrementAndGet();
+            return false;
+        }
+
+        queue.add(document);
+        queuedCount.incrementAndGet();
+        queuedBytes.addAndGet(document.bytes);
+
+        while (isBulkReady() && inFlight.tryAcquire()) {
+            submit(drain());
+        }
+        return true;
+    }
+
+    private boolean isBulkReady() {
+        return queuedCount.get() >= bulkActions || queuedBytes.get() >= bulkSizeBytes;
+    }
+
+    /**
+     * Sends all the queued documents, as far as the in flight requests allow. The documents which cannot be sent
+     * yet are sent by a later flush or as soon as a request completes.
+     */
+    void flush() {
+        while (queuedCount.get() > 0 && inFlight.tryAcquire()) {
+            submit(drain());
+        }
+    }
+
+    private List<Document> drain() {
+        List<Document> documents = new ArrayList<>();
+        long bytes = 0;
+        while (documents.size() < bulkActions && bytes < bulkSizeBytes) {
+            Document document = queue.poll();
+            if (document == null) {
+                break;
+            }
+            sending.add(document);
+            queuedCount.decrementAndGet();
+            queuedBytes.addAndGet(-document.bytes);
+            bytes += document.bytes;
+            documents.add(document);
+        }
+        return documents;
+    }
+
+    private void submit(List<Document> documents) {
+        if (documents.isEmpty()) {
+            inFlight.release();
+            return;
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    send(documents);
+                } finally {
+                    inFlight.release();
+                }
+
+                // Send the bulks which got ready while this one was in flight.
+                while (!closed && isBulkReady() && inFlight.tryAcquire()) {
+                    submit(drain());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            LOGGER.error("Cannot send a bulk of {} records, the bulk processor is closed", documents.size(), e);
+            inFlight.release();
+            fail(documents);
+        }
+    }
+
+    private void send(List<Document> documents) {
+        List<Document> pending = documents;
+        for (int attempt = 0; !pending.isEmpty(); attempt++) {
+            Bulk.Builder bulk = new Bulk.Builder();
+            for (Document document : pending) {
+                bulk.addAction(document.action);
+            }
+
+            pending = getRetriable(pending, bulkExecutor.execute(bulk.build()));
+            if (pending.isEmpty()) {
+                return;
+            }
+            if (closed) {
+                LOGGER.error("Dropping {} records which could not be indexed before closing", pending.size());
+                fail(pending);
+                return;
+            }
+            if (attempt >= maxRetries) {
+                // The permit of the request is released, so the records queued meanwhile can be sent.
+                LOGGER.error("Dropping {} records which could not be indexed after {} retries", pending.size(),
+                        maxRetries);
+                fail(pending);
+                return;
+            }
+
+            retriedCount.addAndGet(pending.size());
+            long backoff = Math.min(MAX_BACKOFF_MILLIS, INITIAL_BACKOFF_MILLIS << Math.min(attempt, 16));
+            try {
+                // The backoff is cut short when the processor is closed, the documents are then sent one last time.
+                closing.await(backoff, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(pending);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Acknowledges the indexed documents and drops the ones which cannot be indexed.
+     *
+     * @return the documents to send again
+     */
+    private List<Document> getRetriable(List<Document> documents, BulkResult result) {
+        if (result == null) {
+            return documents;
+        }
+
+        List<BulkResultItem> items = result.getJsonObject() == null
+                ? Collections.emptyList() : result.getItems();
+        if (items.size() != documents.size()) {
+            if (result.isSucceeded()) {
+                acknowledge(documents);
+                return Collections.emptyList();
+            }
+            // The whole request failed.
+            return documents;
+        }
+
+        List<Document> retriable = new ArrayList<>();
+        List<Document> failed = new ArrayList<>();
+        String error = null;
+        for (int i = 0; i < items.size(); i++) {
+            BulkResultItem item = items.get(i);
+            Document document = documents.get(i);
+            if (item.status < 300) {
+                acknowledge(Collections.singletonList(document));
+            } else if (item.status == TOO_MANY_REQUESTS || item.status >= 500) {
+                retriable.add(document);
+            } else {
+                failed.add(document);
+                error = item.error;
+            }
+        }
+
+        if (!failed.isEmpty()) {
+            LOGGER.warn("Dropping {} records which cannot be indexed, error: {}", failed.size(), error);
+            fail(failed);
+        }
+        return retriable;
+    }
+
+    private void acknowledge(List<Document> documents) {
+        sending.removeAll(documents);
+        capacity.release(documents.size());
+        indexedCount.addAndGet(documents.size());
+    }
+
+    private void fail(List<Document> documents) {
+        sending.removeAll(documents);
+        capacity.release(documents.size());
+        failedCount.addAndGet(documents.size());
+    }
+
+    /**
+     * Logs the number of records dropped since the last report.
+     */
+    synchronized void report() {
+        long dropped = droppedCount.get();
+        long failed = failedCount.get();
+        if (dropped != reportedDropped || failed != reportedFailed) {
+            LOGGER.warn("{} records were dropped because the elasticsearch bulk queue was full and {} records "
+                    + "failed to be indexed since the last report", dropped - reportedDropped,
+                    failed - reportedFailed);
+            reportedDropped = dropped;
+            reportedFailed = failed;
+        }
+    }
+
+    /**
+     * Returns the records which are stored and not indexed yet.
+     */
+    List<TSDRRecord> getPending() {
+        return Stream.concat(sending.stream(), queue.stream()).map(document -> document.record)
+                .collect(Collectors.toList());
+    }
+
+    long getIndexedCount() {
+        return indexedCount.get();
+    }
+
+    long getRetriedCount() {
+        return retriedCount.get();
+    }
+
+    long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * Sends the queued records and waits for the requests in flight, up to the given timeout. The records which
+     * are not indexed by then are dropped.
+     */
+    void close(long timeout, TimeUnit unit) {
+        closed = true;
+        closing.countDown();
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        try {
+            while (queuedCount.get() > 0 && System.nanoTime() < deadline) {
+                if (inFlight.tryAcquire(10L, TimeUnit.MILLISECONDS)) {
+                    submit(drain());
+                }
+            }
+            executor.shutdown();
+            if (!executor.awaitTermination(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+
+        List<Document> left = new ArrayList<>();
+        for (Document document = queue.poll(); document != null; document = queue.poll()) {
+            left.add(document);
+        }
+        if (!left.isEmpty()) {
+            LOGGER.error("Dropping {} records which were not sent before closing", left.size());
+            fail(left);
+        }
+        report();
+    }
+
+    @Override
+    public void close() {
+        close(2L, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.elasticsearch;
+
+import com.google.common.base.Strings;
+import java.lang.invoke.MethodHandles;
+import java.time.DateTimeException;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.IsoFields;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.opendaylight.tsdr.persistence.elasticsearch.ElasticSearchStore.RecordType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Names the time based indices the records are written to.
+ *
+ * <p>
+ * The records of each type are written to an index per day or per week of their time stamp, in UTC, for example
+ * tsdr-metric-2018.10.17 or tsdr-metric-2018.w42. The indices are created from an index template carrying the
+ * mapping of the type, which also adds them to the alias of the type, e.g. tsdr-metric. The records are purged by
+ * dropping the indices older than the retention time, and a search only targets the indices overlapping its time
+ * range.
+ */
+final class ElasticSearchIndices {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    static final String PREFIX = "tsdr-";
+    static final String ROLLOVER_PROP = "indexRollover";
+
+    // A search spanning more indices goes through the alias of the type instead.
+    static final int MAX_SEARCH_INDICES = 64;
+
+    private static final Pattern DAILY_SUFFIX = Pattern.compile("(\\d{4,})\\.(\\d{2})\\.(\\d{2})");
+    private static final Pattern WEEKLY_SUFFIX = Pattern.compile("(\\d{4,})\\.w(\\d{2})");
+
+    /**
+     * The period of time covered by an index.
+     */
+    enum Rollover {
+        DAILY {
+            @Override
+            LocalDate getStart(LocalDate date) {
+                return date;
+            }
+
+            @Override
+            LocalDate getNext(LocalDate start) {
+                return start.plusDays(1);
+            }
+
+            @Override
+            String getSuffix(LocalDate start) {
+                return String.format(Locale.ROOT, "%04d.%02d.%02d", start.getYear(), start.getMonthValue(),
+                        start.getDayOfMonth());
+            }
+        },
+        WEEKLY {
+            @Override
+            LocalDate getStart(LocalDate date) {
+                return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            }
+
+            @Override
+            LocalDate getNext(LocalDate start) {
+                return start.plusWeeks(1);
+            }
+
+            @Override
+            String getSuffix(LocalDate start) {
+                return String.format(Locale.ROOT, "%04d.w%02d", start.get(IsoFields.WEEK_BASED_YEAR),
+                        start.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR));
+            }
+        };
+
+        /**
+         * Returns the first day of the period containing the date.
+         */
+        abstract LocalDate getStart(LocalDate date);
+
+        /**
+         * Returns the first day of the next period.
+         */
+        abstract LocalDate getNext(LocalDate start);
+
+        abstract String getSuffix(LocalDate start);
+    }
+
+    private final Rollover rollover;
+
+    ElasticSearchIndices(Rollover rollover) {
+        this.rollover = rollover;
+    }
+
+    static Rollover parseRollover(String value) {
+        if (Strings.isNullOrEmpty(value)) {
+            return Rollover.DAILY;
+        }
+        try {
+            return Rollover.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Unknown {} value {}, using daily indices", ROLLOVER_PROP, value);
+            return Rollover.DAILY;
+        }
+    }
+
+    Rollover getRollover() {
+        return rollover;
+    }
+
+    static String getAlias(RecordType type) {
+        return PREFIX + type.name;
+    }
+
+    static String getPattern(RecordType type) {
+        return getAlias(type) + "-*";
+    }
+
+    /**
+     * Returns the index the records of a type with the given time stamp are written to.
+     */
+    String getIndex(RecordType type, long timestamp) {
+        return getAlias(type) + "-" + rollover.getSuffix(rollover.getStart(toDate(timestamp)));
+    }
+
+    /**
+     * Returns the indices holding the records of a type between the start and end time stamps, or the alias of the
+     * type when the range spans too many indices.
+     */
+    List<String> getIndices(RecordType type, long start, long end) {
+        LocalDate first = rollover.getStart(toDate(start));
+        LocalDate last = toDate(end);
+        if (ChronoUnit.DAYS.between(first, last) >= MAX_SEARCH_INDICES * 7L) {
+            return Collections.singletonList(getAlias(type));
+        }
+
+        List<String> indices = new ArrayList<>();
+        for (LocalDate date = first; !date.isAfter(last); date = rollover.getNext(date)) {
+            if (indices.size() == MAX_SEARCH_INDICES) {
+                return Collections.singletonList(getAlias(type));
+            }
+            indices.add(getAlias(type) + "-" + rollover.getSuffix(date));
+        }
+        return indices;
+    }
+
+    /**
+     * Returns the index template of a type, which sets the mapping of its indices and adds them to its alias.
+     */
+    static String getTemplate(RecordType type) {
+        StringBuilder template = new StringBuilder()
+                .append("{\"template\":\"").append(getPattern(type)).append("\",")
+                .append("\"aliases\":{\"").append(getAlias(type)).append("\":{}}");
+        if (!Strings.isNullOrEmpty(type.mapping)) {
+            template.append(",\"mappings\":{\"").append(type.name).append("\":").append(type.mapping).append('}');
+        }
+        return template.append('}').toString();
+    }
+
+    /**
+     * Returns whether all the records which can be in an index are older than the given time stamp. The daily and
+     * weekly index names are both recognized, so the indices are still purged after the rollover is changed.
+     */
+    static boolean isExpired(RecordType type, String index, long timestamp) {
+        String prefix = getAlias(type) + "-";
+        if (!index.startsWith(prefix)) {
+            return false;
+        }
+
+        final LocalDate next;
+        try {
+            String suffix = index.substring(prefix.length());
+            Matcher daily = DAILY_SUFFIX.matcher(suffix);
+            Matcher weekly = WEEKLY_SUFFIX.matcher(suffix);
+            if (daily.matches()) {
+                next = LocalDate.of(Integer.parseInt(daily.group(1)), Integer.parseInt(daily.group(2)),
+                        Integer.parseInt(daily.group(3))).plusDays(1);
+            } else if (weekly.matches()) {
+                next = LocalDate.of(Integer.parseInt(weekly.group(1)), 1, 4)
+                        .with(IsoFields.WEEK_OF_WEEK_BASED_YEAR, Long.parseLong(weekly.group(2)))
+                        .with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).plusWeeks(1);
+            } else {
+                return false;
+            }
+        } catch (DateTimeException | NumberFormatException e) {
+            return false;
+        }
+        return next.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli() <= timestamp;
+    }
+
+    private static LocalDate toDate(long timestamp) {
+        return Instant.ofEpochMilli(timestamp).atZone(ZoneOffset.UTC).toLocalDate();
+    }
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.elasticsearch;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import org.opendaylight.tsdr.persistence.elasticsearch.ElasticSearchStore.RecordType;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data.rev160325.storetsdrbinaryrecord.input.TSDRBinaryRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data.rev160325.storetsdrbinaryrecord.input.TSDRBinaryRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.tsdrlog.RecordAttributes;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.tsdrlog.RecordAttributesBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.TSDRRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.tsdrrecord.RecordKeys;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.tsdrrecord.RecordKeysBuilder;
+
+/**
+ * Converts the records to and from the JSON documents of the Elasticsearch data store.
+ *
+ * <p>
+ * The documents are written field by field instead of reflecting over the generated binding classes, with the same
+ * field names the records were serialized with by Gson, so the documents indexed before are still read. Each thread
+ * encodes into its own buffer, which is reused from one record to the next.
+ */
+final class ElasticSearchRecordCodec {
+    static final String ELK_DATA_CATEGORY = "TSDRDataCategory";
+    static final String ELK_METRIC_NAME = "MetricName";
+    static final String ELK_METRIC_VALUE = "MetricValue";
+    static final String ELK_NODE_ID = "NodeID";
+    static final String ELK_TIMESTAMP = "TimeStamp";
+    static final String ELK_RK_KEY_NAME = "RecordKeys.KeyName";
+    static final String ELK_RK_KEY_VALUE = "RecordKeys.KeyValue";
+    static final String ELK_RA_KEY_NAME = "RecordAttributes.Name";
+    static final String ELK_RA_KEY_VALUE = "RecordAttributes.Value";
+
+    private static final String RECORD_KEYS = "RecordKeys";
+    private static final String KEY_NAME = "KeyName";
+    private static final String KEY_VALUE = "KeyValue";
+    private static final String RECORD_ATTRIBUTES = "RecordAttributes";
+    private static final String NAME = "Name";
+    private static final String VALUE = "Value";
+    private static final String RECORD_FULL_TEXT = "RecordFullText";
+    private static final String INDEX = "Index";
+    private static final String DATA = "Data";
+
+    // A buffer which grew beyond this size for a large record is not kept.
+    private static final int MAX_POOLED_BUFFER_SIZE = 64 * 1024;
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(512));
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private ElasticSearchRecordCodec() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Returns the JSON document of a record.
+     * An {@link IllegalArgumentException} is thrown when a record type is unknown.
+     */
+    static String encode(TSDRRecord record) {
+        StringBuilder json = BUFFER.get();
+        json.setLength(0);
+        json.append('{');
+        appendString(json, ELK_NODE_ID, record.getNodeID());
+        if (record.getTSDRDataCategory() != null) {
+            appendString(json, ELK_DATA_CATEGORY, record.getTSDRDataCategory().name());
+        }
+        if (record.getTimeStamp() != null) {
+            appendName(json, ELK_TIMESTAMP).append(record.getTimeStamp().longValue());
+        }
+        appendRecordKeys(json, record.getRecordKeys());
+
+        if (record instanceof TSDRMetricRecord) {
+            TSDRMetricRecord metric = (TSDRMetricRecord) record;
+            appendString(json, ELK_METRIC_NAME, metric.getMetricName());
+            if (metric.getMetricValue() != null) {
+                appendName(json, ELK_METRIC_VALUE).append(metric.getMetricValue().toString());
+            }
+        } else if (record instanceof TSDRLogRecord) {
+            TSDRLogRecord log = (TSDRLogRecord) record;
+            appendIndex(json, log.getIndex());
+            appendString(json, RECORD_FULL_TEXT, log.getRecordFullText());
+            if (log.getRecordAttributes() != null) {
+                appendName(json, RECORD_ATTRIBUTES).append('[');
+                for (RecordAttributes attribute : log.getRecordAttributes()) {
+                    appendAttribute(json, attribute.getName(), attribute.getValue());
+                }
+                json.append(']');
+            }
+        } else if (record instanceof TSDRBinaryRecord) {
+            TSDRBinaryRecord binary = (TSDRBinaryRecord) record;
+            appendIndex(json, binary.getIndex());
+            if (binary.getData() != null) {
+                // The bytes are written as an array of numbers, like Gson does
+                appendName(json, DATA).append('[');
+                byte[] data = binary.getData();
+                for (int i = 0; i < data.length; i++) {
+                    if (i > 0) {
+                        json.append(',');
+                    }
+                    json.append(data[i]);
+                }
+                json.append(']');
+            }
+            if (binary.getRecordAttributes() != null) {
+                appendName(json, RECORD_ATTRIBUTES).append('[');
+                for (org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data.rev160325.tsdrbinary.RecordAttributes
+                        attribute : binary.getRecordAttributes()) {
+                    appendAttribute(json, attribute.getName(), attribute.getValue());
+                }
+                json.append(']');
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown record type");
+        }
+
+        String document = json.append('}').toString();
+        if (json.capacity() > MAX_POOLED_BUFFER_SIZE) {
+            BUFFER.remove();
+        }
+        return document;
+    }
+
+    private static StringBuilder appendName(StringBuilder json, String name) {
+        char last = json.charAt(json.length() - 1);
+        if (last != '{' && last != '[') {
+            json.append(',');
+        }
+        return json.append('"').append(name).append("\":");
+    }
+
+    private static void appendString(StringBuilder json, String name, String value) {
+        if (value != null) {
+            appendQuoted(appendName(json, name), value);
+        }
+    }
+
+    private static void appendIndex(StringBuilder json, Integer index) {
+        if (index != null) {
+            appendName(json, INDEX).append(index.intValue());
+        }
+    }
+
+    private static void appendRecordKeys(StringBuilder json, List<RecordKeys> recordKeys) {
+        if (recordKeys != null) {
+            appendName(json, RECORD_KEYS).append('[');
+            for (RecordKeys recordKey : recordKeys) {
+                if (json.charAt(json.length() - 1) != '[') {
+                    json.append(',');
+                }
+                json.append('{');
+                appendString(json, KEY_NAME, recordKey.getKeyName());
+                appendString(json, KEY_VALUE, recordKey.getKeyValue());
+                json.append('}');
+            }
+            json.append(']');
+        }
+    }
+
+    private static void appendAttribute(StringBuilder json, String name, String value) {
+        if (json.charAt(json.length() - 1) != '[') {
+            json.append(',');
+        }
+        json.append('{');
+        appendString(json, NAME, name);
+        appendString(json, VALUE, value);
+        json.append('}');
+    }
+
+    private static void appendQuoted(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            switch (ch) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (ch < 0x20 || ch == 0x2028 || ch == 0x2029) {
+                        json.append("\\u").append(HEX_DIGITS[ch >> 12 & 0xF]).append(HEX_DIGITS[ch >> 8 & 0xF])
+                                .append(HEX_DIGITS[ch >> 4 & 0xF]).append(HEX_DIGITS[ch & 0xF]);
+                    } else {
+                        json.append(ch);
+                    }
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+     * Returns the record of the given type held by a JSON document.
+     */
+    static TSDRRecord decode(RecordType type, JsonObject source) {
+        switch (type) {
+            case METRIC:
+                return new TSDRMetricRecordBuilder()
+                        .setMetricName(getString(source, ELK_METRIC_NAME))
+                        .setMetricValue(getDecimal(source, ELK_METRIC_VALUE))
+                        .setNodeID(getString(source, ELK_NODE_ID))
+                        .setRecordKeys(getRecordKeys(source))
+                        .setTSDRDataCategory(getDataCategory(source))
+                        .setTimeStamp(getLong(source, ELK_TIMESTAMP))
+                        .build();
+            case LOG:
+                List<RecordAttributes> logAttributes = null;
+                JsonArray attributes = getArray(source, RECORD_ATTRIBUTES);
+                if (attributes != null) {
+                    logAttributes = new ArrayList<>(attributes.size());
+                    for (JsonElement element : attributes) {
+                        JsonObject attribute = element.getAsJsonObject();
+                        logAttributes.add(new RecordAttributesBuilder()
+                                .setName(getString(attribute, NAME))
+                                .setValue(getString(attribute, VALUE))
+                                .build());
+                    }
+                }
+                return new TSDRLogRecordBuilder()
+                        .setIndex(getInteger(source, INDEX))
+                        .setNodeID(getString(source, ELK_NODE_ID))
+                        .setRecordAttributes(logAttributes)
+                        .setRecordFullText(getString(source, RECORD_FULL_TEXT))
+                        .setRecordKeys(getRecordKeys(source))
+                        .setTSDRDataCategory(getDataCategory(source))
+                        .setTimeStamp(getLong(source, ELK_TIMESTAMP))
+                        .build();
+            case BINARY:
+                return decodeBinary(source);
+            default:
+                throw new IllegalArgumentException("Unknown record type");
+        }
+    }
+
+    private static TSDRBinaryRecord decodeBinary(JsonObject source) {
+        byte[] data = null;
+        JsonArray bytes = getArray(source, DATA);
+        if (bytes != null) {
+            data = new byte[bytes.size()];
+            for (int i = 0; i < data.length; i++) {
+                data[i] = bytes.get(i).getAsByte();
+            }
+        }
+
+        List<org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data.rev160325.tsdrbinary.RecordAttributes>
+                binaryAttributes = null;
+        JsonArray attributes = getArray(source, RECORD_ATTRIBUTES);
+        if (attributes != null) {
+            binaryAttributes = new ArrayList<>(attributes.size());
+            for (JsonElement element : attributes) {
+                JsonObject attribute = element.getAsJsonObject();
+                binaryAttributes.add(new org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data.rev160325
+                            .tsdrbinary.RecordAttributesBuilder()
+                        .setName(getString(attribute, NAME))
+                        .setValue(getString(attribute, VALUE))
+                        .build());
+            }
+        }
+
+        return new TSDRBinaryRecordBuilder()
+                .setData(data)
+                .setIndex(getInteger(source, INDEX))
+                .setNodeID(getString(source, ELK_NODE_ID))
+                .setRecordAttributes(binaryAttributes)
+                .setRecordKeys(getRecordKeys(source))
+                .setTSDRDataCategory(getDataCategory(source))
+                .setTimeStamp(getLong(source, ELK_TIMESTAMP))
+                .build();
+    }
+
+    private static JsonElement get(JsonObject source, String name) {
+        JsonElement element = source.get(name);
+        return element == null || element.isJsonNull() ? null : element;
+    }
+
+    private static String getString(JsonObject source, String name) {
+        JsonElement element = get(source, name);
+        return element == null ? null : element.getAsString();
+    }
+
+    private static Long getLong(JsonObject source, String name) {
+        JsonElement element = get(source, name);
+        return element == null ? null : element.getAsLong();
+    }
+
+    private static Integer getInteger(JsonObject source, String name) {
+        JsonElement element = get(source, name);
+        return element == null ? null : element.getAsInt();
+    }
+
+    private static BigDecimal getDecimal(JsonObject source, String name) {
+        JsonElement element = get(source, name);
+        return element == null ? null : element.getAsBigDecimal();
+    }
+
+    private static JsonArray getArray(JsonObject source, String name) {
+        JsonElement element = get(source, name);
+        return element == null || !element.isJsonArray() ? null : element.getAsJsonArray();
+    }
+
+    private static DataCategory getDataCategory(JsonObject source) {
+        String category = getString(source, ELK_DATA_CATEGORY);
+        if (category == null) {
+            return null;
+        }
+        try {
+            return DataCategory.valueOf(category);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static List<RecordKeys> getRecordKeys(JsonObject source) {
+        JsonArray recordKeys = getArray(source, RECORD_KEYS);
+        if (recordKeys == null) {
+            return null;
+        }
+        List<RecordKeys> result = new ArrayList<>(recordKeys.size());
+        for (JsonElement element : recordKeys) {
+            JsonObject recordKey = element.getAsJsonObject();
+            result.add(new RecordKeysBuilder()
+                    .setKeyName(getString(recordKey, KEY_NAME))
+                    .setKeyValue(getString(recordKey, KEY_VALUE))
+                    .build());
+        }
+        return result;
+    }
+}
@@ -13,34 +13,40 @@ import static com.google.common.base.Preconditions.checkState;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
-import com.google.common.collect.EvictingQueue;
-import com.google.common.collect.Lists;
 import com.google.common.io.Files;
 import com.google.common.util.concurrent.AbstractScheduledService;
 import com.google.gson.ExclusionStrategy;
 import com.google.gson.FieldAttributes;
 import com.google.gson.FieldNamingPolicy;
+import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
 import io.searchbox.action.Action;
 import io.searchbox.client.JestClient;
 import io.searchbox.client.JestClientFactory;
 import io.searchbox.client.JestResult;
 import io.searchbox.client.JestResultHandler;
 import io.searchbox.client.config.HttpClientConfig;
-import io.searchbox.core.Bulk;
-import io.searchbox.core.BulkResult;
+import io.searchbox.core.ClearScroll;
 import io.searchbox.core.DeleteByQuery;
 import io.searchbox.core.Index;
 import io.searchbox.core.Search;
 import io.searchbox.core.SearchResult;
-import io.searchbox.indices.CreateIndex;
+import io.searchbox.core.SearchScroll;
+import io.searchbox.indices.DeleteIndex;
 import io.searchbox.indices.IndicesExists;
-import io.searchbox.indices.mapping.PutMapping;
+import io.searchbox.indices.aliases.GetAliases;
+import io.searchbox.indices.template.PutTemplate;
 import io.searchbox.params.Parameters;
 import java.io.File;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
@@ -48,19 +54,18 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.inject.Singleton;
-import org.apache.commons.lang3.StringUtils;
+import org.opendaylight.tsdr.spi.persistence.AggregatingMetricPersistenceService.Bucket;
 import org.opendaylight.tsdr.spi.util.ConfigFileUtil;
 import org.opendaylight.tsdr.spi.util.FormatUtil;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data.rev160325.storetsdrbinaryrecord.input.TSDRBinaryRecord;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.storetsdrlogrecord.input.TSDRLogRecord;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.tsdrlog.RecordAttributes;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.tsdrlog.RecordAttributes;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.AggregationType;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.TSDRRecord;
@@ -80,28 +85,21 @@ public class ElasticSearchStore extends AbstractScheduledService implements Auto
     private static final String ELASTICSEARCH_STORE_CONFIG_FILE =
             ConfigFileUtil.CONFIG_DIR  + "tsdr-persistence-elasticsearch.properties";
 
-    private static final String ELK_QUERY = ""
-            + "{%n"
-            + "    \"query\": {%n"
-            + "        \"filtered\": {%n"
-            + "            \"query\": {%n"
-            + "                \"query_string\": {%n"
-            + "                    \"query\": \"%s\"%n"
-            + "                }%n"
-            + "            },%n"
-            + "            \"filter\": {%n"
-            + "                \"range\": {%n"
-            + "                   \"TimeStamp\": {%n"
-            + "                      \"gte\": %d,%n"
-            + "                      \"lte\": %d%n"
-            + "                   }%n"
-            + "                }%n"
-            + "            }%n"
-            + "        }%n"
-            + "    }%n"
-            + "}";
-    private static final String QUERY_CONDITION = "%s:\\\"%s\\\"";
+    static final String SEARCH_PAGE_SIZE_PROP = "searchPageSize";
+    private static final int DEFAULT_SEARCH_PAGE_SIZE = 1000;
 
+    private static final long MAX_TIMESTAMP = 9999999999999L;
+
+    // The hits are sorted by time stamp then by document and fetched page by page with a scroll, which is not bounded
+    // by the index.max_result_window of the indices as from and size are. search_after would not keep a search
+    // context open, but it needs Elasticsearch 5 while the shipped mappings are for Elasticsearch 2.x.
+    private static final String SEARCH_SORT = "[{\"" + ElasticSearchRecordCodec.ELK_TIMESTAMP + "\": \"asc\"}, "
+            + "{\"_uid\": \"asc\"}]";
+
+    // How long the search context of a scroll is kept between two pages.
+    private static final String SCROLL_KEEP_ALIVE = "1m";
+
+    // The index all the records were written to before the time based indices, it is still searched and purged.
     private static final String INDEX = "tsdr";
 
     /**
@@ -112,8 +110,8 @@ public class ElasticSearchStore extends AbstractScheduledService implements Auto
         LOG,
         BINARY;
 
-        private final String name;
-        private final String mapping;
+        final String name;
+        final String mapping;
 
         RecordType() {
             name = name().toLowerCase(Locale.getDefault());
@@ -148,9 +146,13 @@ public class ElasticSearchStore extends AbstractScheduledService implements Auto
 
     private final Map<String, String> properties;
 
-    private final Lock batchLock = new ReentrantLock();
+    private final Gson gson = createGson();
+
+    private final ElasticSearchBulkProcessor bulkProcessor;
+
+    private final ElasticSearchIndices indices;
 
-    private final EvictingQueue<TSDRRecord> batch = EvictingQueue.create(1 << 10);
+    private volatile boolean legacyIndex;
 
     private JestClient client;
 
@@ -163,6 +165,9 @@ public class ElasticSearchStore extends AbstractScheduledService implements Auto
     ElasticSearchStore(Map<String, String> properties, JestClient client) {
         this.properties = Objects.requireNonNull(properties);
         this.client = client;
+        this.bulkProcessor = new ElasticSearchBulkProcessor(properties, this::execute);
+        this.indices = new ElasticSearchIndices(
+                ElasticSearchIndices.parseRollover(properties.get(ElasticSearchIndices.ROLLOVER_PROP)));
     }
 
     @PostConstruct
@@ -226,32 +231,6 @@ public class ElasticSearchStore extends AbstractScheduledService implements Auto
         });
     }
 
-    /**
-     * Writes the batch of {@link RecordType} into the elasticsearch data store.
-     */
-    private void sync() {
-        batchLock.lock();
-        try {
-            if (!batch.isEmpty()) {
-                Bulk.Builder bulk = new Bulk.Builder();
-                for (TSDRRecord r : batch) {
-                    try {
-                        RecordType type = RecordType.resolve(r);
-                        bulk.addAction(new Index.Builder(r).index(INDEX).type(type.name).build());
-                    } catch (IllegalArgumentException iae) {
-                        LOGGER.error("Cannot resolve type: {}", r, iae);
-                    }
-                }
-                BulkResult result = execute(bulk.build());
-                if (result != null && result.isSucceeded()) {
-                    batch.clear();
-                }
-            }
-        } finally {
-            batchLock.unlock();
-        }
-    }
-
     /**
      * Stores the given record.
      * A {@link NullPointerException} is thrown if record is {@code null}.
@@ -261,15 +240,7 @@ public class ElasticSearchStore extends AbstractScheduledService implements Auto
         checkNotNull(record);
         checkState(isRunning(), "The service is not running");
 
-        batchLock.lock();
-        try {
-            if (batch.remainingCapacity() == 0) {
-                sync();
-            }
-            batch.add(record);
-        } finally {
-            batchLock.unlock();
-        }
+        add(record);
     }
 
     /**
@@ -286,15 +257,31 @@ public class ElasticSearchStore extends AbstractScheduledService implements Auto
         }
         checkState(isRunning(), "The service is not running");
 
-        batchLock.lock();
+        // The records share a deadline, so a call never waits for capacity longer than bulkOfferTimeout.
+        long deadline = bulkProcessor.newOfferDeadline();
+        for (TSDRRecord record : records) {
+            add(record, deadline);
+        }
+    }
+
+    /**
+     * Hands the record over to the bulk processor, waiting for it until the deadline if too many records are not
+     * indexed yet.
+     */
+    private void add(TSDRRecord record, long deadline) {
+        final RecordType type;
         try {
-            if (batch.remainingCapacity() < records.size()) {
-                sync();
-            }
-            batch.addAll(records);
-        } finally {
-            batchLock.unlock();
+            type = RecordType.resolve(record);
+        } catch (IllegalArgumentException iae) {
+            LOGGER.error("Cannot resolve type: {}", record, iae);
+            return;
         }
+
+        long timestamp = record.getTimeStamp() != null ? record.getTimeStamp() : System.currentTimeMillis();
+        String source = ElasticSearchRecordCodec.encode(record);
+        bulkProcessor.add(new ElasticSearchBulkProcessor.Document(record,
+                new Index.Builder(source).index(indices.getIndex(type, timestamp)).type(type.name).build(),
+                source.length()), deadline);
     }
 
     /**
@@ -302,68 +289,203 @@ public class ElasticSearchStore extends AbstractScheduledService implements Auto
      * A {@link NullPointerException} is thrown if record is {@code null}.
      * An {@link IllegalStateException} is thrown if this service is not running.
      */
-    @SuppressWarnings("unchecked")
     <T extends TSDRRecord> List<T> search(RecordType type, String key, long start, long end, int size) {
+        List<T> records = new ArrayList<>();
+        this.<T>search(type, key, start, end, size, records::add);
+        return records;
+    }
+
+    /**
+     * Searches for in a given type for key bounded by start and stop timestamps, handing the records over to the
+     * consumer in time stamp order as the pages of hits come back, until the limit is reached.
+     * A {@link NullPointerException} is thrown if record is {@code null}.
+     * An {@link IllegalStateException} is thrown if this service is not running.
+     */
+    @SuppressWarnings("unchecked")
+    <T extends TSDRRecord> void search(RecordType type, String key, long start, long end, int limit,
+            Consumer<? super T> consumer) {
         checkNotNull(type);
         checkNotNull(key);
+        checkNotNull(consumer);
         checkState(isRunning(), "The service is not running");
 
         if (end < start) {
-            return Collections.emptyList();
+            return;
         }
-        String query = buildELKQuery(type, key, start, end);
-        SearchResult result = execute(new Search.Builder(query)
-                .addIndex(INDEX)
-                .addType(type.name)
-                .setParameter(Parameters.SIZE, size)
-                .build());
-        if (result == null || !result.isSucceeded() || result.getTotal() == 0) {
+        JsonArray filters = buildFilters(type, key);
+        filters.add(range(ElasticSearchRecordCodec.ELK_TIMESTAMP, start, Math.min(end, MAX_TIMESTAMP)));
+        JsonObject body = buildQuery(filters);
+        body.add("sort", new JsonParser().parse(SEARCH_SORT));
+
+        body.addProperty("size", Math.min(getSearchPageSize(), limit));
+        LOGGER.debug("The Query is {}", body);
+
+        JestResult result = execute(buildSearch(type, body, start, end)
+                .setParameter(Parameters.SCROLL, SCROLL_KEEP_ALIVE).build());
+        String scrollId = null;
+        int count = 0;
+        try {
+            while (true) {
+                if (result == null || !result.isSucceeded() || result.getJsonObject() == null
+                        || !result.getJsonObject().has("hits")) {
+                    if (count > 0) {
+                        LOGGER.warn("The search of {} stopped after {} hits: {}", key, count,
+                                result != null ? result.getErrorMessage() : "no result");
+                    }
+                    return;
+                }
+
+                JsonObject json = result.getJsonObject();
+                if (json.has("_scroll_id")) {
+                    scrollId = json.get("_scroll_id").getAsString();
+                }
+                JsonArray hits = json.getAsJsonObject("hits").getAsJsonArray("hits");
+                for (JsonElement element : hits) {
+                    JsonObject hit = element.getAsJsonObject();
+                    consumer.accept((T) ElasticSearchRecordCodec.decode(type, hit.getAsJsonObject("_source")));
+                    if (++count >= limit) {
+                        return;
+                    }
+                }
+                if (hits.size() == 0 || scrollId == null) {
+                    return;
+                }
+
+                result = execute(new SearchScroll.Builder(scrollId, SCROLL_KEEP_ALIVE).build());
+            }
+        } finally {
+            if (scrollId != null) {
+                // Release the search context rather than holding it until the keep alive expires.
+                execute(new ClearScroll.Builder().addScrollId(scrollId).build());
+            }
+        }
+    }
+
+    /**
+     * Aggregates the metrics of a key by intervals of the given size, the first one starting at the start timestamp,
+     * with a date histogram so only one bucket per interval comes back.
+     * A {@link NullPointerException} is thrown if key is {@code null}.
+     * An {@link IllegalStateException} is thrown if this service is not running.
+     */
+    List<Bucket> aggregate(String key, long start, long end, long interval, AggregationType aggregation) {
+        checkNotNull(key);
+        checkNotNull(aggregation);
+        checkState(isRunning(), "The service is not running");
+
+        final String function;
+        switch (aggregation) {
+            case MIN:
+                function = "min";
+                break;
+            case MAX:
+                function = "max";
+                break;
+            case MEAN:
+                function = "avg";
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported aggregation " + aggregation);
+        }
+        if (end < start || interval <= 0) {
             return Collections.emptyList();
         }
-        return result.getHits(TsdrRecordPayload.class).stream()
-                .map(hit -> (T) hit.source.toRecord(type))
-                .collect(Collectors.toList());
+
+        JsonArray filters = buildFilters(RecordType.METRIC, key);
+        filters.add(range(ElasticSearchRecordCodec.ELK_TIMESTAMP, start, Math.min(end, MAX_TIMESTAMP)));
+        JsonObject body = buildQuery(filters);
+        body.addProperty("size", 0);
+
+        JsonObject histogram = new JsonObject();
+        histogram.addProperty("field", ElasticSearchRecordCodec.ELK_TIMESTAMP);
+        histogram.addProperty("interval", interval + "ms");
+        histogram.addProperty("offset", "+" + start % interval + "ms");
+        histogram.addProperty("min_doc_count", 1);
+        JsonObject field = new JsonObject();
+        field.addProperty("field", ElasticSearchRecordCodec.ELK_METRIC_VALUE);
+        JsonObject value = new JsonObject();
+        value.add(function, field);
+        JsonObject valueAggregation = new JsonObject();
+        valueAggregation.add("value", value);
+        JsonObject intervals = new JsonObject();
+        intervals.add("date_histogram", histogram);
+        intervals.add("aggs", valueAggregation);
+        JsonObject aggregations = new JsonObject();
+        aggregations.add("intervals", intervals);
+        body.add("aggs", aggregations);
+        LOGGER.debug("The Query is {}", body);
+
+        SearchResult result = execute(buildSearch(RecordType.METRIC, body, start, end).build());
+        if (result == null || !result.isSucceeded() || result.getJsonObject() == null
+                || !result.getJsonObject().has("aggregations")) {
+            return null;
+        }
+
+        List<Bucket> buckets = new ArrayList<>();
+        for (JsonElement element : result.getJsonObject().getAsJsonObject("aggregations")
+                .getAsJsonObject("intervals").getAsJsonArray("buckets")) {
+            JsonObject bucket = element.getAsJsonObject();
+            JsonElement aggregated = bucket.getAsJsonObject("value").get("value");
+            buckets.add(new Bucket(bucket.get("key").getAsLong(),
+                    aggregated == null || aggregated.isJsonNull() ? null : aggregated.getAsBigDecimal(),
+                    bucket.get("doc_count").getAsLong()));
+        }
+        return buckets;
     }
 
     /**
-     * Create ELK Query.
+     * Create the builder of a search of the records of a type in the indices overlapping the time range.
      */
-    private String buildELKQuery(RecordType type, String tsdrKey, long start, long end) {
-        String queryString = buildQueryString(type, tsdrKey);
-        String query = String.format(
-                ElasticSearchStore.ELK_QUERY,
-                queryString,
-                start,
-                Math.min(end, 9999999999999L));
-        LOGGER.info("The Query is {}", query);
-        return query;
+    private Search.Builder buildSearch(RecordType type, JsonObject body, long start, long end) {
+        Search.Builder search = new Search.Builder(body.toString())
+                .addType(type.name)
+                .setParameter("ignore_unavailable", true)
+                .setParameter("allow_no_indices", true);
+        for (String index : indices.getIndices(type, start, Math.min(end, MAX_TIMESTAMP))) {
+            search.addIndex(index);
+        }
+        if (legacyIndex) {
+            search.addIndex(INDEX);
+        }
+        return search;
+    }
+
+    private int getSearchPageSize() {
+        String value = properties.get(SEARCH_PAGE_SIZE_PROP);
+        if (!Strings.isNullOrEmpty(value)) {
+            try {
+                return Math.max(Integer.parseInt(value.trim()), 1);
+            } catch (NumberFormatException e) {
+                LOGGER.warn("Invalid {} value {}, using {}", SEARCH_PAGE_SIZE_PROP, value, DEFAULT_SEARCH_PAGE_SIZE);
+            }
+        }
+        return DEFAULT_SEARCH_PAGE_SIZE;
     }
 
     /**
-     * Create queryString of the ELK query.
+     * Create the non scoring filters matching the records of a TSDR key. The fields are not analyzed, so each value
+     * is matched exactly by a term filter.
      */
-    String buildQueryString(RecordType type, String tsdrKey) {
-        StringBuffer queryBuffer = new StringBuffer();
-        appendCondition(queryBuffer, TsdrRecordPayload.ELK_DATA_CATEGORY, resolveDataCategory(tsdrKey));
+    JsonArray buildFilters(RecordType type, String tsdrKey) {
+        JsonArray filters = new JsonArray();
+        addTerm(filters, ElasticSearchRecordCodec.ELK_DATA_CATEGORY, resolveDataCategory(tsdrKey));
 
         try {
             Long timestamp = FormatUtil.getTimeStampFromTSDRKey(tsdrKey);
             if (timestamp != null) {
-                appendCondition(queryBuffer, TsdrRecordPayload.ELK_TIMESTAMP, String.valueOf(timestamp));
+                filters.add(term(ElasticSearchRecordCodec.ELK_TIMESTAMP, new JsonPrimitive(timestamp)));
             }
         } catch (NumberFormatException e) {
             // do nothing, timestamp is not in query
         }
 
         if (type == RecordType.METRIC) {
-            appendCondition(queryBuffer, TsdrRecordPayload.ELK_NODE_ID, FormatUtil.getNodeIdFromTSDRKey(tsdrKey));
-            appendCondition(queryBuffer, TsdrRecordPayload.ELK_METRIC_NAME,
-                    FormatUtil.getMetriNameFromTSDRKey(tsdrKey));
+            addTerm(filters, ElasticSearchRecordCodec.ELK_NODE_ID, FormatUtil.getNodeIdFromTSDRKey(tsdrKey));
+            addTerm(filters, ElasticSearchRecordCodec.ELK_METRIC_NAME, FormatUtil.getMetriNameFromTSDRKey(tsdrKey));
             List<RecordKeys> recKeys = FormatUtil.getRecordKeysFromTSDRKey(tsdrKey);
             if (recKeys != null) {
                 for (RecordKeys recKey : recKeys) {
-                    appendCondition(queryBuffer, TsdrRecordPayload.ELK_RK_KEY_NAME, recKey.getKeyName());
-                    appendCondition(queryBuffer, TsdrRecordPayload.ELK_RK_KEY_VALUE, recKey.getKeyValue());
+                    addTerm(filters, ElasticSearchRecordCodec.ELK_RK_KEY_NAME, recKey.getKeyName());
+                    addTerm(filters, ElasticSearchRecordCodec.ELK_RK_KEY_VALUE, recKey.getKeyValue());
                 }
             }
         }
@@ -372,29 +494,56 @@ public class ElasticSearchStore extends AbstractScheduledService implements Auto
             List<RecordAttributes> recAttrs = FormatUtil.getRecordAttributesFromTSDRKey(tsdrKey);
             if (recAttrs != null) {
                 for (RecordAttributes recAttr : recAttrs) {
-                    appendCondition(queryBuffer, TsdrRecordPayload.ELK_RA_KEY_NAME, recAttr.getName());
-                    appendCondition(queryBuffer, TsdrRecordPayload.ELK_RA_KEY_VALUE, recAttr.getValue());
+                    addTerm(filters, ElasticSearchRecordCodec.ELK_RA_KEY_NAME, recAttr.getName());
+                    addTerm(filters, ElasticSearchRecordCodec.ELK_RA_KEY_VALUE, recAttr.getValue());
                 }
             }
         }
 
-
-        return queryBuffer.toString();
+        return filters;
     }
 
     /**
-     * Create an one part of condition queryString of the ELK query.
+     * Add a term filter on a field, unless the value is empty.
      */
-    void appendCondition(StringBuffer queryBuffer, String fieldName, String fieldValue) {
-        if (StringUtils.isNoneEmpty(fieldValue)) {
-            // If it is not the first condition then we must add clausule And
-            if (queryBuffer.length() > 0) {
-                queryBuffer.append(" AND ");
-            }
-            queryBuffer.append(String.format(QUERY_CONDITION, fieldName, fieldValue));
+    static void addTerm(JsonArray filters, String fieldName, String fieldValue) {
+        if (!Strings.isNullOrEmpty(fieldValue)) {
+            filters.add(term(fieldName, new JsonPrimitive(fieldValue)));
         }
     }
 
+    private static JsonObject term(String fieldName, JsonPrimitive fieldValue) {
+        JsonObject condition = new JsonObject();
+        condition.add(fieldName, fieldValue);
+        JsonObject term = new JsonObject();
+        term.add("term", condition);
+        return term;
+    }
+
+    private static JsonObject range(String fieldName, long gte, long lte) {
+        JsonObject bounds = new JsonObject();
+        bounds.addProperty("gte", gte);
+        bounds.addProperty("lte", lte);
+        JsonObject condition = new JsonObject();
+        condition.add(fieldName, bounds);
+        JsonObject range = new JsonObject();
+        range.add("range", condition);
+        return range;
+    }
+
+    /**
+     * Create the body of a query matching all the filters, in filter context so the hits are not scored.
+     */
+    static JsonObject buildQuery(JsonArray filters) {
+        JsonObject bool = new JsonObject();
+        bool.add("filter", filters);
+        JsonObject query = new JsonObject();
+        query.add("bool", bool);
+        JsonObject body = new JsonObject();
+        body.add("query", query);
+        return body;
+    }
+
     /**
      * Resolve TSDR data category from the String.
      */
@@ -421,31 +570,95 @@ public class ElasticSearchStore extends AbstractScheduledService implements Auto
         checkNotNull(category);
         checkState(isRunning(), "The service is not running");
 
-        String query = String.format(
-                ElasticSearchStore.ELK_QUERY,
-                category,
-                0,
-                Math.min(timestamp - 1, 9999999999999L));
-        executeAsync(new DeleteByQuery.Builder(query).addIndex(INDEX).build());
+        DeleteByQuery.Builder delete = new DeleteByQuery.Builder(buildDeleteQuery(category, timestamp))
+                .setParameter("ignore_unavailable", true)
+                .setParameter("allow_no_indices", true);
+        for (RecordType type : RecordType.values()) {
+            delete.addIndex(ElasticSearchIndices.getPattern(type));
+        }
+        if (legacyIndex) {
+            delete.addIndex(INDEX);
+        }
+        executeAsync(delete.build());
     }
 
     /**
-     * Returns a copy of {@link TSDRRecord} batch which will be synced to the data store.
+     * Deletes all records older than the retention timestamp, by dropping the indices holding only older records.
+     * The records of the index which also holds newer records are kept until the index expires as a whole.
+     * An {@link IllegalStateException} is thrown if this service is not running.
      */
-    List<TSDRRecord> getBatch() {
-        batchLock.lock();
-        try {
-            return Lists.newArrayList(batch);
-        } finally {
-            batchLock.unlock();
+    void deleteAll(long timestamp) {
+        checkState(isRunning(), "The service is not running");
+
+        for (RecordType type : RecordType.values()) {
+            JestResult result = execute(new GetAliases.Builder()
+                    .addIndex(ElasticSearchIndices.getPattern(type)).build());
+            if (result == null || !result.isSucceeded() || result.getJsonObject() == null) {
+                continue;
+            }
+            for (Map.Entry<String, JsonElement> index : result.getJsonObject().entrySet()) {
+                if (ElasticSearchIndices.isExpired(type, index.getKey(), timestamp)) {
+                    LOGGER.info("Dropping the expired index {}", index.getKey());
+                    execute(new DeleteIndex.Builder(index.getKey()).build());
+                }
+            }
+        }
+
+        if (legacyIndex) {
+            for (DataCategory category : DataCategory.values()) {
+                executeAsync(new DeleteByQuery.Builder(buildDeleteQuery(category, timestamp)).addIndex(INDEX).build());
+            }
         }
     }
 
+    private static String buildDeleteQuery(DataCategory category, long timestamp) {
+        JsonArray filters = new JsonArray();
+        addTerm(filters, ElasticSearchRecordCodec.ELK_DATA_CATEGORY, category.name());
+        filters.add(range(ElasticSearchRecordCodec.ELK_TIMESTAMP, 0L, Math.min(timestamp - 1, MAX_TIMESTAMP)));
+        return buildQuery(filters).toString();
+    }
+
+    /**
+     * Returns a copy of the stored {@link TSDRRecord}s which are not indexed in the data store yet.
+     */
+    List<TSDRRecord> getBatch() {
+        return bulkProcessor.getPending();
+    }
+
     /**
      * Built a client configuration also base on properties file.
      */
     private HttpClientConfig buildClientConfig() throws IOException {
-        GsonBuilder gson = new GsonBuilder()
+        String serverUrl = properties.get("serverUrl");
+        HttpClientConfig.Builder configBuilder = new HttpClientConfig
+                .Builder(serverUrl)
+                .multiThreaded(true)
+                .gson(gson);
+
+        if (Boolean.valueOf(properties.get("requestCompression"))) {
+            configBuilder.requestCompressionEnabled(true);
+        }
+
+        if (Boolean.valueOf(properties.get("nodeDiscovery"))) {
+            configBuilder.discoveryEnabled(true).discoveryFrequency(1L, TimeUnit.MINUTES);
+        }
+
+        String username = properties.get("username");
+        String password = properties.get("password");
+        if (!Strings.isNullOrEmpty(username) && !Strings.isNullOrEmpty(password)) {
+            configBuilder.defaultCredentials(username, password);
+        }
+
+        return configBuilder.build();
+    }
+
+    /**
+     * Create the {@link Gson} of the client. The records were serialized with it before
+     * {@link ElasticSearchRecordCodec}, it is kept with the same field naming for compatibility.
+     */
+    @VisibleForTesting
+    static Gson createGson() {
+        return new GsonBuilder()
                 .setFieldNamingStrategy(field -> {
                     String name = FieldNamingPolicy.UPPER_CAMEL_CASE.translateName(field);
                     if (name.startsWith("_")) {
@@ -464,44 +677,19 @@ public class ElasticSearchStore extends AbstractScheduledService implements Auto
                     public boolean shouldSkipClass(Class<?> clazz) {
                         return false;
                     }
-                });
-
-        String serverUrl = properties.get("serverUrl");
-        HttpClientConfig.Builder configBuilder = new HttpClientConfig
-                .Builder(serverUrl)
-                .multiThreaded(true)
-                .gson(gson.create());
-
-        if (Boolean.valueOf(properties.get("nodeDiscovery"))) {
-            configBuilder.discoveryEnabled(true).discoveryFrequency(1L, TimeUnit.MINUTES);
-        }
-
-        String username = properties.get("username");
-        String password = properties.get("password");
-        if (!Strings.isNullOrEmpty(username) && !Strings.isNullOrEmpty(password)) {
-            configBuilder.defaultCredentials(username, password);
-        }
-
-        return configBuilder.build();
+                })
+                .create();
     }
 
     /**
-     * Setup elasticsearch data storage index, related types, and mappings.
+     * Setup elasticsearch data storage index templates, which carry the mappings of the types.
      */
     private void setupStorage(boolean indexExists) throws IOException {
-        // Create an index if it doesn't exist.
-        if (!indexExists) {
-            execute(new CreateIndex.Builder(INDEX).build());
-        }
+        legacyIndex = indexExists;
 
-        // Setup mappings for types.
         for (RecordType type : RecordType.values()) {
-            if (!Strings.isNullOrEmpty(type.mapping)) {
-                execute(new PutMapping.Builder(
-                        INDEX,
-                        type.name,
-                        type.mapping).build());
-            }
+            execute(new PutTemplate.Builder(ElasticSearchIndices.getAlias(type),
+                    ElasticSearchIndices.getTemplate(type)).build());
         }
     }
 
@@ -545,22 +733,23 @@ public class ElasticSearchStore extends AbstractScheduledService implements Auto
      */
     @Override
     protected void shutDown() throws Exception {
-        sync();
+        bulkProcessor.close();
         if (client != null) {
             client.shutdownClient();
         }
     }
 
     /**
-     * Periodically synchronize the {@link #batch} to the elasticsearch data store.
+     * Periodically send the stored records to the elasticsearch data store.
      */
     @Override
     protected void runOneIteration() throws Exception {
-        sync();
+        bulkProcessor.flush();
+        bulkProcessor.report();
     }
 
     /**
-     * Returns a scheduler which will periodically trigger the {@link #sync()} method to run.
+     * Returns a scheduler which will periodically trigger the {@link #runOneIteration()} method to run.
      */
     @Override
     protected Scheduler scheduler() {
@@ -16,11 +16,13 @@ import javax.inject.Inject;
 import javax.inject.Singleton;
 import org.opendaylight.tsdr.persistence.elasticsearch.ElasticSearchStore.RecordType;
 import org.opendaylight.tsdr.spi.model.TSDRConstants;
+import org.opendaylight.tsdr.spi.persistence.AggregatingMetricPersistenceService;
 import org.opendaylight.tsdr.spi.persistence.TSDRBinaryPersistenceService;
 import org.opendaylight.tsdr.spi.persistence.TSDRLogPersistenceService;
 import org.opendaylight.tsdr.spi.persistence.TSDRMetricPersistenceService;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data.rev160325.storetsdrbinaryrecord.input.TSDRBinaryRecord;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.AggregationType;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.TSDRRecord;
@@ -34,7 +36,7 @@ import org.slf4j.LoggerFactory;
  */
 @Singleton
 public class TsdrElasticSearchPersistenceServiceImpl implements TSDRMetricPersistenceService, TSDRLogPersistenceService,
-        TSDRBinaryPersistenceService {
+        TSDRBinaryPersistenceService, AggregatingMetricPersistenceService {
     private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
     private final ElasticSearchStore store;
@@ -89,6 +91,23 @@ public class TsdrElasticSearchPersistenceServiceImpl implements TSDRMetricPersis
         return getTSDRRecords(RecordType.METRIC, key, start, end);
     }
 
+    @Override
+    public boolean isAggregationSupported(AggregationType aggregation) {
+        return aggregation == AggregationType.MIN || aggregation == AggregationType.MAX
+                || aggregation == AggregationType.MEAN;
+    }
+
+    @Override
+    public List<Bucket> getTSDRAggregatedMetrics(String key, long start, long end, long interval,
+            AggregationType aggregation) {
+        try {
+            return store.aggregate(key, start, end, interval, aggregation);
+        } catch (IllegalStateException ise) {
+            LOGGER.error("Cannot aggregate the records", ise);
+        }
+        return null;
+    }
+
     @Override
     public void storeLog(TSDRLogRecord logRecord) {
         store(logRecord);
@@ -121,9 +140,11 @@ public class TsdrElasticSearchPersistenceServiceImpl implements TSDRMetricPersis
 
     @Override
     public void purge(long timestamp) {
-        // TODO: rewrite this to a more effective version, by using one bulk delete instead of several separate calls.
-        for (DataCategory category : DataCategory.values()) {
-            purge(category, timestamp);
+        LOGGER.info("Purging all data earlier than {}.", new Date(timestamp));
+        try {
+            store.deleteAll(timestamp);
+        } catch (IllegalStateException iae) {
+            LOGGER.error("Cannot purge the records: {}", iae);
         }
     }
 
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.elasticsearch;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.Gson;
+import com.google.gson.JsonParser;
+import io.searchbox.core.Bulk;
+import io.searchbox.core.BulkResult;
+import io.searchbox.core.Index;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+import org.opendaylight.tsdr.spi.util.TsdrRecordFactory;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
+
+/**
+ * Test the bulk requests sent by {@link ElasticSearchBulkProcessor}.
+ */
+public class ElasticSearchBulkProcessorTest {
+    private static final Map<String, String> PROPERTIES = ImmutableMap.of(
+            ElasticSearchBulkProcessor.BULK_ACTIONS_PROP, "2",
+            ElasticSearchBulkProcessor.BULK_CONCURRENT_REQUESTS_PROP, "1",
+            ElasticSearchBulkProcessor.BULK_QUEUE_CAPACITY_PROP, "2",
+            ElasticSearchBulkProcessor.BULK_OFFER_TIMEOUT_PROP, "10");
+
+    private final BlockingQueue<Bulk> requests = new LinkedBlockingQueue<>();
+    private final BlockingQueue<BulkResult> results = new LinkedBlockingQueue<>();
+    private final ElasticSearchBulkProcessor processor = new ElasticSearchBulkProcessor(PROPERTIES, bulk -> {
+        requests.add(bulk);
+        return results.poll();
+    });
+
+    @After
+    public void after() {
+        processor.close(1L, TimeUnit.SECONDS);
+    }
+
+    private static ElasticSearchBulkProcessor.Document document(TSDRMetricRecord record) {
+        String source = new Gson().toJson(record);
+        return new ElasticSearchBulkProcessor.Document(record,
+                new Index.Builder(source).index("tsdr").type("metric").build(), source.length());
+    }
+
+    private static BulkResult bulkResult(int... statuses) {
+        StringBuilder json = new StringBuilder("{\"errors\": true, \"items\": [");
+        for (int i = 0; i < statuses.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"index\": {\"_index\": \"tsdr\", \"_type\": \"metric\", \"_id\": \"").append(i)
+                    .append("\", \"status\": ").append(statuses[i]);
+            if (statuses[i] >= 300) {
+                json.append(", \"error\": \"rejected\"");
+            }
+            json.append("}}");
+        }
+        json.append("]}");
+
+        BulkResult result = new BulkResult(new Gson());
+        result.setJsonString(json.toString());
+        result.setJsonObject(new JsonParser().parse(json.toString()).getAsJsonObject());
+        result.setSucceeded(false);
+        return result;
+    }
+
+    @Test
+    public void sendOnBulkActions() throws Exception {
+        TSDRMetricRecord record = TsdrRecordFactory.createMetricRecord();
+        results.add(bulkResult(201, 201));
+
+        assertThat(processor.add(document(record))).isTrue();
+        assertThat(requests).isEmpty();
+        assertThat(processor.getPending()).containsExactly(record);
+
+        assertThat(processor.add(document(record))).isTrue();
+        assertThat(requests.poll(1L, TimeUnit.SECONDS)).isNotNull();
+        waitFor(() -> processor.getIndexedCount() == 2);
+        assertThat(processor.getPending()).isEmpty();
+    }
+
+    @Test
+    public void retryRejectedAndDropFailed() throws Exception {
+        TSDRMetricRecord rejected = TsdrRecordFactory.createMetricRecord();
+        TSDRMetricRecord invalid = TsdrRecordFactory.createMetricRecord();
+        // The first document is rejected because the data store is busy, the second one cannot be indexed
+        results.add(bulkResult(429, 400));
+        results.add(bulkResult(201));
+
+        processor.add(document(rejected));
+        processor.add(document(invalid));
+        waitFor(() -> processor.getIndexedCount() == 1);
+
+        assertThat(requests).hasSize(2);
+        assertThat(processor.getRetriedCount()).isEqualTo(1);
+        assertThat(processor.getFailedCount()).isEqualTo(1);
+        assertThat(processor.getPending()).isEmpty();
+    }
+
+    @Test
+    public void keepRecordsUntilIndexed() throws Exception {
+        // The data store is not reachable, the records are kept and the callers run out of capacity.
+        TSDRMetricRecord record = TsdrRecordFactory.createMetricRecord();
+        processor.add(document(record));
+        processor.add(document(record));
+        assertThat(requests.poll(1L, TimeUnit.SECONDS)).isNotNull();
+
+        assertThat(processor.add(document(record))).isFalse();
+        assertThat(processor.getDroppedCount()).isEqualTo(1);
+        assertThat(processor.getPending()).hasSize(2);
+
+        // The data store is back, the records are indexed and there is capacity again.
+        results.add(bulkResult(201, 201));
+        waitFor(() -> processor.getIndexedCount() == 2);
+        assertThat(processor.add(document(record))).isTrue();
+    }
+
+    @Test
+    public void dropOnClose() throws Exception {
+        processor.add(document(TsdrRecordFactory.createMetricRecord()));
+        processor.close(1L, TimeUnit.SECONDS);
+        assertThat(requests).hasSize(1);
+        assertThat(processor.getFailedCount()).isEqualTo(1);
+        assertThat(processor.getPending()).isEmpty();
+    }
+
+    @Test
+    public void shareTheOfferTimeoutOfACall() throws Exception {
+        ElasticSearchBulkProcessor slowProcessor = new ElasticSearchBulkProcessor(ImmutableMap.of(
+                ElasticSearchBulkProcessor.BULK_ACTIONS_PROP, "2",
+                ElasticSearchBulkProcessor.BULK_QUEUE_CAPACITY_PROP, "2",
+                ElasticSearchBulkProcessor.BULK_OFFER_TIMEOUT_PROP, "200"), bulk -> null);
+        try {
+            TSDRMetricRecord record = TsdrRecordFactory.createMetricRecord();
+            long deadline = slowProcessor.newOfferDeadline();
+            long start = System.nanoTime();
+            for (int i = 0; i < 10; i++) {
+                slowProcessor.add(document(record), deadline);
+            }
+
+            // The records which found no capacity waited for 200 milliseconds in all, not for 200 each
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1000L);
+            assertThat(slowProcessor.getDroppedCount()).isEqualTo(8);
+        } finally {
+            slowProcessor.close(0L, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void dropAfterMaxRetries() throws Exception {
+        ElasticSearchBulkProcessor retryingProcessor = new ElasticSearchBulkProcessor(ImmutableMap.of(
+                ElasticSearchBulkProcessor.BULK_ACTIONS_PROP, "1",
+                ElasticSearchBulkProcessor.BULK_MAX_RETRIES_PROP, "1"), bulk -> {
+                    requests.add(bulk);
+                    return null;
+                });
+        try {
+            // The whole request fails, it is sent once again then dropped
+            retryingProcessor.add(document(TsdrRecordFactory.createMetricRecord()));
+            waitFor(() -> retryingProcessor.getFailedCount() == 1);
+            assertThat(requests).hasSize(2);
+            assertThat(retryingProcessor.getPending()).isEmpty();
+        } finally {
+            retryingProcessor.close(0L, TimeUnit.SECONDS);
+        }
+    }
+
+    private static void waitFor(Condition condition) throws InterruptedException {
+        for (int i = 0; i < 200 && !condition.isMet(); i++) {
+            TimeUnit.MILLISECONDS.sleep(50L);
+        }
+        assertThat(condition.isMet()).isTrue();
+    }
+
+    @FunctionalInterface
+    private interface Condition {
+        boolean isMet();
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.elasticsearch;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import org.junit.Test;
+import org.opendaylight.tsdr.persistence.elasticsearch.ElasticSearchIndices.Rollover;
+import org.opendaylight.tsdr.persistence.elasticsearch.ElasticSearchStore.RecordType;
+
+/**
+ * Test the names of the time based indices given by {@link ElasticSearchIndices}.
+ */
+public class ElasticSearchIndicesTest {
+    // Wednesday 2018-10-17T12:00:00Z
+    private static final long TIMESTAMP = ZonedDateTime.of(2018, 10, 17, 12, 0, 0, 0, ZoneOffset.UTC)
+            .toInstant().toEpochMilli();
+    private static final long DAY = 24 * 3600 * 1000L;
+
+    private final ElasticSearchIndices daily = new ElasticSearchIndices(Rollover.DAILY);
+    private final ElasticSearchIndices weekly = new ElasticSearchIndices(Rollover.WEEKLY);
+
+    @Test
+    public void parseRollover() {
+        assertThat(ElasticSearchIndices.parseRollover(null)).isEqualTo(Rollover.DAILY);
+        assertThat(ElasticSearchIndices.parseRollover(" weekly ")).isEqualTo(Rollover.WEEKLY);
+        assertThat(ElasticSearchIndices.parseRollover("monthly")).isEqualTo(Rollover.DAILY);
+    }
+
+    @Test
+    public void getIndex() {
+        assertThat(daily.getIndex(RecordType.METRIC, TIMESTAMP)).isEqualTo("tsdr-metric-2018.10.17");
+        assertThat(weekly.getIndex(RecordType.LOG, TIMESTAMP)).isEqualTo("tsdr-log-2018.w42");
+        // The week of 2018-12-31 belongs to 2019
+        assertThat(weekly.getIndex(RecordType.BINARY, TIMESTAMP + 75 * DAY)).isEqualTo("tsdr-binary-2019.w01");
+    }
+
+    @Test
+    public void getIndices() {
+        assertThat(daily.getIndices(RecordType.METRIC, TIMESTAMP - DAY, TIMESTAMP)).containsExactly(
+                "tsdr-metric-2018.10.16", "tsdr-metric-2018.10.17").inOrder();
+        assertThat(weekly.getIndices(RecordType.METRIC, TIMESTAMP - 7 * DAY, TIMESTAMP)).containsExactly(
+                "tsdr-metric-2018.w41", "tsdr-metric-2018.w42").inOrder();
+
+        // Too many indices, the alias is searched
+        assertThat(daily.getIndices(RecordType.METRIC, 0L, TIMESTAMP)).containsExactly("tsdr-metric");
+        assertThat(daily.getIndices(RecordType.METRIC, TIMESTAMP - ElasticSearchIndices.MAX_SEARCH_INDICES * DAY,
+                TIMESTAMP)).containsExactly("tsdr-metric");
+    }
+
+    @Test
+    public void isExpired() {
+        assertThat(ElasticSearchIndices.isExpired(RecordType.METRIC, "tsdr-metric-2018.10.16", TIMESTAMP)).isTrue();
+        assertThat(ElasticSearchIndices.isExpired(RecordType.METRIC, "tsdr-metric-2018.10.17", TIMESTAMP)).isFalse();
+        assertThat(ElasticSearchIndices.isExpired(RecordType.METRIC, "tsdr-metric-2018.w41", TIMESTAMP)).isTrue();
+        assertThat(ElasticSearchIndices.isExpired(RecordType.METRIC, "tsdr-metric-2018.w42", TIMESTAMP)).isFalse();
+        assertThat(ElasticSearchIndices.isExpired(RecordType.LOG, "tsdr-metric-2018.10.16", TIMESTAMP)).isFalse();
+        assertThat(ElasticSearchIndices.isExpired(RecordType.METRIC, "tsdr", TIMESTAMP)).isFalse();
+        assertThat(ElasticSearchIndices.isExpired(RecordType.METRIC, "tsdr-metric-old", TIMESTAMP)).isFalse();
+    }
+
+    @Test
+    public void getTemplate() {
+        JsonObject template = new JsonParser().parse(ElasticSearchIndices.getTemplate(RecordType.METRIC))
+                .getAsJsonObject();
+        assertThat(template.get("template").getAsString()).isEqualTo("tsdr-metric-*");
+        assertThat(template.getAsJsonObject("aliases").has("tsdr-metric")).isTrue();
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.elasticsearch;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.util.concurrent.TimeUnit;
+import org.opendaylight.tsdr.spi.util.TsdrRecordFactory;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.TSDRRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the encoding of the records by {@link ElasticSearchRecordCodec} with their reflective serialization by
+ * Gson, which was used before. It is not run with the unit tests, but from the test class path with its main method.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ElasticSearchRecordCodecBenchmark {
+    private Gson gson;
+    private TSDRMetricRecord metric;
+    private TSDRLogRecord log;
+    private JsonObject metricDocument;
+
+    @Setup
+    public void setup() {
+        gson = ElasticSearchStore.createGson();
+        metric = TsdrRecordFactory.createMetricRecord();
+        log = TsdrRecordFactory.createLogRecord();
+        metricDocument = new JsonParser().parse(ElasticSearchRecordCodec.encode(metric)).getAsJsonObject();
+    }
+
+    @Benchmark
+    public String encodeMetricWithGson() {
+        return gson.toJson(metric);
+    }
+
+    @Benchmark
+    public String encodeMetric() {
+        return ElasticSearchRecordCodec.encode(metric);
+    }
+
+    @Benchmark
+    public String encodeLogWithGson() {
+        return gson.toJson(log);
+    }
+
+    @Benchmark
+    public String encodeLog() {
+        return ElasticSearchRecordCodec.encode(log);
+    }
+
+    @Benchmark
+    public TSDRRecord decodeMetric() {
+        return ElasticSearchRecordCodec.decode(ElasticSearchStore.RecordType.METRIC, metricDocument);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ElasticSearchRecordCodecBenchmark.class.getSimpleName()).build())
+                .run();
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2016 Frinx s.r.o. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.opendaylight.tsdr.persistence.elasticsearch;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.Lists;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import org.opendaylight.tsdr.spi.util.TsdrRecordFactory;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data.rev160325.storetsdrbinaryrecord.input.TSDRBinaryRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data.rev160325.storetsdrbinaryrecord.input.TSDRBinaryRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.tsdrlog.RecordAttributesBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.TSDRRecord;
+
+/**
+ * Test the conversion of the records to and from JSON documents by {@link ElasticSearchRecordCodec}.
+ *
+ * @author Lukas Beles(lbeles@frinx.io)
+ */
+public class ElasticSearchRecordCodecTest {
+
+    private static JsonObject parse(String json) {
+        return new JsonParser().parse(json).getAsJsonObject();
+    }
+
+    /**
+     * Test conversion of Metric Record.
+     */
+    @Test
+    public void metricRecord() throws Exception {
+        TSDRMetricRecord expected = TsdrRecordFactory.createMetricRecord();
+        TSDRRecord record = ElasticSearchRecordCodec.decode(ElasticSearchStore.RecordType.METRIC,
+                parse(ElasticSearchRecordCodec.encode(expected)));
+        assertThat(record).isInstanceOf(TSDRMetricRecord.class);
+
+        TSDRMetricRecord mr = (TSDRMetricRecord) record;
+        assertThat(mr.getNodeID()).isEqualTo(expected.getNodeID());
+        assertThat(mr.getTimeStamp()).isEqualTo(expected.getTimeStamp());
+        assertThat(mr.getTSDRDataCategory()).isEqualTo(expected.getTSDRDataCategory());
+        assertThat(mr.getMetricName()).isEqualTo(expected.getMetricName());
+        assertThat(mr.getMetricValue()).isEqualTo(expected.getMetricValue());
+        assertThat(mr.getRecordKeys()).hasSize(1);
+        assertThat(mr.getRecordKeys().get(0).getKeyName()).isEqualTo("TestRKName");
+        assertThat(mr.getRecordKeys().get(0).getKeyValue()).isEqualTo("TestRKValue");
+    }
+
+    /**
+     * Test conversion of Log Record, with characters to escape.
+     */
+    @Test
+    public void logRecord() throws Exception {
+        TSDRLogRecord expected = new TSDRLogRecordBuilder(TsdrRecordFactory.createLogRecord())
+                .setIndex(1)
+                .setRecordFullText("Test \"Text\"\twith\\escapes\n\u0001 ")
+                .setRecordAttributes(Lists.newArrayList(new RecordAttributesBuilder()
+                        .setName("TestRAName")
+                        .setValue("TestRAValue")
+                        .build()))
+                .build();
+        TSDRRecord record = ElasticSearchRecordCodec.decode(ElasticSearchStore.RecordType.LOG,
+                parse(ElasticSearchRecordCodec.encode(expected)));
+        assertThat(record).isInstanceOf(TSDRLogRecord.class);
+
+        TSDRLogRecord lr = (TSDRLogRecord) record;
+        assertThat(lr.getNodeID()).isEqualTo(expected.getNodeID());
+        assertThat(lr.getTimeStamp()).isEqualTo(expected.getTimeStamp());
+        assertThat(lr.getTSDRDataCategory()).isEqualTo(expected.getTSDRDataCategory());
+        assertThat(lr.getIndex()).isEqualTo(1);
+        assertThat(lr.getRecordFullText()).isEqualTo(expected.getRecordFullText());
+        assertThat(lr.getRecordAttributes()).hasSize(1);
+        assertThat(lr.getRecordAttributes().get(0).getName()).isEqualTo("TestRAName");
+        assertThat(lr.getRecordAttributes().get(0).getValue()).isEqualTo("TestRAValue");
+        assertThat(lr.getRecordKeys()).hasSize(1);
+        assertThat(lr.getRecordKeys().get(0).getKeyName()).isEqualTo("TestRKName");
+        assertThat(lr.getRecordKeys().get(0).getKeyValue()).isEqualTo("TestRKValue");
+    }
+
+    /**
+     * Test conversion of Binary Record.
+     */
+    @Test
+    public void binaryRecord() throws Exception {
+        TSDRBinaryRecord expected = new TSDRBinaryRecordBuilder(TsdrRecordFactory.createBinaryRecord())
+                .setIndex(1)
+                .setData(new byte[] {-128, 0, 127})
+                .setRecordAttributes(Lists.newArrayList(new org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data
+                            .rev160325.tsdrbinary.RecordAttributesBuilder()
+                        .setName("TestRAName")
+                        .setValue("TestRAValue")
+                        .build()))
+                .build();
+        TSDRRecord record = ElasticSearchRecordCodec.decode(ElasticSearchStore.RecordType.BINARY,
+                parse(ElasticSearchRecordCodec.encode(expected)));
+        assertThat(record).isInstanceOf(TSDRBinaryRecord.class);
+
+        TSDRBinaryRecord br = (TSDRBinaryRecord) record;
+        assertThat(br.getNodeID()).isEqualTo(expected.getNodeID());
+        assertThat(br.getTimeStamp()).isEqualTo(expected.getTimeStamp());
+        assertThat(br.getTSDRDataCategory()).isEqualTo(expected.getTSDRDataCategory());
+        assertThat(br.getIndex()).isEqualTo(1);
+        assertThat(br.getData()).isEqualTo(expected.getData());
+        assertThat(br.getRecordAttributes()).hasSize(1);
+        assertThat(br.getRecordAttributes().get(0).getName()).isEqualTo("TestRAName");
+        assertThat(br.getRecordAttributes().get(0).getValue()).isEqualTo("TestRAValue");
+        assertThat(br.getRecordKeys()).hasSize(1);
+    }
+
+    /**
+     * Test the documents serialized by Gson before are still read, and match the new ones.
+     */
+    @Test
+    public void gsonDocument() throws Exception {
+        TSDRMetricRecord metric = TsdrRecordFactory.createMetricRecord();
+        JsonObject gsonDocument = parse(ElasticSearchStore.createGson().toJson(metric));
+        JsonObject document = parse(ElasticSearchRecordCodec.encode(metric));
+        for (String field : new String[] {ElasticSearchRecordCodec.ELK_NODE_ID,
+                ElasticSearchRecordCodec.ELK_DATA_CATEGORY, ElasticSearchRecordCodec.ELK_TIMESTAMP,
+                ElasticSearchRecordCodec.ELK_METRIC_NAME, ElasticSearchRecordCodec.ELK_METRIC_VALUE}) {
+            assertThat(gsonDocument.get(field)).isEqualTo(document.get(field));
+        }
+        TSDRMetricRecord decoded = (TSDRMetricRecord) ElasticSearchRecordCodec.decode(
+                ElasticSearchStore.RecordType.METRIC, gsonDocument);
+        assertThat(decoded.getMetricValue()).isEqualTo(metric.getMetricValue());
+        assertThat(decoded.getTSDRDataCategory()).isEqualTo(metric.getTSDRDataCategory());
+
+        TSDRBinaryRecord binary = new TSDRBinaryRecordBuilder(TsdrRecordFactory.createBinaryRecord())
+                .setData("Test Data".getBytes(StandardCharsets.UTF_8)).build();
+        TSDRBinaryRecord decodedBinary = (TSDRBinaryRecord) ElasticSearchRecordCodec.decode(
+                ElasticSearchStore.RecordType.BINARY, parse(ElasticSearchStore.createGson().toJson(binary)));
+        assertThat(decodedBinary.getData()).isEqualTo(binary.getData());
+    }
+
+    /**
+     * Test the missing fields are left unset.
+     */
+    @Test
+    public void missingFields() throws Exception {
+        TSDRMetricRecord record = (TSDRMetricRecord) ElasticSearchRecordCodec.decode(
+                ElasticSearchStore.RecordType.METRIC, parse("{\"MetricValue\": 1.5, \"TSDRDataCategory\": \"?\"}"));
+        assertThat(record.getMetricValue()).isEqualTo(new BigDecimal("1.5"));
+        assertThat(record.getTSDRDataCategory()).isNull();
+        assertThat(record.getRecordKeys()).isNull();
+        assertThat(ElasticSearchRecordCodec.encode(record)).isEqualTo("{\"MetricValue\":1.5}");
+    }
+}
@@ -14,25 +14,37 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.Service;
 import com.google.gson.Gson;
+import com.google.gson.JsonParser;
+import io.searchbox.action.Action;
 import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
 import io.searchbox.client.JestResultHandler;
 import io.searchbox.core.Bulk;
 import io.searchbox.core.BulkResult;
+import io.searchbox.core.ClearScroll;
 import io.searchbox.core.DeleteByQuery;
 import io.searchbox.core.Search;
 import io.searchbox.core.SearchResult;
+import io.searchbox.core.SearchScroll;
+import io.searchbox.indices.DeleteIndex;
+import io.searchbox.indices.aliases.GetAliases;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.opendaylight.tsdr.spi.persistence.AggregatingMetricPersistenceService.Bucket;
+import org.opendaylight.tsdr.spi.util.TsdrRecordFactory;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data.rev160325.storetsdrbinaryrecord.input.TSDRBinaryRecord;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.AggregationType;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.TSDRRecord;
@@ -49,7 +61,8 @@ public class ElasticSearchStoreTest {
     private static final Map<String, String> PROPERTIES = ImmutableMap.of(
             "startTimeout", "1",
             "stopTimeout", "1",
-            "syncInterval", "1");
+            "syncInterval", "1",
+            ElasticSearchStore.SEARCH_PAGE_SIZE_PROP, "2");
     private static final JestClient CLIENT = Mockito.mock(JestClient.class);
 
     private static ElasticSearchStore store;
@@ -167,84 +180,136 @@ public class ElasticSearchStoreTest {
     }
 
     /**
-     * Test appendCondition method. Test all possible ways of the condition.
+     * Test search method, where the hits come back in several pages. Verify whether the pages after the first one
+     * are fetched with the scroll, which is cleared once the search ends.
      */
     @Test
-    public void appendCondition() throws Exception {
-        StringBuffer buffer = new StringBuffer();
-
-        store.appendCondition(buffer, "empty1", null);
-        assertThat(buffer.toString()).isEqualTo("");
-
-        store.appendCondition(buffer, "empty2", null);
-        assertThat(buffer.toString()).isEqualTo("");
-
-        store.appendCondition(buffer, "field1", "value1");
-        assertThat(buffer.toString()).isEqualTo("field1:\\\"value1\\\"");
-
-        store.appendCondition(buffer, "field2", "value2");
-        assertThat(buffer.toString()).isEqualTo("field1:\\\"value1\\\" AND field2:\\\"value2\\\"");
+    @SuppressWarnings("rawtypes")
+    public void searchPages() throws Exception {
+        Mockito.reset(CLIENT);
+        Mockito.doReturn(searchResult(1L, 2L)).when(CLIENT).execute(Mockito.isA(Search.class));
+        Mockito.doReturn(searchResult(3L), searchResult()).when(CLIENT).execute(Mockito.isA(SearchScroll.class));
+        List<TSDRMetricRecord> result = store.search(
+                ElasticSearchStore.RecordType.METRIC,
+                "[NID=node][DC=EXTERNAL][MN=PacketCount][RK=]",
+                0L,
+                10L,
+                10);
+        assertThat(result.stream().map(TSDRMetricRecord::getTimeStamp).collect(Collectors.toList()))
+                .containsExactly(1L, 2L, 3L).inOrder();
+
+        ArgumentCaptor<Action> captor = ArgumentCaptor.forClass(Action.class);
+        Mockito.verify(CLIENT, Mockito.atLeastOnce()).execute(captor.capture());
+        List<String> searches = captor.getAllValues().stream().filter(Search.class::isInstance)
+                .map(action -> action.getData(new Gson())).collect(Collectors.toList());
+        assertThat(searches).hasSize(1);
+        assertThat(searches.get(0)).contains("\"size\":2");
+        assertThat(searches.get(0)).doesNotContain("\"from\"");
+        Mockito.verify(CLIENT, Mockito.times(2)).execute(Mockito.isA(SearchScroll.class));
+        Mockito.verify(CLIENT).execute(Mockito.isA(ClearScroll.class));
     }
 
     /**
-     * Test of building query String for Binary request.
+     * Test aggregate method. Verify whether the buckets of the date histogram are returned.
      */
     @Test
-    public void buildQueryStringOfBinary() throws Exception {
-        String result = store.buildQueryString(ElasticSearchStore.RecordType.BINARY, "FLOWSTATS");
-        assertThat(result.contains(TsdrRecordPayload.ELK_DATA_CATEGORY + ":\\\"FLOWSTATS\\\"")).isTrue();
-
-        result = store.buildQueryString(ElasticSearchStore.RecordType.BINARY, "[NID=][DC=FLOWSTATS][RK=][MN=]");
-        assertThat(result.contains(TsdrRecordPayload.ELK_DATA_CATEGORY + ":\\\"FLOWSTATS\\\"")).isTrue();
+    public void aggregate() throws Exception {
+        String json = "{\"hits\": {\"total\": 3, \"hits\": []}, \"aggregations\": {\"intervals\": {\"buckets\": ["
+                + "{\"key\": 0, \"doc_count\": 2, \"value\": {\"value\": 130.0}}, "
+                + "{\"key\": 4, \"doc_count\": 1, \"value\": {\"value\": 108.0}}]}}}";
+        SearchResult result = new SearchResult(new Gson());
+        result.setJsonString(json);
+        result.setJsonObject(new JsonParser().parse(json).getAsJsonObject());
+        result.setSucceeded(true);
+        Mockito.doReturn(result).when(CLIENT).execute(Mockito.any(Search.class));
+
+        List<Bucket> buckets = store.aggregate("[NID=node][DC=EXTERNAL][MN=PacketCount][RK=]", 0L, 6L, 2L,
+                AggregationType.MAX);
+        assertThat(buckets).hasSize(2);
+        assertThat(buckets.get(0).getTimeStamp()).isEqualTo(0L);
+        assertThat(buckets.get(0).getCount()).isEqualTo(2L);
+        assertThat(buckets.get(1).getTimeStamp()).isEqualTo(4L);
+        assertThat(buckets.get(1).getValue().doubleValue()).isEqualTo(108.0);
+    }
 
-        result = store.buildQueryString(ElasticSearchStore.RecordType.BINARY,
-                "[NID=][DC=FLOWSTATS][RK=][MN=PacketCount]");
-        assertThat(result.contains(TsdrRecordPayload.ELK_DATA_CATEGORY + ":\\\"FLOWSTATS\\\"")).isTrue();
-        assertThat(result.contains("PacketCount")).isFalse();
+    private static SearchResult searchResult(long... timestamps) {
+        StringBuilder json = new StringBuilder("{\"hits\": {\"total\": 3, \"hits\": [");
+        for (int i = 0; i < timestamps.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"_index\": \"tsdr-metric-1970.01.01\", \"_type\": \"metric\", \"_id\": \"")
+                    .append(timestamps[i]).append("\", \"_source\": {\"MetricName\": \"PacketCount\", ")
+                    .append("\"NodeID\": \"node\", \"TimeStamp\": ").append(timestamps[i])
+                    .append("}}");
+        }
+        json.append("]}, \"_scroll_id\": \"scroll\"}");
+
+        SearchResult result = new SearchResult(new Gson());
+        result.setJsonString(json.toString());
+        result.setJsonObject(new JsonParser().parse(json.toString()).getAsJsonObject());
+        result.setSucceeded(true);
+        return result;
     }
 
     /**
-     * Test of building query String for Log request.
+     * Test of building the filters for Binary request.
      */
     @Test
-    public void buildQueryStringOfLog() throws Exception {
-        String result = store.buildQueryString(ElasticSearchStore.RecordType.LOG, "FLOWSTATS");
-        assertThat(result.contains(TsdrRecordPayload.ELK_DATA_CATEGORY + ":\\\"FLOWSTATS\\\"")).isTrue();
-
-        result = store.buildQueryString(ElasticSearchStore.RecordType.LOG, "[NID=][DC=FLOWSTATS][RK=][MN=]");
-        assertThat(result.contains(TsdrRecordPayload.ELK_DATA_CATEGORY + ":\\\"FLOWSTATS\\\"")).isTrue();
-
-        result = store.buildQueryString(ElasticSearchStore.RecordType.LOG, "[NID=][DC=FLOWSTATS][RK=][MN=PacketCount]");
-        assertThat(result.contains(TsdrRecordPayload.ELK_DATA_CATEGORY + ":\\\"FLOWSTATS\\\"")).isTrue();
-        assertThat(result.contains("PacketCount")).isFalse();
+    public void buildFiltersOfBinary() throws Exception {
+        String result = store.buildFilters(ElasticSearchStore.RecordType.BINARY, "FLOWSTATS").toString();
+        assertThat(result).isEqualTo("[" + term(ElasticSearchRecordCodec.ELK_DATA_CATEGORY, "FLOWSTATS") + "]");
+
+        result = store.buildFilters(ElasticSearchStore.RecordType.BINARY, "[NID=][DC=FLOWSTATS][RK=][MN=]")
+                .toString();
+        assertThat(result).isEqualTo("[" + term(ElasticSearchRecordCodec.ELK_DATA_CATEGORY, "FLOWSTATS") + "]");
+
+        result = store.buildFilters(ElasticSearchStore.RecordType.BINARY,
+                "[NID=][DC=FLOWSTATS][RK=][MN=PacketCount]").toString();
+        assertThat(result).contains(term(ElasticSearchRecordCodec.ELK_DATA_CATEGORY, "FLOWSTATS"));
+        assertThat(result).doesNotContain("PacketCount");
+    }
 
-        result = store.buildQueryString(ElasticSearchStore.RecordType.LOG, "[NID=][DC=FLOWSTATS][RK=][RA=key:value]");
-        assertThat(result.contains(TsdrRecordPayload.ELK_DATA_CATEGORY + ":\\\"FLOWSTATS\\\"")).isTrue();
-        assertThat(result.contains(TsdrRecordPayload.ELK_RA_KEY_NAME + ":\\\"key\\\"")).isTrue();
-        assertThat(result.contains(TsdrRecordPayload.ELK_RA_KEY_VALUE + ":\\\"value\\\"")).isTrue();
+    /**
+     * Test of building the filters for Log request.
+     */
+    @Test
+    public void buildFiltersOfLog() throws Exception {
+        String result = store.buildFilters(ElasticSearchStore.RecordType.LOG, "FLOWSTATS").toString();
+        assertThat(result).contains(term(ElasticSearchRecordCodec.ELK_DATA_CATEGORY, "FLOWSTATS"));
+
+        result = store.buildFilters(ElasticSearchStore.RecordType.LOG, "[NID=][DC=FLOWSTATS][RK=][MN=PacketCount]")
+                .toString();
+        assertThat(result).contains(term(ElasticSearchRecordCodec.ELK_DATA_CATEGORY, "FLOWSTATS"));
+        assertThat(result).doesNotContain("PacketCount");
+
+        result = store.buildFilters(ElasticSearchStore.RecordType.LOG, "[NID=][DC=FLOWSTATS][RK=][RA=key:value]")
+                .toString();
+        assertThat(result).contains(term(ElasticSearchRecordCodec.ELK_DATA_CATEGORY, "FLOWSTATS"));
+        assertThat(result).contains(term(ElasticSearchRecordCodec.ELK_RA_KEY_NAME, "key"));
+        assertThat(result).contains(term(ElasticSearchRecordCodec.ELK_RA_KEY_VALUE, "value"));
     }
 
     /**
-     * Test of building query String for Metric request.
+     * Test of building the filters for Metric request.
      */
     @Test
-    public void buildQueryStringOfMetric() throws Exception {
-        String result = store.buildQueryString(ElasticSearchStore.RecordType.METRIC, "FLOWSTATS");
-        assertThat(result.contains(TsdrRecordPayload.ELK_DATA_CATEGORY)).isTrue();
-        assertThat(result.contains(TsdrRecordPayload.ELK_DATA_CATEGORY + ":\\\"FLOWSTATS\\\"")).isTrue();
-
-        result = store.buildQueryString(ElasticSearchStore.RecordType.METRIC, "[NID=][DC=FLOWSTATS][RK=][MN=]");
-        assertThat(result.contains(TsdrRecordPayload.ELK_DATA_CATEGORY + ":\\\"FLOWSTATS\\\"")).isTrue();
-
-        result = store.buildQueryString(ElasticSearchStore.RecordType.METRIC,
-                "[NID=node][DC=FLOWSTATS][MN=PacketCount][RK=key:value]");
-        assertThat(result.contains(TsdrRecordPayload.ELK_DATA_CATEGORY + ":\\\"FLOWSTATS\\\"")).isTrue();
-        assertThat(result.contains(TsdrRecordPayload.ELK_METRIC_NAME + ":\\\"PacketCount\\\"")).isTrue();
-        assertThat(result.contains(TsdrRecordPayload.ELK_NODE_ID + ":\\\"node\\\"")).isTrue();
-        assertThat(result.contains(TsdrRecordPayload.ELK_RK_KEY_NAME + ":\\\"key\\\"")).isTrue();
-        assertThat(result.contains(TsdrRecordPayload.ELK_RK_KEY_VALUE + ":\\\"value\\\"")).isTrue();
+    public void buildFiltersOfMetric() throws Exception {
+        String result = store.buildFilters(ElasticSearchStore.RecordType.METRIC, "FLOWSTATS").toString();
+        assertThat(result).contains(term(ElasticSearchRecordCodec.ELK_DATA_CATEGORY, "FLOWSTATS"));
+
+        result = store.buildFilters(ElasticSearchStore.RecordType.METRIC,
+                "[NID=node][DC=FLOWSTATS][MN=PacketCount][RK=key:value]").toString();
+        assertThat(result).contains(term(ElasticSearchRecordCodec.ELK_DATA_CATEGORY, "FLOWSTATS"));
+        assertThat(result).contains(term(ElasticSearchRecordCodec.ELK_METRIC_NAME, "PacketCount"));
+        assertThat(result).contains(term(ElasticSearchRecordCodec.ELK_NODE_ID, "node"));
+        assertThat(result).contains(term(ElasticSearchRecordCodec.ELK_RK_KEY_NAME, "key"));
+        assertThat(result).contains(term(ElasticSearchRecordCodec.ELK_RK_KEY_VALUE, "value"));
     }
 
+    private static String term(String field, String value) {
+        return "{\"term\":{\"" + field + "\":\"" + value + "\"}}";
+    }
 
     /**
      * Test delete method. Verify whether method executeAsync of {@link JestClient} was called at least one.
@@ -258,6 +323,28 @@ public class ElasticSearchStoreTest {
                 Mockito.any(JestResultHandler.class));
     }
 
+    /**
+     * Test deleteAll method. Verify whether only the expired indices are dropped.
+     */
+    @Test
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public void deleteAll() throws Exception {
+        JestResult aliases = new JestResult(new Gson());
+        aliases.setJsonObject(new JsonParser().parse("{\"tsdr-metric-2018.10.16\": {\"aliases\": {}}, "
+                + "\"tsdr-metric-2018.10.17\": {\"aliases\": {}}}").getAsJsonObject());
+        aliases.setSucceeded(true);
+        Mockito.doReturn(aliases).when(CLIENT).execute(Mockito.any(GetAliases.class));
+
+        // 2018-10-17T12:00:00Z, the index of the 16th only holds older records.
+        store.deleteAll(1539777600000L);
+        ArgumentCaptor<Action> captor = ArgumentCaptor.forClass(Action.class);
+        Mockito.verify(CLIENT, Mockito.atLeastOnce()).execute(captor.capture());
+        List<String> dropped = captor.getAllValues().stream().filter(DeleteIndex.class::isInstance)
+                .map(Action::getURI).collect(Collectors.toList());
+        assertThat(dropped).hasSize(1);
+        assertThat(dropped.get(0)).contains("tsdr-metric-2018.10.16");
+    }
+
     /**
      * Test start and then stop service.
      */
@@ -273,6 +360,7 @@ public class ElasticSearchStoreTest {
 
     /**
      * Test store record and sync method. Verify whether method execute of {@link JestClient} was called at least one.
+     * The bulk requests are sent asynchronously.
      */
     @Test
     public void runOneIteration() throws Exception {
@@ -280,11 +368,13 @@ public class ElasticSearchStoreTest {
         Mockito.doReturn(null).when(CLIENT).execute(Mockito.any(Bulk.class));
         store.store(record);
         store.runOneIteration();
-        Mockito.verify(CLIENT, Mockito.atLeastOnce()).execute(Mockito.any(Bulk.class));
+        Mockito.verify(CLIENT, Mockito.timeout(1000).atLeastOnce()).execute(Mockito.any(Bulk.class));
         Mockito.doThrow(IOException.class).when(CLIENT).execute(Mockito.any(Bulk.class));
         store.store(record);
         store.runOneIteration();
-        Mockito.verify(CLIENT, Mockito.atLeastOnce()).execute(Mockito.any(Bulk.class));
+        Mockito.verify(CLIENT, Mockito.timeout(1000).atLeastOnce()).execute(Mockito.any(Bulk.class));
+        // The record failed to be sent, it is kept to be sent again.
+        assertThat(store.getBatch()).contains(record);
     }
 
     /**
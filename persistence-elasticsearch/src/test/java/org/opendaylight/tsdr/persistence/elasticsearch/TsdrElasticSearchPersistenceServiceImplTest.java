@@ -12,8 +12,9 @@ import com.google.common.collect.Lists;
 import java.util.List;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.opendaylight.tsdr.spi.util.TsdrRecordFactory;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data.rev160325.storetsdrbinaryrecord.input.TSDRBinaryRecord;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.TSDRRecord;
@@ -189,8 +190,6 @@ public class TsdrElasticSearchPersistenceServiceImplTest {
     public void purgeAll() throws Exception {
         long until = 0L;
         service.purge(until);
-        for (DataCategory category : DataCategory.values()) {
-            Mockito.verify(store, Mockito.atLeastOnce()).delete(category, until);
-        }
+        Mockito.verify(store, Mockito.only()).deleteAll(until);
     }
 }
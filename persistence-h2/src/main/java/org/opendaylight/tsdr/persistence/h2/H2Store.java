@@ -0,0 +1,562 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.h2;
+
+import com.google.common.annotations.VisibleForTesting;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.opendaylight.tsdr.spi.persistence.AggregatingMetricPersistenceService.Bucket;
+import org.opendaylight.tsdr.spi.util.ConfigFileUtil;
+import org.opendaylight.tsdr.spi.util.FormatUtil;
+import org.opendaylight.tsdr.spi.util.KeyFilter;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.tsdrlog.RecordAttributes;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.tsdrlog.RecordAttributesBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.AggregationType;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.tsdrrecord.RecordKeys;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * H2 Back-end store.
+ *
+ * <p>
+ * Each series is given a numeric id in the SERIES table, a dictionary of the TSDR keys which is also held in
+ * memory, so the rows of the METRICS and LOGS tables only hold the series id, the time stamp and the value, along
+ * with the index and the attributes of the logs. Their primary key starts with the series id and the time stamp, so
+ * the records of a series are read by a range scan of the primary key index.
+ * </p>
+ *
+ * <p>
+ * The records are written with prepared MERGE statements, batched in a single transaction per list of records, so
+ * a record stored twice is overwritten rather than failing its batch. They are read with a connection apart from the
+ * one they are written with, and purged by bounded chunks so the retention does not stall the writes.
+ * </p>
+ */
+@Singleton
+public class H2Store implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(H2Store.class);
+    private static final String CONF_FILE = ConfigFileUtil.CONFIG_DIR + "tsdr-persistence-h2.properties";
+    static final String URL_PROP = "url";
+    private static final String DEFAULT_URL = "jdbc:h2:./tsdr/tsdr-h2";
+    static final String BATCH_SIZE_PROP = "batch-size";
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+
+    // The records of a series are deleted by chunks of at most this many records.
+    static final int PURGE_CHUNK_SIZE = 10000;
+
+    private static final String SERIES_TABLE = "SERIES";
+    private static final String METRIC_TABLE = "METRICS";
+    private static final String LOG_TABLE = "LOGS";
+
+    private static final String CREATE_SERIES_SQL = "create table if not exists " + SERIES_TABLE
+            + " (ID bigint auto_increment primary key, CATEGORY varchar(64) not null,"
+            + " TSDRKEY varchar(4096) not null, constraint SERIES_TSDRKEY unique (TSDRKEY))";
+    private static final String CREATE_METRIC_SQL = "create table if not exists " + METRIC_TABLE
+            + " (SERIES_ID bigint not null, TS bigint not null, VAL double, primary key (SERIES_ID, TS))";
+    private static final String CREATE_LOG_SQL = "create table if not exists " + LOG_TABLE
+            + " (SERIES_ID bigint not null, TS bigint not null, XINDEX int not null, FULL_TEXT varchar,"
+            + " ATTRIBUTES varchar, primary key (SERIES_ID, TS, XINDEX))";
+    // The LOGS table of the earlier versions has no ATTRIBUTES column
+    private static final String ADD_LOG_ATTRIBUTES_SQL = "alter table " + LOG_TABLE
+            + " add column if not exists ATTRIBUTES varchar";
+
+    private static final String SELECT_SERIES_SQL = "select ID, TSDRKEY from " + SERIES_TABLE;
+    private static final String INSERT_SERIES_SQL = "insert into " + SERIES_TABLE
+            + " (CATEGORY, TSDRKEY) values (?, ?)";
+    private static final String MERGE_METRIC_SQL = "merge into " + METRIC_TABLE
+            + " (SERIES_ID, TS, VAL) key (SERIES_ID, TS) values (?, ?, ?)";
+    private static final String MERGE_LOG_SQL = "merge into " + LOG_TABLE
+            + " (SERIES_ID, TS, XINDEX, FULL_TEXT, ATTRIBUTES) key (SERIES_ID, TS, XINDEX) values (?, ?, ?, ?, ?)";
+    private static final String SELECT_METRIC_SQL = "select TS, VAL from " + METRIC_TABLE
+            + " where SERIES_ID = ? and TS >= ? and TS <= ? order by TS limit ?";
+    private static final String SELECT_LOG_SQL = "select TS, XINDEX, FULL_TEXT, ATTRIBUTES from " + LOG_TABLE
+            + " where SERIES_ID = ? and TS >= ? and TS <= ? order by TS, XINDEX limit ?";
+
+    /**
+     * A series of the dictionary, with the parts of its TSDR key it is looked up by.
+     */
+    private static final class Series {
+        private final long id;
+        private final String tsdrKey;
+        private final String category;
+        private final String nodeId;
+        private final String metricName;
+        private final List<RecordKeys> recordKeys;
+
+        Series(long id, String tsdrKey) {
+            this.id = id;
+            this.tsdrKey = tsdrKey;
+            this.category = FormatUtil.getDataCategoryFromTSDRKey(tsdrKey);
+            this.nodeId = FormatUtil.getNodeIdFromTSDRKey(tsdrKey);
+            this.metricName = FormatUtil.getMetriNameFromTSDRKey(tsdrKey);
+            this.recordKeys = FormatUtil.getRecordKeysFromTSDRKey(tsdrKey);
+        }
+
+        boolean matches(KeyFilter filter) {
+            return filter.matches(category, nodeId, metricName, recordKeys);
+        }
+    }
+
+    @FunctionalInterface
+    private interface RecordBinder<T> {
+        void bind(PreparedStatement statement, long seriesId, T record) throws SQLException;
+    }
+
+    /*
+     * The records are written and purged with the write connection, the writes and the purge chunks take turns on
+     * the write lock. They are read with the read connection, the multi-version store of H2 lets the reads go on
+     * while the records are written.
+     */
+    private final Connection connection;
+    private final Connection readConnection;
+    private final int batchSize;
+    private final Map<String, Series> seriesByKey = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+
+    @Inject
+    public H2Store() throws SQLException {
+        this(loadConfig());
+    }
+
+    private H2Store(Map<String, String> config) throws SQLException {
+        this(config.getOrDefault(URL_PROP, DEFAULT_URL).trim(), getBatchSize(config));
+    }
+
+    @VisibleForTesting
+    H2Store(String url, int batchSize) throws SQLException {
+        LOG.info("Connecting to H2 database {}...", url);
+        this.connection = openConnection(url);
+        this.readConnection = openConnection(url);
+        this.batchSize = Math.max(1, batchSize);
+        createTSDRTables();
+        loadSeries();
+    }
+
+    @SuppressFBWarnings("DMI_EMPTY_DB_PASSWORD")
+    private static Connection openConnection(String url) throws SQLException {
+        Properties info = new Properties();
+        info.put("user", "sa");
+        info.put("password", "");
+        // The driver is used directly, the DriverManager does not see the drivers of the other bundles
+        Connection connection = org.h2.Driver.load().connect(url, info);
+        if (connection == null) {
+            throw new SQLException("Not an H2 database URL: " + url);
+        }
+        return connection;
+    }
+
+    private static int getBatchSize(Map<String, String> config) {
+        String value = config.getOrDefault(BATCH_SIZE_PROP, String.valueOf(DEFAULT_BATCH_SIZE)).trim();
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            LOG.warn("Invalid {} value {}, using {}", BATCH_SIZE_PROP, value, DEFAULT_BATCH_SIZE);
+            return DEFAULT_BATCH_SIZE;
+        }
+    }
+
+    private static Map<String, String> loadConfig() {
+        try {
+            return ConfigFileUtil.loadConfig(CONF_FILE);
+        } catch (IOException e) {
+            LOG.warn("Error loading config file {}, using the default settings", CONF_FILE, e);
+            return Collections.emptyMap();
+        }
+    }
+
+    private void createTSDRTables() throws SQLException {
+        try (Statement st = connection.createStatement()) {
+            st.execute(CREATE_SERIES_SQL);
+            st.execute(CREATE_METRIC_SQL);
+            st.execute(CREATE_LOG_SQL);
+            st.execute(ADD_LOG_ATTRIBUTES_SQL);
+        }
+    }
+
+    private void loadSeries() throws SQLException {
+        try (Statement st = connection.createStatement(); ResultSet rs = st.executeQuery(SELECT_SERIES_SQL)) {
+            while (rs.next()) {
+                Series series = new Series(rs.getLong(1), rs.getString(2));
+                seriesByKey.put(series.tsdrKey, series);
+            }
+        }
+        LOG.info("Loaded {} series from the H2 database", seriesByKey.size());
+    }
+
+    public void store(TSDRMetricRecord mr) throws SQLException {
+        storeMetrics(Collections.singletonList(mr));
+    }
+
+    public void store(TSDRLogRecord lr) throws SQLException {
+        storeLogs(Collections.singletonList(lr));
+    }
+
+    /**
+     * Stores a list of metric records in a single transaction, the records without time stamp or value being skipped.
+     */
+    public void storeMetrics(List<TSDRMetricRecord> records) throws SQLException {
+        List<TSDRMetricRecord> withValues = new ArrayList<>(records.size());
+        for (TSDRMetricRecord mr : records) {
+            if (mr.getTimeStamp() != null && mr.getMetricValue() != null) {
+                withValues.add(mr);
+            } else {
+                LOG.warn("Skipping a metric record without time stamp or value {}", mr);
+            }
+        }
+        storeBatch(MERGE_METRIC_SQL, withValues, FormatUtil::getTSDRMetricKey, (st, seriesId, mr) -> {
+            st.setLong(1, seriesId);
+            st.setLong(2, mr.getTimeStamp());
+            st.setDouble(3, mr.getMetricValue().doubleValue());
+        });
+    }
+
+    /**
+     * Stores a list of log records in a single transaction, the records without time stamp being skipped and the
+     * records without index being stored with index 0.
+     */
+    public void storeLogs(List<TSDRLogRecord> records) throws SQLException {
+        List<TSDRLogRecord> withTimeStamps = new ArrayList<>(records.size());
+        for (TSDRLogRecord lr : records) {
+            if (lr.getTimeStamp() != null) {
+                withTimeStamps.add(lr);
+            } else {
+                LOG.warn("Skipping a log record without time stamp {}", lr);
+            }
+        }
+        storeBatch(MERGE_LOG_SQL, withTimeStamps, FormatUtil::getTSDRLogKey, (st, seriesId, lr) -> {
+            st.setLong(1, seriesId);
+            st.setLong(2, lr.getTimeStamp());
+            st.setInt(3, lr.getIndex() == null ? 0 : lr.getIndex());
+            st.setString(4, lr.getRecordFullText());
+            st.setString(5, encodeAttributes(lr.getRecordAttributes()));
+        });
+    }
+
+    /**
+     * Encodes the attributes of a log as name:value pairs separated by commas, the separators and the backslash
+     * being escaped with a backslash in the names and the values.
+     */
+    private static String encodeAttributes(List<RecordAttributes> attributes) {
+        if (attributes == null || attributes.isEmpty()) {
+            return null;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (RecordAttributes attribute : attributes) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            escape(sb, attribute.getName());
+            sb.append(':');
+            escape(sb, attribute.getValue());
+        }
+        return sb.toString();
+    }
+
+    private static void escape(StringBuilder sb, String value) {
+        if (value == null) {
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == '\\' || ch == ',' || ch == ':') {
+                sb.append('\\');
+            }
+            sb.append(ch);
+        }
+    }
+
+    private static List<RecordAttributes> decodeAttributes(String encoded) {
+        if (encoded == null) {
+            return null;
+        }
+
+        List<RecordAttributes> attributes = new ArrayList<>();
+        RecordAttributesBuilder builder = new RecordAttributesBuilder();
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i < encoded.length(); i++) {
+            char ch = encoded.charAt(i);
+            if (ch == '\\' && i + 1 < encoded.length()) {
+                token.append(encoded.charAt(++i));
+            } else if (ch == ':' && builder.getName() == null) {
+                builder.setName(token.toString());
+                token.setLength(0);
+            } else if (ch == ',') {
+                attributes.add(builder.setValue(token.toString()).build());
+                builder = new RecordAttributesBuilder();
+                token.setLength(0);
+            } else {
+                token.append(ch);
+            }
+        }
+        attributes.add(builder.setValue(token.toString()).build());
+        return attributes;
+    }
+
+    private <T> void storeBatch(String sql, List<T> records, Function<T, String> keyFunction,
+            RecordBinder<T> binder) throws SQLException {
+        if (records.isEmpty()) {
+            return;
+        }
+
+        synchronized (writeLock) {
+            // The new series are committed before the records, so the dictionary holds if the records are rolled back
+            long[] seriesIds = new long[records.size()];
+            for (int i = 0; i < seriesIds.length; i++) {
+                seriesIds[i] = getSeriesId(keyFunction.apply(records.get(i)));
+            }
+
+            connection.setAutoCommit(false);
+            try (PreparedStatement st = connection.prepareStatement(sql)) {
+                for (int i = 0; i < seriesIds.length; i++) {
+                    binder.bind(st, seriesIds[i], records.get(i));
+                    st.addBatch();
+                    if ((i + 1) % batchSize == 0) {
+                        st.executeBatch();
+                    }
+                }
+                if (seriesIds.length % batchSize != 0) {
+                    st.executeBatch();
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    private long getSeriesId(String tsdrKey) throws SQLException {
+        Series series = seriesByKey.get(tsdrKey);
+        if (series != null) {
+            return series.id;
+        }
+
+        try (PreparedStatement st = connection.prepareStatement(INSERT_SERIES_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            st.setString(1, FormatUtil.getDataCategoryFromTSDRKey(tsdrKey));
+            st.setString(2, tsdrKey);
+            st.executeUpdate();
+            try (ResultSet rs = st.getGeneratedKeys()) {
+                if (!rs.next()) {
+                    throw new SQLException("No id was generated for the series " + tsdrKey);
+                }
+                series = new Series(rs.getLong(1), tsdrKey);
+            }
+        }
+        seriesByKey.put(tsdrKey, series);
+        return series.id;
+    }
+
+    /**
+     * Returns the series of a TSDR key, either the series of that exact key or the series matching the parts of
+     * a partial key, which can also be just a data category.
+     */
+    private List<Series> findSeries(String tsdrKey) {
+        Series exact = seriesByKey.get(tsdrKey);
+        if (exact != null) {
+            return Collections.singletonList(exact);
+        }
+
+        KeyFilter filter = KeyFilter.parse(tsdrKey);
+        if (filter.isEmpty()) {
+            LOG.debug("TSDR key {} matches no series", tsdrKey);
+            return Collections.emptyList();
+        }
+
+        List<Series> result = new ArrayList<>();
+        for (Series series : seriesByKey.values()) {
+            if (series.matches(filter)) {
+                result.add(series);
+            }
+        }
+        result.sort(Comparator.comparingLong(series -> series.id));
+        return result;
+    }
+
+    public List<TSDRMetricRecord> getTSDRMetricRecords(String tsdrMetricKey, long startDateTime, long endDateTime,
+            int recordLimit) throws SQLException {
+        List<TSDRMetricRecord> result = new ArrayList<>();
+        try (PreparedStatement st = readConnection.prepareStatement(SELECT_METRIC_SQL)) {
+            for (Series series : findSeries(tsdrMetricKey)) {
+                bindRange(st, series, startDateTime, endDateTime, recordLimit - result.size());
+                try (ResultSet rs = st.executeQuery()) {
+                    while (rs.next()) {
+                        result.add(getTSDRMetricRecord(rs.getLong(1), rs.getDouble(2), series));
+                    }
+                }
+                if (result.size() >= recordLimit) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    public List<TSDRLogRecord> getTSDRLogRecords(String tsdrLogKey, long startDateTime, long endDateTime,
+            int recordLimit) throws SQLException {
+        List<TSDRLogRecord> result = new ArrayList<>();
+        try (PreparedStatement st = readConnection.prepareStatement(SELECT_LOG_SQL)) {
+            for (Series series : findSeries(tsdrLogKey)) {
+                bindRange(st, series, startDateTime, endDateTime, recordLimit - result.size());
+                try (ResultSet rs = st.executeQuery()) {
+                    while (rs.next()) {
+                        result.add(getTSDRLogRecord(rs.getLong(1), rs.getInt(2), rs.getString(3),
+                                decodeAttributes(rs.getString(4)), series));
+                    }
+                }
+                if (result.size() >= recordLimit) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void bindRange(PreparedStatement st, Series series, long startDateTime, long endDateTime,
+            int limit) throws SQLException {
+        st.setLong(1, series.id);
+        st.setLong(2, startDateTime);
+        st.setLong(3, endDateTime);
+        st.setInt(4, limit);
+    }
+
+    /**
+     * Aggregates the metrics of a series by intervals of the given size with a GROUP BY, so only one row per interval
+     * is read. Returns null if the key is not the key of a single series.
+     */
+    @SuppressFBWarnings("SQL_PREPARED_STATEMENT_GENERATED_FROM_NONCONSTANT_STRING")
+    public List<Bucket> getAggregatedMetrics(String tsdrMetricKey, long startDateTime, long endDateTime,
+            long interval, AggregationType aggregation) throws SQLException {
+        Series series = seriesByKey.get(tsdrMetricKey);
+        if (series == null) {
+            return null;
+        }
+
+        final String function;
+        switch (aggregation) {
+            case MIN:
+                function = "min";
+                break;
+            case MAX:
+                function = "max";
+                break;
+            case MEAN:
+                function = "avg";
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported aggregation " + aggregation);
+        }
+        String bucket = "(TS - " + startDateTime + ") / " + interval;
+        String sql = "select " + bucket + ", " + function + "(VAL), count(VAL) from " + METRIC_TABLE
+                + " where SERIES_ID = ? and TS >= ? and TS <= ? group by " + bucket + " order by 1";
+
+        List<Bucket> result = new ArrayList<>();
+        try (PreparedStatement st = readConnection.prepareStatement(sql)) {
+            st.setLong(1, series.id);
+            st.setLong(2, startDateTime);
+            st.setLong(3, endDateTime);
+            try (ResultSet rs = st.executeQuery()) {
+                while (rs.next()) {
+                    result.add(new Bucket(startDateTime + rs.getLong(1) * interval,
+                            BigDecimal.valueOf(rs.getDouble(2)), rs.getLong(3)));
+                }
+            }
+        }
+        return result;
+    }
+
+    private static TSDRMetricRecord getTSDRMetricRecord(long time, double value, Series series) {
+        TSDRMetricRecordBuilder rb = new TSDRMetricRecordBuilder();
+        rb.setMetricName(series.metricName);
+        rb.setMetricValue(BigDecimal.valueOf(value));
+        rb.setNodeID(series.nodeId);
+        rb.setRecordKeys(series.recordKeys);
+        rb.setTimeStamp(time);
+        rb.setTSDRDataCategory(DataCategory.valueOf(series.category));
+        return rb.build();
+    }
+
+    private static TSDRLogRecord getTSDRLogRecord(long time, int index, String value,
+            List<RecordAttributes> attributes, Series series) {
+        TSDRLogRecordBuilder lb = new TSDRLogRecordBuilder();
+        lb.setTSDRDataCategory(DataCategory.valueOf(series.category));
+        lb.setTimeStamp(time);
+        lb.setRecordKeys(series.recordKeys);
+        lb.setNodeID(series.nodeId);
+        lb.setIndex(index);
+        lb.setRecordAttributes(attributes);
+        lb.setRecordFullText(value);
+        return lb.build();
+    }
+
+    /**
+     * Deletes the records of a data category older than the retention time. The records of each series are
+     * deleted by chunks of at most PURGE_CHUNK_SIZE records, each one in its own short transaction so the writes
+     * can go on between chunks.
+     */
+    public void purge(DataCategory category, long retentionTime) throws SQLException {
+        for (Series series : seriesByKey.values()) {
+            if (category.name().equals(series.category)) {
+                purgeSeries(METRIC_TABLE, series, retentionTime);
+                purgeSeries(LOG_TABLE, series, retentionTime);
+            }
+        }
+    }
+
+    @SuppressFBWarnings("SQL_PREPARED_STATEMENT_GENERATED_FROM_NONCONSTANT_STRING")
+    private void purgeSeries(String table, Series series, long retentionTime) throws SQLException {
+        final String deleteSql = "delete from " + table + " where SERIES_ID = ? and TS < ? limit "
+                + PURGE_CHUNK_SIZE;
+        int deleted = PURGE_CHUNK_SIZE;
+        while (deleted == PURGE_CHUNK_SIZE) {
+            synchronized (writeLock) {
+                try (PreparedStatement st = connection.prepareStatement(deleteSql)) {
+                    st.setLong(1, series.id);
+                    st.setLong(2, retentionTime);
+                    deleted = st.executeUpdate();
+                }
+            }
+        }
+    }
+
+    @Override
+    @PreDestroy
+    public void close() {
+        for (Connection toClose : new Connection[] {readConnection, connection}) {
+            try {
+                toClose.close();
+            } catch (SQLException e) {
+                LOG.error("Failed to close the DB Connection", e);
+            }
+        }
+    }
+}
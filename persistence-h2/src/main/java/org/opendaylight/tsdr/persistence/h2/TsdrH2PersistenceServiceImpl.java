@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.h2;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.opendaylight.tsdr.spi.model.TSDRConstants;
+import org.opendaylight.tsdr.spi.persistence.AggregatingMetricPersistenceService;
+import org.opendaylight.tsdr.spi.persistence.TSDRBinaryPersistenceService;
+import org.opendaylight.tsdr.spi.persistence.TSDRLogPersistenceService;
+import org.opendaylight.tsdr.spi.persistence.TSDRMetricPersistenceService;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data.rev160325.storetsdrbinaryrecord.input.TSDRBinaryRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.AggregationType;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * H2 persistence service implementation.
+ */
+@Singleton
+public class TsdrH2PersistenceServiceImpl implements TSDRMetricPersistenceService, TSDRLogPersistenceService,
+        TSDRBinaryPersistenceService, AggregatingMetricPersistenceService {
+    private static final Logger LOG = LoggerFactory.getLogger(TsdrH2PersistenceServiceImpl.class);
+
+    private final H2Store store;
+
+    @Inject
+    public TsdrH2PersistenceServiceImpl(H2Store store) {
+        this.store = store;
+        LOG.info("TSDR H2 Data Store initialized.");
+    }
+
+    @Override
+    public void storeMetric(TSDRMetricRecord metricRecord) {
+        try {
+            store.store(metricRecord);
+        } catch (SQLException e) {
+            LOG.error("Failed to store record to database", e);
+        }
+    }
+
+    @Override
+    public void storeMetric(List<TSDRMetricRecord> metricRecordList) {
+        try {
+            store.storeMetrics(metricRecordList);
+        } catch (SQLException e) {
+            LOG.error("Failed to store records to database", e);
+        }
+    }
+
+    @Override
+    public void storeLog(TSDRLogRecord logRecord) {
+        try {
+            store.store(logRecord);
+        } catch (SQLException e) {
+            LOG.error("Failed to store record to database", e);
+        }
+    }
+
+    @Override
+    public void storeLog(List<TSDRLogRecord> logRecordList) {
+        try {
+            store.storeLogs(logRecordList);
+        } catch (SQLException e) {
+            LOG.error("Failed to store records to database", e);
+        }
+    }
+
+    @Override
+    public void purge(DataCategory category, long retentionTime) {
+        LOG.info("Execute Purge with Category {} and earlier than {}.", category.name(), new Date(retentionTime));
+        try {
+            store.purge(category, retentionTime);
+        } catch (SQLException e) {
+            LOG.error("Failed to purge records from the database", e);
+        }
+    }
+
+    @Override
+    public void purge(long retentionTime) {
+        for (DataCategory dataCategory : DataCategory.values()) {
+            try {
+                store.purge(dataCategory, retentionTime);
+            } catch (SQLException e) {
+                LOG.error("Failed to purge records from the database", e);
+            }
+        }
+    }
+
+    @Override
+    public List<TSDRMetricRecord> getTSDRMetricRecords(String tsdrMetricKey, long startDateTime, long endDateTime) {
+        return getTSDRMetricRecords(tsdrMetricKey, startDateTime, endDateTime,
+                TSDRConstants.MAX_RESULTS_FROM_LIST_METRICS_COMMAND);
+    }
+
+    @Override
+    public List<TSDRMetricRecord> getTSDRMetricRecords(String tsdrMetricKey, long startDateTime, long endDateTime,
+            int maxResults) {
+        try {
+            return store.getTSDRMetricRecords(tsdrMetricKey, startDateTime, endDateTime, maxResults);
+        } catch (SQLException e) {
+            LOG.error("Failed to get Metric Records", e);
+            return null;
+        }
+    }
+
+    @Override
+    public boolean isAggregationSupported(AggregationType aggregation) {
+        return aggregation == AggregationType.MIN || aggregation == AggregationType.MAX
+                || aggregation == AggregationType.MEAN;
+    }
+
+    @Override
+    public List<Bucket> getTSDRAggregatedMetrics(String tsdrMetricKey, long startDateTime, long endDateTime,
+            long interval, AggregationType aggregation) {
+        try {
+            return store.getAggregatedMetrics(tsdrMetricKey, startDateTime, endDateTime, interval, aggregation);
+        } catch (SQLException e) {
+            LOG.error("Failed to aggregate Metric Records", e);
+            return null;
+        }
+    }
+
+    @Override
+    public List<TSDRLogRecord> getTSDRLogRecords(String tsdrMetricKey, long startTime, long endTime) {
+        return getTSDRLogRecords(tsdrMetricKey, startTime, endTime,
+                TSDRConstants.MAX_RESULTS_FROM_LIST_METRICS_COMMAND);
+    }
+
+    @Override
+    public List<TSDRLogRecord> getTSDRLogRecords(String tsdrMetricKey, long startTime, long endTime, int maxResults) {
+        try {
+            return store.getTSDRLogRecords(tsdrMetricKey, startTime, endTime, maxResults);
+        } catch (SQLException e) {
+            LOG.error("Failed to get log Records", e);
+            return null;
+        }
+    }
+
+    @Override
+    public List<TSDRBinaryRecord> getTSDRBinaryRecords(String tsdrMetricKey, long startDateTime, long endDateTime) {
+        // The binary records are not stored in H2
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void storeBinary(TSDRBinaryRecord binaryRecord) {
+        LOG.debug("The binary records are not stored in H2");
+    }
+
+    @Override
+    public void storeBinary(List<TSDRBinaryRecord> recordList) {
+        LOG.debug("The binary records are not stored in H2");
+    }
+}
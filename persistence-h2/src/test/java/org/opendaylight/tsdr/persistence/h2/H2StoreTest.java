@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.h2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.opendaylight.tsdr.spi.util.TsdrRecordFactory.createMetricRecord;
+import static org.opendaylight.tsdr.spi.util.TsdrRecordFactory.createMetricRecords;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opendaylight.tsdr.spi.persistence.AggregatingMetricPersistenceService.Bucket;
+import org.opendaylight.tsdr.spi.util.FormatUtil;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.tsdrlog.RecordAttributesBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.AggregationType;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
+
+/**
+ * Unit tests of the {@link H2Store}, on a database in a temporary folder.
+ */
+public class H2StoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String url;
+    private H2Store store;
+
+    @Before
+    public void setUp() throws Exception {
+        url = "jdbc:h2:" + folder.getRoot().getPath() + "/tsdr-h2";
+        store = new H2Store(url, 2);
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+    }
+
+    @Test
+    public void testStoreMetrics() throws Exception {
+        List<TSDRMetricRecord> records = createMetricRecords("openflow:1", 5);
+        store.storeMetrics(records);
+        // Storing a record again overwrites it
+        store.store(createMetricRecord("openflow:1", "1", 2000L, 20));
+
+        String key = FormatUtil.getTSDRMetricKey(records.get(0));
+        List<TSDRMetricRecord> result = store.getTSDRMetricRecords(key, 0L, Long.MAX_VALUE, 100);
+        assertEquals(5, result.size());
+        assertEquals(key, FormatUtil.getTSDRMetricKey(result.get(0)));
+        assertEquals(1000L, result.get(1).getTimeStamp().longValue());
+        assertEquals(20, result.get(2).getMetricValue().intValue());
+        assertEquals(2, store.getTSDRMetricRecords(key, 1000L, 2000L, 100).size());
+        assertEquals(3, store.getTSDRMetricRecords(key, 0L, Long.MAX_VALUE, 3).size());
+    }
+
+    @Test
+    public void testPartialKeys() throws Exception {
+        store.storeMetrics(Arrays.asList(createMetricRecord("openflow:1", "1", 1000L, 1),
+                createMetricRecord("openflow:1", "2", 1000L, 2), createMetricRecord("openflow:2", "1", 1000L, 3)));
+
+        assertEquals(3, store.getTSDRMetricRecords(DataCategory.PORTSTATS.name(), 0L, Long.MAX_VALUE, 100).size());
+        assertEquals(2, store.getTSDRMetricRecords("[NID=openflow:1][DC=PORTSTATS][MN=][RK=]", 0L, Long.MAX_VALUE,
+                100).size());
+        assertEquals(2, store.getTSDRMetricRecords("[NID=][DC=PORTSTATS][MN=][RK=Port:1]", 0L, Long.MAX_VALUE,
+                100).size());
+        assertEquals(0, store.getTSDRMetricRecords(DataCategory.FLOWSTATS.name(), 0L, Long.MAX_VALUE, 100).size());
+    }
+
+    @Test
+    public void testStoreLogs() throws Exception {
+        TSDRLogRecord record = new TSDRLogRecordBuilder()
+                .setNodeID("openflow:1")
+                .setTimeStamp(1000L)
+                .setTSDRDataCategory(DataCategory.SYSLOG)
+                .setIndex(1)
+                .setRecordFullText("Interface eth0 is down")
+                .setRecordKeys(Collections.emptyList())
+                .setRecordAttributes(Arrays.asList(
+                        new RecordAttributesBuilder().setName("severity").setValue("3").build(),
+                        new RecordAttributesBuilder().setName("a,b:c").setValue("d\\e:f").build()))
+                .build();
+        store.store(record);
+
+        List<TSDRLogRecord> result = store.getTSDRLogRecords(FormatUtil.getTSDRLogKey(record), 0L, Long.MAX_VALUE,
+                100);
+        assertEquals(1, result.size());
+        assertEquals("Interface eth0 is down", result.get(0).getRecordFullText());
+        assertEquals(1, result.get(0).getIndex().intValue());
+        assertEquals(record.getRecordAttributes(), result.get(0).getRecordAttributes());
+        assertEquals(1, store.getTSDRLogRecords(DataCategory.SYSLOG.name(), 0L, Long.MAX_VALUE, 100).size());
+    }
+
+    @Test
+    public void testRecordsWithoutTimeStampOrValue() throws Exception {
+        TSDRMetricRecord metric = createMetricRecord("openflow:1", "1", 1000L, 1);
+        store.storeMetrics(Arrays.asList(new TSDRMetricRecordBuilder(metric).setTimeStamp(null).build(),
+                new TSDRMetricRecordBuilder(metric).setMetricValue(null).build()));
+        assertEquals(0, store.getTSDRMetricRecords(DataCategory.PORTSTATS.name(), 0L, Long.MAX_VALUE, 100).size());
+
+        // A log without time stamp is skipped, a log without index is stored with index 0
+        TSDRLogRecord log = new TSDRLogRecordBuilder()
+                .setNodeID("openflow:1")
+                .setTimeStamp(1000L)
+                .setTSDRDataCategory(DataCategory.SYSLOG)
+                .setRecordFullText("Interface eth0 is down")
+                .setRecordKeys(Collections.emptyList())
+                .build();
+        store.storeLogs(Arrays.asList(new TSDRLogRecordBuilder(log).setTimeStamp(null).build(), log));
+        List<TSDRLogRecord> result = store.getTSDRLogRecords(DataCategory.SYSLOG.name(), 0L, Long.MAX_VALUE, 100);
+        assertEquals(1, result.size());
+        assertEquals(0, result.get(0).getIndex().intValue());
+        assertNull(result.get(0).getRecordAttributes());
+    }
+
+    @Test
+    public void testSeriesAreReloaded() throws Exception {
+        TSDRMetricRecord record = createMetricRecord("openflow:1", "1", 1000L, 1);
+        store.store(record);
+        store.close();
+
+        store = new H2Store(url, 2);
+        store.store(createMetricRecord("openflow:1", "1", 2000L, 2));
+        assertEquals(2, store.getTSDRMetricRecords(FormatUtil.getTSDRMetricKey(record), 0L, Long.MAX_VALUE,
+                100).size());
+    }
+
+    @Test
+    public void testPurge() throws Exception {
+        List<TSDRMetricRecord> records = createMetricRecords("openflow:1", 10);
+        store.storeMetrics(records);
+
+        store.purge(DataCategory.FLOWSTATS, 5000L);
+        assertEquals(10, store.getTSDRMetricRecords(DataCategory.PORTSTATS.name(), 0L, Long.MAX_VALUE, 100).size());
+        store.purge(DataCategory.PORTSTATS, 5000L);
+        List<TSDRMetricRecord> result = store.getTSDRMetricRecords(DataCategory.PORTSTATS.name(), 0L, Long.MAX_VALUE,
+                100);
+        assertEquals(5, result.size());
+        assertEquals(5000L, result.get(0).getTimeStamp().longValue());
+    }
+
+    @Test
+    public void testAggregatedMetrics() throws Exception {
+        List<TSDRMetricRecord> records = createMetricRecords("openflow:1", 6);
+        store.storeMetrics(records);
+
+        String key = FormatUtil.getTSDRMetricKey(records.get(0));
+        List<Bucket> buckets = store.getAggregatedMetrics(key, 0L, 5000L, 3000L, AggregationType.MAX);
+        assertEquals(2, buckets.size());
+        assertEquals(0L, buckets.get(0).getTimeStamp());
+        assertEquals(2, buckets.get(0).getValue().intValue());
+        assertEquals(3, buckets.get(0).getCount());
+        assertEquals(3000L, buckets.get(1).getTimeStamp());
+        assertEquals(5, buckets.get(1).getValue().intValue());
+        assertTrue(store.getAggregatedMetrics(key, 0L, 5000L, 3000L, AggregationType.MEAN).get(1).getValue()
+                .compareTo(new BigDecimal(4)) == 0);
+        assertNull(store.getAggregatedMetrics(DataCategory.PORTSTATS.name(), 0L, 5000L, 3000L, AggregationType.MAX));
+    }
+}
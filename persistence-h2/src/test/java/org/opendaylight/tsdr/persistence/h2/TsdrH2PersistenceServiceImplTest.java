@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.h2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.opendaylight.tsdr.spi.util.TsdrRecordFactory.createMetricRecord;
+import static org.opendaylight.tsdr.spi.util.TsdrRecordFactory.createMetricRecords;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opendaylight.tsdr.spi.persistence.AggregatingMetricPersistenceService.Bucket;
+import org.opendaylight.tsdr.spi.util.FormatUtil;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.AggregationType;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
+
+/**
+ * Unit tests of the {@link TsdrH2PersistenceServiceImpl}, on a database in a temporary folder.
+ */
+public class TsdrH2PersistenceServiceImplTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private H2Store store;
+    private TsdrH2PersistenceServiceImpl service;
+
+    @Before
+    public void setUp() throws Exception {
+        store = new H2Store("jdbc:h2:" + folder.getRoot().getPath() + "/tsdr-h2", 2);
+        service = new TsdrH2PersistenceServiceImpl(store);
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+    }
+
+    @Test
+    public void testStoreAndGetMetrics() {
+        TSDRMetricRecord record = createMetricRecord("openflow:1", "1", 1000L, 1);
+        service.storeMetric(record);
+        service.storeMetric(Arrays.asList(createMetricRecord("openflow:1", "1", 2000L, 2),
+                createMetricRecord("openflow:1", "2", 2000L, 3)));
+
+        assertEquals(2, service.getTSDRMetricRecords(FormatUtil.getTSDRMetricKey(record), 0L, Long.MAX_VALUE)
+                .size());
+        assertEquals(3, service.getTSDRMetricRecords(DataCategory.PORTSTATS.name(), 0L, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    public void testMetricsWithoutValueAreSkipped() {
+        TSDRMetricRecord record = createMetricRecord("openflow:1", "1", 1000L, 1);
+        service.storeMetric(Arrays.asList(new TSDRMetricRecordBuilder(record).setMetricValue(null).build(),
+                createMetricRecord("openflow:1", "1", 2000L, 2)));
+
+        // The batch is stored without the record holding no value
+        List<TSDRMetricRecord> result = service.getTSDRMetricRecords(FormatUtil.getTSDRMetricKey(record), 0L,
+                Long.MAX_VALUE);
+        assertEquals(1, result.size());
+        assertEquals(2000L, result.get(0).getTimeStamp().longValue());
+    }
+
+    @Test
+    public void testStoreAndGetLogs() {
+        service.storeLog(new TSDRLogRecordBuilder()
+                .setNodeID("openflow:1")
+                .setTimeStamp(1000L)
+                .setTSDRDataCategory(DataCategory.SYSLOG)
+                .setIndex(1)
+                .setRecordFullText("Interface eth0 is down")
+                .setRecordKeys(Collections.emptyList())
+                .build());
+
+        assertEquals(1, service.getTSDRLogRecords(DataCategory.SYSLOG.name(), 0L, Long.MAX_VALUE).size());
+        // The binary records are not stored
+        assertTrue(service.getTSDRBinaryRecords(DataCategory.EXTERNAL.name(), 0L, Long.MAX_VALUE).isEmpty());
+    }
+
+    @Test
+    public void testPurge() {
+        List<TSDRMetricRecord> records = createMetricRecords("openflow:1", 10);
+        service.storeMetric(records);
+
+        service.purge(DataCategory.PORTSTATS, 5000L);
+        assertEquals(5, service.getTSDRMetricRecords(DataCategory.PORTSTATS.name(), 0L, Long.MAX_VALUE).size());
+        service.purge(Long.MAX_VALUE);
+        assertEquals(0, service.getTSDRMetricRecords(DataCategory.PORTSTATS.name(), 0L, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    public void testAggregatedMetrics() {
+        List<TSDRMetricRecord> records = createMetricRecords("openflow:1", 6);
+        service.storeMetric(records);
+
+        assertSame(service, service.getAggregatingService());
+        assertTrue(service.isAggregationSupported(AggregationType.MEAN));
+        assertFalse(service.isAggregationSupported(AggregationType.MEDIAN));
+        List<Bucket> buckets = service.getTSDRAggregatedMetrics(FormatUtil.getTSDRMetricKey(records.get(0)), 0L,
+                5000L, 3000L, AggregationType.MIN);
+        assertEquals(2, buckets.size());
+        assertEquals(3, buckets.get(1).getValue().intValue());
+    }
+
+    @Test
+    public void testFailuresAreNotThrown() {
+        service.storeMetric(createMetricRecord("openflow:1", "1", 1000L, 1));
+        store.close();
+
+        // The SQL failures are logged, the reads return null
+        service.storeMetric(createMetricRecord("openflow:1", "1", 2000L, 2));
+        assertNull(service.getTSDRMetricRecords(DataCategory.PORTSTATS.name(), 0L, Long.MAX_VALUE));
+    }
+}
@@ -11,8 +11,12 @@ import com.google.common.util.concurrent.FluentFuture;
 import com.google.common.util.concurrent.SettableFuture;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.opendaylight.tsdr.spi.scheduler.SchedulerService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,6 +33,10 @@ class CreateTableTask implements Runnable {
     private static final Logger LOG = LoggerFactory.getLogger(CreateTableTask.class);
 
     private final List<String> pendingTableNames;
+    private final Map<String, byte[][]> splitKeys;
+    private final Map<String, Integer> timeToLive;
+    private final boolean alterTimeToLive;
+    private final Set<String> tablesWithTimeToLive = ConcurrentHashMap.newKeySet();
     private final HBaseDataStore dataStore;
     private final SchedulerService schedulerService;
     private final long retryInterval;
@@ -36,8 +44,22 @@ class CreateTableTask implements Runnable {
 
     CreateTableTask(HBaseDataStore dataStore, List<String> pendingTableNames, SchedulerService schedulerService,
             long retryInterval) {
+        this(dataStore, pendingTableNames, Collections.emptyMap(), schedulerService, retryInterval);
+    }
+
+    CreateTableTask(HBaseDataStore dataStore, List<String> pendingTableNames, Map<String, byte[][]> splitKeys,
+            SchedulerService schedulerService, long retryInterval) {
+        this(dataStore, pendingTableNames, splitKeys, Collections.emptyMap(), false, schedulerService, retryInterval);
+    }
+
+    CreateTableTask(HBaseDataStore dataStore, List<String> pendingTableNames, Map<String, byte[][]> splitKeys,
+            Map<String, Integer> timeToLive, boolean alterTimeToLive, SchedulerService schedulerService,
+            long retryInterval) {
         this.dataStore = dataStore;
         this.pendingTableNames = new ArrayList<>(pendingTableNames);
+        this.splitKeys = splitKeys;
+        this.timeToLive = timeToLive;
+        this.alterTimeToLive = alterTimeToLive;
         this.schedulerService = schedulerService;
         this.retryInterval = retryInterval;
     }
@@ -51,6 +73,16 @@ class CreateTableTask implements Runnable {
         return completionFuture;
     }
 
+    /**
+     * Returns whether the cells of a table expire after the time to live requested for it. They do not if
+     * the table existed with another time to live which was not altered, nor until the table was created.
+     * @param tableName - the table name
+     * @return true if a time to live was requested and has been set
+     */
+    boolean isTimeToLiveApplied(String tableName) {
+        return tablesWithTimeToLive.contains(tableName);
+    }
+
     @Override
     public void run() {
         String oldName = Thread.currentThread().getName();
@@ -69,7 +101,17 @@ class CreateTableTask implements Runnable {
         while (tableNameIter.hasNext()) {
             String tableName = tableNameIter.next();
             try {
-                dataStore.createTable(tableName);
+                byte[][] tableSplitKeys = splitKeys.get(tableName);
+                Integer tableTimeToLive = timeToLive.get(tableName);
+                if (tableTimeToLive != null) {
+                    if (dataStore.createTable(tableName, tableSplitKeys, tableTimeToLive, alterTimeToLive)) {
+                        tablesWithTimeToLive.add(tableName);
+                    }
+                } else if (tableSplitKeys != null) {
+                    dataStore.createTable(tableName, tableSplitKeys);
+                } else {
+                    dataStore.createTable(tableName);
+                }
                 tableNameIter.remove();
             } catch (IOException t) {
                 LOG.error("Error creating table {}", tableName, t);
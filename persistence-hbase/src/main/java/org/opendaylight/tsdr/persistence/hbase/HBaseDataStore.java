@@ -8,16 +8,24 @@
 package org.opendaylight.tsdr.persistence.hbase;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HBaseConfiguration;
 import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.HTableDescriptor;
 import org.apache.hadoop.hbase.MasterNotRunningException;
 import org.apache.hadoop.hbase.TableNotFoundException;
@@ -32,8 +40,12 @@ import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.ResultScanner;
 import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
 import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
 import org.apache.hadoop.hbase.filter.PageFilter;
+import org.apache.hadoop.hbase.filter.RegexStringComparator;
+import org.apache.hadoop.hbase.filter.RowFilter;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -49,10 +61,24 @@ import org.slf4j.LoggerFactory;
 public class HBaseDataStore  {
     private static final Logger LOG = LoggerFactory.getLogger(HBaseDataStore.class);
 
+    /**
+     * Receives the rows of a scan as they are read.
+     */
+    public interface ResultCallback {
+        /**
+         * Handle a row.
+         * @param result - the row
+         * @return true to continue the scan, false to stop it
+         */
+        boolean onResult(Result result);
+    }
+
     private final Map<String, HTableInterface> htableMap = new ConcurrentHashMap<>();
+    private final Map<String, HBaseTableWriter> writerMap = new ConcurrentHashMap<>();
     private final Configuration config;
     private final int writeBufferSize;
     private final boolean autoFlush;
+    private final ScheduledExecutorService flushExecutor;
     private volatile HTablePool htablePool;
 
     /**
@@ -62,6 +88,7 @@ public class HBaseDataStore  {
         config = getConfiguration(null, null);
         writeBufferSize = 0;
         autoFlush = false;
+        flushExecutor = null;
     }
 
     /**
@@ -76,6 +103,18 @@ public class HBaseDataStore  {
 
         config = getConfiguration(context.getZookeeperQuorum(), context.getZookeeperClientport());
 
+        // The writers buffer the puts until the write buffer size is reached, so they are also flushed
+        // periodically to bound how long a put can stay in a buffer.
+        long flushInterval = context.getFlushInterval();
+        if (!autoFlush && flushInterval > 0) {
+            flushExecutor = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("TSDR HBase Flusher-%d").setDaemon(true).build());
+            flushExecutor.scheduleWithFixedDelay(this::flushWriters, flushInterval, flushInterval,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            flushExecutor = null;
+        }
+
         LOG.debug("Exiting constructor HBaseDataStore()");
     }
 
@@ -171,19 +210,71 @@ public class HBaseDataStore  {
      * @param tableName table name
      */
     public void createTable(String tableName) throws IOException {
+        createTable(tableName, null);
+    }
+
+    /**
+     * Create an HBase table pre-split into regions at the given row keys.
+     *
+     * @param tableName table name
+     * @param splitKeys the region split keys, null to create a single region
+     */
+    public void createTable(String tableName, byte[][] splitKeys) throws IOException {
+        createTable(tableName, splitKeys, 0, false);
+    }
+
+    /**
+     * Create an HBase table whose cells expire after the given time to live. If the table already exists
+     * with a different time to live, its column family is only altered if allowed, as the table is disabled
+     * meanwhile.
+     *
+     * @param tableName table name
+     * @param splitKeys the region split keys, null to create a single region
+     * @param timeToLive the time to live of the cells in seconds, 0 to keep them forever
+     * @param alterTimeToLive whether to alter the time to live of an existing table
+     * @return whether the cells of the table expire after the time to live
+     */
+    public boolean createTable(String tableName, byte[][] splitKeys, int timeToLive, boolean alterTimeToLive)
+            throws IOException {
         LOG.debug("Entering createTable(tableName)");
         if (tableName == null) {
-            return;
+            return false;
         }
 
+        boolean applied = true;
         ClassLoader ocl = Thread.currentThread().getContextClassLoader();
         Thread.currentThread().setContextClassLoader(HBaseConfiguration.class.getClassLoader());
         try (HBaseAdmin hbase = getNewHBaseAdmin()) {
             HTableDescriptor desc = new HTableDescriptor(tableName);
             HColumnDescriptor column = new HColumnDescriptor("c1".getBytes(StandardCharsets.UTF_8));
+            column.setTimeToLive(timeToLive > 0 ? timeToLive : HConstants.FOREVER);
             desc.addFamily(column);
             if (!hbase.tableExists(tableName)) {
-                hbase.createTable(desc);
+                if (splitKeys != null && splitKeys.length > 0) {
+                    hbase.createTable(desc, splitKeys);
+                } else {
+                    hbase.createTable(desc);
+                }
+            } else if (timeToLive > 0) {
+                HColumnDescriptor existing = hbase.getTableDescriptor(desc.getName()).getFamily(column.getName());
+                if (existing != null && existing.getTimeToLive() != timeToLive) {
+                    if (alterTimeToLive) {
+                        LOG.info("Changing the time to live of table {} from {} to {} seconds", tableName,
+                                existing.getTimeToLive(), timeToLive);
+                        existing.setTimeToLive(timeToLive);
+                        hbase.disableTable(tableName);
+                        try {
+                            hbase.modifyColumn(tableName, existing);
+                        } finally {
+                            hbase.enableTable(tableName);
+                        }
+                    } else {
+                        LOG.warn("Table {} keeps its time to live of {} seconds rather than {} - its records are "
+                                + "purged instead, set {} to alter it", tableName, existing.getTimeToLive(),
+                                timeToLive, HBaseDataStoreContext.ALTER_TABLES_PROP);
+                        applied = false;
+                    }
+                }
             }
         } catch (IllegalArgumentException e) {
             throw new IOException("Error creating htable " + tableName, e);
@@ -191,6 +282,72 @@ public class HBaseDataStore  {
             Thread.currentThread().setContextClassLoader(ocl);
         }
         LOG.debug("Exiting createTable(tableName)");
+        return applied;
+    }
+
+    /**
+     * Write a list of puts to an HTable.
+     *
+     * @param tableName - the table name
+     * @param putList - the puts
+     * @throws TableNotFoundException - a table not found exception
+     */
+    public void put(String tableName, List<Put> putList) throws TableNotFoundException {
+        if (putList == null || putList.isEmpty()) {
+            return;
+        }
+
+        write(tableName, putList);
+    }
+
+    /**
+     * Run a scan against an HTable and return at most the given number of results.
+     *
+     * @param tableName - the table name
+     * @param scan - the scan
+     * @param limit - the maximum number of results
+     * @return the results
+     * @throws TableNotFoundException - a table not found exception
+     */
+    public List<Result> scan(String tableName, Scan scan, int limit) throws TableNotFoundException {
+        List<Result> results = new ArrayList<>();
+        scan(tableName, scan, result -> {
+            results.add(result);
+            return results.size() < limit;
+        });
+        return results;
+    }
+
+    /**
+     * Run a scan against an HTable, handing each row to the callback as it is read so that the rows are
+     * not accumulated.
+     *
+     * @param tableName - the table name
+     * @param scan - the scan
+     * @param callback - the callback, which can stop the scan
+     * @throws TableNotFoundException - a table not found exception
+     */
+    public void scan(String tableName, Scan scan, ResultCallback callback) throws TableNotFoundException {
+        HTableInterface htable = null;
+        ResultScanner rs = null;
+        try {
+            htable = getConnection(tableName);
+            rs = htable.getScanner(scan);
+            for (Result result = rs.next(); result != null; result = rs.next()) {
+                if (!callback.onResult(result)) {
+                    break;
+                }
+            }
+        } catch (TableNotFoundException nfe) {
+            throw nfe;
+        } catch (IOException ioe) {
+            LOG.error("Scanner error", ioe);
+        } finally {
+            if (rs != null) {
+                rs.close();
+            }
+            closeConnection(htable);
+        }
     }
 
     /**
@@ -225,20 +382,7 @@ public class HBaseDataStore  {
                     }
                 }
             }
-            HTableInterface htable = null;
-            try {
-                htable = getConnection(entity.getTableName());
-                htable.put(put);
-                flushCommit(entity.getTableName());
-            } catch (TableNotFoundException nfe) {
-                throw nfe;
-            } catch (IOException ioe) {
-                LOG.error("Cannot put Data into HBase", ioe);
-                closeConnection(entity.getTableName());
-                HConnectionManager.deleteAllConnections();
-            } finally {
-                close(htable);
-            }
+            write(entity.getTableName(), Collections.singletonList(put));
         }
         LOG.debug("Exiting create(HBaseEntity entity)");
         return entity;
@@ -287,22 +431,80 @@ public class HBaseDataStore  {
                 putList.add(put);
             }
         }
-        HTableInterface htable = null;
+        write(tableName, putList);
+        LOG.debug("Exiting create(HBaseEntity entity)");
+        return entityList;
+    }
+
+    /**
+     * Write a list of puts through the buffered writer of an HTable. The puts are sent right away only
+     * if auto flush is configured or there is no periodic flush.
+     *
+     * @param tableName - the table name
+     * @param putList - the puts
+     * @throws TableNotFoundException - a table not found exception
+     */
+    private void write(String tableName, List<Put> putList) throws TableNotFoundException {
         try {
-            htable = getConnection(tableName);
-            htable.put(putList);
-            flushCommit(tableName);
+            HBaseTableWriter writer = getWriter(tableName);
+            writer.put(putList);
+            if (flushExecutor == null) {
+                writer.flush();
+            }
         } catch (TableNotFoundException nfe) {
             throw nfe;
         } catch (IOException ioe) {
+            // The writer keeps the puts which could not be sent and opens the table again on the next flush.
             LOG.error("Cannot put Data into HBase", ioe);
-            closeConnection(tableName);
             HConnectionManager.deleteAllConnections();
-        } finally {
-            close(htable);
         }
-        LOG.debug("Exiting create(HBaseEntity entity)");
-        return entityList;
+    }
+
+    private HBaseTableWriter getWriter(String tableName) throws IOException {
+        HBaseTableWriter writer = writerMap.get(tableName);
+        if (writer != null) {
+            return writer;
+        }
+
+        synchronized (writerMap) {
+            writer = writerMap.get(tableName);
+            if (writer == null) {
+                writer = new HBaseTableWriter(tableName, this::openWriterTable, writeBufferSize,
+                        HBaseTableWriter.LOGGING_EXCEPTION_LISTENER);
+                writerMap.put(tableName, writer);
+            }
+            return writer;
+        }
+    }
+
+    private HTableInterface openWriterTable(String tableName) throws IOException {
+        HTableInterface htable = getConnection(tableName);
+
+        // The writer owns the table until it closes it.
+        removeFromHtableMap(tableName);
+        return htable;
+    }
+
+    private void flushWriters() {
+        for (HBaseTableWriter writer : writerMap.values()) {
+            writer.flush();
+        }
+    }
+
+    /**
+     * Flush and close the writers and stop the periodic flush.
+     */
+    public void close() {
+        if (flushExecutor != null) {
+            flushExecutor.shutdown();
+        }
+
+        for (String tableName : writerMap.keySet()) {
+            HBaseTableWriter writer = writerMap.remove(tableName);
+            if (writer != null) {
+                writer.close();
+            }
+        }
     }
 
     private void close(HTableInterface htable) {
@@ -461,75 +663,102 @@ public class HBaseDataStore  {
      * @return a list of hbase entity
      */
     public List<HBaseEntity> getDataByTimeRange(String tableName, List<String> filters, long startTime, long endTime) {
+        return getDataByTimeRange(tableName, null, filters, startTime, endTime);
+    }
+
+    /**
+     * Retrieve data by the specified tableName, row key prefix, start timestamp, and end timestamp.
+     * The scan is bounded to the rows starting with the prefix and the substring filters are evaluated
+     * by the region servers, so only the matching rows are returned to the client. At most
+     * MAX_QUERY_RECORDS rows are returned.
+     * @param tableName - table name
+     * @param rowPrefix - the row key prefix, null to scan the whole table
+     * @param filters - the row key substring filters
+     * @param startTime - start time
+     * @param endTime - end time
+     * @return a list of hbase entity
+     */
+    public List<HBaseEntity> getDataByTimeRange(String tableName, String rowPrefix, List<String> filters,
+            long startTime, long endTime) {
         List<HBaseEntity> resultEntityList = new ArrayList<>();
-        Scan scan = new Scan();
-        HTableInterface htable = null;
-        ResultScanner rs = null;
+        // The PageFilter is applied per region so the limit is enforced on the client as well, closing
+        // the scanner as soon as it is reached.
+        scanByTimeRange(tableName, rowPrefix, filters, startTime, endTime, result -> {
+            resultEntityList.add(convertResultToEntity(tableName, result));
+            return resultEntityList.size() < TsdrHBaseDataStoreConstants.MAX_QUERY_RECORDS;
+        });
+        return resultEntityList;
+    }
+
+    /**
+     * Scan the rows by the specified tableName, row key prefix, start timestamp, and end timestamp, handing
+     * each row to the callback as it is read. The callback is responsible for stopping the scan once it
+     * has MAX_QUERY_RECORDS rows.
+     * @param tableName - table name
+     * @param rowPrefix - the row key prefix, null to scan the whole table
+     * @param filters - the row key substring filters
+     * @param startTime - start time
+     * @param endTime - end time
+     * @param callback - the callback
+     */
+    public void scanByTimeRange(String tableName, String rowPrefix, List<String> filters, long startTime,
+            long endTime, ResultCallback callback) {
         try {
+            Scan scan = newScan(rowPrefix, filters, TsdrHBaseDataStoreConstants.MAX_QUERY_RECORDS);
             if (startTime != 0 && endTime != 0) {
                 scan.setTimeRange(startTime, endTime);
             }
-            /*
-             * This is the proper code to use to filter the data, undortunatly I
-             * am getting a NoClassDefFound issue on FilterList
-             *
-             * if(filters!=null && !filters.isEmpty()){ FilterList filterList =
-             * new FilterList(); filterList.addFilter(new
-             * PageFilter(TSDRHBaseDataStoreConstants.MAX_QUERY_RECORDS));
-             * for(String filter:filters){ filterList.addFilter(new
-             * SingleColumnValueFilter(TSDRHBaseDataStoreConstants.
-             * COLUMN_FAMILY_NAME.getBytes(),
-             * TSDRHBaseDataStoreConstants.COLUMN_QUALIFIER_NAME.getBytes(),
-             * CompareFilter.CompareOp.EQUAL, new SubstringComparator(filter)));
-             *
-             * } scan.setFilter(filterList); }else
-             */
-            scan.setCaching(TsdrHBaseDataStoreConstants.MAX_QUERY_RECORDS);
-            htable = getConnection(tableName);
-            rs = htable.getScanner(scan);
-            int count = 0;
-            for (Result currentResult = rs.next(); currentResult != null; currentResult = rs.next()) {
-                /*
-                 * This is an improper way for doing this as it void all the
-                 * hbase capabilities in scaling!!! However as I was not able to
-                 * use HBase FilterList due to missing dependency, I had to
-                 * resolve to using this method to satisfy fetching a single
-                 * metric. We need to find a way to instantiate FilterList and
-                 * install SubstringFilter inside it so we could put it in the
-                 * scan and allow hbase agents to filter the data.
-                 */
-                if (filters != null && !filters.isEmpty()) {
-                    String rowKey = Bytes.toString(currentResult.getRow());
-                    boolean doesFitFilter = true;
-                    for (String filter : filters) {
-                        if (rowKey.indexOf(filter) == -1) {
-                            doesFitFilter = false;
-                            break;
-                        }
-                    }
-                    if (!doesFitFilter) {
-                        continue;
-                    }
-                }
-                /*
-                 * End of improper method.
-                 */
-                if (count++ < TsdrHBaseDataStoreConstants.MAX_QUERY_RECORDS) {
-                    resultEntityList.add(convertResultToEntity(tableName, currentResult));
-                }
-            }
+            scan(tableName, scan, callback);
         } catch (IOException ioe) {
             LOG.error("Scanner error", ioe);
-        } finally {
+        }
+    }
 
-            if (rs != null) {
-                rs.close();
-                rs = null;
+    /**
+     * Create a scan bounded to the rows starting with the given prefix, with the substring filters and the
+     * page size pushed down to the region servers.
+     * @param rowPrefix - the row key prefix, may be null
+     * @param filters - the row key substring filters, may be null
+     * @param pageSize - the maximum number of rows
+     * @return the scan
+     */
+    @VisibleForTesting
+    static Scan newScan(String rowPrefix, List<String> filters, int pageSize) {
+        final Scan scan;
+        if (rowPrefix != null && !rowPrefix.isEmpty()) {
+            byte[] startRow = Bytes.toBytes(rowPrefix);
+            scan = new Scan(startRow, prefixStopRow(startRow));
+        } else {
+            scan = new Scan();
+        }
+
+        FilterList filterList = new FilterList(FilterList.Operator.MUST_PASS_ALL);
+        if (filters != null) {
+            for (String filter : filters) {
+                filterList.addFilter(new RowFilter(CompareOp.EQUAL, new RegexStringComparator(Pattern.quote(filter))));
             }
-            closeConnection(htable);
         }
-        return resultEntityList;
+        filterList.addFilter(new PageFilter(pageSize));
+        scan.setFilter(filterList);
+        scan.setCaching(pageSize);
+        return scan;
+    }
 
+    /**
+     * Returns the first row key after all the row keys starting with the prefix.
+     * @param prefix - the row key prefix
+     * @return the exclusive stop row
+     */
+    @VisibleForTesting
+    static byte[] prefixStopRow(byte[] prefix) {
+        for (int i = prefix.length - 1; i >= 0; i--) {
+            if (prefix[i] != (byte) 0xff) {
+                byte[] stopRow = Arrays.copyOf(prefix, i + 1);
+                stopRow[i]++;
+                return stopRow;
+            }
+        }
+        return HConstants.EMPTY_END_ROW;
     }
 
     /**
@@ -609,6 +838,11 @@ public class HBaseDataStore  {
      */
     public void flushCommit(String tableName) {
         LOG.debug("Entering flushCommit(tableName)");
+        HBaseTableWriter writer = tableName != null ? writerMap.get(tableName) : null;
+        if (writer != null) {
+            writer.flush();
+        }
+
         HTableInterface htableResult = getFromHtableMap(tableName);
         if (htableResult != null) {
             if (!autoFlush) {
@@ -629,6 +863,11 @@ public class HBaseDataStore  {
      */
     public void closeConnection(String tableName) {
         LOG.debug("Entering closeConnection(String tableName)");
+        HBaseTableWriter writer = tableName != null ? writerMap.remove(tableName) : null;
+        if (writer != null) {
+            writer.close();
+        }
+
         HTableInterface htableResult = removeFromHtableMap(tableName);
         if (htableResult != null) {
             try {
@@ -7,7 +7,11 @@
  */
 package org.opendaylight.tsdr.persistence.hbase;
 
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
 
 /**
  * The context of HBase Data Store.
@@ -21,7 +25,15 @@ public class HBaseDataStoreContext {
     static final String POOL_SIZE_PROP = "poolsize";
     static final String WRITE_BUFFER_SIZE_PROP = "writebuffersize";
     static final String AUTO_FLUSH_PROP = "autoflush";
+    static final String FLUSH_INTERVAL_PROP = "flushinterval";
     static final String CREATE_TABLE_RETRY_INTERVAL_PROP = "createTableRetryInterval";
+    static final String METRIC_SCHEMA_PROP = "metric.schema";
+    static final String SALT_BUCKETS_PROP = "salt.buckets";
+    static final String RETENTION_HOURS_PROP = "retention.hours";
+    static final String ALTER_TABLES_PROP = "retention.alter.tables";
+
+    static final String TEXT_METRIC_SCHEMA = "text";
+    static final String WIDE_ROW_METRIC_SCHEMA = "wide";
 
     /*
      * This parameter indicates the host name of the server(Zookeeper node)
@@ -45,8 +57,39 @@ public class HBaseDataStoreContext {
 
     private final boolean autoFlush;
 
+    /*
+     * This parameter indicates the interval in milliseconds at which the buffered puts are sent
+     * regardless of the write buffer size. A value of 0 sends the puts on every write.
+     */
+    private final long flushInterval;
+
     private final long createTableRetryInterval;
 
+    /*
+     * This parameter selects the metric table schema, either one row per sample keyed by the TSDR key text
+     * or the wide-row binary schema.
+     */
+    private final String metricSchema;
+
+    /*
+     * This parameter indicates the number of salt buckets, and so of pre-split regions, of the wide-row
+     * metric tables.
+     */
+    private final int saltBuckets;
+
+    /*
+     * This parameter indicates, per data category, the number of hours after which the stored records
+     * expire. It is read from retention.hours.CATEGORY, falling back to retention.hours. Categories
+     * without a retention keep their records until they are purged.
+     */
+    private final Map<DataCategory, Long> retentionHours = new EnumMap<>(DataCategory.class);
+
+    /*
+     * This parameter indicates whether the existing tables are altered, which disables them for a while,
+     * when their time to live differs from the retention.
+     */
+    private final boolean alterTables;
+
     HBaseDataStoreContext() {
         this(new Properties());
     }
@@ -57,7 +100,20 @@ public class HBaseDataStoreContext {
         poolSize = Integer.parseInt(from.getProperty(POOL_SIZE_PROP, "20"));
         writeBufferSize = Integer.parseInt(from.getProperty(WRITE_BUFFER_SIZE_PROP, "512"));
         autoFlush = Boolean.valueOf(from.getProperty(AUTO_FLUSH_PROP, "false"));
+        flushInterval = Long.parseLong(from.getProperty(FLUSH_INTERVAL_PROP, "1000"));
         createTableRetryInterval = Long.parseLong(from.getProperty("createTableRetryInterval", "300"));
+        metricSchema = from.getProperty(METRIC_SCHEMA_PROP, TEXT_METRIC_SCHEMA).trim();
+        saltBuckets = Math.max(1, Math.min(256, Integer.parseInt(from.getProperty(SALT_BUCKETS_PROP, "16"))));
+
+        String defaultRetention = from.getProperty(RETENTION_HOURS_PROP, "0");
+        for (DataCategory category : DataCategory.values()) {
+            long hours = Long.parseLong(
+                    from.getProperty(RETENTION_HOURS_PROP + "." + category.name(), defaultRetention).trim());
+            if (hours > 0) {
+                retentionHours.put(category, hours);
+            }
+        }
+        alterTables = Boolean.parseBoolean(from.getProperty(ALTER_TABLES_PROP, "false").trim());
     }
 
     public String getZookeeperQuorum() {
@@ -80,7 +136,37 @@ public class HBaseDataStoreContext {
         return this.autoFlush;
     }
 
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
     public long getCreateTableRetryInterval() {
         return createTableRetryInterval;
     }
+
+    public String getMetricSchema() {
+        return metricSchema;
+    }
+
+    public boolean isWideRowMetricSchema() {
+        return WIDE_ROW_METRIC_SCHEMA.equalsIgnoreCase(metricSchema);
+    }
+
+    public int getSaltBuckets() {
+        return saltBuckets;
+    }
+
+    /**
+     * Returns the time to live of the records of a data category.
+     * @param category - the data category
+     * @return the time to live in seconds, 0 if the records do not expire
+     */
+    public int getTimeToLive(DataCategory category) {
+        Long hours = retentionHours.get(category);
+        return hours == null ? 0 : (int) Math.min(Integer.MAX_VALUE - 1, TimeUnit.HOURS.toSeconds(hours));
+    }
+
+    public boolean isAlterTables() {
+        return alterTables;
+    }
 }
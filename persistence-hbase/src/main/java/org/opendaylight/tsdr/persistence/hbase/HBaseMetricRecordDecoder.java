@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.hbase;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.opendaylight.tsdr.spi.util.FormatUtil;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.tsdrrecord.RecordKeys;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decodes the rows of a text schema metric table into metric records as they are scanned.
+ *
+ * <p>
+ * The row key is the series key followed by the time stamp. Consecutive rows mostly belong to the same
+ * series, so the node ID, metric name and record keys are only parsed when the series key changes. The
+ * time stamp is read from the row key bytes and the value from the first cell, without converting the
+ * row to an {@link HBaseEntity}.
+ * </p>
+ */
+class HBaseMetricRecordDecoder implements HBaseDataStore.ResultCallback {
+    private static final Logger LOG = LoggerFactory.getLogger(HBaseMetricRecordDecoder.class);
+    private static final byte[] TIMESTAMP_KEY = Bytes.toBytes(FormatUtil.KEY_TIMESTAMP);
+
+    private final DataCategory category;
+    private final Consumer<TSDRMetricRecord> consumer;
+    private final int limit;
+    private int count;
+
+    private byte[] seriesKey;
+    private String nodeId;
+    private String metricName;
+    private List<RecordKeys> recordKeys;
+
+    HBaseMetricRecordDecoder(DataCategory category, Consumer<TSDRMetricRecord> consumer, int limit) {
+        this.category = category;
+        this.consumer = consumer;
+        this.limit = limit;
+    }
+
+    @Override
+    public boolean onResult(Result result) {
+        byte[] row = result.getRow();
+        KeyValue[] cells = result.raw();
+        int timeStampIndex = lastIndexOf(row, TIMESTAMP_KEY);
+        if (timeStampIndex < 0 || cells == null || cells.length == 0) {
+            LOG.debug("Skipping row {} which is not a metric", Bytes.toString(row));
+            return true;
+        }
+
+        final long timeStamp;
+        final double value;
+        try {
+            timeStamp = parseLong(row, timeStampIndex + TIMESTAMP_KEY.length, row.length - 1);
+            KeyValue cell = cells[0];
+            value = Double.parseDouble(Bytes.toString(cell.getBuffer(), cell.getValueOffset(),
+                    cell.getValueLength()));
+        } catch (NumberFormatException e) {
+            LOG.debug("Skipping row {} which is not a metric", Bytes.toString(row), e);
+            return true;
+        }
+
+        if (seriesKey == null || !Bytes.equals(seriesKey, 0, seriesKey.length, row, 0, timeStampIndex)) {
+            seriesKey = Arrays.copyOf(row, timeStampIndex);
+            String key = Bytes.toString(seriesKey);
+            nodeId = FormatUtil.getNodeIdFromTSDRKey(key);
+            metricName = FormatUtil.getMetriNameFromTSDRKey(key);
+            recordKeys = FormatUtil.getRecordKeysFromTSDRKey(key);
+        }
+
+        consumer.accept(new TSDRMetricRecordBuilder().setTSDRDataCategory(category).setNodeID(nodeId)
+                .setMetricName(metricName).setRecordKeys(recordKeys).setTimeStamp(timeStamp)
+                .setMetricValue(new BigDecimal(value)).build());
+        return ++count < limit;
+    }
+
+    private static int lastIndexOf(byte[] array, byte[] target) {
+        for (int i = array.length - target.length; i >= 0; i--) {
+            if (Bytes.equals(array, i, target.length, target, 0, target.length)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static long parseLong(byte[] bytes, int from, int to) {
+        if (from >= to || to > bytes.length) {
+            throw new NumberFormatException("No time stamp");
+        }
+
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Invalid time stamp");
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+}
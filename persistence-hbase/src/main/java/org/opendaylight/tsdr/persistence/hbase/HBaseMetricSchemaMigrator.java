@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.hbase;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Copies the metrics stored with the text schema, one row per sample, to the wide-row schema tables.
+ * The text tables are left untouched so the migration can be repeated and verified before switching
+ * the <code>metric.schema</code> property.
+ */
+@Singleton
+public class HBaseMetricSchemaMigrator {
+    private static final Logger LOG = LoggerFactory.getLogger(HBaseMetricSchemaMigrator.class);
+
+    static final int BATCH_SIZE = 1000;
+
+    private final HBaseDataStoreFactory dataStoreFactory;
+
+    @Inject
+    public HBaseMetricSchemaMigrator(HBaseDataStoreFactory dataStoreFactory) {
+        this.dataStoreFactory = dataStoreFactory;
+    }
+
+    /**
+     * Migrate the metrics of a data category.
+     * @param category - the data category
+     * @return the number of migrated metrics
+     * @throws IOException - if the tables could not be created or accessed
+     */
+    public long migrate(DataCategory category) throws IOException {
+        HBaseDataStore dataStore = dataStoreFactory.getHBaseDataStore();
+        int saltBuckets = dataStoreFactory.getDataStoreContext().getSaltBuckets();
+        dataStore.createTable(HBaseWideRowMetricStore.SERIES_TABLE);
+        dataStore.createTable(HBaseWideRowMetricStore.getTableName(category),
+                HBaseWideRowMetricStore.getSplitKeys(saltBuckets));
+
+        HBaseWideRowMetricStore wideRowMetricStore = new HBaseWideRowMetricStore(dataStore, saltBuckets);
+        String tableName = category.name();
+        long migrated = 0;
+        long skipped = 0;
+        byte[] startRow = null;
+        while (true) {
+            Scan scan = startRow == null ? new Scan() : new Scan(startRow);
+            scan.setCaching(BATCH_SIZE);
+            List<Result> results = dataStore.scan(tableName, scan, BATCH_SIZE);
+            if (results.isEmpty()) {
+                break;
+            }
+
+            List<TSDRMetricRecord> records = new ArrayList<>(results.size());
+            HBaseMetricRecordDecoder decoder = new HBaseMetricRecordDecoder(category, records::add, Integer.MAX_VALUE);
+            for (Result result : results) {
+                decoder.onResult(result);
+            }
+
+            wideRowMetricStore.store(records);
+            migrated += records.size();
+            skipped += results.size() - records.size();
+
+            if (results.size() < BATCH_SIZE) {
+                break;
+            }
+
+            // The next page starts right after the last row of this one.
+            startRow = Bytes.add(results.get(results.size() - 1).getRow(), new byte[] {0});
+        }
+
+        LOG.info("Migrated {} {} metrics to the wide-row schema, skipped {} rows", migrated, category, skipped);
+        return migrated;
+    }
+}
@@ -10,8 +10,8 @@ package org.opendaylight.tsdr.persistence.hbase;
 import java.util.ArrayList;
 import java.util.List;
 import org.opendaylight.tsdr.spi.util.FormatUtil;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.storetsdrlogrecord.input.TSDRLogRecord;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.tsdrlog.RecordAttributes;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.tsdrlog.RecordAttributes;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.TSDRMetric;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
 import org.slf4j.Logger;
@@ -71,7 +71,7 @@ public final class HBasePersistenceUtil {
      * @return true - valid
      *         false - invalid
      */
-    private static boolean validateMetricInput(TSDRMetric metricData) {
+    static boolean validateMetricInput(TSDRMetric metricData) {
         if (metricData == null) {
             LOG.error("metricData is null. The data is invalid and will not be persisted.");
             return false;
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.hbase;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.hadoop.hbase.client.HTableInterface;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.RetriesExhaustedWithDetailsException;
+import org.apache.hadoop.hbase.client.Row;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A long-lived, buffered writer to an HTable.
+ *
+ * <p>
+ * The puts are buffered by the writer, which sends them to the region servers once they reach the write
+ * buffer size. The data store also flushes every writer periodically so buffered puts are never held longer
+ * than the flush interval. Each failure is reported to the {@link ExceptionListener}; the puts that failed are
+ * kept and retried by the next flush up to the write buffer size, the others are dropped and logged, so a
+ * region server that stays down does not grow the buffer without bound. When the HTable itself fails, the
+ * puts are kept the same way and the HTable is closed and opened again by the next flush. The puts still
+ * buffered when the writer is closed are dropped and logged.
+ * </p>
+ */
+class HBaseTableWriter {
+    private static final Logger LOG = LoggerFactory.getLogger(HBaseTableWriter.class);
+
+    /**
+     * Receives the failures of the asynchronous flushes.
+     */
+    interface ExceptionListener {
+        void onException(String tableName, RetriesExhaustedWithDetailsException exception);
+    }
+
+    /**
+     * Opens the HTable the puts are written to.
+     */
+    interface TableOpener {
+        HTableInterface open(String tableName) throws IOException;
+    }
+
+    static final ExceptionListener LOGGING_EXCEPTION_LISTENER = (tableName, exception) ->
+        LOG.warn("Failed to write {} puts to {} - they will be retried on the next flush up to the write buffer size",
+                exception.getNumExceptions(), tableName, exception);
+
+    private final String tableName;
+    private final TableOpener tableOpener;
+    private final long writeBufferSize;
+    private final ExceptionListener exceptionListener;
+
+    // Guarded by this
+    private HTableInterface htable;
+    private final List<Put> buffer = new ArrayList<>();
+    private long bufferedBytes;
+
+    HBaseTableWriter(String tableName, TableOpener tableOpener, long writeBufferSize,
+            ExceptionListener exceptionListener) throws IOException {
+        this.tableName = tableName;
+        this.tableOpener = tableOpener;
+        this.writeBufferSize = writeBufferSize;
+        this.exceptionListener = exceptionListener;
+        this.htable = openTable();
+    }
+
+    String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * Buffer a list of puts, sending the buffer if it reached its size threshold.
+     * @param puts - the puts
+     * @throws IOException - if the puts could not be sent
+     */
+    synchronized void put(List<Put> puts) throws IOException {
+        for (Put put : puts) {
+            buffer.add(put);
+            bufferedBytes += put.heapSize();
+        }
+        if (bufferedBytes >= writeBufferSize) {
+            send();
+        }
+    }
+
+    /**
+     * Send the buffered puts.
+     */
+    synchronized void flush() {
+        try {
+            send();
+        } catch (IOException e) {
+            LOG.error("Flushing the puts to {} failed", tableName, e);
+        }
+    }
+
+    private void send() throws IOException {
+        if (buffer.isEmpty()) {
+            return;
+        }
+
+        List<Put> puts = new ArrayList<>(buffer);
+        buffer.clear();
+        bufferedBytes = 0;
+        try {
+            if (htable == null) {
+                htable = openTable();
+            }
+            htable.put(puts);
+        } catch (RetriesExhaustedWithDetailsException e) {
+            exceptionListener.onException(tableName, e);
+            List<Row> failed = new ArrayList<>();
+            for (int i = 0; i < e.getNumExceptions(); i++) {
+                failed.add(e.getRow(i));
+            }
+            retain(failed);
+        } catch (IOException e) {
+            retain(puts);
+            closeTable();
+            throw e;
+        }
+    }
+
+    private HTableInterface openTable() throws IOException {
+        HTableInterface table = tableOpener.open(tableName);
+        if (table == null) {
+            throw new IOException("Cannot get connection to the table " + tableName);
+        }
+
+        // The puts are buffered here, the HTable sends them right away and clears its own buffer on failure.
+        table.setAutoFlush(true);
+        return table;
+    }
+
+    private void closeTable() {
+        if (htable == null) {
+            return;
+        }
+
+        try {
+            htable.close();
+        } catch (IOException e) {
+            LOG.error("Cannot close connection to {}", tableName, e);
+        }
+        htable = null;
+    }
+
+    private void retain(List<? extends Row> failed) {
+        int dropped = 0;
+        for (Row row : failed) {
+            if (row instanceof Put && bufferedBytes + ((Put) row).heapSize() <= writeBufferSize) {
+                buffer.add((Put) row);
+                bufferedBytes += ((Put) row).heapSize();
+            } else {
+                dropped++;
+            }
+        }
+        if (dropped > 0) {
+            LOG.error("Dropping {} failed puts to {}, more than the write buffer size are pending", dropped,
+                    tableName);
+        }
+    }
+
+    @VisibleForTesting
+    synchronized int getBufferedPuts() {
+        return buffer.size();
+    }
+
+    /**
+     * Send the buffered puts and close the table, dropping the puts which could not be sent.
+     */
+    synchronized void close() {
+        flush();
+        if (!buffer.isEmpty()) {
+            LOG.error("Dropping {} buffered puts to {} which could not be sent", buffer.size(), tableName);
+            buffer.clear();
+            bufferedBytes = 0;
+        }
+        closeTable();
+    }
+}
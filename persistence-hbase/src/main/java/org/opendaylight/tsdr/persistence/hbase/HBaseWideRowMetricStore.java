@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.hbase;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.TableNotFoundException;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.RegexStringComparator;
+import org.apache.hadoop.hbase.filter.ValueFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.opendaylight.tsdr.spi.util.FormatUtil;
+import org.opendaylight.tsdr.spi.util.MD5ID;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.tsdrrecord.RecordKeys;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stores metrics in HBase using a compact wide-row schema.
+ *
+ * <p>
+ * A row holds the samples of one series for one hour. The row key is a salt byte, the 16 byte MD5 series
+ * ID and the 8 byte base time of the hour. Each sample is a cell whose qualifier is the 4 byte millisecond
+ * offset from the base time and whose value is the 8 byte binary double. The salt is derived from the
+ * series ID, spreading the series over the pre-split regions while keeping the rows of a series
+ * contiguous. The series key text is written once per series to the series table, keyed by the data category
+ * name and the series ID, so the series of a category are looked up with a range scan.
+ * </p>
+ */
+public class HBaseWideRowMetricStore {
+    private static final Logger LOG = LoggerFactory.getLogger(HBaseWideRowMetricStore.class);
+
+    static final String TABLE_SUFFIX = "_WIDE";
+    static final String SERIES_TABLE = "TSDRSERIES";
+    static final long ROW_TIME_SPAN = TimeUnit.HOURS.toMillis(1);
+    static final int SERIES_ID_LENGTH = 16;
+    static final int ROW_KEY_LENGTH = 1 + SERIES_ID_LENGTH + Bytes.SIZEOF_LONG;
+    private static final byte SERIES_ROW_SEPARATOR = '|';
+
+    private static final byte[] FAMILY = Bytes.toBytes(TsdrHBaseDataStoreConstants.COLUMN_FAMILY_NAME);
+    private static final byte[] SERIES_KEY_QUALIFIER = Bytes.toBytes("k");
+
+    private final HBaseDataStore dataStore;
+    private final int saltBuckets;
+    private final Set<MD5ID> knownSeries = ConcurrentHashMap.newKeySet();
+
+    public HBaseWideRowMetricStore(HBaseDataStore dataStore, int saltBuckets) {
+        this.dataStore = dataStore;
+        this.saltBuckets = saltBuckets;
+    }
+
+    public static String getTableName(DataCategory category) {
+        return category.name() + TABLE_SUFFIX;
+    }
+
+    /**
+     * Returns the names of the tables used by this schema.
+     * @return the table names
+     */
+    public static List<String> getTableNames() {
+        List<String> tableNames = new ArrayList<>();
+        for (DataCategory category : DataCategory.values()) {
+            tableNames.add(getTableName(category));
+        }
+        tableNames.add(SERIES_TABLE);
+        return tableNames;
+    }
+
+    /**
+     * Returns the region split keys of the metric tables, one region per salt bucket.
+     * @param saltBuckets - the number of salt buckets
+     * @return the split keys
+     */
+    public static byte[][] getSplitKeys(int saltBuckets) {
+        byte[][] splitKeys = new byte[saltBuckets - 1][];
+        for (int i = 1; i < saltBuckets; i++) {
+            splitKeys[i - 1] = new byte[] {(byte) i};
+        }
+        return splitKeys;
+    }
+
+    static long getBaseTime(long timeStamp) {
+        return timeStamp - Math.floorMod(timeStamp, ROW_TIME_SPAN);
+    }
+
+    byte[] getRowKey(byte[] seriesId, long baseTime) {
+        byte[] rowKey = new byte[ROW_KEY_LENGTH];
+        rowKey[0] = (byte) ((seriesId[SERIES_ID_LENGTH - 1] & 0xff) % saltBuckets);
+        System.arraycopy(seriesId, 0, rowKey, 1, SERIES_ID_LENGTH);
+        Bytes.putLong(rowKey, 1 + SERIES_ID_LENGTH, baseTime);
+        return rowKey;
+    }
+
+    static byte[] getSeriesRowPrefix(DataCategory category) {
+        return Bytes.add(Bytes.toBytes(category.name()), new byte[] {SERIES_ROW_SEPARATOR});
+    }
+
+    static byte[] getSeriesRowKey(DataCategory category, MD5ID seriesId) {
+        return Bytes.add(getSeriesRowPrefix(category), seriesId.toByteArray());
+    }
+
+    /**
+     * Store a list of metric records.
+     * @param recordList - the records
+     * @throws TableNotFoundException - a table not found exception
+     */
+    public void store(List<TSDRMetricRecord> recordList) throws TableNotFoundException {
+        Map<String, List<Put>> putsByTable = new HashMap<>();
+        Set<MD5ID> newSeries = new HashSet<>();
+        List<Put> seriesPuts = new ArrayList<>();
+        for (TSDRMetricRecord record : recordList) {
+            if (record.getTSDRDataCategory() == null || !HBasePersistenceUtil.validateMetricInput(record)) {
+                continue;
+            }
+
+            String seriesKey = FormatUtil.getTSDRMetricKey(record);
+            MD5ID seriesId = MD5ID.createTSDRId(seriesKey);
+            if (!knownSeries.contains(seriesId) && newSeries.add(seriesId)) {
+                Put seriesPut = new Put(getSeriesRowKey(record.getTSDRDataCategory(), seriesId));
+                seriesPut.add(FAMILY, SERIES_KEY_QUALIFIER, Bytes.toBytes(seriesKey));
+                seriesPuts.add(seriesPut);
+            }
+
+            long timeStamp = record.getTimeStamp() != null ? record.getTimeStamp() : System.currentTimeMillis();
+            long baseTime = getBaseTime(timeStamp);
+            Put put = new Put(getRowKey(seriesId.toByteArray(), baseTime));
+            put.add(FAMILY, Bytes.toBytes((int) (timeStamp - baseTime)), timeStamp,
+                    Bytes.toBytes(record.getMetricValue().doubleValue()));
+            putsByTable.computeIfAbsent(getTableName(record.getTSDRDataCategory()), k -> new ArrayList<>()).add(put);
+        }
+
+        // The series are written first so that samples are never visible without their series key.
+        dataStore.put(SERIES_TABLE, seriesPuts);
+        knownSeries.addAll(newSeries);
+
+        for (Map.Entry<String, List<Put>> entry : putsByTable.entrySet()) {
+            dataStore.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Retrieve the metric records of a category.
+     * @param category - the data category
+     * @param seriesKey - the key of a single series, or null to select the series with the filters
+     * @param seriesFilters - the substrings the series keys must contain
+     * @param startTime - the start time, 0 for no time range
+     * @param endTime - the end time, 0 for no time range
+     * @param limit - the maximum number of records
+     * @return the records
+     * @throws TableNotFoundException - a table not found exception
+     */
+    public List<TSDRMetricRecord> getMetrics(DataCategory category, String seriesKey, List<String> seriesFilters,
+            long startTime, long endTime, int limit) throws TableNotFoundException {
+        Map<MD5ID, String> series;
+        if (seriesKey != null) {
+            series = new HashMap<>();
+            series.put(MD5ID.createTSDRId(seriesKey), seriesKey);
+        } else {
+            series = findSeries(category, seriesFilters);
+        }
+
+        List<TSDRMetricRecord> records = new ArrayList<>();
+        for (Map.Entry<MD5ID, String> entry : series.entrySet()) {
+            if (records.size() >= limit) {
+                break;
+            }
+            readSeries(category, entry.getKey(), entry.getValue(), startTime, endTime, limit, records);
+        }
+        return records;
+    }
+
+    private Map<MD5ID, String> findSeries(DataCategory category, List<String> seriesFilters)
+            throws TableNotFoundException {
+        // Only the series rows of the category are scanned, the filters are applied to them on the region servers.
+        byte[] rowPrefix = getSeriesRowPrefix(category);
+        Scan scan = new Scan(rowPrefix, HBaseDataStore.prefixStopRow(rowPrefix));
+        scan.addColumn(FAMILY, SERIES_KEY_QUALIFIER);
+        if (seriesFilters != null && !seriesFilters.isEmpty()) {
+            FilterList filterList = new FilterList(FilterList.Operator.MUST_PASS_ALL);
+            for (String filter : seriesFilters) {
+                filterList.addFilter(seriesKeyFilter(filter));
+            }
+            scan.setFilter(filterList);
+        }
+        scan.setCaching(TsdrHBaseDataStoreConstants.MAX_QUERY_RECORDS);
+
+        Map<MD5ID, String> series = new LinkedHashMap<>();
+        for (Result result : dataStore.scan(SERIES_TABLE, scan, Integer.MAX_VALUE)) {
+            series.put(MD5ID.createTSDRIdAlreadyHash(Bytes.tail(result.getRow(), SERIES_ID_LENGTH)),
+                    Bytes.toString(result.getValue(FAMILY, SERIES_KEY_QUALIFIER)));
+        }
+        return series;
+    }
+
+    private static ValueFilter seriesKeyFilter(String substring) {
+        return new ValueFilter(CompareOp.EQUAL, new RegexStringComparator(Pattern.quote(substring)));
+    }
+
+    private void readSeries(DataCategory category, MD5ID seriesId, String seriesKey, long startTime, long endTime,
+            int limit, List<TSDRMetricRecord> records) throws TableNotFoundException {
+        byte[] id = seriesId.toByteArray();
+        final Scan scan;
+        if (startTime != 0 && endTime != 0) {
+            byte[] startRow = getRowKey(id, getBaseTime(startTime));
+            byte[] stopRow = getRowKey(id, getBaseTime(endTime) + ROW_TIME_SPAN);
+            scan = new Scan(startRow, stopRow);
+            try {
+                scan.setTimeRange(startTime, endTime);
+            } catch (IOException e) {
+                LOG.warn("Invalid time range {} - {}", startTime, endTime, e);
+                return;
+            }
+        } else {
+            byte[] seriesPrefix = Bytes.head(getRowKey(id, 0), 1 + SERIES_ID_LENGTH);
+            scan = new Scan(seriesPrefix, HBaseDataStore.prefixStopRow(seriesPrefix));
+        }
+        scan.addFamily(FAMILY);
+        scan.setCaching(Math.min(limit, TsdrHBaseDataStoreConstants.MAX_QUERY_RECORDS));
+
+        // The series metadata is decoded once for all the samples of the series.
+        String nodeId = FormatUtil.getNodeIdFromTSDRKey(seriesKey);
+        String metricName = FormatUtil.getMetriNameFromTSDRKey(seriesKey);
+        List<RecordKeys> recordKeys = FormatUtil.getRecordKeysFromTSDRKey(seriesKey);
+
+        dataStore.scan(getTableName(category), scan, result -> {
+            long baseTime = Bytes.toLong(result.getRow(), 1 + SERIES_ID_LENGTH);
+            for (KeyValue kv : result.raw()) {
+                if (kv.getQualifierLength() != Bytes.SIZEOF_INT) {
+                    continue;
+                }
+                long offset = Bytes.toInt(kv.getBuffer(), kv.getQualifierOffset());
+                double value = Bytes.toDouble(kv.getBuffer(), kv.getValueOffset());
+                records.add(new TSDRMetricRecordBuilder().setTSDRDataCategory(category).setNodeID(nodeId)
+                        .setMetricName(metricName).setRecordKeys(recordKeys).setTimeStamp(baseTime + offset)
+                        .setMetricValue(BigDecimal.valueOf(value)).build());
+                if (records.size() >= limit) {
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+}
@@ -9,8 +9,8 @@
 package org.opendaylight.tsdr.persistence.hbase;
 
 import java.io.IOException;
-import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -29,8 +29,8 @@ import org.opendaylight.tsdr.spi.persistence.TSDRMetricPersistenceService;
 import org.opendaylight.tsdr.spi.scheduler.SchedulerService;
 import org.opendaylight.tsdr.spi.util.FormatUtil;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data.rev160325.storetsdrbinaryrecord.input.TSDRBinaryRecord;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.storetsdrlogrecord.input.TSDRLogRecord;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.storetsdrlogrecord.input.TSDRLogRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecordBuilder;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecordBuilder;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
@@ -58,6 +58,7 @@ public class TsdrHBasePersistenceServiceImpl implements TSDRLogPersistenceServic
 
     private final SchedulerService schedulerService;
     private final HBaseDataStoreFactory dataStoreFactory;
+    private final HBaseWideRowMetricStore wideRowMetricStore;
 
     @Nonnull
     private volatile CreateTableTask createTableTask;
@@ -70,6 +71,15 @@ public class TsdrHBasePersistenceServiceImpl implements TSDRLogPersistenceServic
         this.dataStoreFactory = dataStoreFactory;
         this.schedulerService = schedulerService;
 
+        HBaseDataStoreContext context = dataStoreFactory.getDataStoreContext();
+        if (context.isWideRowMetricSchema()) {
+            wideRowMetricStore = new HBaseWideRowMetricStore(dataStoreFactory.getHBaseDataStore(),
+                    context.getSaltBuckets());
+            LOG.info("Using the wide-row metric schema with {} salt buckets", context.getSaltBuckets());
+        } else {
+            wideRowMetricStore = null;
+        }
+
         createTableTask = startNewCreateTableTask();
 
         LOG.info("TSDR HBase Data Store is initialized.");
@@ -83,9 +93,30 @@ public class TsdrHBasePersistenceServiceImpl implements TSDRLogPersistenceServic
     }
 
     private CreateTableTask startNewCreateTableTask() {
-        long retryInterval = dataStoreFactory.getDataStoreContext().getCreateTableRetryInterval();
-        return new CreateTableTask(dataStoreFactory.getHBaseDataStore(), HBasePersistenceUtil.getTsdrHBaseTables(),
-                schedulerService, TimeUnit.SECONDS.toMillis(retryInterval)).start();
+        HBaseDataStoreContext context = dataStoreFactory.getDataStoreContext();
+        List<String> tableNames = new ArrayList<>(HBasePersistenceUtil.getTsdrHBaseTables());
+        Map<String, byte[][]> splitKeys = new HashMap<>();
+        Map<String, Integer> timeToLive = new HashMap<>();
+        for (DataCategory category : DataCategory.values()) {
+            if (context.getTimeToLive(category) > 0) {
+                timeToLive.put(category.name(), context.getTimeToLive(category));
+                timeToLive.put(HBaseWideRowMetricStore.getTableName(category), context.getTimeToLive(category));
+            }
+        }
+
+        if (wideRowMetricStore != null) {
+            byte[][] wideRowSplitKeys = HBaseWideRowMetricStore.getSplitKeys(context.getSaltBuckets());
+            for (String tableName : HBaseWideRowMetricStore.getTableNames()) {
+                tableNames.add(tableName);
+                if (!HBaseWideRowMetricStore.SERIES_TABLE.equals(tableName)) {
+                    splitKeys.put(tableName, wideRowSplitKeys);
+                }
+            }
+        }
+
+        return new CreateTableTask(dataStoreFactory.getHBaseDataStore(), tableNames, splitKeys, timeToLive,
+                context.isAlterTables(), schedulerService,
+                TimeUnit.SECONDS.toMillis(context.getCreateTableRetryInterval())).start();
     }
 
     private void executeDatabaseOperationWithRetries(DatabaseOperation operation) {
@@ -149,6 +180,11 @@ public class TsdrHBasePersistenceServiceImpl implements TSDRLogPersistenceServic
     public void storeMetric(TSDRMetricRecord metrics) {
         LOG.debug("Entering store(TSDRMetricRecord)");
 
+        if (wideRowMetricStore != null) {
+            executeDatabaseOperationWithRetries(() -> wideRowMetricStore.store(Collections.singletonList(metrics)));
+            return;
+        }
+
         // convert TSDRRecord to HBaseEntities
 
         HBaseEntity entity = convertToHBaseEntity(metrics);
@@ -169,6 +205,13 @@ public class TsdrHBasePersistenceServiceImpl implements TSDRLogPersistenceServic
     public void storeMetric(List<TSDRMetricRecord> recordList) {
         LOG.debug("Entering store(List<TSDRRecord>)");
 
+        if (wideRowMetricStore != null) {
+            if (recordList != null && !recordList.isEmpty()) {
+                executeDatabaseOperationWithRetries(() -> wideRowMetricStore.store(recordList));
+            }
+            return;
+        }
+
         storeRecords(recordList, this::convertToHBaseEntity);
 
         LOG.debug("Exiting store(List<TSDRRecord>)");
@@ -214,16 +257,16 @@ public class TsdrHBasePersistenceServiceImpl implements TSDRLogPersistenceServic
         }
 
         //This is getting all data from the hbase table
-        List<HBaseEntity> resultEntities = null;
         if (FormatUtil.isDataCategoryKey(tsdrMetricKey)
                 || FormatUtil.isDataCategory(tsdrMetricKey)) {
             String dataCategory = FormatUtil.isDataCategoryKey(tsdrMetricKey)
                     ? FormatUtil.getDataCategoryFromTSDRKey(tsdrMetricKey) : tsdrMetricKey;
-            resultEntities = dataStoreFactory.getHBaseDataStore().getDataByTimeRange(dataCategory, startTime, endTime);
-            for (HBaseEntity e : resultEntities) {
-                resultRecords.add(getTSDRMetricRecord(e));
+            if (wideRowMetricStore != null) {
+                return getWideRowMetricRecords(DataCategory.valueOf(dataCategory), null,
+                        Collections.emptyList(), startTime, endTime);
             }
-            return resultRecords;
+
+            return getMetricRecords(dataCategory, null, null, startTime, endTime);
         } else {
 
             // A valid tsdr metric key does need to contain all the keys but
@@ -243,39 +286,62 @@ public class TsdrHBasePersistenceServiceImpl implements TSDRLogPersistenceServic
                 return resultRecords;
             }
 
-            //Add filter for node id
+            // The row key starts with the series key, so the leading sub keys that are specified bound the
+            // scan and the others are pushed down as substring filters.
             String nodeID = FormatUtil.getNodeIdFromTSDRKey(tsdrMetricKey);
-            if (!nodeID.isEmpty()) {
-                substringFilterList.add("[NID=" + nodeID + "]");
-            }
-
-            // Add filter for metric name
             String metricName = FormatUtil.getMetriNameFromTSDRKey(tsdrMetricKey);
-            if (!metricName.isEmpty()) {
-                substringFilterList.add("[MN=" + metricName + "]");
-            }
-
-            // Add filter for record keys
             List<RecordKeys> recKeys = FormatUtil.getRecordKeysFromTSDRKey(tsdrMetricKey);
-            String recKeyString = "[RK=";
-            if (!recKeys.isEmpty()) {
-                StringBuilder buf = new StringBuilder(recKeyString);
-                for (RecordKeys recKey : recKeys) {
-                    buf.append(recKey.getKeyName()).append(':').append(recKey.getKeyValue()).append(',');
+            String seriesKey = FormatUtil.getTSDRMetricKey(new TSDRMetricRecordBuilder().setNodeID(nodeID)
+                    .setTSDRDataCategory(DataCategory.valueOf(dataCategory)).setMetricName(metricName)
+                    .setRecordKeys(recKeys).build());
+
+            if (wideRowMetricStore != null) {
+                // The series are looked up by their key, so a fully specified key reads a single series and
+                // the specified sub keys of a partial one select the series.
+                if (!nodeID.isEmpty() && !metricName.isEmpty() && !recKeys.isEmpty()) {
+                    return getWideRowMetricRecords(DataCategory.valueOf(dataCategory), seriesKey,
+                            Collections.emptyList(), startTime, endTime);
                 }
-                recKeyString = buf.toString().substring(0, buf.length() - 1) + "]";
-                substringFilterList.add(recKeyString);
-            }
 
-            resultEntities = dataStoreFactory.getHBaseDataStore().getDataByTimeRange(
-                    dataCategory,substringFilterList, startTime, endTime);
-            for (HBaseEntity e : resultEntities) {
-                resultRecords.add(getTSDRMetricRecord(e));
+                if (!nodeID.isEmpty()) {
+                    substringFilterList.add(seriesKey.substring(0, seriesKey.indexOf(FormatUtil.KEY_CATEGORY)));
+                }
+                if (!metricName.isEmpty()) {
+                    substringFilterList.add(FormatUtil.KEY_METRICNAME + metricName + "]");
+                }
+                if (!recKeys.isEmpty()) {
+                    substringFilterList.add(seriesKey.substring(seriesKey.indexOf(FormatUtil.KEY_RECORDKEYS)));
+                }
+                return getWideRowMetricRecords(DataCategory.valueOf(dataCategory), null, substringFilterList,
+                        startTime, endTime);
             }
-            return resultRecords;
+
+            String rowPrefix = toRowPrefix(substringFilterList,
+                    nodeID.isEmpty() ? null : seriesKey.substring(0, seriesKey.indexOf(FormatUtil.KEY_METRICNAME)),
+                    metricName.isEmpty() ? null : FormatUtil.KEY_METRICNAME + metricName + "]",
+                    recKeys.isEmpty() ? null : seriesKey.substring(seriesKey.indexOf(FormatUtil.KEY_RECORDKEYS)));
+
+            return getMetricRecords(dataCategory, rowPrefix, substringFilterList, startTime, endTime);
         }
     }
 
+    private List<TSDRMetricRecord> getMetricRecords(String dataCategory, String rowPrefix,
+            List<String> substringFilters, long startTime, long endTime) {
+        final List<TSDRMetricRecord> resultRecords = new ArrayList<>();
+        dataStoreFactory.getHBaseDataStore().scanByTimeRange(dataCategory, rowPrefix, substringFilters, startTime,
+                endTime, new HBaseMetricRecordDecoder(DataCategory.valueOf(dataCategory), resultRecords::add,
+                        TsdrHBaseDataStoreConstants.MAX_QUERY_RECORDS));
+        return resultRecords;
+    }
+
+    private List<TSDRMetricRecord> getWideRowMetricRecords(DataCategory category, String seriesKey,
+            List<String> seriesFilters, long startTime, long endTime) {
+        final List<TSDRMetricRecord> resultRecords = new ArrayList<>();
+        executeDatabaseOperationWithRetries(() -> resultRecords.addAll(wideRowMetricStore.getMetrics(category,
+                seriesKey, seriesFilters, startTime, endTime, TsdrHBaseDataStoreConstants.MAX_QUERY_RECORDS)));
+        return resultRecords;
+    }
+
     /**
      * Retrieve a list of TSDRLogRecords from HBase data store based on the
      * specified data tsdrLogKey, startTime, and endTime.
@@ -319,26 +385,17 @@ public class TsdrHBasePersistenceServiceImpl implements TSDRLogPersistenceServic
                 return resultRecords;
             }
 
-            // Add filter for node id
             String nodeID = FormatUtil.getNodeIdFromTSDRKey(tsdrLogKey);
-            if (!nodeID.isEmpty()) {
-                substringFilterList.add("[NID=" + nodeID + "]");
-            }
-
-            // Add filter for record keys
             List<RecordKeys> recKeys = FormatUtil.getRecordKeysFromTSDRKey(tsdrLogKey);
-            String recKeyString = "[RK=";
-            if (!recKeys.isEmpty()) {
-                StringBuilder buf = new StringBuilder(recKeyString);
-                for (RecordKeys recKey : recKeys) {
-                    buf.append(recKey.getKeyName()).append(':').append(recKey.getKeyValue()).append(',');
-                }
-                recKeyString = buf.toString().substring(0, buf.length() - 1) + "]";
-                substringFilterList.add(recKeyString);
-            }
+            String seriesKey = FormatUtil.getTSDRLogKey(new TSDRLogRecordBuilder().setNodeID(nodeID)
+                    .setTSDRDataCategory(DataCategory.valueOf(dataCategory)).setRecordKeys(recKeys).build());
+
+            String rowPrefix = toRowPrefix(substringFilterList,
+                    nodeID.isEmpty() ? null : seriesKey.substring(0, seriesKey.indexOf(FormatUtil.KEY_RECORDKEYS)),
+                    recKeys.isEmpty() ? null : seriesKey.substring(seriesKey.indexOf(FormatUtil.KEY_RECORDKEYS)));
 
             resultEntities = dataStoreFactory.getHBaseDataStore().getDataByTimeRange(dataCategory,
-                    substringFilterList, startTime, endTime);
+                    rowPrefix, substringFilterList, startTime, endTime);
         }
         for (HBaseEntity e : resultEntities) {
             resultRecords.add(getTSDRLogRecord(e));
@@ -346,15 +403,52 @@ public class TsdrHBasePersistenceServiceImpl implements TSDRLogPersistenceServic
         return resultRecords;
     }
 
+    /**
+     * Returns the row key prefix made of the leading specified sub keys. The specified sub keys following
+     * an unspecified one cannot bound the scan and are added to the substring filters instead.
+     *
+     * @param substringFilters - the list the remaining sub keys are added to
+     * @param subKeys - the sub keys in row key order, null if not specified
+     * @return the row key prefix or null if the first sub key is not specified
+     */
+    static String toRowPrefix(List<String> substringFilters, String... subKeys) {
+        StringBuilder prefix = new StringBuilder();
+        boolean leading = true;
+        for (String subKey : subKeys) {
+            if (subKey == null) {
+                leading = false;
+            } else if (leading) {
+                prefix.append(subKey);
+            } else {
+                substringFilters.add(subKey);
+            }
+        }
+        return prefix.length() == 0 ? null : prefix.toString();
+    }
+
     @Override
     public void purge(DataCategory category, long retentionTime) {
         try {
-            dataStoreFactory.getHBaseDataStore().deleteByTimestamp(category.name(), retentionTime);
+            purge(category.name(), retentionTime);
+            if (wideRowMetricStore != null) {
+                // A wide row is deleted as a whole, so only the rows whose hour has fully expired are purged.
+                purge(HBaseWideRowMetricStore.getTableName(category),
+                        HBaseWideRowMetricStore.getBaseTime(retentionTime));
+            }
         } catch (IOException ioe) {
             LOG.error("Error purging TSDR records in HBase data store {}", ioe);
         }
     }
 
+    private void purge(String tableName, long retentionTime) throws IOException {
+        if (createTableTask.isTimeToLiveApplied(tableName)) {
+            // The cells expire through the column family time to live and are dropped by the compactions.
+            LOG.debug("{} records expire through their time to live - nothing to purge", tableName);
+            return;
+        }
+        dataStoreFactory.getHBaseDataStore().deleteByTimestamp(tableName, retentionTime);
+    }
+
     @Override
     public void purge(long retentionTime) {
         for (DataCategory category : DataCategory.values()) {
@@ -408,22 +502,11 @@ public class TsdrHBasePersistenceServiceImpl implements TSDRLogPersistenceServic
         for (String tableName : HBasePersistenceUtil.getTsdrHBaseTables()) {
             dataStoreFactory.getHBaseDataStore().closeConnection(tableName);
         }
+        dataStoreFactory.getHBaseDataStore().close();
         LOG.debug("Exiting closeConnections()");
         return;
     }
 
-    private static TSDRMetricRecord getTSDRMetricRecord(HBaseEntity entity) {
-        TSDRMetricRecordBuilder tsdrMetricRecordBuilder = new TSDRMetricRecordBuilder();
-        tsdrMetricRecordBuilder.setMetricName(FormatUtil.getMetriNameFromTSDRKey(entity.getRowKey()));
-        tsdrMetricRecordBuilder
-                .setMetricValue(new BigDecimal(Double.parseDouble(entity.getColumns().get(0).getValue())));
-        tsdrMetricRecordBuilder.setNodeID(FormatUtil.getNodeIdFromTSDRKey(entity.getRowKey()));
-        tsdrMetricRecordBuilder.setRecordKeys(FormatUtil.getRecordKeysFromTSDRKey(entity.getRowKey()));
-        tsdrMetricRecordBuilder.setTimeStamp(FormatUtil.getTimeStampFromTSDRKey(entity.getRowKey()));
-        tsdrMetricRecordBuilder.setTSDRDataCategory(DataCategory.valueOf(entity.getTableName()));
-        return tsdrMetricRecordBuilder.build();
-    }
-
     private static TSDRLogRecord getTSDRLogRecord(HBaseEntity entity) {
         TSDRLogRecordBuilder tsdrLogRecordBuilder = new TSDRLogRecordBuilder();
         tsdrLogRecordBuilder.setTSDRDataCategory(DataCategory.valueOf(entity.getTableName()));
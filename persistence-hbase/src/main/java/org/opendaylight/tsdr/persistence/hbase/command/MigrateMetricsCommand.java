@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.hbase.command;
+
+import java.io.PrintStream;
+import org.apache.karaf.shell.api.action.Action;
+import org.apache.karaf.shell.api.action.Argument;
+import org.apache.karaf.shell.api.action.Command;
+import org.apache.karaf.shell.api.action.lifecycle.Reference;
+import org.apache.karaf.shell.api.action.lifecycle.Service;
+import org.apache.karaf.shell.api.console.Session;
+import org.opendaylight.tsdr.persistence.hbase.HBaseMetricSchemaMigrator;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
+
+/**
+ * This command copies the HBase metrics from the text schema to the wide-row schema.
+ */
+@Service
+@Command(scope = "tsdr", name = "hbase-migrate-metrics",
+    description = "Copies the HBase metrics of a category, or of all the metric categories, to the wide-row schema")
+public class MigrateMetricsCommand implements Action {
+    @Argument(index = 0, name = "category", required = false,
+            description = "The category of the metrics to migrate", multiValued = false)
+    public String category = null;
+
+    @Reference HBaseMetricSchemaMigrator migrator;
+    @Reference protected Session session;
+
+    @Override
+    @SuppressWarnings("checkstyle:RegexpSingleLineJava")
+    public Object execute() throws Exception {
+        PrintStream ps = this.session != null ? this.session.getConsole() : System.out;
+
+        if (category != null) {
+            migrate(ps, DataCategory.valueOf(category));
+            return null;
+        }
+
+        for (DataCategory dataCategory : DataCategory.values()) {
+            if (dataCategory != DataCategory.NETFLOW && dataCategory != DataCategory.SYSLOG
+                    && dataCategory != DataCategory.LOGRECORDS && dataCategory != DataCategory.RESTCONF) {
+                migrate(ps, dataCategory);
+            }
+        }
+        return null;
+    }
+
+    private void migrate(PrintStream ps, DataCategory dataCategory) throws Exception {
+        ps.println("Migrating " + dataCategory + " metrics...");
+        ps.println("Migrated " + migrator.migrate(dataCategory) + " " + dataCategory + " metrics");
+    }
+}
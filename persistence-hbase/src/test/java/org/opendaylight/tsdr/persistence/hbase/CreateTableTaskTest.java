@@ -10,14 +10,17 @@ package org.opendaylight.tsdr.persistence.hbase;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 
+import com.google.common.collect.ImmutableMap;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collections;
 import org.junit.Before;
 import org.junit.Test;
 import org.opendaylight.tsdr.spi.scheduler.SchedulerService;
@@ -73,4 +76,41 @@ public class CreateTableTaskTest {
         verify(mockDataStore).createTable("table2");
         verifyNoMoreInteractions(mockDataStore, mockSchedulerService);
     }
+
+    @Test
+    public void testRunWithSplitKeys() throws IOException {
+        byte[][] splitKeys = new byte[][] {{1}, {2}};
+        CreateTableTask task = new CreateTableTask(mockDataStore, Arrays.asList("table1", "table2"),
+                Collections.singletonMap("table2", splitKeys), mockSchedulerService, 50);
+        task.run();
+
+        assertTrue(task.completionFuture().isDone());
+        verify(mockDataStore).createTable("table1");
+        verify(mockDataStore).createTable("table2", splitKeys);
+        verifyNoMoreInteractions(mockDataStore, mockSchedulerService);
+    }
+
+    @Test
+    public void testRunWithTimeToLive() throws IOException {
+        doReturn(true).when(mockDataStore).createTable("table2", null, 3600, true);
+        doReturn(false).when(mockDataStore).createTable("table3", null, 3600, true);
+        CreateTableTask task = new CreateTableTask(mockDataStore, Arrays.asList("table1", "table2", "table3"),
+                Collections.emptyMap(), ImmutableMap.of("table2", 3600, "table3", 3600), true, mockSchedulerService,
+                50);
+
+        // The records are purged until the time to live is set
+        assertFalse(task.isTimeToLiveApplied("table2"));
+        task.run();
+
+        assertTrue(task.completionFuture().isDone());
+        verify(mockDataStore).createTable("table1");
+        verify(mockDataStore).createTable("table2", null, 3600, true);
+        verify(mockDataStore).createTable("table3", null, 3600, true);
+        verifyNoMoreInteractions(mockDataStore, mockSchedulerService);
+
+        // The records of the table whose time to live was not set are still purged
+        assertFalse(task.isTimeToLiveApplied("table1"));
+        assertTrue(task.isTimeToLiveApplied("table2"));
+        assertFalse(task.isTimeToLiveApplied("table3"));
+    }
 }
@@ -7,10 +7,13 @@
  */
 package org.opendaylight.tsdr.persistence.hbase;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Properties;
 import org.junit.Test;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
 
 /**
  * Unit tests for HBaseDataStoreContext.
@@ -44,4 +47,34 @@ public class HBaseDataStoreContextTest {
     public void testGetAutoFlush() {
         assertFalse(contextService.getAutoFlush());
     }
+
+    @Test
+    public void testMetricSchema() {
+        assertFalse(contextService.isWideRowMetricSchema());
+        assertEquals(16, contextService.getSaltBuckets());
+        assertEquals(1000, contextService.getFlushInterval());
+
+        Properties properties = new Properties();
+        properties.setProperty(HBaseDataStoreContext.METRIC_SCHEMA_PROP, "wide");
+        properties.setProperty(HBaseDataStoreContext.SALT_BUCKETS_PROP, "1000");
+        HBaseDataStoreContext context = new HBaseDataStoreContext(properties);
+        assertTrue(context.isWideRowMetricSchema());
+        assertEquals(256, context.getSaltBuckets());
+    }
+
+    @Test
+    public void testTimeToLive() {
+        assertEquals(0, contextService.getTimeToLive(DataCategory.SYSLOG));
+
+        Properties properties = new Properties();
+        properties.setProperty(HBaseDataStoreContext.RETENTION_HOURS_PROP, "2");
+        properties.setProperty(HBaseDataStoreContext.RETENTION_HOURS_PROP + ".SYSLOG", "0");
+        HBaseDataStoreContext context = new HBaseDataStoreContext(properties);
+        assertEquals(7200, context.getTimeToLive(DataCategory.PORTSTATS));
+        assertEquals(0, context.getTimeToLive(DataCategory.SYSLOG));
+        assertFalse(context.isAlterTables());
+
+        properties.setProperty(HBaseDataStoreContext.ALTER_TABLES_PROP, "true");
+        assertTrue(new HBaseDataStoreContext(properties).isAlterTables());
+    }
 }
@@ -7,6 +7,8 @@
  */
 package org.opendaylight.tsdr.persistence.hbase;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
@@ -27,6 +29,8 @@ import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.ResultScanner;
 import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.eclipse.jdt.internal.core.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -171,6 +175,29 @@ public class HBaseDataStoreTest {
         filters.add("filter1");
         filters.add("filter2");
         hbaseDataStore.getDataByTimeRange("tableName", filters, 0L, 100);
+        hbaseDataStore.getDataByTimeRange("tableName", "[NID=node1][DC=PORTSTATS]", filters, 0L, 100);
+    }
+
+    @Test
+    public void testNewScan() {
+        List<String> filters = new ArrayList<>();
+        filters.add("[MN=PacketCount]");
+        Scan scan = HBaseDataStore.newScan("[NID=node1][DC=PORTSTATS]", filters, 10);
+        assertArrayEquals(Bytes.toBytes("[NID=node1][DC=PORTSTATS]"), scan.getStartRow());
+        assertArrayEquals(Bytes.toBytes("[NID=node1][DC=PORTSTATS^"), scan.getStopRow());
+        assertEquals(2, ((FilterList) scan.getFilter()).getFilters().size());
+        assertEquals(10, scan.getCaching());
+
+        scan = HBaseDataStore.newScan(null, null, 10);
+        assertEquals(0, scan.getStartRow().length);
+        assertEquals(1, ((FilterList) scan.getFilter()).getFilters().size());
+    }
+
+    @Test
+    public void testPrefixStopRow() {
+        assertArrayEquals(new byte[] {1, 3}, HBaseDataStore.prefixStopRow(new byte[] {1, 2}));
+        assertArrayEquals(new byte[] {2}, HBaseDataStore.prefixStopRow(new byte[] {1, (byte) 0xff}));
+        assertEquals(0, HBaseDataStore.prefixStopRow(new byte[] {(byte) 0xff}).length);
     }
 
     @Test
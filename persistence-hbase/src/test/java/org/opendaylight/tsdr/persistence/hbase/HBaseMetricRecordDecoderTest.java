@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.hbase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
+
+/**
+ * Unit tests for HBaseMetricRecordDecoder.
+ */
+public class HBaseMetricRecordDecoderTest {
+    private static final String SERIES_KEY = "[NID=openflow:1][DC=PORTSTATS][MN=TransmittedPackets][RK=Port:1]";
+
+    private final List<TSDRMetricRecord> records = new ArrayList<>();
+    private final HBaseMetricRecordDecoder decoder = new HBaseMetricRecordDecoder(DataCategory.PORTSTATS,
+            records::add, 3);
+
+    @Test
+    public void testDecode() {
+        assertTrue(decoder.onResult(row(SERIES_KEY + "[TS=1000]", "5.5")));
+        assertTrue(decoder.onResult(row(SERIES_KEY + "[TS=2000]", "6")));
+        assertTrue(decoder.onResult(row(SERIES_KEY + "[TS=3000]", "not a number")));
+        assertTrue(decoder.onResult(row(SERIES_KEY, "7")));
+        assertFalse(decoder.onResult(row("[NID=openflow:2][DC=PORTSTATS][MN=TransmittedPackets][RK=Port:1][TS=10]",
+                "8")));
+
+        assertEquals(3, records.size());
+        TSDRMetricRecord record = records.get(0);
+        assertEquals(DataCategory.PORTSTATS, record.getTSDRDataCategory());
+        assertEquals("openflow:1", record.getNodeID());
+        assertEquals("TransmittedPackets", record.getMetricName());
+        assertEquals("Port", record.getRecordKeys().get(0).getKeyName());
+        assertEquals("1", record.getRecordKeys().get(0).getKeyValue());
+        assertEquals(1000L, record.getTimeStamp().longValue());
+        assertEquals(5.5, record.getMetricValue().doubleValue(), 0);
+
+        // The series metadata is decoded once for the consecutive rows of a series.
+        assertEquals(2000L, records.get(1).getTimeStamp().longValue());
+        assertSame(record.getNodeID(), records.get(1).getNodeID());
+        assertEquals("openflow:2", records.get(2).getNodeID());
+    }
+
+    private static Result row(String rowKey, String value) {
+        return new Result(new KeyValue[] {new KeyValue(Bytes.toBytes(rowKey),
+                Bytes.toBytes(TsdrHBaseDataStoreConstants.COLUMN_FAMILY_NAME),
+                Bytes.toBytes(TsdrHBaseDataStoreConstants.COLUMN_QUALIFIER_NAME), 1L, Bytes.toBytes(value))});
+    }
+}
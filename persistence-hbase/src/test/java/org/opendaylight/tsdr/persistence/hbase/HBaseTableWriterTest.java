@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.hbase;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.hadoop.hbase.client.HTableInterface;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.RetriesExhaustedWithDetailsException;
+import org.apache.hadoop.hbase.client.Row;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+/**
+ * Unit tests for HBaseTableWriter.
+ */
+public class HBaseTableWriterTest {
+    private final HTableInterface mockTable = mock(HTableInterface.class);
+    private final HBaseTableWriter.ExceptionListener mockListener = mock(HBaseTableWriter.ExceptionListener.class);
+
+    @Test
+    public void testBufferedWrites() throws IOException {
+        HBaseTableWriter writer = new HBaseTableWriter("table", name -> mockTable, 2048, mockListener);
+        verify(mockTable).setAutoFlush(true);
+
+        List<Put> puts = Collections.singletonList(new Put(Bytes.toBytes("row")));
+        writer.put(puts);
+        verify(mockTable, never()).put(anyListOf(Put.class));
+
+        writer.close();
+        verify(mockTable).put(puts);
+        verify(mockTable).close();
+        verifyNoMoreInteractions(mockListener);
+    }
+
+    @Test
+    public void testFlushFailureIsReported() throws IOException {
+        Put put = new Put(Bytes.toBytes("row"));
+        RetriesExhaustedWithDetailsException exception = failure(put);
+        doThrow(exception).when(mockTable).put(Collections.singletonList(put));
+
+        HBaseTableWriter writer = new HBaseTableWriter("table", name -> mockTable, 2048, mockListener);
+        writer.put(Collections.singletonList(put));
+        writer.flush();
+        assertEquals(1, writer.getBufferedPuts());
+        writer.flush();
+
+        verify(mockListener, times(2)).onException("table", exception);
+    }
+
+    @Test
+    public void testFailedPutsAreCapped() throws IOException {
+        Put put1 = new Put(Bytes.toBytes("row1"));
+        Put put2 = new Put(Bytes.toBytes("row2"));
+        RetriesExhaustedWithDetailsException exception = failure(put1, put2);
+        doThrow(exception).when(mockTable).put(Arrays.asList(put1, put2));
+        doThrow(new IOException("mock")).when(mockTable).put(Collections.singletonList(put1));
+
+        // Room for one failed put only, the buffer is sent when the second put is added
+        HBaseTableWriter writer = new HBaseTableWriter("table", name -> mockTable, put1.heapSize() * 3 / 2,
+                mockListener);
+        writer.put(Arrays.asList(put1, put2));
+        verify(mockListener).onException("table", exception);
+        assertEquals(1, writer.getBufferedPuts());
+
+        // The put which still cannot be sent is dropped on close
+        writer.close();
+        assertEquals(0, writer.getBufferedPuts());
+        verify(mockTable).close();
+    }
+
+    @Test
+    public void testPutsAreResentAfterTableFailure() throws IOException {
+        Put put = new Put(Bytes.toBytes("row"));
+        List<Put> puts = Collections.singletonList(put);
+        HTableInterface failedTable = mock(HTableInterface.class);
+        doThrow(new IOException("mock")).when(failedTable).put(puts);
+        HBaseTableWriter.TableOpener mockOpener = mock(HBaseTableWriter.TableOpener.class);
+        when(mockOpener.open("table")).thenReturn(failedTable, mockTable);
+
+        HBaseTableWriter writer = new HBaseTableWriter("table", mockOpener, 2048, mockListener);
+        writer.put(puts);
+        writer.flush();
+        verify(failedTable).close();
+        assertEquals(1, writer.getBufferedPuts());
+
+        // The next flush opens the table again and sends the kept puts
+        writer.flush();
+        verify(mockTable).setAutoFlush(true);
+        verify(mockTable).put(puts);
+        assertEquals(0, writer.getBufferedPuts());
+        verifyNoMoreInteractions(mockListener);
+    }
+
+    private static RetriesExhaustedWithDetailsException failure(Put... puts) {
+        List<Throwable> causes = new ArrayList<>();
+        List<String> servers = new ArrayList<>();
+        for (int i = 0; i < puts.length; i++) {
+            causes.add(new IOException("mock"));
+            servers.add("localhost:60020");
+        }
+        return new RetriesExhaustedWithDetailsException(causes, Arrays.<Row>asList(puts), servers);
+    }
+}
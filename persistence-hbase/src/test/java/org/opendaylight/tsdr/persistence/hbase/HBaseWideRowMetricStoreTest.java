@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.hbase;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.TableNotFoundException;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.opendaylight.tsdr.spi.util.FormatUtil;
+import org.opendaylight.tsdr.spi.util.MD5ID;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.tsdrrecord.RecordKeysBuilder;
+
+/**
+ * Unit tests for HBaseWideRowMetricStore.
+ */
+public class HBaseWideRowMetricStoreTest {
+    private static final byte[] FAMILY = Bytes.toBytes(TsdrHBaseDataStoreConstants.COLUMN_FAMILY_NAME);
+    private static final long BASE_TIME = 1500000000000L - 1500000000000L % HBaseWideRowMetricStore.ROW_TIME_SPAN;
+
+    private final HBaseDataStore mockDataStore = mock(HBaseDataStore.class);
+    private final HBaseWideRowMetricStore store = new HBaseWideRowMetricStore(mockDataStore, 16);
+
+    @Test
+    public void testRowKey() {
+        byte[] seriesId = MD5ID.createTSDRId("series").toByteArray();
+        byte[] rowKey = store.getRowKey(seriesId, BASE_TIME);
+
+        assertEquals(HBaseWideRowMetricStore.ROW_KEY_LENGTH, rowKey.length);
+        assertEquals((seriesId[15] & 0xff) % 16, rowKey[0]);
+        assertArrayEquals(seriesId, Bytes.head(Bytes.tail(rowKey, rowKey.length - 1), 16));
+        assertEquals(BASE_TIME, Bytes.toLong(rowKey, 17));
+    }
+
+    @Test
+    public void testSplitKeysAndBaseTime() {
+        byte[][] splitKeys = HBaseWideRowMetricStore.getSplitKeys(4);
+        assertEquals(3, splitKeys.length);
+        assertArrayEquals(new byte[] {1}, splitKeys[0]);
+        assertArrayEquals(new byte[] {3}, splitKeys[2]);
+        assertEquals(0, HBaseWideRowMetricStore.getSplitKeys(1).length);
+
+        assertEquals(BASE_TIME, HBaseWideRowMetricStore.getBaseTime(BASE_TIME));
+        assertEquals(BASE_TIME, HBaseWideRowMetricStore.getBaseTime(BASE_TIME + 1234));
+        assertEquals("PORTSTATS_WIDE", HBaseWideRowMetricStore.getTableName(DataCategory.PORTSTATS));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testStore() throws TableNotFoundException {
+        TSDRMetricRecord record = metric(BASE_TIME + 1234, 5.5);
+        store.store(Arrays.asList(record, metric(BASE_TIME + 2000, 6)));
+
+        ArgumentCaptor<List<Put>> seriesPuts = ArgumentCaptor.forClass(List.class);
+        verify(mockDataStore).put(eq(HBaseWideRowMetricStore.SERIES_TABLE), seriesPuts.capture());
+        assertEquals(1, seriesPuts.getValue().size());
+        assertArrayEquals(Bytes.add(Bytes.toBytes("PORTSTATS|"),
+                MD5ID.createTSDRId(FormatUtil.getTSDRMetricKey(record)).toByteArray()),
+                seriesPuts.getValue().get(0).getRow());
+
+        ArgumentCaptor<List<Put>> samplePuts = ArgumentCaptor.forClass(List.class);
+        verify(mockDataStore).put(eq("PORTSTATS_WIDE"), samplePuts.capture());
+        assertEquals(2, samplePuts.getValue().size());
+        KeyValue kv = samplePuts.getValue().get(0).getFamilyMap().get(FAMILY).get(0);
+        assertEquals(1234, Bytes.toInt(kv.getQualifier()));
+        assertEquals(BASE_TIME + 1234, kv.getTimestamp());
+        assertEquals(5.5, Bytes.toDouble(kv.getValue()), 0);
+
+        // The series key is only written the first time the series is seen.
+        store.store(Collections.singletonList(metric(BASE_TIME + 3000, 7)));
+        verify(mockDataStore).put(HBaseWideRowMetricStore.SERIES_TABLE, Collections.emptyList());
+        verify(mockDataStore, times(2)).put(eq("PORTSTATS_WIDE"), anyList());
+    }
+
+    @Test
+    public void testGetMetrics() throws TableNotFoundException {
+        TSDRMetricRecord record = metric(BASE_TIME + 1234, 5.5);
+        String seriesKey = FormatUtil.getTSDRMetricKey(record);
+        byte[] rowKey = store.getRowKey(MD5ID.createTSDRId(seriesKey).toByteArray(), BASE_TIME);
+        Result result = new Result(new KeyValue[] {
+            new KeyValue(rowKey, FAMILY, Bytes.toBytes(1234), BASE_TIME + 1234, Bytes.toBytes(5.5)),
+            new KeyValue(rowKey, FAMILY, Bytes.toBytes(2000), BASE_TIME + 2000, Bytes.toBytes(6.0))});
+        doAnswer(invocation -> {
+            HBaseDataStore.ResultCallback callback = (HBaseDataStore.ResultCallback) invocation.getArguments()[2];
+            callback.onResult(result);
+            return null;
+        }).when(mockDataStore).scan(eq("PORTSTATS_WIDE"), any(Scan.class), any(HBaseDataStore.ResultCallback.class));
+
+        List<TSDRMetricRecord> records = store.getMetrics(DataCategory.PORTSTATS, seriesKey, null,
+                BASE_TIME, BASE_TIME + 5000, 10);
+        assertEquals(2, records.size());
+        assertEquals(BASE_TIME + 1234, records.get(0).getTimeStamp().longValue());
+        assertEquals(5.5, records.get(0).getMetricValue().doubleValue(), 0);
+        assertEquals(seriesKey, FormatUtil.getTSDRMetricKey(records.get(0)));
+        assertEquals(BASE_TIME + 2000, records.get(1).getTimeStamp().longValue());
+
+        records = store.getMetrics(DataCategory.PORTSTATS, seriesKey, null, 0, 0, 1);
+        assertEquals(1, records.size());
+    }
+
+    @Test
+    public void testFindSeriesScansTheCategoryOnly() throws TableNotFoundException {
+        TSDRMetricRecord record = metric(BASE_TIME + 1234, 5.5);
+        String seriesKey = FormatUtil.getTSDRMetricKey(record);
+        MD5ID seriesId = MD5ID.createTSDRId(seriesKey);
+        Result seriesResult = new Result(new KeyValue[] {
+            new KeyValue(HBaseWideRowMetricStore.getSeriesRowKey(DataCategory.PORTSTATS, seriesId), FAMILY,
+                    Bytes.toBytes("k"), Bytes.toBytes(seriesKey))});
+        ArgumentCaptor<Scan> seriesScan = ArgumentCaptor.forClass(Scan.class);
+        doReturn(Collections.singletonList(seriesResult)).when(mockDataStore).scan(
+                eq(HBaseWideRowMetricStore.SERIES_TABLE), seriesScan.capture(), anyInt());
+
+        store.getMetrics(DataCategory.PORTSTATS, null, Collections.singletonList("openflow:1"), 0, 0, 10);
+
+        assertArrayEquals(Bytes.toBytes("PORTSTATS|"), seriesScan.getValue().getStartRow());
+        assertArrayEquals(Bytes.toBytes("PORTSTATS}"), seriesScan.getValue().getStopRow());
+        ArgumentCaptor<Scan> sampleScan = ArgumentCaptor.forClass(Scan.class);
+        verify(mockDataStore).scan(eq("PORTSTATS_WIDE"), sampleScan.capture(),
+                any(HBaseDataStore.ResultCallback.class));
+        assertArrayEquals(Bytes.head(store.getRowKey(seriesId.toByteArray(), 0), 17),
+                sampleScan.getValue().getStartRow());
+    }
+
+    private static TSDRMetricRecord metric(long timeStamp, double value) {
+        return new TSDRMetricRecordBuilder().setNodeID("openflow:1").setTSDRDataCategory(DataCategory.PORTSTATS)
+                .setMetricName("TransmittedPackets").setTimeStamp(timeStamp)
+                .setMetricValue(BigDecimal.valueOf(value)).setRecordKeys(Collections.singletonList(
+                        new RecordKeysBuilder().setKeyName("Port").setKeyValue("1").build())).build();
+    }
+}
@@ -10,6 +10,11 @@ package org.opendaylight.tsdr.persistence.hbase;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
@@ -21,17 +26,21 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
+import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.TableNotFoundException;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.opendaylight.tsdr.spi.model.TSDRConstants;
 import org.opendaylight.tsdr.spi.scheduler.impl.SchedulerServiceImpl;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.storetsdrlogrecord.input.TSDRLogRecord;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.storetsdrlogrecord.input.TSDRLogRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecordBuilder;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecordBuilder;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
@@ -192,8 +201,13 @@ public class TsdrRHBasePersistenceServiceImplTest {
         ArgumentCaptor<HBaseEntity> entity = ArgumentCaptor.forClass(HBaseEntity.class);
         verify(mockDataStore).create(entity.capture());
 
-        doReturn(Arrays.asList(entity.getValue())).when(mockDataStore).getDataByTimeRange(
-                DataCategory.FLOWTABLESTATS.name(), 0L, timeStamp);
+        HBaseColumn column = entity.getValue().getColumns().get(0);
+        Result result = new Result(new KeyValue[] {new KeyValue(Bytes.toBytes(entity.getValue().getRowKey()),
+                Bytes.toBytes(column.getColumnFamily()), Bytes.toBytes(column.getColumnQualifier()),
+                column.getTimeStamp(), Bytes.toBytes(column.getValue()))});
+        doAnswer(invocation -> ((HBaseDataStore.ResultCallback) invocation.getArguments()[5]).onResult(result))
+                .when(mockDataStore).scanByTimeRange(eq(DataCategory.FLOWTABLESTATS.name()), eq(null), eq(null),
+                        eq(0L), eq(timeStamp), any(HBaseDataStore.ResultCallback.class));
 
         final List<TSDRMetricRecord> records = storageService.getTSDRMetricRecords(
                 DataCategory.FLOWTABLESTATS.name(), 0L, timeStamp);
@@ -208,6 +222,24 @@ public class TsdrRHBasePersistenceServiceImplTest {
                 "[NID=node1][DC=ErrorTABLE][MN=PacketsMatched][RK=TableID:table1]", 0L, timeStamp).size());
     }
 
+    @Test
+    public void testGetTSDRMetricRecordsRowPrefix() {
+        storageService.getTSDRMetricRecords(
+                "[NID=node1][DC=FLOWTABLESTATS][MN=PacketsMatched][RK=TableID:table1]", 0L, 100L);
+        verify(mockDataStore).scanByTimeRange(eq(DataCategory.FLOWTABLESTATS.name()),
+                eq("[NID=node1][DC=FLOWTABLESTATS][MN=PacketsMatched][RK=TableID:table1]"),
+                eq(Collections.emptyList()), eq(0L), eq(100L), any(HBaseDataStore.ResultCallback.class));
+
+        storageService.getTSDRMetricRecords("[NID=node1][DC=FLOWTABLESTATS][MN=][RK=TableID:table1]", 0L, 100L);
+        verify(mockDataStore).scanByTimeRange(eq(DataCategory.FLOWTABLESTATS.name()),
+                eq("[NID=node1][DC=FLOWTABLESTATS]"), eq(Arrays.asList("[RK=TableID:table1]")), eq(0L), eq(100L),
+                any(HBaseDataStore.ResultCallback.class));
+
+        storageService.getTSDRMetricRecords("[NID=][DC=FLOWTABLESTATS][MN=PacketsMatched][RK=]", 0L, 100L);
+        verify(mockDataStore).scanByTimeRange(eq(DataCategory.FLOWTABLESTATS.name()), eq(null),
+                eq(Arrays.asList("[MN=PacketsMatched]")), eq(0L), eq(100L), any(HBaseDataStore.ResultCallback.class));
+    }
+
     @Test
     public void testPurgeCategory() throws IOException {
         final long timeStamp = System.currentTimeMillis();
@@ -216,6 +248,32 @@ public class TsdrRHBasePersistenceServiceImplTest {
         verify(mockDataStore).deleteByTimestamp(DataCategory.FLOWTABLESTATS.name(), timeStamp);
     }
 
+    @Test
+    public void testPurgeWithTimeToLive() throws IOException {
+        Properties props = new Properties();
+        props.setProperty(HBaseDataStoreContext.RETENTION_HOURS_PROP, "1");
+        props.setProperty(HBaseDataStoreContext.RETENTION_HOURS_PROP + ".SYSLOG", "0");
+        HBaseDataStoreFactory mockDataStoreFactory = mock(HBaseDataStoreFactory.class);
+        doReturn(mockDataStore).when(mockDataStoreFactory).getHBaseDataStore();
+        doReturn(new HBaseDataStoreContext(props)).when(mockDataStoreFactory).getDataStoreContext();
+        // The time to live of the existing PORTSTATS table is not altered
+        doReturn(true).when(mockDataStore).createTable(anyString(), any(byte[][].class), anyInt(), eq(false));
+        doReturn(false).when(mockDataStore).createTable(eq(DataCategory.PORTSTATS.name()), any(byte[][].class),
+                anyInt(), eq(false));
+
+        TsdrHBasePersistenceServiceImpl service = new TsdrHBasePersistenceServiceImpl(mockDataStoreFactory,
+                schedulerService);
+        // Storing waits for the tables to be created
+        service.storeMetric(new TSDRMetricRecordBuilder().setMetricName("PacketsMatched")
+                .setMetricValue(BigDecimal.ONE).setNodeID("node1").setRecordKeys(Collections.emptyList())
+                .setTSDRDataCategory(DataCategory.PORTSTATS).setTimeStamp(1L).build());
+        service.purge(1000L);
+
+        verify(mockDataStore).deleteByTimestamp(DataCategory.SYSLOG.name(), 1000L);
+        verify(mockDataStore).deleteByTimestamp(DataCategory.PORTSTATS.name(), 1000L);
+        verify(mockDataStore, times(2)).deleteByTimestamp(anyString(), anyLong());
+    }
+
     @Test
     public void testPurgeAllCategories() throws IOException {
         final long timeStamp = System.currentTimeMillis();
@@ -9,25 +9,34 @@ package org.opendaylight.tsdr.persistence.hsqldb;
 
 import com.google.common.annotations.VisibleForTesting;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import org.opendaylight.tsdr.spi.persistence.AggregatingMetricPersistenceService.Bucket;
+import org.opendaylight.tsdr.spi.util.ConfigFileUtil;
 import org.opendaylight.tsdr.spi.util.FormatUtil;
 import org.opendaylight.tsdr.spi.util.TSDRKeyCache;
 import org.opendaylight.tsdr.spi.util.TSDRKeyCache.TSDRCacheEntry;
 import org.opendaylight.tsdr.spi.util.TSDRKeyCache.TSDRLogCollectJob;
 import org.opendaylight.tsdr.spi.util.TSDRKeyCache.TSDRMetricCollectJob;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.storetsdrlogrecord.input.TSDRLogRecord;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.storetsdrlogrecord.input.TSDRLogRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.AggregationType;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecordBuilder;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
@@ -37,6 +46,18 @@ import org.slf4j.LoggerFactory;
 /**
  * HSQLDB Back-end store.
  *
+ * <p>
+ * The records are written with prepared statements, batched in a single transaction per list of records, to
+ * CACHED tables so the data is not all held in memory. The size of the HSQLDB redo log, after which the
+ * database is checkpointed, is set by the hsqldb.log_size property in megabytes.
+ * </p>
+ *
+ * <p>
+ * HSQLDB 1.8 has no MVCC, it runs the statements of all the connections one at a time and a connection sees the
+ * rows other connections did not commit yet. The records are therefore written, read and purged with a single
+ * connection, a statement at a time, and purged by bounded chunks so the retention does not stall the writes.
+ * </p>
+ *
  * @author Sharon Aicler(saichler@gmail.com)
  */
 @Singleton
@@ -44,15 +65,43 @@ public class HsqlDBStore implements AutoCloseable {
     private static final Logger LOG = LoggerFactory.getLogger(HsqlDBStore.class);
     private static final String METRIC_TABLE = "METRICS";
     private static final String LOG_TABLE = "LOGS";
+    private static final String CONF_FILE = ConfigFileUtil.CONFIG_DIR + "tsdr-persistence-hsqldb.properties";
+    static final String LOG_SIZE_PROP = "hsqldb.log_size";
+
+    private static final String INSERT_METRIC_SQL = "insert into " + METRIC_TABLE
+            + " (KeyA,KeyB,Time,value) values(?,?,?,?)";
+    private static final String INSERT_LOG_SQL = "insert into " + LOG_TABLE
+            + " (KeyA,KeyB,Time,xIndex,value) values(?,?,?,?,?)";
+
+    // The number of rows sent to the database at once, all the rows of a list are committed together.
+    static final int MAX_BATCH_SIZE = 1000;
 
+    // The records are deleted by chunks of about this many records of a series.
+    static final int PURGE_CHUNK_SIZE = 10000;
+
+    /*
+     * The connection the records are written, read and purged with. The write transactions, the queries and the
+     * purge chunks take turns on the lock, so a query never reads the rows of a write transaction not committed.
+     */
     private final Connection connection;
     private final TSDRKeyCache cache = new TSDRKeyCache();
+    private final Object lock = new Object();
+
+    @FunctionalInterface
+    private interface RecordBinder<T> {
+        void bind(PreparedStatement statement, T record) throws SQLException;
+    }
 
     @Inject
     public HsqlDBStore() {
+        this(loadConfig());
+    }
+
+    private HsqlDBStore(Map<String, String> config) {
         LOG.info("Connecting to HSQLDB...");
         this.connection = getConnection();
         try {
+            configure(config);
             createTSDRTables();
         } catch (SQLException e) {
             LOG.error("Failed To Create TSDR Tables", e);
@@ -66,29 +115,61 @@ public class HsqlDBStore implements AutoCloseable {
     }
 
     @SuppressFBWarnings("DMI_EMPTY_DB_PASSWORD")
+    private static Connection openConnection() throws SQLException {
+        new org.hsqldb.jdbcDriver();
+        return DriverManager.getConnection("jdbc:hsqldb:./tsdr/tsdr-hsqldb", "sa", "");
+    }
+
     private static Connection getConnection() {
         try {
-            new org.hsqldb.jdbcDriver();
-            return DriverManager.getConnection("jdbc:hsqldb:./tsdr/tsdr-hsqldb", "sa", "");
+            return openConnection();
         } catch (SQLException e) {
             LOG.error("Failed to get connection to database", e);
         }
         return null;
     }
 
+    private static Map<String, String> loadConfig() {
+        try {
+            return ConfigFileUtil.loadConfig(CONF_FILE);
+        } catch (IOException e) {
+            LOG.warn("Error loading config file {}, using the default settings", CONF_FILE, e);
+            return Collections.emptyMap();
+        }
+    }
+
+    @SuppressFBWarnings("SQL_NONCONSTANT_STRING_PASSED_TO_EXECUTE")
+    void configure(Map<String, String> config) throws SQLException {
+        String logSize = config.get(LOG_SIZE_PROP);
+        if (logSize == null || logSize.trim().isEmpty()) {
+            return;
+        }
+
+        final int megabytes;
+        try {
+            megabytes = Integer.parseInt(logSize.trim());
+        } catch (NumberFormatException e) {
+            LOG.warn("Invalid {} value {}, keeping the default log size", LOG_SIZE_PROP, logSize);
+            return;
+        }
+        try (Statement st = this.connection.createStatement()) {
+            st.execute("SET LOGSIZE " + megabytes);
+        }
+    }
+
     public void createTSDRTables() throws SQLException {
         DatabaseMetaData dbm = connection.getMetaData();
         //seek the table METRICVAL in the database schema, if it does not
         //exist then create the database schema
         ResultSet rs = dbm.getTables(null, null,METRIC_TABLE, null);
         if (!rs.next()) {
-            String sql = "CREATE TABLE " + METRIC_TABLE + " (" + "KeyA bigint, " + "KeyB bigint, " + "Time bigint, "
-                    + "value double," + "PRIMARY KEY (KeyA,KeyB,Time))";
+            String sql = "CREATE CACHED TABLE " + METRIC_TABLE + " (" + "KeyA bigint, " + "KeyB bigint, "
+                    + "Time bigint, " + "value double," + "PRIMARY KEY (KeyA,KeyB,Time))";
             try (Statement st = this.connection.createStatement()) {
                 st.execute(sql);
             }
 
-            sql = "CREATE TABLE " + LOG_TABLE + " (" + "KeyA bigint, " + "KeyB bigint, " + "Time bigint, "
+            sql = "CREATE CACHED TABLE " + LOG_TABLE + " (" + "KeyA bigint, " + "KeyB bigint, " + "Time bigint, "
                     + "xIndex int," + "value VARCHAR(255)," + "PRIMARY KEY (KeyA,KeyB,Time,xIndex))";
             try (Statement st = this.connection.createStatement()) {
                 st.execute(sql);
@@ -96,54 +177,100 @@ public class HsqlDBStore implements AutoCloseable {
         }
     }
 
-    @SuppressFBWarnings("SQL_NONCONSTANT_STRING_PASSED_TO_EXECUTE")
     public void store(TSDRMetricRecord mr) throws SQLException {
-        //create metric key
-        String tsdrKey = FormatUtil.getTSDRMetricKey(mr);
-        TSDRCacheEntry cacheEntry = cache.getCacheEntry(tsdrKey);
+        storeMetrics(Collections.singletonList(mr));
+    }
 
-        //if it does not exist, create it
-        if (cacheEntry == null) {
-            cacheEntry = cache.addTSDRCacheEntry(tsdrKey);
-        }
+    public void store(TSDRLogRecord lr) throws SQLException {
+        storeLogs(Collections.singletonList(lr));
+    }
 
-        StringBuilder buf = new StringBuilder();
-        buf.append("insert into " + METRIC_TABLE + " (KeyA,KeyB,Time,value) values(");
-        buf.append(cacheEntry.getMd5ID().getMd5Long1()).append(",");
-        buf.append(cacheEntry.getMd5ID().getMd5Long2()).append(",");
-        buf.append(mr.getTimeStamp()).append(",");
-        buf.append(mr.getMetricValue()).append(")");
-        String sql = buf.toString();
+    /**
+     * Stores a list of metric records in a single transaction.
+     */
+    public void storeMetrics(List<TSDRMetricRecord> records) throws SQLException {
+        storeBatch(INSERT_METRIC_SQL, records, (st, mr) -> {
+            TSDRCacheEntry cacheEntry = getCacheEntry(FormatUtil.getTSDRMetricKey(mr));
+            st.setLong(1, cacheEntry.getMd5ID().getMd5Long1());
+            st.setLong(2, cacheEntry.getMd5ID().getMd5Long2());
+            st.setLong(3, mr.getTimeStamp());
+            st.setBigDecimal(4, mr.getMetricValue());
+        });
+    }
 
-        try (Statement st = this.connection.createStatement()) {
-            st.execute(sql);
-        }
+    /**
+     * Stores a list of log records in a single transaction.
+     */
+    public void storeLogs(List<TSDRLogRecord> records) throws SQLException {
+        storeBatch(INSERT_LOG_SQL, records, (st, lr) -> {
+            TSDRCacheEntry cacheEntry = getCacheEntry(FormatUtil.getTSDRLogKey(lr));
+            st.setLong(1, cacheEntry.getMd5ID().getMd5Long1());
+            st.setLong(2, cacheEntry.getMd5ID().getMd5Long2());
+            st.setLong(3, lr.getTimeStamp());
+            st.setInt(4, lr.getIndex());
+            st.setString(5, lr.getRecordFullText());
+        });
     }
 
-    @SuppressFBWarnings("SQL_NONCONSTANT_STRING_PASSED_TO_EXECUTE")
-    public void store(TSDRLogRecord lr) throws SQLException {
-        //create log key
-        String tsdrKey = FormatUtil.getTSDRLogKey(lr);
+    private TSDRCacheEntry getCacheEntry(String tsdrKey) {
         TSDRCacheEntry cacheEntry = cache.getCacheEntry(tsdrKey);
         //if it does not exist, create it
         if (cacheEntry == null) {
             cacheEntry = cache.addTSDRCacheEntry(tsdrKey);
         }
+        return cacheEntry;
+    }
 
-        StringBuilder buf = new StringBuilder();
-        buf.append("insert into " + LOG_TABLE + " (KeyA,KeyB,Time,xIndex,value) values(");
-        buf.append(cacheEntry.getMd5ID().getMd5Long1()).append(",");
-        buf.append(cacheEntry.getMd5ID().getMd5Long2()).append(",");
-        buf.append(lr.getTimeStamp()).append(",");
-        buf.append(lr.getIndex()).append(",'");
-        buf.append(lr.getRecordFullText()).append("')");
-        String sql = buf.toString();
+    private <T> void storeBatch(String sql, List<T> records, RecordBinder<T> binder) throws SQLException {
+        if (records.isEmpty()) {
+            return;
+        }
 
-        try (Statement st = this.connection.createStatement()) {
-            st.execute(sql);
+        synchronized (lock) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement st = connection.prepareStatement(sql)) {
+                try {
+                    int count = 0;
+                    for (T record : records) {
+                        binder.bind(st, record);
+                        st.addBatch();
+                        if (++count % MAX_BATCH_SIZE == 0) {
+                            st.executeBatch();
+                        }
+                    }
+                    if (count % MAX_BATCH_SIZE != 0) {
+                        st.executeBatch();
+                    }
+                    connection.commit();
+                } catch (BatchUpdateException e) {
+                    // A single bad record, e.g. a duplicate, fails the whole batch so store the records
+                    // one by one instead of losing them all.
+                    LOG.debug("Failed to store a batch of {} records, storing them one by one", records.size(), e);
+                    connection.rollback();
+                    st.clearBatch();
+                    storeEach(st, records, binder);
+                }
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
         }
     }
 
+    private <T> void storeEach(PreparedStatement st, List<T> records, RecordBinder<T> binder) throws SQLException {
+        for (T record : records) {
+            binder.bind(st, record);
+            try {
+                st.executeUpdate();
+            } catch (SQLException e) {
+                LOG.error("Failed to store record to database", e);
+            }
+        }
+        connection.commit();
+    }
+
     public List<TSDRMetricRecord> getTSDRMetricRecords(String tsdrMetricKey, long startDateTime, long endDateTime,
             int recordLimit) throws SQLException {
         TSDRCacheEntry entry = this.cache.getCacheEntry(tsdrMetricKey);
@@ -154,12 +281,14 @@ public class HsqlDBStore implements AutoCloseable {
                     + " and KeyB=" + entry.getMd5ID().getMd5Long2() + " and Time>=" + startDateTime + " and Time<="
                     + endDateTime;
 
-            try (Statement st = connection.createStatement()) {
-                try (ResultSet rs = st.executeQuery(sql)) {
-                    while (rs.next()) {
-                        result.add(getTSDRMetricRecord(rs.getLong("Time"), rs.getDouble("value"), entry));
-                        if (result.size() >= recordLimit) {
-                            break;
+            synchronized (lock) {
+                try (Statement st = connection.createStatement()) {
+                    try (ResultSet rs = st.executeQuery(sql)) {
+                        while (rs.next()) {
+                            result.add(getTSDRMetricRecord(rs.getLong("Time"), rs.getDouble("value"), entry));
+                            if (result.size() >= recordLimit) {
+                                break;
+                            }
                         }
                     }
                 }
@@ -171,12 +300,17 @@ public class HsqlDBStore implements AutoCloseable {
                 String sql = "select * from " + METRIC_TABLE + " where KeyA=" + entry1.getMd5ID().getMd5Long1()
                         + " and KeyB=" + entry1.getMd5ID().getMd5Long2() + " and Time>=" + startDateTime1
                         + " and Time<=" + endDateTime1;
-                try (Statement st = connection.createStatement()) {
-                    try (ResultSet rs = st.executeQuery(sql)) {
-                        while (rs.next()) {
-                            globalResult.add(getTSDRMetricRecord(rs.getLong("Time"), rs.getDouble("value"), entry1));
-                            if (globalResult.size() >= recordLimit1) {
-                                break;
+                try {
+                    synchronized (lock) {
+                        try (Statement st = connection.createStatement()) {
+                            try (ResultSet rs = st.executeQuery(sql)) {
+                                while (rs.next()) {
+                                    globalResult.add(getTSDRMetricRecord(rs.getLong("Time"), rs.getDouble("value"),
+                                            entry1));
+                                    if (globalResult.size() >= recordLimit1) {
+                                        break;
+                                    }
+                                }
                             }
                         }
                     }
@@ -188,6 +322,51 @@ public class HsqlDBStore implements AutoCloseable {
         }
     }
 
+    /**
+     * Aggregates the metrics of a series by intervals of the given size with a GROUP BY, so only one row per interval
+     * is read. Returns null if the key is not the key of a single series.
+     */
+    public List<Bucket> getAggregatedMetrics(String tsdrMetricKey, long startDateTime, long endDateTime,
+            long interval, AggregationType aggregation) throws SQLException {
+        TSDRCacheEntry entry = this.cache.getCacheEntry(tsdrMetricKey);
+        if (entry == null) {
+            return null;
+        }
+
+        final String function;
+        switch (aggregation) {
+            case MIN:
+                function = "min";
+                break;
+            case MAX:
+                function = "max";
+                break;
+            case MEAN:
+                function = "avg";
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported aggregation " + aggregation);
+        }
+        String bucket = "(Time-" + startDateTime + ")/" + interval;
+        String sql = "select " + bucket + " as Bucket, " + function + "(value) as Aggregate, count(value) as Points"
+                + " from " + METRIC_TABLE + " where KeyA=" + entry.getMd5ID().getMd5Long1() + " and KeyB="
+                + entry.getMd5ID().getMd5Long2() + " and Time>=" + startDateTime + " and Time<=" + endDateTime
+                + " group by " + bucket + " order by Bucket";
+
+        List<Bucket> result = new ArrayList<>();
+        synchronized (lock) {
+            try (Statement st = connection.createStatement()) {
+                try (ResultSet rs = st.executeQuery(sql)) {
+                    while (rs.next()) {
+                        result.add(new Bucket(startDateTime + rs.getLong("Bucket") * interval,
+                                BigDecimal.valueOf(rs.getDouble("Aggregate")), rs.getLong("Points")));
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
     public List<TSDRLogRecord> getTSDRLogRecords(String tsdrLogKey, long startDateTime, long endDateTime,
             int recordLimit) throws SQLException {
         TSDRCacheEntry entry = this.cache.getCacheEntry(tsdrLogKey);
@@ -197,13 +376,15 @@ public class HsqlDBStore implements AutoCloseable {
             String sql = "select * from " + LOG_TABLE + " where KeyA=" + entry.getMd5ID().getMd5Long1() + " and KeyB="
                     + entry.getMd5ID().getMd5Long2() + " and Time>=" + startDateTime + " and Time<=" + endDateTime;
 
-            try (Statement st = connection.createStatement()) {
-                try (ResultSet rs = st.executeQuery(sql)) {
-                    while (rs.next()) {
-                        result.add(getTSDRLogRecord(rs.getLong("Time"), rs.getString("value"),
-                                rs.getInt("xIndex"), entry));
-                        if (result.size() >= recordLimit) {
-                            break;
+            synchronized (lock) {
+                try (Statement st = connection.createStatement()) {
+                    try (ResultSet rs = st.executeQuery(sql)) {
+                        while (rs.next()) {
+                            result.add(getTSDRLogRecord(rs.getLong("Time"), rs.getString("value"),
+                                    rs.getInt("xIndex"), entry));
+                            if (result.size() >= recordLimit) {
+                                break;
+                            }
                         }
                     }
                 }
@@ -215,13 +396,17 @@ public class HsqlDBStore implements AutoCloseable {
                 String sql = "select * from " + LOG_TABLE + " where KeyA=" + entry1.getMd5ID().getMd5Long1()
                         + " and KeyB=" + entry1.getMd5ID().getMd5Long2() + " and Time>=" + startDateTime1
                         + " and Time<=" + endDateTime1;
-                try (Statement st = connection.createStatement()) {
-                    try (ResultSet rs = st.executeQuery(sql)) {
-                        while (rs.next()) {
-                            globalResult.add(getTSDRLogRecord(rs.getLong("Time"), rs.getString("value"),
-                                    rs.getInt("xIndex"), entry1));
-                            if (globalResult.size() >= recordLimit1) {
-                                break;
+                try {
+                    synchronized (lock) {
+                        try (Statement st = connection.createStatement()) {
+                            try (ResultSet rs = st.executeQuery(sql)) {
+                                while (rs.next()) {
+                                    globalResult.add(getTSDRLogRecord(rs.getLong("Time"), rs.getString("value"),
+                                            rs.getInt("xIndex"), entry1));
+                                    if (globalResult.size() >= recordLimit1) {
+                                        break;
+                                    }
+                                }
                             }
                         }
                     }
@@ -269,38 +454,55 @@ public class HsqlDBStore implements AutoCloseable {
         this.cache.shutdown();
     }
 
-    private void purgeMetrics(DataCategory category, long retentionTime) throws SQLException {
-        String sql1 = "Delete from " + METRIC_TABLE + " where keyA = ";
-        String sql2 = " and keyB = ";
-        String sql3 = " and time < " + retentionTime;
+    private void purgeTable(String table, DataCategory category, long retentionTime) throws SQLException {
         for (TSDRCacheEntry entry : this.cache.getAll()) {
             if (entry.getDataCategory() == category) {
-                String sql = sql1 + entry.getMd5ID().getMd5Long1() + sql2 + entry.getMd5ID().getMd5Long2() + sql3;
-
-                try (Statement st = this.connection.createStatement()) {
-                    st.execute(sql);
-                }
+                purgeSeries(table, entry, retentionTime);
             }
         }
     }
 
-    private void purgeLogs(DataCategory category, long retentionTime) throws SQLException {
-        String sql1 = "Delete from " + LOG_TABLE + " where keyA = ";
-        String sql2 = " and keyB = ";
-        String sql3 = " and time < " + retentionTime;
-        for (TSDRCacheEntry entry : this.cache.getAll()) {
-            if (entry.getDataCategory() == category) {
-                String sql = sql1 + entry.getMd5ID().getMd5Long1() + sql2 + entry.getMd5ID().getMd5Long2() + sql3;
+    /**
+     * Delete the records of a series older than the retention time, at most about PURGE_CHUNK_SIZE records
+     * at a time. Each chunk is deleted in its own short transaction so the writes can go on between chunks.
+     */
+    @SuppressFBWarnings("SQL_PREPARED_STATEMENT_GENERATED_FROM_NONCONSTANT_STRING")
+    private void purgeSeries(String table, TSDRCacheEntry entry, long retentionTime) throws SQLException {
+        // The time of the last record of the next chunk, the primary key keeps the records of a series in time order
+        final String chunkSql = "select limit " + (PURGE_CHUNK_SIZE - 1) + " 1 Time from " + table
+                + " where KeyA=? and KeyB=? and Time<? order by Time";
+        final String deleteSql = "delete from " + table + " where KeyA=? and KeyB=? and Time<?";
 
-                try (Statement st = this.connection.createStatement()) {
-                    st.execute(sql);
+        boolean more = true;
+        while (more) {
+            synchronized (lock) {
+                long deleteBefore = retentionTime;
+                try (PreparedStatement st = connection.prepareStatement(chunkSql)) {
+                    bindSeries(st, entry, retentionTime);
+                    try (ResultSet rs = st.executeQuery()) {
+                        more = rs.next();
+                        if (more) {
+                            deleteBefore = rs.getLong(1) + 1;
+                        }
+                    }
+                }
+
+                try (PreparedStatement st = connection.prepareStatement(deleteSql)) {
+                    bindSeries(st, entry, deleteBefore);
+                    st.executeUpdate();
                 }
             }
         }
     }
 
+    private static void bindSeries(PreparedStatement st, TSDRCacheEntry entry, long time) throws SQLException {
+        st.setLong(1, entry.getMd5ID().getMd5Long1());
+        st.setLong(2, entry.getMd5ID().getMd5Long2());
+        st.setLong(3, time);
+    }
+
     public void purge(DataCategory category, long retentionTime) throws SQLException {
-        purgeMetrics(category, retentionTime);
-        purgeLogs(category, retentionTime);
+        purgeTable(METRIC_TABLE, category, retentionTime);
+        purgeTable(LOG_TABLE, category, retentionTime);
     }
 }
@@ -13,11 +13,13 @@ import java.util.List;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import org.opendaylight.tsdr.spi.model.TSDRConstants;
+import org.opendaylight.tsdr.spi.persistence.AggregatingMetricPersistenceService;
 import org.opendaylight.tsdr.spi.persistence.TSDRBinaryPersistenceService;
 import org.opendaylight.tsdr.spi.persistence.TSDRLogPersistenceService;
 import org.opendaylight.tsdr.spi.persistence.TSDRMetricPersistenceService;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data.rev160325.storetsdrbinaryrecord.input.TSDRBinaryRecord;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.AggregationType;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
 import org.slf4j.Logger;
@@ -30,7 +32,7 @@ import org.slf4j.LoggerFactory;
  */
 @Singleton
 public class TsdrHsqlDBPersistenceServiceImpl implements TSDRMetricPersistenceService, TSDRLogPersistenceService,
-        TSDRBinaryPersistenceService {
+        TSDRBinaryPersistenceService, AggregatingMetricPersistenceService {
     private static final Logger LOG = LoggerFactory.getLogger(TsdrHsqlDBPersistenceServiceImpl.class);
 
     private final HsqlDBStore store;
@@ -52,8 +54,10 @@ public class TsdrHsqlDBPersistenceServiceImpl implements TSDRMetricPersistenceSe
 
     @Override
     public void storeMetric(List<TSDRMetricRecord> metricRecordList) {
-        for (TSDRMetricRecord record : metricRecordList) {
-            storeMetric(record);
+        try {
+            store.storeMetrics(metricRecordList);
+        } catch (SQLException e) {
+            LOG.error("Failed to store records to database", e);
         }
     }
 
@@ -68,8 +72,10 @@ public class TsdrHsqlDBPersistenceServiceImpl implements TSDRMetricPersistenceSe
 
     @Override
     public void storeLog(List<TSDRLogRecord> logRecordList) {
-        for (TSDRLogRecord record : logRecordList) {
-            storeLog(record);
+        try {
+            store.storeLogs(logRecordList);
+        } catch (SQLException e) {
+            LOG.error("Failed to store records to database", e);
         }
     }
 
@@ -105,6 +111,23 @@ public class TsdrHsqlDBPersistenceServiceImpl implements TSDRMetricPersistenceSe
         }
     }
 
+    @Override
+    public boolean isAggregationSupported(AggregationType aggregation) {
+        return aggregation == AggregationType.MIN || aggregation == AggregationType.MAX
+                || aggregation == AggregationType.MEAN;
+    }
+
+    @Override
+    public List<Bucket> getTSDRAggregatedMetrics(String tsdrMetricKey, long startDateTime, long endDateTime,
+            long interval, AggregationType aggregation) {
+        try {
+            return store.getAggregatedMetrics(tsdrMetricKey, startDateTime, endDateTime, interval, aggregation);
+        } catch (SQLException e) {
+            LOG.error("Failed to aggregate Metric Records", e);
+            return null;
+        }
+    }
+
     @Override
     public List<TSDRLogRecord> getTSDRLogRecords(String tsdrMetricKey, long startTime, long endTime) {
         try {
@@ -10,12 +10,15 @@ package org.opendaylight.tsdr.persistence.hsqldb;
 import java.math.BigDecimal;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import org.junit.Assert;
 import org.junit.Test;
+import org.opendaylight.tsdr.spi.persistence.AggregatingMetricPersistenceService.Bucket;
 import org.opendaylight.tsdr.spi.util.FormatUtil;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.storetsdrlogrecord.input.TSDRLogRecord;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.storetsdrlogrecord.input.TSDRLogRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.AggregationType;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecordBuilder;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
@@ -85,4 +88,38 @@ public class HsqlDBStoreNoMockTest {
         Assert.assertTrue(list.size() == 1);
         Assert.assertEquals(rec.getRecordFullText(),list.get(0).getRecordFullText());
     }
+
+    @Test
+    public void testStoreLogsWithQuotes() throws SQLException {
+        store.purge(DataCategory.EXTERNAL,System.currentTimeMillis());
+        TSDRLogRecord rec = new TSDRLogRecordBuilder(createLogRecord())
+                .setRecordFullText("User 'admin' logged in; drop table LOGS").build();
+        TSDRLogRecord next = new TSDRLogRecordBuilder(rec).setIndex(2).build();
+        store.storeLogs(Arrays.asList(rec, next));
+        String key = FormatUtil.getTSDRLogKey(rec);
+        List<TSDRLogRecord> list = store.getTSDRLogRecords(key,0L,Long.MAX_VALUE,10);
+        Assert.assertEquals(2, list.size());
+        Assert.assertEquals(rec.getRecordFullText(),list.get(0).getRecordFullText());
+    }
+
+    @Test
+    public void testGetAggregatedMetrics() throws SQLException {
+        store.purge(DataCategory.EXTERNAL,System.currentTimeMillis());
+        TSDRMetricRecord rec = createMetricRecord();
+        List<TSDRMetricRecord> recs = new ArrayList<>();
+        for (long time = 1000L; time < 1004L; time++) {
+            recs.add(new TSDRMetricRecordBuilder(rec).setTimeStamp(time)
+                    .setMetricValue(new BigDecimal(time - 990L)).build());
+        }
+        store.storeMetrics(recs);
+        String key = FormatUtil.getTSDRMetricKey(rec);
+        List<Bucket> buckets = store.getAggregatedMetrics(key,1000L,1003L,2L,AggregationType.MAX);
+        Assert.assertEquals(2, buckets.size());
+        Assert.assertEquals(1000L, buckets.get(0).getTimeStamp());
+        Assert.assertEquals(11D, buckets.get(0).getValue().doubleValue(), 0D);
+        Assert.assertEquals(2L, buckets.get(0).getCount());
+        Assert.assertEquals(1002L, buckets.get(1).getTimeStamp());
+        Assert.assertEquals(13D, buckets.get(1).getValue().doubleValue(), 0D);
+        Assert.assertNull(store.getAggregatedMetrics("[NID=Unknown]",1000L,1003L,2L,AggregationType.MAX));
+    }
 }
@@ -9,11 +9,15 @@ package org.opendaylight.tsdr.persistence.hsqldb;
 
 import java.io.File;
 import java.math.BigDecimal;
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import org.junit.After;
 import org.junit.AfterClass;
@@ -22,8 +26,8 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.opendaylight.tsdr.spi.util.FormatUtil;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.storetsdrlogrecord.input.TSDRLogRecord;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.storetsdrlogrecord.input.TSDRLogRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecordBuilder;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecordBuilder;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
@@ -38,6 +42,7 @@ import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.tsdrrecord.Recor
 public class HsqlDBStoreTest {
     private final Connection connection = Mockito.mock(Connection.class);
     private final Statement statement = Mockito.mock(Statement.class);
+    private final PreparedStatement preparedStatement = Mockito.mock(PreparedStatement.class);
     private HsqlDBStore store = null;
     private final ResultSet resultSet = Mockito.mock(ResultSet.class);
     private boolean next = false;
@@ -46,6 +51,8 @@ public class HsqlDBStoreTest {
     public void before() throws SQLException {
         store = new HsqlDBStore(connection);
         Mockito.when(connection.createStatement()).thenReturn(statement);
+        Mockito.when(connection.prepareStatement(Mockito.anyString())).thenReturn(preparedStatement);
+        Mockito.when(preparedStatement.executeQuery()).thenReturn(resultSet);
         Mockito.when(statement.executeQuery(Mockito.anyString())).thenReturn(resultSet);
         Mockito.when(resultSet.next()).thenAnswer(invocationOnMock -> {
             next = !next;
@@ -115,15 +122,18 @@ public class HsqlDBStoreTest {
     @Test
     public void testStoreTSDRMetric() throws SQLException {
         store.store(createMetricRecord());
-        Mockito.verify(statement, Mockito.atLeast(1)).execute(Mockito.anyString());
+        Mockito.verify(preparedStatement, Mockito.atLeast(1)).executeBatch();
+        Mockito.verify(connection).commit();
         store.close();
         Mockito.verify(connection, Mockito.atLeast(1)).close();
     }
 
     @Test
     public void testStoreTSDRLog() throws SQLException {
-        store.store(createLogRecord());
-        Mockito.verify(statement, Mockito.atLeast(1)).execute(Mockito.anyString());
+        TSDRLogRecord rec = createLogRecord();
+        store.store(rec);
+        Mockito.verify(preparedStatement).setString(5, rec.getRecordFullText());
+        Mockito.verify(preparedStatement, Mockito.atLeast(1)).executeBatch();
         store.close();
         Mockito.verify(connection, Mockito.atLeast(1)).close();
     }
@@ -177,9 +187,59 @@ public class HsqlDBStoreTest {
     @Test
     public void testPurge() throws SQLException {
         store.store(createMetricRecord());
-        Mockito.verify(statement, Mockito.atLeast(1)).execute(Mockito.anyString());
+        Mockito.verify(preparedStatement, Mockito.atLeast(1)).executeBatch();
         store.purge(DataCategory.EXTERNAL, 0L);
-        Mockito.verify(statement, Mockito.atLeast(1)).execute(Mockito.anyString());
+        Mockito.verify(preparedStatement, Mockito.atLeast(1)).executeUpdate();
+    }
+
+    @Test
+    public void testPurgeInChunks() throws SQLException {
+        store.store(createMetricRecord());
+        // The first chunk ends at time 5, then less than a chunk is left
+        Mockito.when(resultSet.getLong(1)).thenReturn(5L);
+        store.purge(DataCategory.EXTERNAL, 10L);
+        Mockito.verify(connection, Mockito.times(2)).prepareStatement(Mockito.startsWith(
+                "select limit " + (HsqlDBStore.PURGE_CHUNK_SIZE - 1) + " 1 Time from METRICS"));
+        Mockito.verify(connection, Mockito.times(2)).prepareStatement(Mockito.startsWith("delete from METRICS"));
+        Mockito.verify(connection, Mockito.times(2)).prepareStatement(Mockito.startsWith("delete from LOGS"));
+        Mockito.verify(preparedStatement, Mockito.times(2)).setLong(3, 6L);
+        Mockito.verify(preparedStatement, Mockito.times(2 + 4)).setLong(3, 10L);
+        Mockito.verify(preparedStatement, Mockito.times(4)).executeUpdate();
+    }
+
+    @Test
+    public void testStoreMetricsBatch() throws SQLException {
+        List<TSDRMetricRecord> list = new ArrayList<>();
+        for (int i = 0; i < HsqlDBStore.MAX_BATCH_SIZE + 1; i++) {
+            list.add(createMetricRecord());
+        }
+        store.storeMetrics(list);
+        Mockito.verify(connection).prepareStatement(Mockito.anyString());
+        Mockito.verify(preparedStatement, Mockito.times(list.size())).addBatch();
+        Mockito.verify(preparedStatement, Mockito.times(2)).executeBatch();
+        Mockito.verify(connection).setAutoCommit(false);
+        Mockito.verify(connection).commit();
+        Mockito.verify(connection).setAutoCommit(true);
+        Mockito.verify(statement, Mockito.never()).execute(Mockito.anyString());
+    }
+
+    @Test
+    public void testStoreMetricsBatchFailure() throws SQLException {
+        Mockito.when(preparedStatement.executeBatch()).thenThrow(new BatchUpdateException());
+        Mockito.when(preparedStatement.executeUpdate()).thenThrow(new SQLException("Duplicate")).thenReturn(1);
+        store.storeMetrics(Arrays.asList(createMetricRecord(), createMetricRecord()));
+        Mockito.verify(connection).rollback();
+        Mockito.verify(preparedStatement, Mockito.times(2)).executeUpdate();
+        Mockito.verify(connection).commit();
+        Mockito.verify(connection).setAutoCommit(true);
+    }
+
+    @Test
+    public void testConfigure() throws SQLException {
+        store.configure(Collections.singletonMap(HsqlDBStore.LOG_SIZE_PROP, "50"));
+        Mockito.verify(statement).execute("SET LOGSIZE 50");
+        store.configure(Collections.singletonMap(HsqlDBStore.LOG_SIZE_PROP, "abc"));
+        Mockito.verify(statement, Mockito.times(1)).execute(Mockito.anyString());
     }
 
     @Test
@@ -13,7 +13,7 @@ import java.util.List;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
 
@@ -51,7 +51,7 @@ public class TsdrHsqlDBPersistenceServiceImplTest {
         TSDRMetricRecord metricRecord = HsqlDBStoreTest.createMetricRecord();
         list.add(metricRecord);
         impl.storeMetric(list);
-        Mockito.verify(store, Mockito.atLeast(1)).store(metricRecord);
+        Mockito.verify(store).storeMetrics(list);
     }
 
     @Test
@@ -60,7 +60,7 @@ public class TsdrHsqlDBPersistenceServiceImplTest {
         TSDRLogRecord metricRecord = HsqlDBStoreTest.createLogRecord();
         list.add(metricRecord);
         impl.storeLog(list);
-        Mockito.verify(store, Mockito.atLeast(1)).store(metricRecord);
+        Mockito.verify(store).storeLogs(list);
     }
 
     @Test
@@ -0,0 +1,426 @@
+/*
+ * Copyright (c) 2019 Bell, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.kafka;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongFunction;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.opendaylight.tsdr.spi.util.MD5ID;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data.rev160325.storetsdrbinaryrecord.input.TSDRBinaryRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data.rev160325.storetsdrbinaryrecord.input.TSDRBinaryRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.tsdrlog.RecordAttributes;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.tsdrlog.RecordAttributesBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.TSDRRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.tsdrrecord.RecordKeys;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.tsdrrecord.RecordKeysBuilder;
+
+/**
+ * Writes the records as compact Avro messages, and reads them back.
+ *
+ * <p>
+ * The metadata of a series (node id, data category, metric name and record keys) is written once in a Series message
+ * sent to the series topic, and the batches of records of the series only carry its id, derived from its TSDR key. A
+ * batch holds the time stamps and values of several records of a series.
+ *
+ * <p>
+ * Each message starts with a zero magic byte and the 4 bytes id of its schema in the {@link FileSchemaRegistry},
+ * followed by the Avro binary encoding of the message, like the messages of the Confluent serializers.
+ */
+public final class AvroRecordSerializer implements KafkaRecordSerializer {
+    private static final byte MAGIC_BYTE = 0;
+    private static final int HEADER_SIZE = 5;
+
+    private static final ThreadLocal<BinaryEncoder> ENCODER = new ThreadLocal<>();
+
+    /**
+     * The metadata of a series, read from a Series message.
+     */
+    public static final class Series {
+        private final long id;
+        private final DataCategory category;
+        private final String nodeId;
+        private final String metricName;
+        private final List<RecordKeys> recordKeys;
+
+        Series(long id, DataCategory category, String nodeId, String metricName, List<RecordKeys> recordKeys) {
+            this.id = id;
+            this.category = category;
+            this.nodeId = nodeId;
+            this.metricName = metricName;
+            this.recordKeys = recordKeys;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public DataCategory getCategory() {
+            return category;
+        }
+
+        public String getNodeId() {
+            return nodeId;
+        }
+
+        public String getMetricName() {
+            return metricName;
+        }
+
+        public List<RecordKeys> getRecordKeys() {
+            return recordKeys;
+        }
+    }
+
+    private final FileSchemaRegistry registry;
+    private final Schema seriesSchema;
+    private final Schema metricSchema;
+    private final Schema logSchema;
+    private final Schema binarySchema;
+    private final int seriesSchemaId;
+    private final int metricSchemaId;
+    private final int logSchemaId;
+    private final int binarySchemaId;
+    private final Map<String, Schema> readerSchemas = new HashMap<>();
+
+    public AvroRecordSerializer(FileSchemaRegistry registry) throws IOException {
+        this.registry = registry;
+        seriesSchema = loadSchema("Series");
+        metricSchema = loadSchema("MetricBatch");
+        logSchema = loadSchema("LogBatch");
+        binarySchema = loadSchema("BinaryBatch");
+        seriesSchemaId = registry.register(seriesSchema);
+        metricSchemaId = registry.register(metricSchema);
+        logSchemaId = registry.register(logSchema);
+        binarySchemaId = registry.register(binarySchema);
+    }
+
+    private Schema loadSchema(String name) throws IOException {
+        try (InputStream in = AvroRecordSerializer.class.getResourceAsStream("/avro/" + name + ".avsc")) {
+            if (in == null) {
+                throw new IOException("Schema " + name + " not found");
+            }
+            Schema schema = new Schema.Parser().parse(in);
+            readerSchemas.put(schema.getFullName(), schema);
+            return schema;
+        }
+    }
+
+    /**
+     * Returns the id of the series of the given TSDR key.
+     */
+    public static long getSeriesId(String seriesKey) {
+        return MD5ID.createTSDRId(seriesKey).getMd5Long1();
+    }
+
+    @Override
+    public boolean isBatching() {
+        return true;
+    }
+
+    @Override
+    public boolean requiresMetricValue() {
+        return true;
+    }
+
+    @Override
+    public byte[] serializeSeries(String seriesKey, TSDRRecord record) {
+        GenericRecord series = new GenericData.Record(seriesSchema);
+        series.put("id", getSeriesId(seriesKey));
+        series.put("category", record.getTSDRDataCategory() == null ? null : record.getTSDRDataCategory().name());
+        series.put("nodeId", record.getNodeID());
+        series.put("metricName", record instanceof TSDRMetricRecord ? ((TSDRMetricRecord) record).getMetricName()
+                : null);
+        Schema keyValueSchema = seriesSchema.getField("recordKeys").schema().getElementType();
+        List<GenericRecord> recordKeys = new ArrayList<>();
+        if (record.getRecordKeys() != null) {
+            for (RecordKeys recordKey : record.getRecordKeys()) {
+                recordKeys.add(keyValue(keyValueSchema, recordKey.getKeyName(), recordKey.getKeyValue()));
+            }
+        }
+        series.put("recordKeys", recordKeys);
+        return write(seriesSchemaId, series);
+    }
+
+    @Override
+    public byte[] serializeMetrics(String seriesKey, List<TSDRMetricRecord> records) {
+        Schema decimalSchema = metricSchema.getField("values").schema().getElementType();
+        List<Long> timestamps = new ArrayList<>(records.size());
+        List<GenericRecord> values = new ArrayList<>(records.size());
+        long previous = 0;
+        for (TSDRMetricRecord record : records) {
+            long timestamp = getTimeStamp(record);
+            timestamps.add(timestamp - previous);
+            previous = timestamp;
+
+            BigDecimal value = record.getMetricValue();
+            if (value == null) {
+                throw new IllegalArgumentException("Metric without value " + record);
+            }
+            GenericRecord decimal = new GenericData.Record(decimalSchema);
+            decimal.put("unscaled", ByteBuffer.wrap(value.unscaledValue().toByteArray()));
+            decimal.put("scale", value.scale());
+            values.add(decimal);
+        }
+
+        GenericRecord batch = new GenericData.Record(metricSchema);
+        batch.put("seriesId", getSeriesId(seriesKey));
+        batch.put("timestamps", timestamps);
+        batch.put("values", values);
+        return write(metricSchemaId, batch);
+    }
+
+    @Override
+    public byte[] serializeLogs(String seriesKey, List<TSDRLogRecord> records) {
+        Schema sampleSchema = logSchema.getField("samples").schema().getElementType();
+        Schema keyValueSchema = sampleSchema.getField("attributes").schema().getElementType();
+        List<GenericRecord> samples = new ArrayList<>(records.size());
+        for (TSDRLogRecord record : records) {
+            GenericRecord sample = new GenericData.Record(sampleSchema);
+            sample.put("timestamp", getTimeStamp(record));
+            sample.put("index", record.getIndex());
+            sample.put("text", record.getRecordFullText());
+            List<GenericRecord> attributes = new ArrayList<>();
+            if (record.getRecordAttributes() != null) {
+                for (RecordAttributes attribute : record.getRecordAttributes()) {
+                    attributes.add(keyValue(keyValueSchema, attribute.getName(), attribute.getValue()));
+                }
+            }
+            sample.put("attributes", attributes);
+            samples.add(sample);
+        }
+
+        GenericRecord batch = new GenericData.Record(logSchema);
+        batch.put("seriesId", getSeriesId(seriesKey));
+        batch.put("samples", samples);
+        return write(logSchemaId, batch);
+    }
+
+    @Override
+    public byte[] serializeBinaries(String seriesKey, List<TSDRBinaryRecord> records) {
+        Schema sampleSchema = binarySchema.getField("samples").schema().getElementType();
+        Schema keyValueSchema = sampleSchema.getField("attributes").schema().getElementType();
+        List<GenericRecord> samples = new ArrayList<>(records.size());
+        for (TSDRBinaryRecord record : records) {
+            GenericRecord sample = new GenericData.Record(sampleSchema);
+            sample.put("timestamp", getTimeStamp(record));
+            sample.put("index", record.getIndex());
+            sample.put("data", record.getData() == null ? null : ByteBuffer.wrap(record.getData()));
+            List<GenericRecord> attributes = new ArrayList<>();
+            if (record.getRecordAttributes() != null) {
+                for (org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data.rev160325.tsdrbinary.RecordAttributes
+                        attribute : record.getRecordAttributes()) {
+                    attributes.add(keyValue(keyValueSchema, attribute.getName(), attribute.getValue()));
+                }
+            }
+            sample.put("attributes", attributes);
+            samples.add(sample);
+        }
+
+        GenericRecord batch = new GenericData.Record(binarySchema);
+        batch.put("seriesId", getSeriesId(seriesKey));
+        batch.put("samples", samples);
+        return write(binarySchemaId, batch);
+    }
+
+    private static long getTimeStamp(TSDRRecord record) {
+        return record.getTimeStamp() == null ? 0L : record.getTimeStamp();
+    }
+
+    private static GenericRecord keyValue(Schema schema, String name, String value) {
+        GenericRecord keyValue = new GenericData.Record(schema);
+        keyValue.put("name", name);
+        keyValue.put("value", value);
+        return keyValue;
+    }
+
+    private static byte[] write(int schemaId, GenericRecord record) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        out.write(MAGIC_BYTE);
+        out.write(ByteBuffer.allocate(4).putInt(schemaId).array(), 0, 4);
+        BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, ENCODER.get());
+        ENCODER.set(encoder);
+        try {
+            new GenericDatumWriter<GenericRecord>(record.getSchema()).write(record, encoder);
+            encoder.flush();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot serialize a " + record.getSchema().getName(), e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads a Series message.
+     *
+     * @throws IOException if the message is not a Series message
+     */
+    public Series deserializeSeries(byte[] message) throws IOException {
+        GenericRecord series = read(message);
+        if (!series.getSchema().getFullName().equals(seriesSchema.getFullName())) {
+            throw new IOException("Not a series message: " + series.getSchema().getFullName());
+        }
+        List<RecordKeys> recordKeys = new ArrayList<>();
+        for (Object element : (List<?>) series.get("recordKeys")) {
+            GenericRecord keyValue = (GenericRecord) element;
+            recordKeys.add(new RecordKeysBuilder()
+                    .setKeyName(toString(keyValue.get("name")))
+                    .setKeyValue(toString(keyValue.get("value")))
+                    .build());
+        }
+        return new Series((Long) series.get("id"), toDataCategory(series.get("category")),
+                toString(series.get("nodeId")), toString(series.get("metricName")), recordKeys);
+    }
+
+    /**
+     * Reads the records of a batch message.
+     *
+     * @param message - the message
+     * @param dictionary - gives the series of an id, or null if it is unknown
+     * @return the records, or null if the series of the batch is unknown
+     * @throws IOException if the message is not a batch message
+     */
+    public List<TSDRRecord> deserialize(byte[] message, LongFunction<Series> dictionary) throws IOException {
+        GenericRecord batch = read(message);
+        String name = batch.getSchema().getFullName();
+        if (name.equals(seriesSchema.getFullName())) {
+            throw new IOException("Not a batch message: " + name);
+        }
+        Series series = dictionary.apply((Long) batch.get("seriesId"));
+        if (series == null) {
+            return null;
+        }
+
+        if (name.equals(metricSchema.getFullName())) {
+            List<?> timestamps = (List<?>) batch.get("timestamps");
+            List<?> values = (List<?>) batch.get("values");
+            List<TSDRRecord> records = new ArrayList<>(timestamps.size());
+            long timestamp = 0;
+            for (int i = 0; i < timestamps.size(); i++) {
+                timestamp += (Long) timestamps.get(i);
+                GenericRecord decimal = (GenericRecord) values.get(i);
+                records.add(new TSDRMetricRecordBuilder()
+                        .setNodeID(series.getNodeId())
+                        .setTSDRDataCategory(series.getCategory())
+                        .setMetricName(series.getMetricName())
+                        .setRecordKeys(series.getRecordKeys())
+                        .setTimeStamp(timestamp)
+                        .setMetricValue(new BigDecimal(new BigInteger(toBytes(decimal.get("unscaled"))),
+                                (Integer) decimal.get("scale")))
+                        .build());
+            }
+            return records;
+        }
+
+        List<?> samples = (List<?>) batch.get("samples");
+        List<TSDRRecord> records = new ArrayList<>(samples.size());
+        for (Object element : samples) {
+            GenericRecord sample = (GenericRecord) element;
+            List<?> attributes = (List<?>) sample.get("attributes");
+            if (name.equals(logSchema.getFullName())) {
+                List<RecordAttributes> logAttributes = new ArrayList<>(attributes.size());
+                for (Object attribute : attributes) {
+                    GenericRecord keyValue = (GenericRecord) attribute;
+                    logAttributes.add(new RecordAttributesBuilder()
+                            .setName(toString(keyValue.get("name")))
+                            .setValue(toString(keyValue.get("value")))
+                            .build());
+                }
+                records.add(new TSDRLogRecordBuilder()
+                        .setNodeID(series.getNodeId())
+                        .setTSDRDataCategory(series.getCategory())
+                        .setRecordKeys(series.getRecordKeys())
+                        .setTimeStamp((Long) sample.get("timestamp"))
+                        .setIndex((Integer) sample.get("index"))
+                        .setRecordFullText(toString(sample.get("text")))
+                        .setRecordAttributes(logAttributes)
+                        .build());
+            } else {
+                List<org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data.rev160325.tsdrbinary.RecordAttributes>
+                        binaryAttributes = new ArrayList<>(attributes.size());
+                for (Object attribute : attributes) {
+                    GenericRecord keyValue = (GenericRecord) attribute;
+                    binaryAttributes.add(new org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data.rev160325
+                                .tsdrbinary.RecordAttributesBuilder()
+                            .setName(toString(keyValue.get("name")))
+                            .setValue(toString(keyValue.get("value")))
+                            .build());
+                }
+                Object data = sample.get("data");
+                records.add(new TSDRBinaryRecordBuilder()
+                        .setNodeID(series.getNodeId())
+                        .setTSDRDataCategory(series.getCategory())
+                        .setRecordKeys(series.getRecordKeys())
+                        .setTimeStamp((Long) sample.get("timestamp"))
+                        .setIndex((Integer) sample.get("index"))
+                        .setData(data == null ? null : toBytes(data))
+                        .setRecordAttributes(binaryAttributes)
+                        .build());
+            }
+        }
+        return records;
+    }
+
+    private GenericRecord read(byte[] message) throws IOException {
+        if (message == null || message.length < HEADER_SIZE || message[0] != MAGIC_BYTE) {
+            throw new IOException("Not an Avro message");
+        }
+        int schemaId = ByteBuffer.wrap(message, 1, 4).getInt();
+        Schema writerSchema = registry.getSchema(schemaId);
+        if (writerSchema == null) {
+            throw new IOException("Unknown schema id " + schemaId);
+        }
+        Schema readerSchema = readerSchemas.get(writerSchema.getFullName());
+        if (readerSchema == null) {
+            throw new IOException("Unknown schema " + writerSchema.getFullName());
+        }
+        return new GenericDatumReader<GenericRecord>(writerSchema, readerSchema).read(null,
+                DecoderFactory.get().binaryDecoder(message, HEADER_SIZE, message.length - HEADER_SIZE, null));
+    }
+
+    private static String toString(Object value) {
+        return value == null ? null : value.toString();
+    }
+
+    private static byte[] toBytes(Object value) {
+        ByteBuffer buffer = ((ByteBuffer) value).duplicate();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static DataCategory toDataCategory(Object value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return DataCategory.valueOf(value.toString());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2019 Bell, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.kafka;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
+
+/**
+ * A schema registry kept in a local directory, standing in for a schema registry service so the Avro messages can be
+ * written and read offline. Each schema is stored in the file &lt;id&gt;.avsc.
+ *
+ * <p>
+ * The id of a schema is derived from the fingerprint of its canonical form rather than allocated, so every producer
+ * and consumer registering the same schema agrees on its id without sharing the directory.
+ */
+public final class FileSchemaRegistry {
+    private static final String SCHEMA_FILE_SUFFIX = ".avsc";
+
+    private final Path directory;
+    private final Map<Integer, Schema> schemas = new ConcurrentHashMap<>();
+
+    public FileSchemaRegistry(Path directory) {
+        this.directory = directory;
+    }
+
+    static int getId(Schema schema) {
+        long fingerprint = SchemaNormalization.parsingFingerprint64(schema);
+        return (int) (fingerprint ^ fingerprint >>> 32) & Integer.MAX_VALUE;
+    }
+
+    /**
+     * Registers a schema, writing its file if it is not in the directory yet.
+     *
+     * @return the id of the schema
+     * @throws IOException if the file cannot be written, or another schema has the same id
+     */
+    public synchronized int register(Schema schema) throws IOException {
+        int id = getId(schema);
+        Schema existing = getSchema(id);
+        if (existing != null) {
+            long fingerprint = SchemaNormalization.parsingFingerprint64(schema);
+            if (SchemaNormalization.parsingFingerprint64(existing) != fingerprint) {
+                throw new IOException("Schema " + schema.getFullName() + " has the id " + id + " of schema "
+                        + existing.getFullName());
+            }
+            return id;
+        }
+
+        Files.createDirectories(directory);
+        Path file = directory.resolve(id + SCHEMA_FILE_SUFFIX);
+        Path tmpFile = directory.resolve(id + SCHEMA_FILE_SUFFIX + ".tmp");
+        Files.write(tmpFile, schema.toString(true).getBytes(StandardCharsets.UTF_8));
+        Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        schemas.put(id, schema);
+        return id;
+    }
+
+    /**
+     * Returns the schema of the given id, or null if it is not registered.
+     */
+    public Schema getSchema(int id) throws IOException {
+        Schema schema = schemas.get(id);
+        if (schema == null) {
+            Path file = directory.resolve(id + SCHEMA_FILE_SUFFIX);
+            if (!Files.exists(file)) {
+                return null;
+            }
+            schema = new Schema.Parser().parse(file.toFile());
+            schemas.put(id, schema);
+        }
+        return schema;
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2019 Bell, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.kafka;
+
+import java.util.List;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data.rev160325.storetsdrbinaryrecord.input.TSDRBinaryRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.TSDRRecord;
+
+/**
+ * Writes each record as a JSON message through the {@link JsonSerializer}, which is how the records were always sent.
+ */
+final class JsonRecordSerializer implements KafkaRecordSerializer {
+    @Override
+    public boolean isBatching() {
+        return false;
+    }
+
+    @Override
+    public boolean requiresMetricValue() {
+        return false;
+    }
+
+    @Override
+    public byte[] serializeSeries(String seriesKey, TSDRRecord record) {
+        return null;
+    }
+
+    @Override
+    public byte[] serializeMetrics(String seriesKey, List<TSDRMetricRecord> records) {
+        return JsonSerializer.serialize(records.get(0));
+    }
+
+    @Override
+    public byte[] serializeLogs(String seriesKey, List<TSDRLogRecord> records) {
+        return JsonSerializer.serialize(records.get(0));
+    }
+
+    @Override
+    public byte[] serializeBinaries(String seriesKey, List<TSDRBinaryRecord> records) {
+        return JsonSerializer.serialize(records.get(0));
+    }
+}
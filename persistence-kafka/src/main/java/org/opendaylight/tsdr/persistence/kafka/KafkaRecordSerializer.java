@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2019 Bell, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.kafka;
+
+import java.util.List;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data.rev160325.storetsdrbinaryrecord.input.TSDRBinaryRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.TSDRRecord;
+
+/**
+ * Serializes the records sent to kafka by the {@link KafkaStore}. The records given to each call belong to a single
+ * series, identified by its TSDR key.
+ */
+public interface KafkaRecordSerializer {
+    /**
+     * Returns whether several records of a series are written in a single message, otherwise each message holds a
+     * single record.
+     */
+    boolean isBatching();
+
+    /**
+     * Returns whether the messages of the metrics hold a value, the metrics without value are then not sent.
+     */
+    boolean requiresMetricValue();
+
+    /**
+     * Returns the message describing a series, which is sent to the series topic before the records of the series,
+     * or null if the messages of the records describe their series themselves.
+     *
+     * @param seriesKey - the TSDR key of the series
+     * @param record - a record of the series
+     */
+    byte[] serializeSeries(String seriesKey, TSDRRecord record);
+
+    byte[] serializeMetrics(String seriesKey, List<TSDRMetricRecord> records);
+
+    byte[] serializeLogs(String seriesKey, List<TSDRLogRecord> records);
+
+    byte[] serializeBinaries(String seriesKey, List<TSDRBinaryRecord> records);
+}
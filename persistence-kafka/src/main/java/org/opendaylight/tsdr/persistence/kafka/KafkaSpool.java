@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2019 Bell, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.kafka;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A file holding the records which could not be sent to kafka, so they are sent again when the store restarts.
+ *
+ * <p>
+ * Each record is appended as its topic, its key and its serialized value. The spool stops accepting records once it
+ * reaches its maximum size.
+ */
+final class KafkaSpool implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(KafkaSpool.class);
+    private static final String SPOOL_FILE = "tsdr-kafka.spool";
+    private static final String REPLAY_FILE = "tsdr-kafka.spool.replay";
+
+    /**
+     * Sends a record read back from the spool.
+     */
+    interface Sender {
+        void send(String topic, String key, byte[] value);
+    }
+
+    private final Path file;
+    private final Path replayFile;
+    private final long maxBytes;
+    private DataOutputStream out;
+    private long size;
+
+    KafkaSpool(Path directory, long maxBytes) throws IOException {
+        Files.createDirectories(directory);
+        this.file = directory.resolve(SPOOL_FILE);
+        this.replayFile = directory.resolve(REPLAY_FILE);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Appends a record to the spool.
+     *
+     * @return false if the record could not be written, or the spool is full
+     */
+    synchronized boolean append(String topic, String key, byte[] value) {
+        try {
+            if (out == null) {
+                size = Files.exists(file) ? Files.size(file) : 0;
+                out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+            }
+            if (size + out.size() + value.length > maxBytes) {
+                return false;
+            }
+            out.writeUTF(topic);
+            out.writeBoolean(key != null);
+            if (key != null) {
+                out.writeUTF(key);
+            }
+            out.writeInt(value.length);
+            out.write(value);
+            out.flush();
+            return true;
+        } catch (IOException e) {
+            LOG.error("Failed to spool a record of topic {} to {}", topic, file, e);
+            return false;
+        }
+    }
+
+    /**
+     * Sends the records of the spool again and empties it. The records which fail again are spooled by the sender.
+     *
+     * @return the number of records sent
+     */
+    int replay(Sender sender) throws IOException {
+        int count = 0;
+        if (Files.exists(replayFile)) {
+            // Left over by a replay which was interrupted
+            count += replay(replayFile, sender);
+        }
+        synchronized (this) {
+            closeOutput();
+            if (!Files.exists(file)) {
+                return count;
+            }
+            Files.move(file, replayFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return count + replay(replayFile, sender);
+    }
+
+    private static int replay(Path path, Sender sender) throws IOException {
+        int count = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            while (in.available() > 0) {
+                String topic = in.readUTF();
+                String key = in.readBoolean() ? in.readUTF() : null;
+                byte[] value = new byte[in.readInt()];
+                in.readFully(value);
+                sender.send(topic, key, value);
+                count++;
+            }
+        } catch (EOFException e) {
+            LOG.warn("The last record of {} is truncated and was not sent", path);
+        }
+        Files.delete(path);
+        return count;
+    }
+
+    private void closeOutput() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closeOutput();
+    }
+}
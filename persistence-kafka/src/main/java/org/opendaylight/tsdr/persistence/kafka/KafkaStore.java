@@ -7,29 +7,59 @@
  */
 package org.opendaylight.tsdr.persistence.kafka;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.KafkaException;
 import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.opendaylight.tsdr.spi.util.ConfigFileUtil;
+import org.opendaylight.tsdr.spi.util.FormatUtil;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data.rev160325.storetsdrbinaryrecord.input.TSDRBinaryRecord;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.TSDRRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * The back-end Kafka store.
+ *
+ * <p>
+ * The records are sent asynchronously, so the producer batches and compresses them, and keyed by the key of their
+ * series, so the records of a series go to the same partition and stay ordered. The records are written by the
+ * configured {@link KafkaRecordSerializer}, either one JSON message per record, or Avro messages holding a batch of
+ * records of a series which refer to the metadata of the series sent once to the series topic. The series topic must
+ * be compacted, so it keeps the metadata of every series past the retention time. The metrics without a value are
+ * not sent.
+ *
+ * <p>
+ * The records which cannot be sent are counted, reported periodically in the log and, if a spool directory is
+ * configured, spooled to be sent again when the store restarts.
  */
 @Singleton
 public class KafkaStore implements AutoCloseable {
@@ -40,69 +70,349 @@ public class KafkaStore implements AutoCloseable {
     private static final String METRIC_TOPIC_KEY = "metric-persistency-topic";
     private static final String LOG_TOPIC_KEY = "log-persistency-topic";
     private static final String BINARY_TOPIC_KEY = "binary-persistency-topic";
+    private static final String SERIES_TOPIC_KEY = "series-topic";
+    private static final String DEFAULT_SERIES_TOPIC = "tsdr-series";
+    static final String SPOOL_DIRECTORY_KEY = "spool-directory";
+    static final String SPOOL_MAX_BYTES_KEY = "spool-max-bytes";
+    private static final long DEFAULT_SPOOL_MAX_BYTES = 64 * 1024 * 1024L;
+    static final String SERIALIZER_KEY = "serializer";
+    static final String SCHEMA_REGISTRY_DIRECTORY_KEY = "schema-registry-directory";
+    private static final String DEFAULT_SCHEMA_REGISTRY_DIRECTORY = "./etc/tsdr-kafka-schemas";
+    static final String MAX_BATCH_RECORDS_KEY = "max-batch-records";
+    private static final int DEFAULT_MAX_BATCH_RECORDS = 500;
+    // The series sent to the series topic least recently are forgotten past this number, and sent again
+    private static final int MAX_SENT_SERIES = 100_000;
+    private static final long REPORT_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    // The settings of the configuration file which are not passed to the producer
+    private static final Set<String> TSDR_KEYS = new HashSet<>(Arrays.asList(
+            ConfigFileUtil.METRIC_PERSISTENCE_PROPERTY, ConfigFileUtil.LOG_PERSISTENCE_PROPERTY,
+            ConfigFileUtil.BINARY_PERSISTENCE_PROPERTY, METRIC_TOPIC_KEY, LOG_TOPIC_KEY, BINARY_TOPIC_KEY,
+            SERIES_TOPIC_KEY, SPOOL_DIRECTORY_KEY, SPOOL_MAX_BYTES_KEY, SERIALIZER_KEY, SCHEMA_REGISTRY_DIRECTORY_KEY,
+            MAX_BATCH_RECORDS_KEY));
 
     private final String metricTopic;
     private final String logTopic;
     private final String binaryTopic;
+    private final String seriesTopic;
 
-    private final KafkaProducer kafkaProducer;
+    private final Producer<String, byte[]> kafkaProducer;
+    private final KafkaRecordSerializer serializer;
+    private final int maxBatchRecords;
+    private final Map<String, Boolean> sentSeries = Collections.synchronizedMap(
+            new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return size() > MAX_SENT_SERIES;
+                }
+            });
+    private final KafkaSpool spool;
+
+    private final AtomicLong sentCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong spooledCount = new AtomicLong();
+    private volatile long lastReport = System.currentTimeMillis();
+    private long reportedFailed;
+    private long reportedSpooled;
 
     @Inject
     public KafkaStore() {
+        this(loadConfig());
+    }
+
+    private KafkaStore(Map<String, String> configFile) {
+        this(configFile, createKafkaProducer(configFile));
+    }
+
+    @VisibleForTesting
+    KafkaStore(Map<String, String> configFile, Producer<String, byte[]> kafkaProducer) {
         // Set topic name
-        final Map<String, String> configFile = new HashMap<>();
-        try {
-            configFile.putAll(ConfigFileUtil.loadConfig(CONF_FILE));
-        } catch (IOException e) {
-            LOG.error("Error while loading config file", e);
-        }
         metricTopic = configFile.getOrDefault(METRIC_TOPIC_KEY, DEFAULT_TOPIC);
         logTopic = configFile.getOrDefault(LOG_TOPIC_KEY, DEFAULT_TOPIC);
         binaryTopic = configFile.getOrDefault(BINARY_TOPIC_KEY, DEFAULT_TOPIC);
+        seriesTopic = configFile.getOrDefault(SERIES_TOPIC_KEY, DEFAULT_SERIES_TOPIC);
 
-        LOG.info("Connecting to kafka server...");
-        kafkaProducer = createKafkaProducer();
+        serializer = createSerializer(configFile);
+        maxBatchRecords = Math.max(1, parseInt(configFile, MAX_BATCH_RECORDS_KEY, DEFAULT_MAX_BATCH_RECORDS));
+        this.kafkaProducer = kafkaProducer;
         LOG.info("kafka producer started");
+
+        spool = createSpool(configFile);
+        if (spool != null) {
+            try {
+                int replayed = spool.replay(this::send);
+                if (replayed > 0) {
+                    LOG.info("{} spooled records were sent again to kafka", replayed);
+                }
+            } catch (IOException e) {
+                LOG.error("Error while sending the spooled records again", e);
+            }
+        }
     }
 
-    private KafkaProducer<String, String> createKafkaProducer() {
-        final Properties props = new Properties();
+    private static Map<String, String> loadConfig() {
+        final Map<String, String> configFile = new HashMap<>();
         try {
-            props.putAll(ConfigFileUtil.loadConfig(CONF_FILE));
+            configFile.putAll(ConfigFileUtil.loadConfig(CONF_FILE));
         } catch (IOException e) {
             LOG.error("Error while loading config file", e);
         }
+        return configFile;
+    }
+
+    private static KafkaProducer<String, byte[]> createKafkaProducer(Map<String, String> configFile) {
+        final Properties props = new Properties();
+        // Defaults favoring throughput, the records are batched for a few ms and compressed
+        props.put(ProducerConfig.LINGER_MS_CONFIG, "20");
+        props.put(ProducerConfig.BATCH_SIZE_CONFIG, "131072");
+        props.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, "lz4");
+        configFile.forEach((key, value) -> {
+            if (!TSDR_KEYS.contains(key)) {
+                props.put(key, value);
+            }
+        });
 
         props.put(ProducerConfig.CLIENT_ID_CONFIG, KAFKA_CLIENT_ID);
         props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
         props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getName());
 
+        LOG.info("Connecting to kafka server...");
         return new KafkaProducer<>(props);
     }
 
+    private static KafkaRecordSerializer createSerializer(Map<String, String> configFile) {
+        String serializer = configFile.getOrDefault(SERIALIZER_KEY, "json").trim().toLowerCase(Locale.ROOT);
+        if ("avro".equals(serializer)) {
+            try {
+                return new AvroRecordSerializer(new FileSchemaRegistry(Paths.get(configFile.getOrDefault(
+                        SCHEMA_REGISTRY_DIRECTORY_KEY, DEFAULT_SCHEMA_REGISTRY_DIRECTORY))));
+            } catch (IOException e) {
+                LOG.error("Error while registering the Avro schemas, the records are sent as JSON", e);
+            }
+        } else if (!"json".equals(serializer)) {
+            LOG.warn("Unknown {} value {}, the records are sent as JSON", SERIALIZER_KEY, serializer);
+        }
+        return new JsonRecordSerializer();
+    }
+
+    private static int parseInt(Map<String, String> configFile, String key, int defaultValue) {
+        String value = configFile.get(key);
+        if (Strings.isNullOrEmpty(value)) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            LOG.warn("Invalid {} value {}, using {}", key, value, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    private static KafkaSpool createSpool(Map<String, String> configFile) {
+        String directory = configFile.get(SPOOL_DIRECTORY_KEY);
+        if (Strings.isNullOrEmpty(directory)) {
+            return null;
+        }
+        long maxBytes = DEFAULT_SPOOL_MAX_BYTES;
+        try {
+            maxBytes = Long.parseLong(configFile.getOrDefault(SPOOL_MAX_BYTES_KEY,
+                    String.valueOf(DEFAULT_SPOOL_MAX_BYTES)).trim());
+        } catch (NumberFormatException e) {
+            LOG.warn("Invalid {} value, using {}", SPOOL_MAX_BYTES_KEY, DEFAULT_SPOOL_MAX_BYTES);
+        }
+        try {
+            return new KafkaSpool(Paths.get(directory), maxBytes);
+        } catch (IOException e) {
+            LOG.error("Error while creating the spool directory {}, the records failing to be sent are dropped",
+                    directory, e);
+            return null;
+        }
+    }
+
     public void store(TSDRMetricRecord mr) {
-        kafkaProducer.send(
-                new ProducerRecord<>(metricTopic, JsonSerializer.serialize(mr)));
-        kafkaProducer.flush();
+        storeMetrics(Collections.singletonList(mr));
     }
 
     public void store(TSDRLogRecord lr) {
-        kafkaProducer.send(
-                new ProducerRecord<>(logTopic, JsonSerializer.serialize(lr)));
-        kafkaProducer.flush();
+        storeLogs(Collections.singletonList(lr));
     }
 
     public void store(TSDRBinaryRecord lr) {
-        kafkaProducer.send(
-                new ProducerRecord<>(binaryTopic, JsonSerializer.serialize(lr)));
-        kafkaProducer.flush();
+        storeBinaries(Collections.singletonList(lr));
+    }
+
+    public void storeMetrics(List<TSDRMetricRecord> records) {
+        groupBySeries(serializer.requiresMetricValue() ? withValues(records) : records,
+                FormatUtil::getTSDRMetricKey).forEach((seriesKey, series) -> {
+            sendSeries(seriesKey, series.get(0));
+            for (List<TSDRMetricRecord> batch : toBatches(series)) {
+                sendSerialized(metricTopic, seriesKey, () -> serializer.serializeMetrics(seriesKey, batch));
+            }
+        });
+    }
+
+    public void storeLogs(List<TSDRLogRecord> records) {
+        groupBySeries(records, FormatUtil::getTSDRLogKey).forEach((seriesKey, series) -> {
+            sendSeries(seriesKey, series.get(0));
+            for (List<TSDRLogRecord> batch : toBatches(series)) {
+                sendSerialized(logTopic, seriesKey, () -> serializer.serializeLogs(seriesKey, batch));
+            }
+        });
+    }
+
+    public void storeBinaries(List<TSDRBinaryRecord> records) {
+        groupBySeries(records, FormatUtil::getTSDRBinaryKey).forEach((seriesKey, series) -> {
+            sendSeries(seriesKey, series.get(0));
+            for (List<TSDRBinaryRecord> batch : toBatches(series)) {
+                sendSerialized(binaryTopic, seriesKey, () -> serializer.serializeBinaries(seriesKey, batch));
+            }
+        });
+    }
+
+    private List<TSDRMetricRecord> withValues(List<TSDRMetricRecord> records) {
+        List<TSDRMetricRecord> result = new ArrayList<>(records.size());
+        for (TSDRMetricRecord record : records) {
+            if (record.getMetricValue() != null) {
+                result.add(record);
+            } else {
+                failedCount.incrementAndGet();
+                LOG.debug("Dropping a metric without value {}", record);
+            }
+        }
+        return result;
+    }
+
+    private static <T> Map<String, List<T>> groupBySeries(List<T> records, Function<T, String> seriesKey) {
+        Map<String, List<T>> series = new LinkedHashMap<>();
+        for (T record : records) {
+            series.computeIfAbsent(seriesKey.apply(record), key -> new ArrayList<>()).add(record);
+        }
+        return series;
+    }
+
+    private <T> List<List<T>> toBatches(List<T> records) {
+        int batchSize = serializer.isBatching() ? maxBatchRecords : 1;
+        if (records.size() <= batchSize) {
+            return Collections.singletonList(records);
+        }
+        List<List<T>> batches = new ArrayList<>((records.size() + batchSize - 1) / batchSize);
+        for (int i = 0; i < records.size(); i += batchSize) {
+            batches.add(records.subList(i, Math.min(i + batchSize, records.size())));
+        }
+        return batches;
+    }
+
+    /**
+     * Sends the metadata of a series to the series topic, unless it was sent already or the serializer does not
+     * refer to it.
+     */
+    private void sendSeries(String seriesKey, TSDRRecord record) {
+        // The lookup also marks the series as recently used
+        if (sentSeries.get(seriesKey) != null) {
+            return;
+        }
+        byte[] series = serializer.serializeSeries(seriesKey, record);
+        if (series == null) {
+            return;
+        }
+        sentSeries.put(seriesKey, Boolean.TRUE);
+        send(seriesTopic, seriesKey, series);
+    }
+
+    private void sendSerialized(String topic, String key, Supplier<byte[]> value) {
+        final byte[] message;
+        try {
+            message = value.get();
+        } catch (IllegalArgumentException e) {
+            failedCount.incrementAndGet();
+            LOG.error("Failed to serialize a record with key {}", key, e);
+            return;
+        }
+        send(topic, key, message);
+    }
+
+    /**
+     * Sends a record without waiting for it to be acknowledged, the outcome is handled in the producer callback.
+     */
+    private void send(String topic, String key, byte[] value) {
+        try {
+            kafkaProducer.send(new ProducerRecord<>(topic, key, value), (metadata, exception) -> {
+                if (exception == null) {
+                    sentCount.incrementAndGet();
+                } else {
+                    fail(topic, key, value, exception);
+                }
+            });
+        } catch (KafkaException e) {
+            fail(topic, key, value, e);
+        }
+        report(false);
+    }
+
+    private void fail(String topic, String key, byte[] value, Exception exception) {
+        if (topic.equals(seriesTopic)) {
+            // The series is sent again with the next records of the series
+            sentSeries.remove(key);
+        }
+        failedCount.incrementAndGet();
+        LOG.debug("Failed to send a record with key {} to topic {}", key, topic, exception);
+        if (spool != null && spool.append(topic, key, value)) {
+            spooledCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Logs the number of records which failed to be sent since the last report, at most once per report interval
+     * unless forced.
+     */
+    private void report(boolean force) {
+        long now = System.currentTimeMillis();
+        if (!force && now - lastReport < REPORT_INTERVAL) {
+            return;
+        }
+        synchronized (this) {
+            if (!force && now - lastReport < REPORT_INTERVAL) {
+                return;
+            }
+            lastReport = now;
+            long failed = failedCount.get();
+            long spooled = spooledCount.get();
+            if (failed != reportedFailed) {
+                LOG.warn("{} records failed to be sent to kafka and {} of them were spooled since the last report",
+                        failed - reportedFailed, spooled - reportedSpooled);
+                reportedFailed = failed;
+                reportedSpooled = spooled;
+            }
+        }
+    }
+
+    long getSentCount() {
+        return sentCount.get();
+    }
+
+    long getFailedCount() {
+        return failedCount.get();
+    }
+
+    long getSpooledCount() {
+        return spooledCount.get();
     }
 
     @Override
     @PreDestroy
     public void close() {
-        kafkaProducer.flush();
+        // Closing the producer sends the records it still holds
         kafkaProducer.close(10_000, TimeUnit.MILLISECONDS);
+        report(true);
+        if (spool != null) {
+            try {
+                spool.close();
+            } catch (IOException e) {
+                LOG.error("Error while closing the spool", e);
+            }
+        }
     }
 
 }
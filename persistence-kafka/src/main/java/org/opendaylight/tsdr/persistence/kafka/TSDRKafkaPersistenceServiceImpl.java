@@ -16,7 +16,7 @@ import org.opendaylight.tsdr.spi.persistence.TSDRBinaryPersistenceService;
 import org.opendaylight.tsdr.spi.persistence.TSDRLogPersistenceService;
 import org.opendaylight.tsdr.spi.persistence.TSDRMetricPersistenceService;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data.rev160325.storetsdrbinaryrecord.input.TSDRBinaryRecord;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
 import org.slf4j.Logger;
@@ -41,9 +41,7 @@ public class TSDRKafkaPersistenceServiceImpl implements TSDRMetricPersistenceSer
 
     @Override
     public void storeMetric(List<TSDRMetricRecord> metricRecordList) {
-        for (TSDRMetricRecord record : metricRecordList) {
-            producer.store(record);
-        }
+        producer.storeMetrics(metricRecordList);
     }
 
     @Override
@@ -53,9 +51,7 @@ public class TSDRKafkaPersistenceServiceImpl implements TSDRMetricPersistenceSer
 
     @Override
     public void storeLog(List<TSDRLogRecord> metricRecordList) {
-        for (TSDRLogRecord record : metricRecordList) {
-            producer.store(record);
-        }
+        producer.storeLogs(metricRecordList);
     }
 
     @Override
@@ -65,9 +61,7 @@ public class TSDRKafkaPersistenceServiceImpl implements TSDRMetricPersistenceSer
 
     @Override
     public void storeBinary(List<TSDRBinaryRecord> recordList) {
-        for (TSDRBinaryRecord record : recordList) {
-            producer.store(record);
-        }
+        producer.storeBinaries(recordList);
     }
 
     @Override
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2019 Bell, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.kafka;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opendaylight.tsdr.spi.util.FormatUtil;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data.rev160325.storetsdrbinaryrecord.input.TSDRBinaryRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data.rev160325.storetsdrbinaryrecord.input.TSDRBinaryRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.tsdrlog.RecordAttributesBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.TSDRRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.tsdrrecord.RecordKeysBuilder;
+
+/**
+ * Unit tests of the {@link AvroRecordSerializer}.
+ */
+public class AvroRecordSerializerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private AvroRecordSerializer serializer;
+
+    @Before
+    public void setUp() throws Exception {
+        serializer = new AvroRecordSerializer(new FileSchemaRegistry(folder.getRoot().toPath()));
+    }
+
+    private static TSDRMetricRecord createMetricRecord(long timeStamp, BigDecimal value) {
+        return new TSDRMetricRecordBuilder()
+                .setNodeID("openflow:1")
+                .setTimeStamp(timeStamp)
+                .setTSDRDataCategory(DataCategory.PORTSTATS)
+                .setMetricName("TransmittedPackets")
+                .setMetricValue(value)
+                .setRecordKeys(Collections.singletonList(new RecordKeysBuilder()
+                        .setKeyName("Port")
+                        .setKeyValue("1")
+                        .build()))
+                .build();
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        List<TSDRMetricRecord> records = Arrays.asList(createMetricRecord(1000L, new BigDecimal("12.5")),
+                createMetricRecord(2000L, new BigDecimal(-3)), createMetricRecord(1500L, new BigDecimal("1E+3")));
+        String seriesKey = FormatUtil.getTSDRMetricKey(records.get(0));
+
+        AvroRecordSerializer.Series series = serializer.deserializeSeries(
+                serializer.serializeSeries(seriesKey, records.get(0)));
+        assertEquals(AvroRecordSerializer.getSeriesId(seriesKey), series.getId());
+        assertEquals(DataCategory.PORTSTATS, series.getCategory());
+        assertEquals("openflow:1", series.getNodeId());
+        assertEquals("TransmittedPackets", series.getMetricName());
+        assertEquals(records.get(0).getRecordKeys(), series.getRecordKeys());
+
+        byte[] message = serializer.serializeMetrics(seriesKey, records);
+        assertNull(serializer.deserialize(message, id -> null));
+        List<TSDRRecord> decoded = serializer.deserialize(message, id -> series);
+        assertEquals(records, decoded);
+        for (TSDRRecord record : decoded) {
+            assertEquals(seriesKey, FormatUtil.getTSDRMetricKey((TSDRMetricRecord) record));
+        }
+    }
+
+    @Test
+    public void testLogs() throws Exception {
+        TSDRLogRecord record = new TSDRLogRecordBuilder()
+                .setNodeID("openflow:1")
+                .setTimeStamp(1000L)
+                .setTSDRDataCategory(DataCategory.SYSLOG)
+                .setIndex(2)
+                .setRecordFullText("Interface eth0 is down")
+                .setRecordKeys(Collections.emptyList())
+                .setRecordAttributes(Collections.singletonList(new RecordAttributesBuilder()
+                        .setName("Severity")
+                        .setValue("3")
+                        .build()))
+                .build();
+        String seriesKey = FormatUtil.getTSDRLogKey(record);
+        AvroRecordSerializer.Series series = serializer.deserializeSeries(
+                serializer.serializeSeries(seriesKey, record));
+        List<TSDRRecord> decoded = serializer.deserialize(
+                serializer.serializeLogs(seriesKey, Collections.singletonList(record)), id -> series);
+        assertEquals(Collections.singletonList(record), decoded);
+    }
+
+    @Test
+    public void testBinaries() throws Exception {
+        TSDRBinaryRecord record = new TSDRBinaryRecordBuilder()
+                .setNodeID("openflow:1")
+                .setTimeStamp(1000L)
+                .setTSDRDataCategory(DataCategory.EXTERNAL)
+                .setIndex(1)
+                .setData(new byte[] {1, 2, 3})
+                .setRecordKeys(Collections.emptyList())
+                .setRecordAttributes(Collections.emptyList())
+                .build();
+        String seriesKey = FormatUtil.getTSDRBinaryKey(record);
+        AvroRecordSerializer.Series series = serializer.deserializeSeries(
+                serializer.serializeSeries(seriesKey, record));
+        List<TSDRRecord> decoded = serializer.deserialize(
+                serializer.serializeBinaries(seriesKey, Collections.singletonList(record)), id -> series);
+        assertEquals(1, decoded.size());
+        assertArrayEquals(record.getData(), ((TSDRBinaryRecord) decoded.get(0)).getData());
+        assertEquals(record.getIndex(), ((TSDRBinaryRecord) decoded.get(0)).getIndex());
+    }
+
+    @Test
+    public void testSchemaRegistry() throws Exception {
+        File[] schemas = folder.getRoot().listFiles();
+        assertEquals(4, schemas.length);
+
+        // Another registry agrees on the ids and reads the messages
+        FileSchemaRegistry otherRegistry = new FileSchemaRegistry(folder.newFolder().toPath());
+        AvroRecordSerializer other = new AvroRecordSerializer(otherRegistry);
+        TSDRMetricRecord record = createMetricRecord(1000L, BigDecimal.ONE);
+        String seriesKey = FormatUtil.getTSDRMetricKey(record);
+        assertEquals(serializer.deserializeSeries(serializer.serializeSeries(seriesKey, record)).getNodeId(),
+                other.deserializeSeries(serializer.serializeSeries(seriesKey, record)).getNodeId());
+    }
+}
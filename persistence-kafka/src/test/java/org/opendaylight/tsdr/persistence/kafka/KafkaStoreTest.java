@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2019 Bell, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.kafka;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.math.BigDecimal;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opendaylight.tsdr.spi.util.FormatUtil;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.TSDRRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.tsdrrecord.RecordKeysBuilder;
+
+/**
+ * Unit tests of the {@link KafkaStore}, sending to a mock producer.
+ */
+public class KafkaStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static TSDRMetricRecord createMetricRecord(String nodeId) {
+        return new TSDRMetricRecordBuilder()
+                .setNodeID(nodeId)
+                .setTimeStamp(System.currentTimeMillis())
+                .setTSDRDataCategory(DataCategory.PORTSTATS)
+                .setMetricName("TransmittedPackets")
+                .setMetricValue(new BigDecimal(8128))
+                .setRecordKeys(Collections.singletonList(new RecordKeysBuilder()
+                        .setKeyName("Port")
+                        .setKeyValue("1")
+                        .build()))
+                .build();
+    }
+
+    private Map<String, String> createConfig() {
+        Map<String, String> config = new HashMap<>();
+        config.put("metric-persistency-topic", "metrics");
+        config.put(KafkaStore.SPOOL_DIRECTORY_KEY, folder.getRoot().getPath());
+        return config;
+    }
+
+    @Test
+    public void testStoreIsKeyedAndAsynchronous() {
+        MockProducer<String, byte[]> producer = new MockProducer<>(false, new StringSerializer(),
+                new ByteArraySerializer());
+        KafkaStore store = new KafkaStore(createConfig(), producer);
+        TSDRMetricRecord record = createMetricRecord("node1");
+        store.store(record);
+        store.store(createMetricRecord("node2"));
+
+        // Both records are sent without waiting for the first one to be acknowledged
+        assertEquals(2, producer.history().size());
+        assertEquals(0, store.getSentCount());
+        ProducerRecord<String, byte[]> sent = producer.history().get(0);
+        assertEquals("metrics", sent.topic());
+        assertEquals(FormatUtil.getTSDRMetricKey(record), sent.key());
+
+        producer.completeNext();
+        producer.completeNext();
+        assertEquals(2, store.getSentCount());
+        assertEquals(0, store.getFailedCount());
+        store.close();
+    }
+
+    @Test
+    public void testFailedRecordsAreSpooledAndReplayed() {
+        MockProducer<String, byte[]> producer = new MockProducer<>(false, new StringSerializer(),
+                new ByteArraySerializer());
+        KafkaStore store = new KafkaStore(createConfig(), producer);
+        store.store(createMetricRecord("node1"));
+        producer.errorNext(new TimeoutException("test"));
+        assertEquals(1, store.getFailedCount());
+        assertEquals(1, store.getSpooledCount());
+        ProducerRecord<String, byte[]> failed = producer.history().get(0);
+        store.close();
+
+        // The spooled record is sent again by the next store
+        MockProducer<String, byte[]> nextProducer = new MockProducer<>(true, new StringSerializer(),
+                new ByteArraySerializer());
+        KafkaStore nextStore = new KafkaStore(createConfig(), nextProducer);
+        assertEquals(1, nextProducer.history().size());
+        ProducerRecord<String, byte[]> replayed = nextProducer.history().get(0);
+        assertEquals(failed.topic(), replayed.topic());
+        assertEquals(failed.key(), replayed.key());
+        assertArrayEquals(failed.value(), replayed.value());
+        assertEquals(1, nextStore.getSentCount());
+        nextStore.close();
+
+        // The spool is empty once replayed
+        MockProducer<String, byte[]> lastProducer = new MockProducer<>(true, new StringSerializer(),
+                new ByteArraySerializer());
+        new KafkaStore(createConfig(), lastProducer).close();
+        assertEquals(0, lastProducer.history().size());
+    }
+
+    @Test
+    public void testAvroBatches() throws Exception {
+        Map<String, String> config = createConfig();
+        config.put(KafkaStore.SERIALIZER_KEY, "avro");
+        config.put(KafkaStore.SCHEMA_REGISTRY_DIRECTORY_KEY, folder.newFolder().getPath());
+        config.put(KafkaStore.MAX_BATCH_RECORDS_KEY, "2");
+        MockProducer<String, byte[]> producer = new MockProducer<>(true, new StringSerializer(),
+                new ByteArraySerializer());
+        KafkaStore store = new KafkaStore(config, producer);
+        List<TSDRMetricRecord> records = Arrays.asList(createMetricRecord("node1"), createMetricRecord("node1"),
+                createMetricRecord("node1"), createMetricRecord("node2"));
+        store.storeMetrics(records);
+        store.storeMetrics(Collections.singletonList(createMetricRecord("node1")));
+
+        // A series message and 2 batches for node1, then a series message and a batch for node2, then a batch
+        List<ProducerRecord<String, byte[]>> history = producer.history();
+        assertEquals(6, history.size());
+        assertEquals("tsdr-series", history.get(0).topic());
+        assertEquals("metrics", history.get(1).topic());
+        assertEquals("tsdr-series", history.get(3).topic());
+        assertEquals("metrics", history.get(5).topic());
+
+        AvroRecordSerializer serializer = new AvroRecordSerializer(new FileSchemaRegistry(
+                Paths.get(config.get(KafkaStore.SCHEMA_REGISTRY_DIRECTORY_KEY))));
+        AvroRecordSerializer.Series series = serializer.deserializeSeries(history.get(0).value());
+        List<TSDRRecord> batch = serializer.deserialize(history.get(1).value(), id -> series);
+        assertNotNull(batch);
+        assertEquals(records.subList(0, 2), batch);
+        assertEquals(1, serializer.deserialize(history.get(2).value(), id -> series).size());
+        store.close();
+    }
+
+    @Test
+    public void testFailedSeriesIsSentAgain() throws Exception {
+        Map<String, String> config = createConfig();
+        config.put(KafkaStore.SERIALIZER_KEY, "avro");
+        config.put(KafkaStore.SCHEMA_REGISTRY_DIRECTORY_KEY, folder.newFolder().getPath());
+        MockProducer<String, byte[]> producer = new MockProducer<>(false, new StringSerializer(),
+                new ByteArraySerializer());
+        KafkaStore store = new KafkaStore(config, producer);
+        store.store(createMetricRecord("node1"));
+        producer.errorNext(new TimeoutException("test"));
+        producer.completeNext();
+
+        // The series message was not acknowledged, it is sent again before the next batch
+        store.store(createMetricRecord("node1"));
+        List<ProducerRecord<String, byte[]>> history = producer.history();
+        assertEquals(4, history.size());
+        assertEquals("tsdr-series", history.get(2).topic());
+        assertEquals(history.get(0).key(), history.get(2).key());
+        assertEquals("metrics", history.get(3).topic());
+        store.close();
+    }
+
+    @Test
+    public void testMetricsWithoutValueAreDroppedByAvro() throws Exception {
+        // The JSON messages are sent without value
+        MockProducer<String, byte[]> producer = new MockProducer<>(true, new StringSerializer(),
+                new ByteArraySerializer());
+        KafkaStore store = new KafkaStore(createConfig(), producer);
+        TSDRMetricRecord record = createMetricRecord("node1");
+        List<TSDRMetricRecord> records = Arrays.asList(new TSDRMetricRecordBuilder(record).setMetricValue(null)
+                .build(), record);
+        store.storeMetrics(records);
+        assertEquals(2, producer.history().size());
+        assertEquals(0, store.getFailedCount());
+        store.close();
+
+        // The Avro messages drop them, a series message and a batch are sent
+        Map<String, String> config = createConfig();
+        config.put(KafkaStore.SERIALIZER_KEY, "avro");
+        config.put(KafkaStore.SCHEMA_REGISTRY_DIRECTORY_KEY, folder.newFolder().getPath());
+        producer = new MockProducer<>(true, new StringSerializer(), new ByteArraySerializer());
+        store = new KafkaStore(config, producer);
+        store.storeMetrics(records);
+        assertEquals(2, producer.history().size());
+        assertEquals(2, store.getSentCount());
+        assertEquals(1, store.getFailedCount());
+        store.close();
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.logstore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.tsdrlog.RecordAttributes;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.tsdrlog.RecordAttributesBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.tsdrrecord.RecordKeys;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.tsdrrecord.RecordKeysBuilder;
+
+/**
+ * Encodes the log records of a block, one after the other, and compresses them with the deflate algorithm. The
+ * texts of the logs of a collector are much alike, so a block of a thousand logs is typically compressed to a tenth
+ * of its size.
+ */
+final class LogBlockCodec {
+    private static final int BUFFER_SIZE = 8192;
+
+    private LogBlockCodec() {
+    }
+
+    static byte[] encode(List<TSDRLogRecord> records) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        // The streams are buffered, the deflater being slow on the few bytes of each field
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new DeflaterOutputStream(bytes, deflater), BUFFER_SIZE))) {
+            for (TSDRLogRecord record : records) {
+                writeString(out, record.getTSDRDataCategory() == null ? null : record.getTSDRDataCategory().name());
+                writeString(out, record.getNodeID());
+                List<RecordKeys> recordKeys = nonNull(record.getRecordKeys());
+                out.writeInt(recordKeys.size());
+                for (RecordKeys recordKey : recordKeys) {
+                    writeString(out, recordKey.getKeyName());
+                    writeString(out, recordKey.getKeyValue());
+                }
+                out.writeLong(record.getTimeStamp());
+                out.writeInt(record.getIndex() == null ? 0 : record.getIndex());
+                writeString(out, record.getRecordFullText());
+                List<RecordAttributes> attributes = nonNull(record.getRecordAttributes());
+                out.writeInt(attributes.size());
+                for (RecordAttributes attribute : attributes) {
+                    writeString(out, attribute.getName());
+                    writeString(out, attribute.getValue());
+                }
+            }
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    static List<TSDRLogRecord> decode(byte[] data, int count) throws IOException {
+        List<TSDRLogRecord> records = new ArrayList<>(count);
+        Inflater inflater = new Inflater();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new InflaterInputStream(new ByteArrayInputStream(data), inflater), BUFFER_SIZE))) {
+            for (int i = 0; i < count; i++) {
+                String category = readString(in);
+                TSDRLogRecordBuilder builder = new TSDRLogRecordBuilder()
+                        .setTSDRDataCategory(category == null ? null : DataCategory.valueOf(category))
+                        .setNodeID(readString(in));
+                int keyCount = in.readInt();
+                List<RecordKeys> recordKeys = new ArrayList<>(keyCount);
+                for (int j = 0; j < keyCount; j++) {
+                    recordKeys.add(new RecordKeysBuilder().setKeyName(readString(in)).setKeyValue(readString(in))
+                            .build());
+                }
+                builder.setRecordKeys(recordKeys)
+                        .setTimeStamp(in.readLong())
+                        .setIndex(in.readInt())
+                        .setRecordFullText(readString(in));
+                int attributeCount = in.readInt();
+                List<RecordAttributes> attributes = new ArrayList<>(attributeCount);
+                for (int j = 0; j < attributeCount; j++) {
+                    attributes.add(new RecordAttributesBuilder().setName(readString(in)).setValue(readString(in))
+                            .build());
+                }
+                records.add(builder.setRecordAttributes(attributes).build());
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid data category in a log block", e);
+        } finally {
+            inflater.end();
+        }
+        return records;
+    }
+
+    private static <T> List<T> nonNull(List<T> list) {
+        return list == null ? Collections.emptyList() : list;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        // The length is written rather than using writeUTF, which is limited to 64 KB
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.logstore;
+
+import com.google.common.base.Strings;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.opendaylight.tsdr.spi.util.FormatUtil;
+import org.opendaylight.tsdr.spi.util.LogSearch;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.TSDRLog;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.tsdrlog.RecordAttributes;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.tsdrrecord.RecordKeys;
+
+/**
+ * A query of the log store: the parts of a TSDR log key, a time range and a {@link LogSearch}.
+ *
+ * <p>
+ * The logs are indexed by the terms derived from their category, node id, record keys, full text tokens and
+ * attributes, each prefixed by its kind so a token never matches an attribute. The query looks up the blocks holding
+ * all its terms, then filters their logs on the exact conditions.
+ * </p>
+ */
+final class LogQuery {
+    private static final String CATEGORY_PREFIX = "c:";
+    private static final String NODE_ID_PREFIX = "n:";
+    private static final String RECORD_KEY_PREFIX = "r:";
+    private static final String TOKEN_PREFIX = "t:";
+    private static final String ATTRIBUTE_PREFIX = "a:";
+
+    private final String category;
+    private final String nodeId;
+    private final List<RecordKeys> recordKeys;
+    private final long startTime;
+    private final long endTime;
+    private final LogSearch search;
+    private final List<String> terms = new ArrayList<>();
+
+    LogQuery(String tsdrLogKey, long startTime, long endTime, LogSearch search) {
+        if (tsdrLogKey == null || FormatUtil.isDataCategory(tsdrLogKey)) {
+            this.category = tsdrLogKey;
+            this.nodeId = null;
+            this.recordKeys = null;
+        } else {
+            this.category = FormatUtil.getDataCategoryFromTSDRKey(tsdrLogKey);
+            this.nodeId = FormatUtil.getNodeIdFromTSDRKey(tsdrLogKey);
+            this.recordKeys = FormatUtil.getRecordKeysFromTSDRKey(tsdrLogKey);
+        }
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.search = search;
+
+        if (!Strings.isNullOrEmpty(category)) {
+            terms.add(CATEGORY_PREFIX + category);
+        }
+        if (!Strings.isNullOrEmpty(nodeId)) {
+            terms.add(NODE_ID_PREFIX + nodeId);
+        }
+        if (recordKeys != null) {
+            for (RecordKeys recordKey : recordKeys) {
+                terms.add(recordKeyTerm(recordKey));
+            }
+        }
+        for (String token : search.getTerms()) {
+            terms.add(TOKEN_PREFIX + token);
+        }
+        for (Map.Entry<String, String> attribute : search.getAttributes().entrySet()) {
+            terms.add(attributeTerm(attribute.getKey(), attribute.getValue()));
+        }
+    }
+
+    /**
+     * Returns the terms a log is indexed by.
+     */
+    static Set<String> indexTerms(TSDRLog log) {
+        Set<String> terms = new HashSet<>();
+        if (log.getTSDRDataCategory() != null) {
+            terms.add(CATEGORY_PREFIX + log.getTSDRDataCategory().name());
+        }
+        if (log.getNodeID() != null) {
+            terms.add(NODE_ID_PREFIX + log.getNodeID());
+        }
+        if (log.getRecordKeys() != null) {
+            for (RecordKeys recordKey : log.getRecordKeys()) {
+                terms.add(recordKeyTerm(recordKey));
+            }
+        }
+        for (String token : LogSearch.tokenize(log.getRecordFullText())) {
+            terms.add(TOKEN_PREFIX + token);
+        }
+        if (log.getRecordAttributes() != null) {
+            for (RecordAttributes attribute : log.getRecordAttributes()) {
+                terms.add(attributeTerm(attribute.getName(), attribute.getValue()));
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Returns the term of the logs of a data category, which the purge looks up.
+     */
+    static String categoryTerm(String category) {
+        return CATEGORY_PREFIX + category;
+    }
+
+    private static String recordKeyTerm(RecordKeys recordKey) {
+        return RECORD_KEY_PREFIX + recordKey.getKeyName() + "=" + recordKey.getKeyValue();
+    }
+
+    private static String attributeTerm(String name, String value) {
+        return ATTRIBUTE_PREFIX + name + "=" + value;
+    }
+
+    List<String> getTerms() {
+        return Collections.unmodifiableList(terms);
+    }
+
+    long getStartTime() {
+        return startTime;
+    }
+
+    long getEndTime() {
+        return endTime;
+    }
+
+    /**
+     * Returns whether a log matches all the conditions of the query, the index only narrowing the blocks to read.
+     */
+    boolean matches(TSDRLog log) {
+        long time = log.getTimeStamp();
+        return time >= startTime && time <= endTime
+                && (Strings.isNullOrEmpty(category) || log.getTSDRDataCategory() != null
+                        && category.equals(log.getTSDRDataCategory().name()))
+                && (Strings.isNullOrEmpty(nodeId) || nodeId.equals(log.getNodeID()))
+                && (recordKeys == null || log.getRecordKeys() != null && log.getRecordKeys().containsAll(recordKeys))
+                && search.matches(log);
+    }
+}
@@ -0,0 +1,402 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.logstore;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.opendaylight.tsdr.persistence.logstore.Segment.BlockRef;
+import org.opendaylight.tsdr.spi.util.ConfigFileUtil;
+import org.opendaylight.tsdr.spi.util.LogSearch;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Embedded log store.
+ *
+ * <p>
+ * The logs are buffered in memory and written by blocks of block-records logs, compressed, to the current
+ * {@link Segment} file, the pending logs being written every flush-interval seconds and on close. The terms of the
+ * logs, their category, node id, record keys, full text tokens and attributes, are indexed by block, and a segment is
+ * sealed with its index once it is larger than segment-size MB.
+ * </p>
+ *
+ * <p>
+ * A query skips the segments and the blocks out of its time range, and the segments whose bloom filter does not hold
+ * all its terms, then only decompresses the blocks holding all of them from the postings of their segment. As the
+ * postings are by block, the logs read are then filtered on the exact conditions of the query. The purge rewrites the
+ * segments holding logs of the category older than the retention time, a rewritten segment being only swapped, and
+ * its file closed, once the queries reading it are done.
+ * </p>
+ *
+ * <p>
+ * The logs still pending are lost if the process dies, there is no write-ahead log.
+ * </p>
+ */
+@Singleton
+public class LogStore implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(LogStore.class);
+    private static final String CONF_FILE = ConfigFileUtil.CONFIG_DIR + "tsdr-persistence-logstore.properties";
+    static final String DIRECTORY_PROP = "directory";
+    private static final String DEFAULT_DIRECTORY = "./tsdr/logstore";
+    static final String BLOCK_RECORDS_PROP = "block-records";
+    private static final int DEFAULT_BLOCK_RECORDS = 1000;
+    static final String SEGMENT_SIZE_PROP = "segment-size";
+    private static final int DEFAULT_SEGMENT_SIZE = 64;
+    static final String FLUSH_INTERVAL_PROP = "flush-interval";
+    private static final int DEFAULT_FLUSH_INTERVAL = 5;
+
+    private static final Comparator<TSDRLogRecord> BY_TIME = Comparator.comparing(TSDRLogRecord::getTimeStamp,
+            Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(record -> record.getIndex() == null ? 0 : record.getIndex());
+
+    private final Path directory;
+    private final int blockRecords;
+    private final long segmentBytes;
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService flushExecutor;
+    private final Object purgeLock = new Object();
+    // Held for reading by the queries reading the segments, and for writing to close or replace a segment
+    private final ReadWriteLock segmentLock = new ReentrantReadWriteLock();
+
+    // Guarded by this
+    private final List<TSDRLogRecord> pending = new ArrayList<>();
+    private Segment active;
+    private long nextSegmentNumber;
+
+    @Inject
+    public LogStore() throws IOException {
+        this(loadConfig());
+    }
+
+    private LogStore(Map<String, String> config) throws IOException {
+        this(Paths.get(config.getOrDefault(DIRECTORY_PROP, DEFAULT_DIRECTORY).trim()),
+                getInt(config, BLOCK_RECORDS_PROP, DEFAULT_BLOCK_RECORDS),
+                getInt(config, SEGMENT_SIZE_PROP, DEFAULT_SEGMENT_SIZE) * 1024L * 1024L,
+                getInt(config, FLUSH_INTERVAL_PROP, DEFAULT_FLUSH_INTERVAL));
+    }
+
+    @VisibleForTesting
+    LogStore(Path directory, int blockRecords, long segmentBytes, int flushIntervalSeconds) throws IOException {
+        LOG.info("Opening the TSDR log store in {}...", directory);
+        this.directory = directory;
+        this.blockRecords = Math.max(1, blockRecords);
+        this.segmentBytes = Math.max(1, segmentBytes);
+        Files.createDirectories(directory);
+        openSegments();
+
+        if (flushIntervalSeconds > 0) {
+            flushExecutor = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("TSDR Log Store Flusher-%d").setDaemon(true).build());
+            flushExecutor.scheduleWithFixedDelay(this::flushQuietly, flushIntervalSeconds, flushIntervalSeconds,
+                    TimeUnit.SECONDS);
+        } else {
+            flushExecutor = null;
+        }
+    }
+
+    private static int getInt(Map<String, String> config, String prop, int defaultValue) {
+        String value = config.getOrDefault(prop, String.valueOf(defaultValue)).trim();
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            LOG.warn("Invalid {} value {}, using {}", prop, value, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    private static Map<String, String> loadConfig() {
+        try {
+            return ConfigFileUtil.loadConfig(CONF_FILE);
+        } catch (IOException e) {
+            LOG.warn("Error loading config file {}, using the default settings", CONF_FILE, e);
+            return Collections.emptyMap();
+        }
+    }
+
+    private synchronized void openSegments() throws IOException {
+        // The segment files are named by their increasing number, the last one being written unless it was sealed
+        Map<Long, Path> logFiles = new TreeMap<>();
+        Set<Path> indexFiles = new HashSet<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, Segment.PREFIX + "*")) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                if (name.endsWith(Segment.TMP_SUFFIX)) {
+                    LOG.warn("Deleting the incomplete segment file {}", path);
+                    Files.delete(path);
+                } else if (name.endsWith(Segment.LOG_SUFFIX)) {
+                    logFiles.put(Long.parseLong(name.substring(Segment.PREFIX.length(),
+                            name.length() - Segment.LOG_SUFFIX.length())), path);
+                } else if (name.endsWith(Segment.INDEX_SUFFIX)) {
+                    indexFiles.add(path);
+                }
+            }
+        }
+        for (Path indexFile : indexFiles) {
+            String name = indexFile.getFileName().toString();
+            if (!Files.exists(indexFile.resolveSibling(name.substring(0, name.length() - Segment.INDEX_SUFFIX.length())
+                    + Segment.LOG_SUFFIX))) {
+                LOG.warn("Deleting the index file {} of a deleted segment", indexFile);
+                Files.delete(indexFile);
+            }
+        }
+
+        for (Long number : logFiles.keySet()) {
+            if (active != null) {
+                // A segment left unsealed by a purge interrupted halfway
+                active.seal();
+            }
+            Segment segment = Segment.open(directory, number);
+            segments.add(segment);
+            active = segment.isSealed() ? null : segment;
+            nextSegmentNumber = number + 1;
+        }
+        if (active == null) {
+            active = Segment.create(directory, nextSegmentNumber++, false);
+            segments.add(active);
+        }
+        LOG.info("Opened {} segments from {}", segments.size(), directory);
+    }
+
+    public void store(TSDRLogRecord lr) throws IOException {
+        storeLogs(Collections.singletonList(lr));
+    }
+
+    /**
+     * Buffers logs, writing a block to the current segment for each block-records logs pending. The logs are kept
+     * pending if the block cannot be written.
+     */
+    public synchronized void storeLogs(List<TSDRLogRecord> records) throws IOException {
+        pending.addAll(records);
+        while (pending.size() >= blockRecords) {
+            List<TSDRLogRecord> block = pending.subList(0, blockRecords);
+            writeBlock(new ArrayList<>(block));
+            block.clear();
+        }
+    }
+
+    private synchronized void writeBlock(List<TSDRLogRecord> block) throws IOException {
+        active.append(block);
+        if (active.getSize() >= segmentBytes) {
+            rollSegment();
+        }
+    }
+
+    private synchronized void rollSegment() throws IOException {
+        active.seal();
+        active = Segment.create(directory, nextSegmentNumber++, false);
+        segments.add(active);
+        LOG.debug("Rolled to the new segment {}", active);
+    }
+
+    @SuppressWarnings("checkstyle:IllegalCatch")
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException | RuntimeException e) {
+            LOG.error("Failed to write the pending logs to a new block", e);
+        }
+    }
+
+    /**
+     * Writes the pending logs to a new block of the current segment.
+     */
+    public synchronized void flush() throws IOException {
+        if (!pending.isEmpty()) {
+            writeBlock(new ArrayList<>(pending));
+            pending.clear();
+        }
+    }
+
+    public List<TSDRLogRecord> getTSDRLogRecords(String tsdrLogKey, long startTime, long endTime, int maxResults)
+            throws IOException {
+        return search(tsdrLogKey, startTime, endTime, LogSearch.parse(null), maxResults);
+    }
+
+    /**
+     * Returns the first logs by time stamp of a key and a time range matching a search.
+     */
+    public List<TSDRLogRecord> search(String tsdrLogKey, long startTime, long endTime, LogSearch search,
+            int maxResults) throws IOException {
+        LogQuery query = new LogQuery(tsdrLogKey, startTime, endTime, search);
+        List<TSDRLogRecord> result = new ArrayList<>();
+
+        segmentLock.readLock().lock();
+        try {
+            // The pending logs and the blocks written so far are taken together, so a log being written is read once
+            List<Map.Entry<Long, Segment>> ordered = new ArrayList<>();
+            Segment current;
+            int currentBlocks;
+            synchronized (this) {
+                for (TSDRLogRecord record : pending) {
+                    if (query.matches(record)) {
+                        result.add(record);
+                    }
+                }
+                for (Segment segment : segments) {
+                    ordered.add(new SimpleImmutableEntry<>(segment.getMinTime(), segment));
+                }
+                current = active;
+                currentBlocks = active.getBlockCount();
+            }
+            sortAndLimit(result, maxResults);
+
+            ordered.sort(Map.Entry.comparingByKey());
+            for (Map.Entry<Long, Segment> entry : ordered) {
+                if (isComplete(result, maxResults, entry.getKey())) {
+                    break;
+                }
+                Segment segment = entry.getValue();
+                for (BlockRef block : segment.findBlocks(query.getTerms(), startTime, endTime,
+                        segment == current ? currentBlocks : Integer.MAX_VALUE)) {
+                    if (isComplete(result, maxResults, block.getMinTime())) {
+                        continue;
+                    }
+                    for (TSDRLogRecord record : segment.read(block)) {
+                        if (query.matches(record)) {
+                            result.add(record);
+                        }
+                    }
+                    sortAndLimit(result, maxResults);
+                }
+            }
+            return result;
+        } finally {
+            segmentLock.readLock().unlock();
+        }
+    }
+
+    private static void sortAndLimit(List<TSDRLogRecord> records, int maxResults) {
+        records.sort(BY_TIME);
+        if (records.size() > maxResults) {
+            records.subList(maxResults, records.size()).clear();
+        }
+    }
+
+    /**
+     * Returns whether the result is full and all its logs are older than the logs from a time on.
+     */
+    private static boolean isComplete(List<TSDRLogRecord> result, int maxResults, long fromTime) {
+        return result.size() >= maxResults && (maxResults == 0 || result.get(maxResults - 1).getTimeStamp() < fromTime);
+    }
+
+    /**
+     * Deletes the logs of a category older than the retention time. The current segment is sealed first if it holds
+     * any log older than the retention time, then the sealed segments holding such logs of the category are rewritten
+     * without them, or deleted if no log is left.
+     */
+    public void purge(DataCategory category, long retentionTime) throws IOException {
+        synchronized (purgeLock) {
+            synchronized (this) {
+                flush();
+                if (active.getBlockCount() > 0 && active.getMinTime() < retentionTime) {
+                    rollSegment();
+                }
+            }
+
+            List<String> terms = Collections.singletonList(LogQuery.categoryTerm(category.name()));
+            for (Segment segment : segments) {
+                if (segment.isSealed()
+                        && !segment.findBlocks(terms, Long.MIN_VALUE, retentionTime - 1, Integer.MAX_VALUE).isEmpty()) {
+                    rewrite(segment, category, retentionTime);
+                }
+            }
+        }
+    }
+
+    private void rewrite(Segment segment, DataCategory category, long retentionTime) throws IOException {
+        Segment replacement = Segment.create(directory, segment.getNumber(), true);
+        int kept = 0;
+        try {
+            List<TSDRLogRecord> block = new ArrayList<>();
+            for (BlockRef blockRef : segment.getBlocks()) {
+                for (TSDRLogRecord record : segment.read(blockRef)) {
+                    if (record.getTSDRDataCategory() != category || record.getTimeStamp() >= retentionTime) {
+                        block.add(record);
+                        if (block.size() == blockRecords) {
+                            replacement.append(block);
+                            kept += block.size();
+                            block.clear();
+                        }
+                    }
+                }
+            }
+            if (!block.isEmpty()) {
+                replacement.append(block);
+                kept += block.size();
+            }
+            replacement.seal();
+        } catch (IOException e) {
+            replacement.delete();
+            throw e;
+        }
+
+        segmentLock.writeLock().lock();
+        try {
+            if (kept == 0) {
+                replacement.delete();
+                segments.remove(segment);
+                segment.delete();
+                LOG.debug("Deleted the segment {}", segment);
+            } else {
+                segments.set(segments.indexOf(segment), Segment.replace(directory, segment, replacement));
+                LOG.debug("Rewrote the segment {} with {} logs", segment, kept);
+            }
+        } finally {
+            segmentLock.writeLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (flushExecutor != null) {
+            flushExecutor.shutdown();
+        }
+        try {
+            flush();
+        } catch (IOException e) {
+            LOG.error("Failed to write the pending logs on close", e);
+        }
+        segmentLock.writeLock().lock();
+        try {
+            for (Segment segment : segments) {
+                try {
+                    segment.close();
+                } catch (IOException e) {
+                    LOG.error("Failed to close the segment {}", segment, e);
+                }
+            }
+        } finally {
+            segmentLock.writeLock().unlock();
+        }
+    }
+}
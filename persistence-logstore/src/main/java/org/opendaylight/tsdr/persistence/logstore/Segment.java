@@ -0,0 +1,486 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.logstore;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnel;
+import com.google.common.hash.Funnels;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A segment of the log store, an append-only file of compressed blocks of logs and the index of their terms.
+ *
+ * <p>
+ * Each block is written as a frame made of its compressed length, the CRC32 of its compressed data, its time bounds,
+ * its number of logs and its data. The index maps each term to the set of the blocks holding it, and is kept in
+ * memory while the segment is being written. Once the segment is sealed, the index is written to a separate index
+ * file along with the table of the blocks and a bloom filter of the terms: the queries check the bloom filter before
+ * reading the postings of the terms, which are loaded on demand and may be dropped from memory.
+ * </p>
+ *
+ * <p>
+ * The segment being written has no index file and is recovered on restart by reading its frames again, the frame
+ * being written when the process died being truncated.
+ * </p>
+ */
+final class Segment {
+    private static final Logger LOG = LoggerFactory.getLogger(Segment.class);
+
+    static final String PREFIX = "segment-";
+    static final String LOG_SUFFIX = ".log";
+    static final String INDEX_SUFFIX = ".idx";
+    static final String TMP_SUFFIX = ".tmp";
+
+    private static final int INDEX_MAGIC = 0x54534c49;
+    private static final int INDEX_VERSION = 1;
+    private static final int FRAME_HEADER_LENGTH = 2 * Integer.BYTES + 2 * Long.BYTES + Integer.BYTES;
+    private static final double BLOOM_FPP = 0.01;
+    private static final Funnel<CharSequence> TERM_FUNNEL = Funnels.stringFunnel(StandardCharsets.UTF_8);
+
+    /**
+     * The location and the time bounds of a block in the segment file.
+     */
+    static final class BlockRef {
+        private final int id;
+        private final long offset;
+        private final int length;
+        private final int crc;
+        private final long minTime;
+        private final long maxTime;
+        private final int count;
+
+        BlockRef(int id, long offset, int length, int crc, long minTime, long maxTime, int count) {
+            this.id = id;
+            this.offset = offset;
+            this.length = length;
+            this.crc = crc;
+            this.minTime = minTime;
+            this.maxTime = maxTime;
+            this.count = count;
+        }
+
+        int getId() {
+            return id;
+        }
+
+        long getMinTime() {
+            return minTime;
+        }
+
+        long getMaxTime() {
+            return maxTime;
+        }
+
+        int getCount() {
+            return count;
+        }
+
+        boolean overlaps(long startTime, long endTime) {
+            return minTime <= endTime && maxTime >= startTime;
+        }
+    }
+
+    private final long number;
+    private final Path logPath;
+    private final Path indexPath;
+    private final FileChannel channel;
+
+    // Guarded by this
+    private final List<BlockRef> blocks = new ArrayList<>();
+    private long size;
+    private long minTime = Long.MAX_VALUE;
+    private long maxTime = Long.MIN_VALUE;
+    private boolean sealed;
+    // The postings of the segment being written
+    private Map<String, BitSet> postings;
+    // The bloom filter, the offset of the postings in the index file and the postings loaded of a sealed segment
+    private BloomFilter<CharSequence> bloomFilter;
+    private long postingsOffset;
+    private SoftReference<Map<String, BitSet>> loadedPostings = new SoftReference<>(null);
+
+    private Segment(long number, Path logPath, Path indexPath, FileChannel channel) {
+        this.number = number;
+        this.logPath = logPath;
+        this.indexPath = indexPath;
+        this.channel = channel;
+    }
+
+    static String fileName(long number, String suffix) {
+        return String.format("%s%012d%s", PREFIX, number, suffix);
+    }
+
+    /**
+     * Creates a new empty segment, in temporary files if it is to replace a segment with the same number.
+     */
+    static Segment create(Path directory, long number, boolean temporary) throws IOException {
+        String suffix = temporary ? TMP_SUFFIX : "";
+        Path logPath = directory.resolve(fileName(number, LOG_SUFFIX) + suffix);
+        Path indexPath = directory.resolve(fileName(number, INDEX_SUFFIX) + suffix);
+        Files.deleteIfExists(indexPath);
+        Segment segment = new Segment(number, logPath, indexPath, FileChannel.open(logPath,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE));
+        segment.postings = new HashMap<>();
+        return segment;
+    }
+
+    /**
+     * Opens an existing segment, from its index file if it was sealed or from its frames otherwise.
+     */
+    static Segment open(Path directory, long number) throws IOException {
+        Path logPath = directory.resolve(fileName(number, LOG_SUFFIX));
+        Path indexPath = directory.resolve(fileName(number, INDEX_SUFFIX));
+        Segment segment = new Segment(number, logPath, indexPath, FileChannel.open(logPath, StandardOpenOption.READ,
+                StandardOpenOption.WRITE));
+        try {
+            if (Files.exists(indexPath)) {
+                segment.loadIndex();
+            } else {
+                segment.recover();
+            }
+        } catch (IOException e) {
+            segment.close();
+            throw e;
+        }
+        return segment;
+    }
+
+    /**
+     * Replaces a sealed segment by the temporary segment rewritten from it, and returns the new segment. The index
+     * file of the old segment is deleted first, so the segment is recovered from its frames if the process dies
+     * before the new files are in place.
+     */
+    static Segment replace(Path directory, Segment segment, Segment replacement) throws IOException {
+        replacement.close();
+        segment.close();
+        Files.delete(segment.indexPath);
+        Files.move(replacement.logPath, segment.logPath, StandardCopyOption.ATOMIC_MOVE);
+        Files.move(replacement.indexPath, segment.indexPath, StandardCopyOption.ATOMIC_MOVE);
+        return open(directory, segment.number);
+    }
+
+    private synchronized void loadIndex() throws IOException {
+        try (CountingInputStream counting = new CountingInputStream(new BufferedInputStream(
+                Files.newInputStream(indexPath)))) {
+            DataInputStream in = new DataInputStream(counting);
+            if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION) {
+                throw new IOException("Invalid segment index file " + indexPath);
+            }
+            int blockCount = in.readInt();
+            for (int i = 0; i < blockCount; i++) {
+                addBlock(new BlockRef(i, in.readLong(), in.readInt(), in.readInt(), in.readLong(), in.readLong(),
+                        in.readInt()));
+            }
+            bloomFilter = BloomFilter.readFrom(in, TERM_FUNNEL);
+            postingsOffset = counting.getCount();
+        }
+        size = channel.size();
+        sealed = true;
+    }
+
+    private synchronized void recover() throws IOException {
+        postings = new HashMap<>();
+        long fileSize = channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_LENGTH);
+        while (position + FRAME_HEADER_LENGTH <= fileSize) {
+            header.clear();
+            readFully(header, position);
+            header.flip();
+            int length = header.getInt();
+            BlockRef block = new BlockRef(blocks.size(), position + FRAME_HEADER_LENGTH, length, header.getInt(),
+                    header.getLong(), header.getLong(), header.getInt());
+            if (length < 0 || block.offset + length > fileSize) {
+                break;
+            }
+            List<TSDRLogRecord> records;
+            try {
+                records = read(block);
+            } catch (IOException e) {
+                LOG.warn("Invalid block at {} of {}", position, logPath, e);
+                break;
+            }
+            Set<String> terms = new HashSet<>();
+            records.forEach(record -> terms.addAll(LogQuery.indexTerms(record)));
+            addPostings(block.id, terms);
+            addBlock(block);
+            position = block.offset + length;
+        }
+        if (position < fileSize) {
+            LOG.warn("Truncating {} from {} to {} bytes", logPath, fileSize, position);
+            channel.truncate(position);
+        }
+        size = position;
+    }
+
+    private void addBlock(BlockRef block) {
+        blocks.add(block);
+        minTime = Math.min(minTime, block.minTime);
+        maxTime = Math.max(maxTime, block.maxTime);
+    }
+
+    private void addPostings(int blockId, Set<String> terms) {
+        for (String term : terms) {
+            postings.computeIfAbsent(term, key -> new BitSet()).set(blockId);
+        }
+    }
+
+    /**
+     * Compresses and appends a block of logs to the segment, and indexes their terms.
+     */
+    void append(List<TSDRLogRecord> records) throws IOException {
+        byte[] data = LogBlockCodec.encode(records);
+        Set<String> terms = new HashSet<>();
+        long blockMinTime = Long.MAX_VALUE;
+        long blockMaxTime = Long.MIN_VALUE;
+        for (TSDRLogRecord record : records) {
+            terms.addAll(LogQuery.indexTerms(record));
+            blockMinTime = Math.min(blockMinTime, record.getTimeStamp());
+            blockMaxTime = Math.max(blockMaxTime, record.getTimeStamp());
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data);
+
+        synchronized (this) {
+            if (sealed) {
+                throw new IllegalStateException("Segment " + logPath + " is sealed");
+            }
+            BlockRef block = new BlockRef(blocks.size(), size + FRAME_HEADER_LENGTH, data.length,
+                    (int) crc.getValue(), blockMinTime, blockMaxTime, records.size());
+            ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_LENGTH + data.length);
+            frame.putInt(block.length).putInt(block.crc).putLong(block.minTime).putLong(block.maxTime)
+                    .putInt(block.count).put(data);
+            frame.flip();
+            long position = size;
+            while (frame.hasRemaining()) {
+                position += channel.write(frame, position);
+            }
+            size = position;
+            addPostings(block.id, terms);
+            addBlock(block);
+        }
+    }
+
+    /**
+     * Seals the segment, writing its index file. No block can be appended to it anymore.
+     */
+    synchronized void seal() throws IOException {
+        if (sealed) {
+            return;
+        }
+        channel.force(true);
+
+        BloomFilter<CharSequence> bloom = BloomFilter.create(TERM_FUNNEL, Math.max(1, postings.size()), BLOOM_FPP);
+        postings.keySet().forEach(bloom::put);
+        Path tmpPath = indexPath.resolveSibling(indexPath.getFileName() + TMP_SUFFIX);
+        long offset;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpPath)))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(INDEX_VERSION);
+            out.writeInt(blocks.size());
+            for (BlockRef block : blocks) {
+                out.writeLong(block.offset);
+                out.writeInt(block.length);
+                out.writeInt(block.crc);
+                out.writeLong(block.minTime);
+                out.writeLong(block.maxTime);
+                out.writeInt(block.count);
+            }
+            bloom.writeTo(out);
+            offset = out.size();
+            out.writeInt(postings.size());
+            for (Map.Entry<String, BitSet> entry : postings.entrySet()) {
+                byte[] term = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(term.length);
+                out.write(term);
+                long[] words = entry.getValue().toLongArray();
+                out.writeInt(words.length);
+                for (long word : words) {
+                    out.writeLong(word);
+                }
+            }
+        }
+        Files.move(tmpPath, indexPath, StandardCopyOption.ATOMIC_MOVE);
+
+        bloomFilter = bloom;
+        postingsOffset = offset;
+        loadedPostings = new SoftReference<>(postings);
+        postings = null;
+        sealed = true;
+        LOG.debug("Sealed {} with {} blocks", logPath, blocks.size());
+    }
+
+    private Map<String, BitSet> getPostings() throws IOException {
+        if (!sealed) {
+            return postings;
+        }
+        Map<String, BitSet> result = loadedPostings.get();
+        if (result == null) {
+            result = readPostings();
+            loadedPostings = new SoftReference<>(result);
+        }
+        return result;
+    }
+
+    private Map<String, BitSet> readPostings() throws IOException {
+        try (InputStream raw = Files.newInputStream(indexPath)) {
+            ByteStreams.skipFully(raw, postingsOffset);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(raw));
+            int termCount = in.readInt();
+            Map<String, BitSet> result = new HashMap<>(termCount * 4 / 3 + 1);
+            for (int i = 0; i < termCount; i++) {
+                byte[] term = new byte[in.readInt()];
+                in.readFully(term);
+                long[] words = new long[in.readInt()];
+                for (int j = 0; j < words.length; j++) {
+                    words[j] = in.readLong();
+                }
+                result.put(new String(term, StandardCharsets.UTF_8), BitSet.valueOf(words));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Returns the blocks among the first maxBlocks ones that overlap a time range and hold all the terms.
+     */
+    synchronized List<BlockRef> findBlocks(Collection<String> terms, long startTime, long endTime, int maxBlocks)
+            throws IOException {
+        if (blocks.isEmpty() || minTime > endTime || maxTime < startTime) {
+            return Collections.emptyList();
+        }
+
+        BitSet candidates = null;
+        if (!terms.isEmpty()) {
+            if (sealed) {
+                for (String term : terms) {
+                    if (!bloomFilter.mightContain(term)) {
+                        return Collections.emptyList();
+                    }
+                }
+            }
+            Map<String, BitSet> index = getPostings();
+            for (String term : terms) {
+                BitSet termBlocks = index.get(term);
+                if (termBlocks == null) {
+                    return Collections.emptyList();
+                }
+                if (candidates == null) {
+                    candidates = (BitSet) termBlocks.clone();
+                } else {
+                    candidates.and(termBlocks);
+                }
+            }
+        }
+
+        List<BlockRef> result = new ArrayList<>();
+        int last = Math.min(blocks.size(), maxBlocks);
+        for (int i = candidates == null ? 0 : candidates.nextSetBit(0); i >= 0 && i < last;
+                i = candidates == null ? i + 1 : candidates.nextSetBit(i + 1)) {
+            BlockRef block = blocks.get(i);
+            if (block.overlaps(startTime, endTime)) {
+                result.add(block);
+            }
+        }
+        return result;
+    }
+
+    synchronized List<BlockRef> getBlocks() {
+        return new ArrayList<>(blocks);
+    }
+
+    /**
+     * Reads and decompresses the logs of a block.
+     */
+    List<TSDRLogRecord> read(BlockRef block) throws IOException {
+        ByteBuffer data = ByteBuffer.allocate(block.length);
+        readFully(data, block.offset);
+        CRC32 crc = new CRC32();
+        crc.update(data.array());
+        if ((int) crc.getValue() != block.crc) {
+            throw new IOException("Corrupted block at " + block.offset + " of " + logPath);
+        }
+        return LogBlockCodec.decode(data.array(), block.count);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        long current = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, current);
+            if (read < 0) {
+                throw new IOException("Unexpected end of " + logPath);
+            }
+            current += read;
+        }
+    }
+
+    long getNumber() {
+        return number;
+    }
+
+    synchronized long getSize() {
+        return size;
+    }
+
+    synchronized int getBlockCount() {
+        return blocks.size();
+    }
+
+    synchronized long getMinTime() {
+        return minTime;
+    }
+
+    synchronized boolean isSealed() {
+        return sealed;
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Closes and deletes the files of the segment, its log file first so it is not recovered if the process dies.
+     */
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(logPath);
+        Files.deleteIfExists(indexPath);
+    }
+
+    @Override
+    public String toString() {
+        return logPath.toString();
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.logstore;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.opendaylight.tsdr.spi.model.TSDRConstants;
+import org.opendaylight.tsdr.spi.persistence.SearchableLogPersistenceService;
+import org.opendaylight.tsdr.spi.persistence.TSDRBinaryPersistenceService;
+import org.opendaylight.tsdr.spi.persistence.TSDRLogPersistenceService;
+import org.opendaylight.tsdr.spi.persistence.TSDRMetricPersistenceService;
+import org.opendaylight.tsdr.spi.util.LogSearch;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data.rev160325.storetsdrbinaryrecord.input.TSDRBinaryRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Embedded log store persistence service implementation. Only the logs are stored, the metrics and the binary records
+ * being left to another data store.
+ */
+@Singleton
+public class TsdrLogStorePersistenceServiceImpl implements TSDRMetricPersistenceService, TSDRLogPersistenceService,
+        TSDRBinaryPersistenceService, SearchableLogPersistenceService {
+    private static final Logger LOG = LoggerFactory.getLogger(TsdrLogStorePersistenceServiceImpl.class);
+
+    private final LogStore store;
+
+    @Inject
+    public TsdrLogStorePersistenceServiceImpl(LogStore store) {
+        this.store = store;
+        LOG.info("TSDR Log Store initialized.");
+    }
+
+    @Override
+    public void storeMetric(TSDRMetricRecord metricRecord) {
+        LOG.debug("The metric records are not stored in the log store");
+    }
+
+    @Override
+    public void storeMetric(List<TSDRMetricRecord> metricRecordList) {
+        LOG.debug("The metric records are not stored in the log store");
+    }
+
+    @Override
+    public void storeLog(TSDRLogRecord logRecord) {
+        try {
+            store.store(logRecord);
+        } catch (IOException e) {
+            LOG.error("Failed to store record", e);
+        }
+    }
+
+    @Override
+    public void storeLog(List<TSDRLogRecord> logRecordList) {
+        try {
+            store.storeLogs(logRecordList);
+        } catch (IOException e) {
+            LOG.error("Failed to store records", e);
+        }
+    }
+
+    @Override
+    public void purge(DataCategory category, long retentionTime) {
+        LOG.info("Execute Purge with Category {} and earlier than {}.", category.name(), new Date(retentionTime));
+        try {
+            store.purge(category, retentionTime);
+        } catch (IOException e) {
+            LOG.error("Failed to purge records from the store", e);
+        }
+    }
+
+    @Override
+    public void purge(long retentionTime) {
+        for (DataCategory dataCategory : DataCategory.values()) {
+            try {
+                store.purge(dataCategory, retentionTime);
+            } catch (IOException e) {
+                LOG.error("Failed to purge records from the store", e);
+            }
+        }
+    }
+
+    @Override
+    public List<TSDRMetricRecord> getTSDRMetricRecords(String tsdrMetricKey, long startDateTime, long endDateTime) {
+        // The metric records are not stored in the log store
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<TSDRLogRecord> getTSDRLogRecords(String tsdrMetricKey, long startTime, long endTime) {
+        return getTSDRLogRecords(tsdrMetricKey, startTime, endTime,
+                TSDRConstants.MAX_RESULTS_FROM_LIST_METRICS_COMMAND);
+    }
+
+    @Override
+    public List<TSDRLogRecord> getTSDRLogRecords(String tsdrMetricKey, long startTime, long endTime, int maxResults) {
+        try {
+            return store.getTSDRLogRecords(tsdrMetricKey, startTime, endTime, maxResults);
+        } catch (IOException e) {
+            LOG.error("Failed to get log Records", e);
+            return null;
+        }
+    }
+
+    @Override
+    public List<TSDRLogRecord> searchTSDRLogRecords(String tsdrLogKey, long startTime, long endTime, LogSearch search,
+            int maxResults) {
+        try {
+            return store.search(tsdrLogKey, startTime, endTime, search, maxResults);
+        } catch (IOException e) {
+            LOG.error("Failed to search log Records", e);
+            return null;
+        }
+    }
+
+    @Override
+    public List<TSDRBinaryRecord> getTSDRBinaryRecords(String tsdrMetricKey, long startDateTime, long endDateTime) {
+        // The binary records are not stored in the log store
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void storeBinary(TSDRBinaryRecord binaryRecord) {
+        LOG.debug("The binary records are not stored in the log store");
+    }
+
+    @Override
+    public void storeBinary(List<TSDRBinaryRecord> recordList) {
+        LOG.debug("The binary records are not stored in the log store");
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.logstore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opendaylight.tsdr.spi.util.FormatUtil;
+import org.opendaylight.tsdr.spi.util.LogSearch;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.tsdrlog.RecordAttributesBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.tsdrrecord.RecordKeysBuilder;
+
+/**
+ * Unit tests of the {@link LogStore}, in a temporary folder.
+ */
+public class LogStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private LogStore store;
+
+    @After
+    public void tearDown() {
+        store.close();
+    }
+
+    private static TSDRLogRecord createLogRecord(DataCategory category, String nodeId, long timeStamp, String text,
+            String severity) {
+        return new TSDRLogRecordBuilder()
+                .setNodeID(nodeId)
+                .setTimeStamp(timeStamp)
+                .setTSDRDataCategory(category)
+                .setIndex(0)
+                .setRecordFullText(text)
+                .setRecordKeys(Collections.singletonList(new RecordKeysBuilder()
+                        .setKeyName("Facility")
+                        .setKeyValue("local7")
+                        .build()))
+                .setRecordAttributes(Collections.singletonList(new RecordAttributesBuilder()
+                        .setName("severity")
+                        .setValue(severity)
+                        .build()))
+                .build();
+    }
+
+    private static List<TSDRLogRecord> createLogRecords(DataCategory category, int count) {
+        List<TSDRLogRecord> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            records.add(createLogRecord(category, "node" + i % 2, 1000L * i,
+                    "Interface eth" + i + " changed state to " + (i % 3 == 0 ? "down" : "up"),
+                    i % 3 == 0 ? "error" : "info"));
+        }
+        return records;
+    }
+
+    private List<TSDRLogRecord> search(String key, String search) throws Exception {
+        return store.search(key, 0L, Long.MAX_VALUE, LogSearch.parse(search), 100);
+    }
+
+    @Test
+    public void testStoreAndQuery() throws Exception {
+        // Blocks of 4 logs in a single segment: 2 blocks written and 2 logs pending
+        store = new LogStore(folder.getRoot().toPath(), 4, Long.MAX_VALUE, 0);
+        List<TSDRLogRecord> records = createLogRecords(DataCategory.SYSLOG, 10);
+        store.storeLogs(records.subList(0, 5));
+        store.storeLogs(records.subList(5, 10));
+
+        List<TSDRLogRecord> result = store.getTSDRLogRecords(DataCategory.SYSLOG.name(), 0L, Long.MAX_VALUE, 100);
+        assertEquals(10, result.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(records.get(i), result.get(i));
+        }
+        assertEquals(5, store.getTSDRLogRecords(FormatUtil.getTSDRLogKey(records.get(0)), 0L, Long.MAX_VALUE,
+                100).size());
+        assertEquals(4, store.getTSDRLogRecords(DataCategory.SYSLOG.name(), 3000L, 6000L, 100).size());
+        assertEquals(3, store.getTSDRLogRecords(DataCategory.SYSLOG.name(), 0L, Long.MAX_VALUE, 3).size());
+        assertEquals(0, store.getTSDRLogRecords(DataCategory.EXTERNAL.name(), 0L, Long.MAX_VALUE, 100).size());
+    }
+
+    @Test
+    public void testSearch() throws Exception {
+        store = new LogStore(folder.getRoot().toPath(), 4, Long.MAX_VALUE, 0);
+        store.storeLogs(createLogRecords(DataCategory.SYSLOG, 10));
+
+        assertEquals(4, search(DataCategory.SYSLOG.name(), "DOWN").size());
+        assertEquals(4, search(DataCategory.SYSLOG.name(), "severity=error").size());
+        assertEquals(1, search(DataCategory.SYSLOG.name(), "eth3 down").size());
+        assertEquals(0, search(DataCategory.SYSLOG.name(), "eth3 up").size());
+        assertEquals(0, search(DataCategory.SYSLOG.name(), "missing").size());
+        assertEquals(2, search("[NID=node0][DC=SYSLOG][RK=Facility:local7]", "down").size());
+        assertEquals(1, store.search(DataCategory.SYSLOG.name(), 1000L, 8000L, LogSearch.parse("down"), 1).size());
+    }
+
+    @Test
+    public void testSealedSegmentsAreReopened() throws Exception {
+        // Every block fills a segment, which is sealed with its index
+        Path directory = folder.getRoot().toPath();
+        store = new LogStore(directory, 4, 1, 0);
+        store.storeLogs(createLogRecords(DataCategory.SYSLOG, 10));
+        store.close();
+        assertTrue(Files.exists(directory.resolve(Segment.fileName(0, Segment.INDEX_SUFFIX))));
+        assertTrue(Files.exists(directory.resolve(Segment.fileName(1, Segment.INDEX_SUFFIX))));
+
+        store = new LogStore(directory, 4, 1, 0);
+        assertEquals(10, store.getTSDRLogRecords(DataCategory.SYSLOG.name(), 0L, Long.MAX_VALUE, 100).size());
+        List<TSDRLogRecord> result = search(DataCategory.SYSLOG.name(), "down severity=error");
+        assertEquals(4, result.size());
+        assertEquals(9000L, result.get(3).getTimeStamp().longValue());
+    }
+
+    @Test
+    public void testPartialBlockIsTruncated() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        store = new LogStore(directory, 4, Long.MAX_VALUE, 0);
+        store.storeLogs(createLogRecords(DataCategory.SYSLOG, 8));
+        store.close();
+
+        // A block being written when the process died
+        Path segment = directory.resolve(Segment.fileName(0, Segment.LOG_SUFFIX));
+        long size = Files.size(segment);
+        Files.write(segment, new byte[] {0, 0, 1, 0, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        store = new LogStore(directory, 4, Long.MAX_VALUE, 0);
+        assertEquals(size, Files.size(segment));
+        store.storeLogs(createLogRecords(DataCategory.EXTERNAL, 4));
+        assertEquals(8, search(DataCategory.SYSLOG.name(), null).size());
+        assertEquals(4, search(DataCategory.EXTERNAL.name(), null).size());
+    }
+
+    @Test
+    public void testPurge() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        store = new LogStore(directory, 4, 1, 0);
+        store.storeLogs(createLogRecords(DataCategory.SYSLOG, 10));
+        store.storeLogs(createLogRecords(DataCategory.EXTERNAL, 6));
+
+        store.purge(DataCategory.FLOWSTATS, 5000L);
+        assertEquals(10, search(DataCategory.SYSLOG.name(), null).size());
+        store.purge(DataCategory.SYSLOG, 5000L);
+        List<TSDRLogRecord> result = search(DataCategory.SYSLOG.name(), null);
+        assertEquals(5, result.size());
+        assertEquals(5000L, result.get(0).getTimeStamp().longValue());
+        assertEquals(6, search(DataCategory.EXTERNAL.name(), null).size());
+        assertEquals(2, search(DataCategory.SYSLOG.name(), "down").size());
+
+        // Purging everything deletes the segments
+        store.purge(DataCategory.SYSLOG, Long.MAX_VALUE);
+        store.purge(DataCategory.EXTERNAL, Long.MAX_VALUE);
+        assertEquals(0, search(DataCategory.SYSLOG.name(), null).size());
+        store.close();
+        store = new LogStore(directory, 4, 1, 0);
+        assertEquals(0, search(DataCategory.SYSLOG.name(), null).size());
+        assertEquals(0, search(DataCategory.EXTERNAL.name(), null).size());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    public void testSearchDuringPurge() throws Exception {
+        store = new LogStore(folder.getRoot().toPath(), 4, 1, 0);
+        store.storeLogs(createLogRecords(DataCategory.SYSLOG, 400));
+        store.storeLogs(createLogRecords(DataCategory.EXTERNAL, 40));
+
+        // The segments rewritten by the purge are not closed under the searches reading them
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> searches = executor.submit(() -> {
+                for (int i = 0; i < 50; i++) {
+                    assertEquals(40, store.search(DataCategory.EXTERNAL.name(), 0L, Long.MAX_VALUE,
+                            LogSearch.parse(null), 100).size());
+                }
+                return null;
+            });
+            for (long retentionTime = 0; retentionTime <= 400000L; retentionTime += 20000L) {
+                store.purge(DataCategory.SYSLOG, retentionTime);
+            }
+            searches.get();
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(0, search(DataCategory.SYSLOG.name(), null).size());
+    }
+}
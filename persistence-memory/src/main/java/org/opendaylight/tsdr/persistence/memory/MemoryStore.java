@@ -0,0 +1,345 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.memory;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.opendaylight.tsdr.spi.util.ConfigFileUtil;
+import org.opendaylight.tsdr.spi.util.FormatUtil;
+import org.opendaylight.tsdr.spi.util.KeyFilter;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data.rev160325.storetsdrbinaryrecord.input.TSDRBinaryRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.Attribute;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.tsdrrecord.RecordKeys;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-memory store, for the controllers which only keep the recent records and for the tests.
+ *
+ * <p>
+ * The samples of each metric series are kept in a {@link MetricRing} of series-capacity samples, allocated off the
+ * heap. The logs and the binary records are kept on the heap, in a {@link RecordRing} of record-capacity records per
+ * data category, their estimated size being counted along with the metric series against max-memory megabytes. Once
+ * it is reached, the samples of the new series are dropped and the oldest records of a ring are overwritten by its
+ * new records. The oldest records are also overwritten once a ring is full, and nothing is kept on restart.
+ * </p>
+ */
+@Singleton
+public class MemoryStore implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(MemoryStore.class);
+    private static final String CONF_FILE = ConfigFileUtil.CONFIG_DIR + "tsdr-persistence-memory.properties";
+    static final String MAX_MEMORY_PROP = "max-memory";
+    private static final int DEFAULT_MAX_MEMORY = 64;
+    static final String SERIES_CAPACITY_PROP = "series-capacity";
+    private static final int DEFAULT_SERIES_CAPACITY = 8640;
+    static final String RECORD_CAPACITY_PROP = "record-capacity";
+    private static final int DEFAULT_RECORD_CAPACITY = 10000;
+
+    // The estimated heap size of a record and of its record keys and attributes, besides their strings and data
+    private static final long RECORD_OVERHEAD = 128;
+    private static final long ENTRY_OVERHEAD = 64;
+    private static final long STRING_OVERHEAD = 40;
+
+    private final long maxMemory;
+    private final int seriesCapacity;
+    private final int recordCapacity;
+    private final Map<String, MetricRing> metricRings = new ConcurrentHashMap<>();
+    private final Map<DataCategory, RecordRing<TSDRLogRecord>> logRings = new EnumMap<>(DataCategory.class);
+    private final Map<DataCategory, RecordRing<TSDRBinaryRecord>> binaryRings = new EnumMap<>(DataCategory.class);
+    private final AtomicLong nextSeriesId = new AtomicLong();
+    private final AtomicLong allocatedMemory = new AtomicLong();
+    private volatile boolean memoryFullLogged;
+
+    @Inject
+    public MemoryStore() {
+        this(loadConfig());
+    }
+
+    private MemoryStore(Map<String, String> config) {
+        this(getInt(config, MAX_MEMORY_PROP, DEFAULT_MAX_MEMORY) * 1024L * 1024L,
+                getInt(config, SERIES_CAPACITY_PROP, DEFAULT_SERIES_CAPACITY),
+                getInt(config, RECORD_CAPACITY_PROP, DEFAULT_RECORD_CAPACITY));
+    }
+
+    @VisibleForTesting
+    MemoryStore(long maxMemory, int seriesCapacity, int recordCapacity) {
+        this.maxMemory = maxMemory;
+        this.seriesCapacity = Math.max(1, seriesCapacity);
+        this.recordCapacity = Math.max(1, recordCapacity);
+        // The rings of the categories are allocated upfront, so they are looked up without synchronization
+        for (DataCategory category : DataCategory.values()) {
+            logRings.put(category, new RecordRing<>(this.recordCapacity, TSDRLogRecord::getTimeStamp,
+                    MemoryStore::sizeOfLog, this::allocate, this::release));
+            binaryRings.put(category, new RecordRing<>(this.recordCapacity, TSDRBinaryRecord::getTimeStamp,
+                    MemoryStore::sizeOfBinary, this::allocate, this::release));
+        }
+        LOG.info("TSDR in-memory store initialized, {} samples per metric series and {} records per category up to "
+                + "{} bytes", this.seriesCapacity, this.recordCapacity, maxMemory);
+    }
+
+    private static int getInt(Map<String, String> config, String prop, int defaultValue) {
+        String value = config.getOrDefault(prop, String.valueOf(defaultValue)).trim();
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            LOG.warn("Invalid {} value {}, using {}", prop, value, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    private static Map<String, String> loadConfig() {
+        try {
+            return ConfigFileUtil.loadConfig(CONF_FILE);
+        } catch (IOException e) {
+            LOG.warn("Error loading config file {}, using the default settings", CONF_FILE, e);
+            return Collections.emptyMap();
+        }
+    }
+
+    public void storeMetrics(List<TSDRMetricRecord> records) {
+        int dropped = 0;
+        for (TSDRMetricRecord mr : records) {
+            if (mr.getTimeStamp() == null || mr.getMetricValue() == null) {
+                LOG.warn("Skipping a metric record without time stamp or value {}", mr);
+                continue;
+            }
+            String key = FormatUtil.getTSDRMetricKey(mr);
+            double value = mr.getMetricValue().doubleValue();
+            while (true) {
+                MetricRing ring = metricRings.get(key);
+                if (ring == null) {
+                    ring = metricRings.computeIfAbsent(key, k -> newMetricRing(mr));
+                }
+                if (ring == null) {
+                    dropped++;
+                    break;
+                }
+                if (ring.append(mr.getTimeStamp(), value)) {
+                    break;
+                }
+                // The ring was emptied and closed by a purge
+                remove(key, ring);
+            }
+        }
+        if (dropped > 0 && !memoryFullLogged) {
+            memoryFullLogged = true;
+            LOG.warn("The in-memory store is full, dropping the samples of new metric series, {} in this batch",
+                    dropped);
+        }
+    }
+
+    private MetricRing newMetricRing(TSDRMetricRecord series) {
+        if (!allocate(MetricRing.sizeOf(seriesCapacity))) {
+            return null;
+        }
+        return new MetricRing(nextSeriesId.getAndIncrement(), series, seriesCapacity);
+    }
+
+    private boolean allocate(long size) {
+        long allocated;
+        do {
+            allocated = allocatedMemory.get();
+            if (allocated + size > maxMemory) {
+                return false;
+            }
+        } while (!allocatedMemory.compareAndSet(allocated, allocated + size));
+        return true;
+    }
+
+    private void release(long size) {
+        allocatedMemory.addAndGet(-size);
+    }
+
+    public void storeLogs(List<TSDRLogRecord> records) {
+        int dropped = 0;
+        for (Map.Entry<DataCategory, List<TSDRLogRecord>> entry : byCategory(records,
+                TSDRLogRecord::getTSDRDataCategory, TSDRLogRecord::getTimeStamp).entrySet()) {
+            dropped += logRings.get(entry.getKey()).append(entry.getValue());
+        }
+        if (dropped > 0) {
+            LOG.warn("The in-memory store is full, dropped {} logs", dropped);
+        }
+    }
+
+    public void storeBinaries(List<TSDRBinaryRecord> records) {
+        int dropped = 0;
+        for (Map.Entry<DataCategory, List<TSDRBinaryRecord>> entry : byCategory(records,
+                TSDRBinaryRecord::getTSDRDataCategory, TSDRBinaryRecord::getTimeStamp).entrySet()) {
+            dropped += binaryRings.get(entry.getKey()).append(entry.getValue());
+        }
+        if (dropped > 0) {
+            LOG.warn("The in-memory store is full, dropped {} binary records", dropped);
+        }
+    }
+
+    @VisibleForTesting
+    static long sizeOfLog(TSDRLogRecord record) {
+        return RECORD_OVERHEAD + sizeOf(record.getNodeID()) + sizeOf(record.getRecordFullText())
+                + sizeOfKeys(record.getRecordKeys()) + sizeOfAttributes(record.getRecordAttributes());
+    }
+
+    @VisibleForTesting
+    static long sizeOfBinary(TSDRBinaryRecord record) {
+        byte[] data = record.getData();
+        return RECORD_OVERHEAD + sizeOf(record.getNodeID()) + (data == null ? 0 : data.length)
+                + sizeOfKeys(record.getRecordKeys()) + sizeOfAttributes(record.getRecordAttributes());
+    }
+
+    private static long sizeOfKeys(List<RecordKeys> recordKeys) {
+        long size = 0;
+        if (recordKeys != null) {
+            for (RecordKeys recordKey : recordKeys) {
+                size += ENTRY_OVERHEAD + sizeOf(recordKey.getKeyName()) + sizeOf(recordKey.getKeyValue());
+            }
+        }
+        return size;
+    }
+
+    private static long sizeOfAttributes(List<? extends Attribute> attributes) {
+        long size = 0;
+        if (attributes != null) {
+            for (Attribute attribute : attributes) {
+                size += ENTRY_OVERHEAD + sizeOf(attribute.getName()) + sizeOf(attribute.getValue());
+            }
+        }
+        return size;
+    }
+
+    private static long sizeOf(String string) {
+        // The characters of the strings are counted as UTF-16
+        return string == null ? 0 : STRING_OVERHEAD + 2L * string.length();
+    }
+
+    private static <T> Map<DataCategory, List<T>> byCategory(List<T> records,
+            Function<T, DataCategory> category, Function<T, Long> timeStamp) {
+        // The records of a call are usually of a single category
+        Map<DataCategory, List<T>> result = new EnumMap<>(DataCategory.class);
+        for (T record : records) {
+            DataCategory recordCategory = category.apply(record);
+            if (recordCategory == null) {
+                LOG.debug("Dropping a record without data category {}", record);
+                continue;
+            }
+            if (timeStamp.apply(record) == null) {
+                // The rings order and purge their records by time stamp
+                LOG.warn("Skipping a record without time stamp {}", record);
+                continue;
+            }
+            result.computeIfAbsent(recordCategory, c -> new ArrayList<>()).add(record);
+        }
+        return result;
+    }
+
+    public List<TSDRMetricRecord> getTSDRMetricRecords(String tsdrMetricKey, long startDateTime, long endDateTime,
+            int recordLimit) {
+        MetricRing exact = metricRings.get(tsdrMetricKey);
+        List<MetricRing> rings;
+        if (exact != null) {
+            rings = Collections.singletonList(exact);
+        } else {
+            KeyFilter filter = KeyFilter.parse(tsdrMetricKey);
+            rings = new ArrayList<>();
+            for (MetricRing ring : metricRings.values()) {
+                if (ring.matches(filter)) {
+                    rings.add(ring);
+                }
+            }
+            rings.sort(Comparator.comparingLong(MetricRing::getId));
+        }
+
+        List<TSDRMetricRecord> result = new ArrayList<>();
+        for (MetricRing ring : rings) {
+            List<TSDRMetricRecord> records = ring.read(startDateTime, endDateTime);
+            // The samples are in the order they were appended, mostly in time order already
+            records.sort(Comparator.comparing(TSDRMetricRecord::getTimeStamp));
+            for (TSDRMetricRecord record : records) {
+                if (result.size() >= recordLimit) {
+                    return result;
+                }
+                result.add(record);
+            }
+        }
+        return result;
+    }
+
+    public List<TSDRLogRecord> getTSDRLogRecords(String tsdrLogKey, long startDateTime, long endDateTime,
+            int recordLimit) {
+        KeyFilter filter = KeyFilter.parse(tsdrLogKey);
+        return read(logRings, filter, startDateTime, endDateTime, recordLimit,
+                lr -> filter.matches(lr.getTSDRDataCategory(), lr.getNodeID(), null, lr.getRecordKeys()));
+    }
+
+    public List<TSDRBinaryRecord> getTSDRBinaryRecords(String tsdrBinaryKey, long startDateTime, long endDateTime,
+            int recordLimit) {
+        KeyFilter filter = KeyFilter.parse(tsdrBinaryKey);
+        return read(binaryRings, filter, startDateTime, endDateTime, recordLimit,
+                br -> filter.matches(br.getTSDRDataCategory(), br.getNodeID(), null, br.getRecordKeys()));
+    }
+
+    private static <T> List<T> read(Map<DataCategory, RecordRing<T>> rings, KeyFilter filter, long startDateTime,
+            long endDateTime, int recordLimit, Predicate<T> recordFilter) {
+        List<T> result = new ArrayList<>();
+        for (Map.Entry<DataCategory, RecordRing<T>> entry : rings.entrySet()) {
+            if (result.size() >= recordLimit) {
+                break;
+            }
+            if (filter.matches(entry.getKey())) {
+                result.addAll(entry.getValue().read(startDateTime, endDateTime, recordFilter,
+                        recordLimit - result.size()));
+            }
+        }
+        return result;
+    }
+
+    public void purge(DataCategory category, long retentionTime) {
+        for (Map.Entry<String, MetricRing> entry : metricRings.entrySet()) {
+            MetricRing ring = entry.getValue();
+            if (ring.getCategory() == category && ring.purge(retentionTime)) {
+                remove(entry.getKey(), ring);
+            }
+        }
+        logRings.get(category).purge(retentionTime);
+        binaryRings.get(category).purge(retentionTime);
+    }
+
+    private void remove(String key, MetricRing ring) {
+        if (metricRings.remove(key, ring)) {
+            // The memory of the ring is released once it is no longer referenced by a query
+            allocatedMemory.addAndGet(-MetricRing.sizeOf(seriesCapacity));
+            memoryFullLogged = false;
+        }
+    }
+
+    @VisibleForTesting
+    long getAllocatedMemory() {
+        return allocatedMemory.get();
+    }
+
+    @Override
+    @PreDestroy
+    public void close() {
+        metricRings.clear();
+        allocatedMemory.set(0);
+    }
+}
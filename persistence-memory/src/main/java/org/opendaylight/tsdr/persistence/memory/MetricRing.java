@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.memory;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import org.opendaylight.tsdr.spi.util.KeyFilter;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.tsdrrecord.RecordKeys;
+
+/**
+ * The samples of a metric series, in a fixed-size ring of time stamps and values allocated off the heap, the oldest
+ * sample being overwritten once the ring is full.
+ *
+ * <p>
+ * The appends take the write lock, which is not contended as a collector writes a series from a single thread. The
+ * queries read the ring optimistically, without holding off the appends, and only read it again under the read lock
+ * if an append was made meanwhile.
+ * </p>
+ */
+final class MetricRing {
+    private static final int SAMPLE_BYTES = Long.BYTES + Double.BYTES;
+
+    /**
+     * The samples of the ring in a time range, copied out of it.
+     */
+    private static final class Samples {
+        private long[] times = new long[16];
+        private double[] values = new double[16];
+        private int size;
+
+        void add(long time, double value) {
+            if (size == times.length) {
+                times = Arrays.copyOf(times, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            times[size] = time;
+            values[size] = value;
+            size++;
+        }
+    }
+
+    private final long id;
+    private final DataCategory category;
+    private final String nodeId;
+    private final String metricName;
+    private final List<RecordKeys> recordKeys;
+    private final int capacity;
+    private final ByteBuffer samples;
+    private final StampedLock lock = new StampedLock();
+
+    // Guarded by lock, the sequence numbers of the first sample kept and of the next sample appended
+    private long first;
+    private long next;
+    private boolean closed;
+
+    MetricRing(long id, TSDRMetricRecord series, int capacity) {
+        this.id = id;
+        this.category = series.getTSDRDataCategory();
+        this.nodeId = series.getNodeID();
+        this.metricName = series.getMetricName();
+        this.recordKeys = series.getRecordKeys();
+        this.capacity = capacity;
+        this.samples = ByteBuffer.allocateDirect(capacity * SAMPLE_BYTES);
+    }
+
+    static long sizeOf(int capacity) {
+        return (long) capacity * SAMPLE_BYTES;
+    }
+
+    long getId() {
+        return id;
+    }
+
+    DataCategory getCategory() {
+        return category;
+    }
+
+    boolean matches(KeyFilter filter) {
+        return filter.matches(category, nodeId, metricName, recordKeys);
+    }
+
+    private int offset(long sequence) {
+        return (int) Math.floorMod(sequence, (long) capacity) * SAMPLE_BYTES;
+    }
+
+    /**
+     * Appends a sample, overwriting the oldest one if the ring is full.
+     *
+     * @return false if the ring was closed by a purge, the sample then being appended to a new ring
+     */
+    boolean append(long time, double value) {
+        long stamp = lock.writeLock();
+        try {
+            if (closed) {
+                return false;
+            }
+            int offset = offset(next);
+            samples.putLong(offset, time);
+            samples.putDouble(offset + Long.BYTES, value);
+            next++;
+            first = Math.max(first, next - capacity);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    List<TSDRMetricRecord> read(long startTime, long endTime) {
+        Samples result;
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            result = copy(startTime, endTime);
+            if (lock.validate(stamp)) {
+                return toRecords(result);
+            }
+        }
+        // An append overwrote the samples being read
+        stamp = lock.readLock();
+        try {
+            result = copy(startTime, endTime);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return toRecords(result);
+    }
+
+    private Samples copy(long startTime, long endTime) {
+        // The sequence numbers may be inconsistent while reading optimistically, the copy is then discarded
+        long from = first;
+        long to = Math.min(next, from + capacity);
+        Samples result = new Samples();
+        for (long sequence = from; sequence < to; sequence++) {
+            int offset = offset(sequence);
+            long time = samples.getLong(offset);
+            if (time >= startTime && time <= endTime) {
+                result.add(time, samples.getDouble(offset + Long.BYTES));
+            }
+        }
+        return result;
+    }
+
+    private List<TSDRMetricRecord> toRecords(Samples result) {
+        List<TSDRMetricRecord> records = new ArrayList<>(result.size);
+        for (int i = 0; i < result.size; i++) {
+            records.add(new TSDRMetricRecordBuilder()
+                    .setMetricName(metricName)
+                    .setMetricValue(BigDecimal.valueOf(result.values[i]))
+                    .setNodeID(nodeId)
+                    .setRecordKeys(recordKeys)
+                    .setTimeStamp(result.times[i])
+                    .setTSDRDataCategory(category)
+                    .build());
+        }
+        return records;
+    }
+
+    /**
+     * Drops the samples older than the retention time, up to the first sample which is not. The ring is closed if
+     * none is left.
+     *
+     * @return whether the ring is closed
+     */
+    boolean purge(long retentionTime) {
+        long stamp = lock.writeLock();
+        try {
+            while (first < next && samples.getLong(offset(first)) < retentionTime) {
+                first++;
+            }
+            closed = first == next;
+            return closed;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.memory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * The log or binary records of a data category, in a fixed-size ring, the oldest record being overwritten once the
+ * ring is full. The estimated size of each record is allocated from the memory of the store, the oldest records being
+ * also overwritten once it is all allocated. The records are read optimistically as the samples of a
+ * {@link MetricRing}.
+ */
+final class RecordRing<T> {
+    private final Object[] records;
+    private final long[] sizes;
+    private final ToLongFunction<T> timeStamp;
+    private final ToLongFunction<T> sizeOf;
+    private final LongPredicate allocator;
+    private final LongConsumer releaser;
+    private final StampedLock lock = new StampedLock();
+
+    // Guarded by lock, the sequence numbers of the first record kept and of the next record appended
+    private long first;
+    private long next;
+
+    RecordRing(int capacity, ToLongFunction<T> timeStamp, ToLongFunction<T> sizeOf, LongPredicate allocator,
+            LongConsumer releaser) {
+        this.records = new Object[capacity];
+        this.sizes = new long[capacity];
+        this.timeStamp = timeStamp;
+        this.sizeOf = sizeOf;
+        this.allocator = allocator;
+        this.releaser = releaser;
+    }
+
+    private int index(long sequence) {
+        return (int) Math.floorMod(sequence, (long) records.length);
+    }
+
+    /**
+     * Appends records, returning the number of records dropped as the memory left could not hold them even once all
+     * the records of the ring were overwritten.
+     */
+    int append(List<T> newRecords) {
+        int dropped = 0;
+        long stamp = lock.writeLock();
+        try {
+            for (T record : newRecords) {
+                if (next - first == records.length) {
+                    removeFirst();
+                }
+                long size = sizeOf.applyAsLong(record);
+                if (!allocate(size)) {
+                    dropped++;
+                    continue;
+                }
+                records[index(next)] = record;
+                sizes[index(next)] = size;
+                next++;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return dropped;
+    }
+
+    // Guarded by lock
+    private boolean allocate(long size) {
+        while (!allocator.test(size)) {
+            if (first == next) {
+                return false;
+            }
+            removeFirst();
+        }
+        return true;
+    }
+
+    // Guarded by lock
+    private void removeFirst() {
+        int index = index(first);
+        records[index] = null;
+        releaser.accept(sizes[index]);
+        sizes[index] = 0;
+        first++;
+    }
+
+    List<T> read(long startTime, long endTime, Predicate<T> filter, int recordLimit) {
+        List<T> result;
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            result = copy(startTime, endTime, filter, recordLimit);
+            if (lock.validate(stamp)) {
+                return result;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return copy(startTime, endTime, filter, recordLimit);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<T> copy(long startTime, long endTime, Predicate<T> filter, int recordLimit) {
+        // The sequence numbers and the records may be inconsistent while reading optimistically, the copy is then
+        // discarded
+        long from = first;
+        long to = Math.min(next, from + records.length);
+        List<T> result = new ArrayList<>();
+        for (long sequence = from; sequence < to && result.size() < recordLimit; sequence++) {
+            T record = (T) records[index(sequence)];
+            if (record == null) {
+                continue;
+            }
+            long time = timeStamp.applyAsLong(record);
+            if (time >= startTime && time <= endTime && filter.test(record)) {
+                result.add(record);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Drops the records older than the retention time, up to the first record which is not.
+     */
+    @SuppressWarnings("unchecked")
+    void purge(long retentionTime) {
+        long stamp = lock.writeLock();
+        try {
+            while (first < next && timeStamp.applyAsLong((T) records[index(first)]) < retentionTime) {
+                removeFirst();
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+}
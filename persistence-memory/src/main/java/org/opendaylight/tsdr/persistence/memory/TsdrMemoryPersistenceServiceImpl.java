@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.memory;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.opendaylight.tsdr.spi.model.TSDRConstants;
+import org.opendaylight.tsdr.spi.persistence.TSDRBinaryPersistenceService;
+import org.opendaylight.tsdr.spi.persistence.TSDRLogPersistenceService;
+import org.opendaylight.tsdr.spi.persistence.TSDRMetricPersistenceService;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data.rev160325.storetsdrbinaryrecord.input.TSDRBinaryRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-memory persistence service implementation.
+ */
+@Singleton
+public class TsdrMemoryPersistenceServiceImpl implements TSDRMetricPersistenceService, TSDRLogPersistenceService,
+        TSDRBinaryPersistenceService {
+    private static final Logger LOG = LoggerFactory.getLogger(TsdrMemoryPersistenceServiceImpl.class);
+
+    private final MemoryStore store;
+
+    @Inject
+    public TsdrMemoryPersistenceServiceImpl(MemoryStore store) {
+        this.store = store;
+        LOG.info("TSDR Memory Store initialized.");
+    }
+
+    @Override
+    public void storeMetric(TSDRMetricRecord metricRecord) {
+        store.storeMetrics(Collections.singletonList(metricRecord));
+    }
+
+    @Override
+    public void storeMetric(List<TSDRMetricRecord> metricRecordList) {
+        store.storeMetrics(metricRecordList);
+    }
+
+    @Override
+    public void storeLog(TSDRLogRecord logRecord) {
+        store.storeLogs(Collections.singletonList(logRecord));
+    }
+
+    @Override
+    public void storeLog(List<TSDRLogRecord> logRecordList) {
+        store.storeLogs(logRecordList);
+    }
+
+    @Override
+    public void storeBinary(TSDRBinaryRecord binaryRecord) {
+        store.storeBinaries(Collections.singletonList(binaryRecord));
+    }
+
+    @Override
+    public void storeBinary(List<TSDRBinaryRecord> recordList) {
+        store.storeBinaries(recordList);
+    }
+
+    @Override
+    public void purge(DataCategory category, long retentionTime) {
+        LOG.info("Execute Purge with Category {} and earlier than {}.", category.name(), new Date(retentionTime));
+        store.purge(category, retentionTime);
+    }
+
+    @Override
+    public void purge(long retentionTime) {
+        for (DataCategory dataCategory : DataCategory.values()) {
+            store.purge(dataCategory, retentionTime);
+        }
+    }
+
+    @Override
+    public List<TSDRMetricRecord> getTSDRMetricRecords(String tsdrMetricKey, long startDateTime, long endDateTime) {
+        return getTSDRMetricRecords(tsdrMetricKey, startDateTime, endDateTime,
+                TSDRConstants.MAX_RESULTS_FROM_LIST_METRICS_COMMAND);
+    }
+
+    @Override
+    public List<TSDRMetricRecord> getTSDRMetricRecords(String tsdrMetricKey, long startDateTime, long endDateTime,
+            int maxResults) {
+        return store.getTSDRMetricRecords(tsdrMetricKey, startDateTime, endDateTime, maxResults);
+    }
+
+    @Override
+    public List<TSDRLogRecord> getTSDRLogRecords(String tsdrLogKey, long startTime, long endTime) {
+        return getTSDRLogRecords(tsdrLogKey, startTime, endTime, TSDRConstants.MAX_RESULTS_FROM_LIST_METRICS_COMMAND);
+    }
+
+    @Override
+    public List<TSDRLogRecord> getTSDRLogRecords(String tsdrLogKey, long startTime, long endTime, int maxResults) {
+        return store.getTSDRLogRecords(tsdrLogKey, startTime, endTime, maxResults);
+    }
+
+    @Override
+    public List<TSDRBinaryRecord> getTSDRBinaryRecords(String tsdrBinaryKey, long startTime, long endTime) {
+        return getTSDRBinaryRecords(tsdrBinaryKey, startTime, endTime,
+                TSDRConstants.MAX_RESULTS_FROM_LIST_METRICS_COMMAND);
+    }
+
+    @Override
+    public List<TSDRBinaryRecord> getTSDRBinaryRecords(String tsdrBinaryKey, long startTime, long endTime,
+            int maxResults) {
+        return store.getTSDRBinaryRecords(tsdrBinaryKey, startTime, endTime, maxResults);
+    }
+}
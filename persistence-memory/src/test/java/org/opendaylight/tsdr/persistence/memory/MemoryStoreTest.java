@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.memory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.opendaylight.tsdr.spi.util.TsdrRecordFactory.createMetricRecord;
+import static org.opendaylight.tsdr.spi.util.TsdrRecordFactory.createMetricRecords;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Test;
+import org.opendaylight.tsdr.spi.util.FormatUtil;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
+
+/**
+ * Unit tests of the {@link MemoryStore}.
+ */
+public class MemoryStoreTest {
+    private MemoryStore store;
+
+    @After
+    public void tearDown() {
+        store.close();
+    }
+
+    private static TSDRLogRecord createLogRecord(String nodeId, long timeStamp) {
+        return new TSDRLogRecordBuilder()
+                .setNodeID(nodeId)
+                .setTSDRDataCategory(DataCategory.SYSLOG)
+                .setTimeStamp(timeStamp)
+                .setIndex(0)
+                .setRecordFullText("Interface changed state to down")
+                .setRecordKeys(Collections.emptyList())
+                .build();
+    }
+
+    private List<TSDRMetricRecord> getMetrics(String key) {
+        return store.getTSDRMetricRecords(key, 0L, Long.MAX_VALUE, 100);
+    }
+
+    @Test
+    public void testStoreAndQueryMetrics() {
+        // Rings of 4 samples, the oldest samples of node1 are overwritten
+        store = new MemoryStore(Long.MAX_VALUE, 4, 10);
+        List<TSDRMetricRecord> records = createMetricRecords("node1", 6);
+        store.storeMetrics(records.subList(0, 3));
+        store.storeMetrics(records.subList(3, 6));
+        store.storeMetrics(createMetricRecords("node2", 2));
+
+        assertEquals(records.subList(2, 6), getMetrics(FormatUtil.getTSDRMetricKey(records.get(0))));
+        assertEquals(6, getMetrics(DataCategory.PORTSTATS.name()).size());
+        assertEquals(2, getMetrics("[NID=node2][DC=PORTSTATS][MN=][RK=]").size());
+        assertEquals(6, getMetrics("[NID=][DC=PORTSTATS][MN=TransmittedPackets][RK=Port:1]").size());
+        assertEquals(0, getMetrics("[NID=][DC=PORTSTATS][MN=][RK=Port:2]").size());
+        assertEquals(0, getMetrics(DataCategory.FLOWSTATS.name()).size());
+        assertEquals(3, store.getTSDRMetricRecords(DataCategory.PORTSTATS.name(), 1000L, 3000L, 100).size());
+        assertEquals(5, store.getTSDRMetricRecords(DataCategory.PORTSTATS.name(), 0L, Long.MAX_VALUE, 5).size());
+    }
+
+    @Test
+    public void testMemoryIsBounded() {
+        // Room for the rings of two series only
+        store = new MemoryStore(2 * MetricRing.sizeOf(4), 4, 10);
+        store.storeMetrics(createMetricRecords("node1", 2));
+        store.storeMetrics(createMetricRecords("node2", 2));
+        store.storeMetrics(createMetricRecords("node3", 2));
+        assertEquals(2 * MetricRing.sizeOf(4), store.getAllocatedMemory());
+        assertEquals(4, getMetrics(DataCategory.PORTSTATS.name()).size());
+        assertEquals(0, getMetrics("[NID=node3][DC=PORTSTATS][MN=][RK=]").size());
+
+        // The rings emptied by a purge are released
+        store.purge(DataCategory.PORTSTATS, 1000L);
+        assertEquals(2, getMetrics(DataCategory.PORTSTATS.name()).size());
+        store.purge(DataCategory.PORTSTATS, Long.MAX_VALUE);
+        assertEquals(0, store.getAllocatedMemory());
+        store.storeMetrics(createMetricRecords("node3", 2));
+        assertEquals(2, getMetrics("[NID=node3][DC=PORTSTATS][MN=][RK=]").size());
+    }
+
+    @Test
+    public void testRecordsWithoutTimeStampOrValueAreSkipped() {
+        store = new MemoryStore(Long.MAX_VALUE, 4, 10);
+        TSDRMetricRecord record = createMetricRecord("node1", "1", 1000L, 1);
+        store.storeMetrics(Arrays.asList(new TSDRMetricRecordBuilder(record).setMetricValue(null).build(),
+                new TSDRMetricRecordBuilder(record).setTimeStamp(null).build(),
+                createMetricRecord("node1", "1", 2000L, 2)));
+
+        List<TSDRMetricRecord> result = getMetrics(FormatUtil.getTSDRMetricKey(record));
+        assertEquals(1, result.size());
+        assertEquals(2000L, result.get(0).getTimeStamp().longValue());
+
+        TSDRLogRecord log = createLogRecord("node1", 3000L);
+        store.storeLogs(Arrays.asList(new TSDRLogRecordBuilder(log).setTimeStamp(null).build(), log));
+        store.purge(DataCategory.SYSLOG, 2000L);
+        assertEquals(Collections.singletonList(log), store.getTSDRLogRecords(DataCategory.SYSLOG.name(), 0L,
+                Long.MAX_VALUE, 100));
+    }
+
+    @Test
+    public void testLogsAreCountedAgainstMemory() {
+        // Room for two logs only, the oldest log is overwritten
+        long size = MemoryStore.sizeOfLog(createLogRecord("node1", 0L));
+        store = new MemoryStore(2 * size, 4, 10);
+        List<TSDRLogRecord> records = Arrays.asList(createLogRecord("node1", 1000L), createLogRecord("node1", 2000L),
+                createLogRecord("node1", 3000L));
+        store.storeLogs(records);
+        assertEquals(records.subList(1, 3), store.getTSDRLogRecords(DataCategory.SYSLOG.name(), 0L, Long.MAX_VALUE,
+                100));
+        assertEquals(2 * size, store.getAllocatedMemory());
+
+        // The purged logs are released, the logs are dropped while the metric series hold all the memory
+        store.purge(DataCategory.SYSLOG, Long.MAX_VALUE);
+        assertEquals(0, store.getAllocatedMemory());
+        store.close();
+        store = new MemoryStore(MetricRing.sizeOf(4), 4, 10);
+        store.storeMetrics(createMetricRecords("node1", 2));
+        store.storeLogs(records);
+        assertEquals(0, store.getTSDRLogRecords(DataCategory.SYSLOG.name(), 0L, Long.MAX_VALUE, 100).size());
+        assertEquals(MetricRing.sizeOf(4), store.getAllocatedMemory());
+    }
+
+    @Test
+    public void testStoreAndQueryLogs() {
+        store = new MemoryStore(Long.MAX_VALUE, 4, 3);
+        List<TSDRLogRecord> records = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            records.add(createLogRecord("node" + i % 2, 1000L * i));
+        }
+        store.storeLogs(records);
+
+        assertEquals(records.subList(2, 5), store.getTSDRLogRecords(DataCategory.SYSLOG.name(), 0L, Long.MAX_VALUE,
+                100));
+        assertEquals(2, store.getTSDRLogRecords(FormatUtil.getTSDRLogKey(records.get(0)), 0L, Long.MAX_VALUE,
+                100).size());
+        assertEquals(0, store.getTSDRLogRecords(DataCategory.NETFLOW.name(), 0L, Long.MAX_VALUE, 100).size());
+
+        store.purge(DataCategory.SYSLOG, 4000L);
+        assertEquals(Collections.singletonList(records.get(4)), store.getTSDRLogRecords(DataCategory.SYSLOG.name(),
+                0L, Long.MAX_VALUE, 100));
+    }
+
+    @Test
+    public void testConcurrentAppendsAndQueries() throws Exception {
+        store = new MemoryStore(Long.MAX_VALUE, 100, 10);
+        String key = FormatUtil.getTSDRMetricKey(createMetricRecord("node1", "1", 0L, 0));
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            while (failure.get() == null && !Thread.currentThread().isInterrupted()) {
+                List<TSDRMetricRecord> records = store.getTSDRMetricRecords(key, 0L, Long.MAX_VALUE, 1000);
+                for (int i = 0; i < records.size(); i++) {
+                    TSDRMetricRecord record = records.get(i);
+                    // A sample overwritten while being read would break the sequence
+                    if (record.getMetricValue().longValue() != record.getTimeStamp()
+                            || i > 0 && record.getTimeStamp() != records.get(i - 1).getTimeStamp() + 1) {
+                        failure.set("Inconsistent samples " + records);
+                    }
+                }
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 100000 && failure.get() == null; i++) {
+            store.storeMetrics(Collections.singletonList(createMetricRecord("node1", "1", i, i)));
+        }
+        reader.interrupt();
+        reader.join();
+
+        assertNull(failure.get());
+        List<TSDRMetricRecord> records = getMetrics(key);
+        assertEquals(100, records.size());
+        assertEquals(99999L, records.get(99).getTimeStamp().longValue());
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.spi.persistence;
+
+import java.math.BigDecimal;
+import java.util.List;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.AggregationType;
+
+/**
+ * Optional interface of the metric persistence services whose data store can aggregate the metrics itself, so a
+ * single value per interval is read instead of every metric of the time range. It is implemented along with
+ * {@link TSDRMetricPersistenceService}, which returns it from
+ * {@link TSDRMetricPersistenceService#getAggregatingService}.
+ */
+public interface AggregatingMetricPersistenceService {
+    /**
+     * The aggregated value of the metrics of an interval.
+     */
+    final class Bucket {
+        private final long timeStamp;
+        private final BigDecimal value;
+        private final long count;
+
+        public Bucket(long timeStamp, BigDecimal value, long count) {
+            this.timeStamp = timeStamp;
+            this.value = value;
+            this.count = count;
+        }
+
+        /**
+         * Returns the start of the interval.
+         */
+        public long getTimeStamp() {
+            return timeStamp;
+        }
+
+        public BigDecimal getValue() {
+            return value;
+        }
+
+        /**
+         * Returns the number of metrics in the interval.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public String toString() {
+            return "Bucket [timeStamp=" + timeStamp + ", value=" + value + ", count=" + count + "]";
+        }
+    }
+
+    /**
+     * Returns whether the data store computes the given aggregation.
+     *
+     * @param aggregation - the aggregation function
+     * @return true if {@link #getTSDRAggregatedMetrics} can be called with this aggregation
+     */
+    boolean isAggregationSupported(AggregationType aggregation);
+
+    /**
+     * Groups the metrics of a key by intervals of the given size, the first one starting at startDateTime, and
+     * aggregates the metrics of each interval in the data store.
+     *
+     * @param tsdrMetricKey - The tsdr metric key, can also be just Data Category
+     * @param startDateTime - The start time in milis
+     * @param endDateTime - The end time in milis, inclusive
+     * @param interval - The size of the intervals in milis
+     * @param aggregation - The aggregation function
+     * @return - The buckets of the intervals holding metrics ordered by time stamp, or null if the data store cannot
+     *         aggregate the metrics of this key
+     */
+    List<Bucket> getTSDRAggregatedMetrics(String tsdrMetricKey, long startDateTime, long endDateTime, long interval,
+            AggregationType aggregation);
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.spi.persistence;
+
+import java.util.List;
+import org.opendaylight.tsdr.spi.util.LogSearch;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+
+/**
+ * Optional interface of the log persistence services whose data store indexes the terms and the attributes of the
+ * logs, so a search only reads the logs holding them instead of every log of the time range. It is implemented
+ * along with {@link TSDRLogPersistenceService}, which returns it from
+ * {@link TSDRLogPersistenceService#getSearchableService}.
+ */
+public interface SearchableLogPersistenceService {
+    /**
+     * Returns the log records of a key and a time range matching a search.
+     *
+     * @param tsdrLogKey - The tsdr log key, can also be just Data Category
+     * @param startTime - The start time in milis
+     * @param endTime - The end time in milis, inclusive
+     * @param search - The terms and the attribute values the logs must have
+     * @param maxResults - The largest number of logs returned
+     * @return - The matching logs ordered by time stamp, or null if the data store cannot search this key
+     */
+    List<TSDRLogRecord> searchTSDRLogRecords(String tsdrLogKey, long startTime, long endTime, LogSearch search,
+            int maxResults);
+}
@@ -39,6 +39,21 @@ public interface TSDRBinaryPersistenceService {
      */
     List<TSDRBinaryRecord> getTSDRBinaryRecords(String tsdrBinaryKey, long startTime, long endTime);
 
+    /**
+     * Returns the binary records of a key in a time range like {@link #getTSDRBinaryRecords(String, long, long)}, up
+     * to a given number of records rather than the number of records a query returns.
+     *
+     * @param tsdrBinaryKey - The tsdr binary key, can be also just Data Category
+     * @param startTime - The starting time
+     * @param endTime - The end time
+     * @param maxResults - The maximum number of records returned
+     * @return - A list of binary records, or null if the data store does not support a limit or failed to read them
+     */
+    default List<TSDRBinaryRecord> getTSDRBinaryRecords(String tsdrBinaryKey, long startTime, long endTime,
+            int maxResults) {
+        return null;
+    }
+
     /**
      * Purges all the data from TSDR data store older than the retention timestamp.
      *
@@ -8,7 +8,7 @@
 package org.opendaylight.tsdr.spi.persistence;
 
 import java.util.List;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
 
 /**
@@ -39,6 +39,20 @@ public interface TSDRLogPersistenceService {
      */
     List<TSDRLogRecord> getTSDRLogRecords(String tsdrLogKey, long startTime, long endTime);
 
+    /**
+     * Returns the logs of a key in a time range like {@link #getTSDRLogRecords(String, long, long)}, up to a given
+     * number of records rather than the number of records a query returns.
+     *
+     * @param tsdrLogKey - The tsdr log key, can be also just Data Category
+     * @param startTime - The starting time
+     * @param endTime - The end time
+     * @param maxResults - The maximum number of records returned
+     * @return - A list of log records, or null if the data store does not support a limit or failed to read them
+     */
+    default List<TSDRLogRecord> getTSDRLogRecords(String tsdrLogKey, long startTime, long endTime, int maxResults) {
+        return null;
+    }
+
     /**
      * Purges all the data from TSDR data store older than the retention timestamp.
      *
@@ -52,4 +66,15 @@ public interface TSDRLogPersistenceService {
      * @param timestamp -- the retention time.
      */
     void purge(DataCategory category, long timestamp);
+
+    /**
+     * Returns this service if its data store indexes the logs. The data storage service binds the log persistence
+     * service through a proxy which only implements this interface, so it gets the searchable interface of the bound
+     * data store from this method rather than from a cast.
+     *
+     * @return - this service, or null if it does not implement {@link SearchableLogPersistenceService}
+     */
+    default SearchableLogPersistenceService getSearchableService() {
+        return this instanceof SearchableLogPersistenceService ? (SearchableLogPersistenceService) this : null;
+    }
 }
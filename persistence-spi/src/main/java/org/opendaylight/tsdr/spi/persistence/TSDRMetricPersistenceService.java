@@ -43,6 +43,21 @@ public interface TSDRMetricPersistenceService {
     // or record keys>][TS=<timestamp - for hbase>]"
     List<TSDRMetricRecord> getTSDRMetricRecords(String tsdrMetricKey,long startDateTime, long endDateTime);
 
+    /**
+     * Returns the metrics of a key in a time range like {@link #getTSDRMetricRecords(String, long, long)}, up to a
+     * given number of records rather than the number of records a query returns.
+     *
+     * @param tsdrMetricKey -- The tsdr metric key, can also be just Data Category
+     * @param startDateTime  --The start time in milis
+     * @param endDateTime   -- The end time in milis
+     * @param maxResults -- The maximum number of records returned
+     * @return - List of records, or null if the data store does not support a limit or failed to read them
+     */
+    default List<TSDRMetricRecord> getTSDRMetricRecords(String tsdrMetricKey, long startDateTime, long endDateTime,
+            int maxResults) {
+        return null;
+    }
+
     /**
      * Purges all the data from TSDR data store older than the etention timestamp.
      *
@@ -56,4 +71,15 @@ public interface TSDRMetricPersistenceService {
      * @param timestamp -- the retention time.
      */
     void purge(DataCategory category, long timestamp);
+
+    /**
+     * Returns this service if its data store aggregates the metrics itself. The data storage service binds the
+     * metric persistence service through a proxy which only implements this interface, so it gets the aggregating
+     * interface of the bound data store from this method rather than from a cast.
+     *
+     * @return - this service, or null if it does not implement {@link AggregatingMetricPersistenceService}
+     */
+    default AggregatingMetricPersistenceService getAggregatingService() {
+        return this instanceof AggregatingMetricPersistenceService ? (AggregatingMetricPersistenceService) this : null;
+    }
 }
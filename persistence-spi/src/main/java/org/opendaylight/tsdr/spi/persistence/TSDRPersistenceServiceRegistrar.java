@@ -17,9 +17,17 @@ import org.osgi.framework.ServiceRegistration;
 /**
  * Conditionally registers persistence services via OSGi.
  *
+ * <p>
+ * A data store whose config file sets a tier, hot or cold, is registered with the {@link #TIER_SERVICE_PROPERTY}
+ * service property so it is only used by the tiered data store, the data storage service binding the services
+ * without this property.
+ * </p>
+ *
  * @author Thomas Pantelis
  */
 public class TSDRPersistenceServiceRegistrar implements AutoCloseable {
+    public static final String TIER_SERVICE_PROPERTY = "tsdr.tier";
+
     private final ServiceRegistration<TSDRMetricPersistenceService> metricServiceRegistration;
     private final ServiceRegistration<TSDRLogPersistenceService> logServiceRegistration;
     private final ServiceRegistration<TSDRBinaryPersistenceService> binaryServiceRegistration;
@@ -27,15 +35,23 @@ public class TSDRPersistenceServiceRegistrar implements AutoCloseable {
     public TSDRPersistenceServiceRegistrar(Object implementation, String configFileName, BundleContext bundleContext)
             throws IOException {
         Map<String, String> props = ConfigFileUtil.loadConfig(configFileName);
+        Hashtable<String, Object> serviceProps = new Hashtable<>();
+        String tier = ConfigFileUtil.getTier(props);
+        if (tier != null) {
+            serviceProps.put(TIER_SERVICE_PROPERTY, tier);
+        }
 
         metricServiceRegistration = maybeRegister((TSDRMetricPersistenceService)implementation,
-                TSDRMetricPersistenceService.class, bundleContext, ConfigFileUtil.isMetricPersistenceEnabled(props));
+                TSDRMetricPersistenceService.class, bundleContext, serviceProps,
+                ConfigFileUtil.isMetricPersistenceEnabled(props));
 
         logServiceRegistration = maybeRegister((TSDRLogPersistenceService)implementation,
-                TSDRLogPersistenceService.class, bundleContext, ConfigFileUtil.isLogPersistenceEnabled(props));
+                TSDRLogPersistenceService.class, bundleContext, serviceProps,
+                ConfigFileUtil.isLogPersistenceEnabled(props));
 
         binaryServiceRegistration = maybeRegister((TSDRBinaryPersistenceService)implementation,
-                TSDRBinaryPersistenceService.class, bundleContext, ConfigFileUtil.isBinaryPersistenceEnabled(props));
+                TSDRBinaryPersistenceService.class, bundleContext, serviceProps,
+                ConfigFileUtil.isBinaryPersistenceEnabled(props));
     }
 
     @Override
@@ -46,9 +62,9 @@ public class TSDRPersistenceServiceRegistrar implements AutoCloseable {
     }
 
     private static <T> ServiceRegistration<T> maybeRegister(T implementation, Class<T> serviceInterface,
-            BundleContext bundleContext, boolean enabled) {
+            BundleContext bundleContext, Hashtable<String, Object> serviceProps, boolean enabled) {
         if (enabled) {
-            return bundleContext.registerService(serviceInterface, implementation, new Hashtable<>());
+            return bundleContext.registerService(serviceInterface, implementation, serviceProps);
         }
 
         return null;
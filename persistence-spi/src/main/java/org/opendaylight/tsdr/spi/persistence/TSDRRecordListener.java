@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.spi.persistence;
+
+import java.util.List;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
+
+/**
+ * Listener notified by the TSDR storage service with the records it has just handed to the persistence
+ * service. Implementations are registered in the OSGi service registry.
+ *
+ * <p>
+ * Notifications are delivered on the ingest thread so implementations must not block; anything more
+ * than a hand-off to a queue should be done on a separate thread.
+ * </p>
+ */
+public interface TSDRRecordListener {
+    /**
+     * Invoked after a list of metric records was stored.
+     *
+     * @param metricRecords - the stored metric records
+     */
+    void onMetricRecords(List<TSDRMetricRecord> metricRecords);
+
+    /**
+     * Invoked after a list of log records was stored.
+     *
+     * @param logRecords - the stored log records
+     */
+    void onLogRecords(List<TSDRLogRecord> logRecords);
+}
@@ -21,6 +21,7 @@ public final class ConfigFileUtil {
     public static final String METRIC_PERSISTENCE_PROPERTY = "metric-persistency";
     public static final String LOG_PERSISTENCE_PROPERTY = "log-persistency";
     public static final String BINARY_PERSISTENCE_PROPERTY = "binary-persistency";
+    public static final String TIER_PROPERTY = "tier";
 
     private ConfigFileUtil() {
         throw new AssertionError(); // Protection from reflection.
@@ -43,4 +44,12 @@ public final class ConfigFileUtil {
     public static boolean isBinaryPersistenceEnabled(Map<String, String> properties) {
         return Boolean.valueOf(properties.getOrDefault(BINARY_PERSISTENCE_PROPERTY, Boolean.FALSE.toString()));
     }
+
+    /**
+     * Returns the tier of the tiered data store the data store is used as, or null if it is used directly.
+     */
+    public static String getTier(Map<String, String> properties) {
+        String tier = properties.get(TIER_PROPERTY);
+        return tier == null || tier.trim().isEmpty() ? null : tier.trim();
+    }
 }
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.spi.util;
+
+import java.util.List;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.tsdrrecord.RecordKeys;
+
+/**
+ * The parts of the TSDR key of a query, which the data stores keeping a dictionary of their series match the series
+ * against.
+ *
+ * <p>
+ * The key of a query is either a data category name, as given by the tsdr:list command, or a TSDR key giving any of
+ * the data category, node ID, metric name and record keys. A missing or empty part, as in [NID=] or [RK=], matches
+ * any series, and the record keys of a query match the series holding at least those keys.
+ * </p>
+ */
+public final class KeyFilter {
+    private final String category;
+    private final String nodeId;
+    private final String metricName;
+    private final List<RecordKeys> recordKeys;
+
+    private KeyFilter(String category, String nodeId, String metricName, List<RecordKeys> recordKeys) {
+        this.category = emptyToNull(category);
+        this.nodeId = emptyToNull(nodeId);
+        this.metricName = emptyToNull(metricName);
+        this.recordKeys = recordKeys == null || recordKeys.isEmpty() ? null : recordKeys;
+    }
+
+    private static String emptyToNull(String part) {
+        return part == null || part.isEmpty() ? null : part;
+    }
+
+    public static KeyFilter parse(String tsdrKey) {
+        if (FormatUtil.isDataCategory(tsdrKey)) {
+            return new KeyFilter(tsdrKey, null, null, null);
+        }
+        return new KeyFilter(FormatUtil.getDataCategoryFromTSDRKey(tsdrKey), FormatUtil.getNodeIdFromTSDRKey(tsdrKey),
+                FormatUtil.getMetriNameFromTSDRKey(tsdrKey), FormatUtil.getRecordKeysFromTSDRKey(tsdrKey));
+    }
+
+    /**
+     * Returns the data category name of the filter, or null if it matches any data category.
+     */
+    public String getCategory() {
+        return category;
+    }
+
+    /**
+     * Returns whether the filter matches any series, the key of the query giving none of the parts.
+     */
+    public boolean isEmpty() {
+        return category == null && nodeId == null && metricName == null && recordKeys == null;
+    }
+
+    public boolean matches(DataCategory otherCategory) {
+        return category == null || otherCategory != null && category.equals(otherCategory.name());
+    }
+
+    public boolean matches(DataCategory otherCategory, String otherNodeId, String otherMetricName,
+            List<RecordKeys> otherRecordKeys) {
+        return matches(otherCategory) && matches(nodeId, otherNodeId) && matches(metricName, otherMetricName)
+                && containsAll(otherRecordKeys);
+    }
+
+    /**
+     * Returns whether the filter matches a series whose data category is given by name.
+     */
+    public boolean matches(String otherCategory, String otherNodeId, String otherMetricName,
+            List<RecordKeys> otherRecordKeys) {
+        return matches(category, otherCategory) && matches(nodeId, otherNodeId)
+                && matches(metricName, otherMetricName) && containsAll(otherRecordKeys);
+    }
+
+    private static boolean matches(String part, String value) {
+        return part == null || part.equals(value);
+    }
+
+    private boolean containsAll(List<RecordKeys> otherRecordKeys) {
+        if (recordKeys == null) {
+            return true;
+        }
+        if (otherRecordKeys == null) {
+            return false;
+        }
+        for (RecordKeys recordKey : recordKeys) {
+            boolean found = false;
+            for (RecordKeys otherKey : otherRecordKeys) {
+                if (recordKey.getKeyName().equals(otherKey.getKeyName())
+                        && recordKey.getKeyValue().equals(otherKey.getKeyValue())) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.spi.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.TSDRLog;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.tsdrlog.RecordAttributes;
+
+/**
+ * A search of the log records: the terms their full text must hold and the values their attributes must have.
+ *
+ * <p>
+ * A search is parsed from words separated by white spaces, a word of the form name=value being an attribute
+ * condition and the other words being tokenized as the full texts are. The full texts are split into tokens on the
+ * characters other than letters, digits, '-', '_' and '.', which are kept within the tokens so "LINK-3-UPDOWN" or an
+ * IP address are single tokens, and the tokens are compared regardless of their case.
+ * </p>
+ */
+public final class LogSearch {
+    private static final LogSearch EMPTY = new LogSearch(Collections.emptyList(), Collections.emptyMap());
+
+    private final List<String> terms;
+    private final Map<String, String> attributes;
+
+    private LogSearch(List<String> terms, Map<String, String> attributes) {
+        this.terms = terms;
+        this.attributes = attributes;
+    }
+
+    /**
+     * Parses a search, a null or blank search matching all the log records.
+     */
+    public static LogSearch parse(String search) {
+        if (search == null || search.trim().isEmpty()) {
+            return EMPTY;
+        }
+
+        List<String> terms = new ArrayList<>();
+        Map<String, String> attributes = new LinkedHashMap<>();
+        for (String word : search.trim().split("\\s+")) {
+            int equals = word.indexOf('=');
+            if (equals > 0) {
+                attributes.put(word.substring(0, equals), word.substring(equals + 1));
+            } else {
+                for (String token : tokenize(word)) {
+                    if (!terms.contains(token)) {
+                        terms.add(token);
+                    }
+                }
+            }
+        }
+        return new LogSearch(Collections.unmodifiableList(terms), Collections.unmodifiableMap(attributes));
+    }
+
+    /**
+     * Splits a text into its lower case tokens, in the order they appear.
+     */
+    public static List<String> tokenize(String text) {
+        if (text == null) {
+            return Collections.emptyList();
+        }
+
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean tokenChar = i < text.length() && isTokenChar(text.charAt(i));
+            if (tokenChar && start < 0) {
+                start = i;
+            } else if (!tokenChar && start >= 0) {
+                addToken(tokens, text, start, i);
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isTokenChar(char ch) {
+        return Character.isLetterOrDigit(ch) || ch == '-' || ch == '_' || ch == '.';
+    }
+
+    private static void addToken(List<String> tokens, String text, int start, int end) {
+        // The separators at the ends of a token are dropped, as the period ending a sentence
+        int from = start;
+        int to = end;
+        while (from < to && !Character.isLetterOrDigit(text.charAt(from))) {
+            from++;
+        }
+        while (to > from && !Character.isLetterOrDigit(text.charAt(to - 1))) {
+            to--;
+        }
+        if (from < to) {
+            tokens.add(text.substring(from, to).toLowerCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * Returns the lower case tokens the full text must hold.
+     */
+    public List<String> getTerms() {
+        return terms;
+    }
+
+    /**
+     * Returns the values the attributes must have, by attribute name.
+     */
+    public Map<String, String> getAttributes() {
+        return attributes;
+    }
+
+    public boolean isEmpty() {
+        return terms.isEmpty() && attributes.isEmpty();
+    }
+
+    /**
+     * Returns whether a log record holds all the terms and has all the attribute values of the search.
+     */
+    public boolean matches(TSDRLog log) {
+        if (!terms.isEmpty()) {
+            Set<String> tokens = new HashSet<>(tokenize(log.getRecordFullText()));
+            if (!tokens.containsAll(terms)) {
+                return false;
+            }
+        }
+        for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+            if (!hasAttribute(log, attribute.getKey(), attribute.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasAttribute(TSDRLog log, String name, String value) {
+        if (log.getRecordAttributes() != null) {
+            for (RecordAttributes attribute : log.getRecordAttributes()) {
+                if (name.equals(attribute.getName()) && value.equals(attribute.getValue())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "LogSearch [terms=" + terms + ", attributes=" + attributes + "]";
+    }
+}
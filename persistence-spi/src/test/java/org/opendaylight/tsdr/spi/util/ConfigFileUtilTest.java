@@ -12,6 +12,7 @@ import static com.google.common.truth.Truth.assertThat;
 import static org.opendaylight.tsdr.spi.util.ConfigFileUtil.BINARY_PERSISTENCE_PROPERTY;
 import static org.opendaylight.tsdr.spi.util.ConfigFileUtil.LOG_PERSISTENCE_PROPERTY;
 import static org.opendaylight.tsdr.spi.util.ConfigFileUtil.METRIC_PERSISTENCE_PROPERTY;
+import static org.opendaylight.tsdr.spi.util.ConfigFileUtil.TIER_PROPERTY;
 
 import java.io.File;
 import java.nio.charset.StandardCharsets;
@@ -74,4 +75,16 @@ public class ConfigFileUtilTest {
         properties.put(BINARY_PERSISTENCE_PROPERTY, Boolean.TRUE.toString());
         assertThat(ConfigFileUtil.isBinaryPersistenceEnabled(properties)).isTrue();
     }
+
+    @Test
+    public void getTier() throws Exception {
+        Map<String, String> properties = new HashMap<>(1);
+        assertThat(ConfigFileUtil.getTier(properties)).isNull();
+
+        properties.put(TIER_PROPERTY, " ");
+        assertThat(ConfigFileUtil.getTier(properties)).isNull();
+
+        properties.put(TIER_PROPERTY, "hot ");
+        assertThat(ConfigFileUtil.getTier(properties)).isEqualTo("hot");
+    }
 }
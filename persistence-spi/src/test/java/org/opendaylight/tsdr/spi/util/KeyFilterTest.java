@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.spi.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.tsdrrecord.RecordKeys;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.tsdrrecord.RecordKeysBuilder;
+
+public class KeyFilterTest {
+    private static final List<RecordKeys> RECORD_KEYS = Arrays.asList(
+            new RecordKeysBuilder().setKeyName("Table").setKeyValue("0").build(),
+            new RecordKeysBuilder().setKeyName("Port").setKeyValue("1").build());
+
+    private static boolean matches(String tsdrKey) {
+        return KeyFilter.parse(tsdrKey).matches(DataCategory.PORTSTATS, "openflow:1", "TransmittedPackets",
+                RECORD_KEYS);
+    }
+
+    @Test
+    public void testDataCategory() {
+        KeyFilter filter = KeyFilter.parse(DataCategory.PORTSTATS.name());
+        assertEquals(DataCategory.PORTSTATS.name(), filter.getCategory());
+        assertFalse(filter.isEmpty());
+        assertTrue(filter.matches(DataCategory.PORTSTATS));
+        assertFalse(filter.matches(DataCategory.FLOWSTATS));
+        assertTrue(matches(DataCategory.PORTSTATS.name()));
+        assertFalse(matches(DataCategory.FLOWSTATS.name()));
+    }
+
+    @Test
+    public void testExactKey() {
+        assertTrue(matches("[NID=openflow:1][DC=PORTSTATS][MN=TransmittedPackets][RK=Table:0,Port:1]"));
+        assertFalse(matches("[NID=openflow:2][DC=PORTSTATS][MN=TransmittedPackets][RK=Table:0,Port:1]"));
+        assertFalse(matches("[NID=openflow:1][DC=PORTSTATS][MN=ReceivedPackets][RK=Table:0,Port:1]"));
+    }
+
+    @Test
+    public void testEmptyPartsMatchAnySeries() {
+        KeyFilter filter = KeyFilter.parse("[NID=][DC=][MN=][RK=]");
+        assertNull(filter.getCategory());
+        assertTrue(filter.isEmpty());
+        assertTrue(filter.matches(DataCategory.FLOWSTATS, "openflow:2", "PacketCount", null));
+        assertTrue(matches("[NID=openflow:1][DC=PORTSTATS][MN=][RK=]"));
+        assertTrue(matches("[NID=][DC=][MN=TransmittedPackets][RK=]"));
+        assertTrue(KeyFilter.parse("not a key").isEmpty());
+    }
+
+    @Test
+    public void testRecordKeysAreContained() {
+        assertTrue(matches("[NID=][DC=PORTSTATS][MN=][RK=Port:1]"));
+        assertFalse(matches("[NID=][DC=PORTSTATS][MN=][RK=Port:2]"));
+        assertFalse(KeyFilter.parse("[NID=][DC=PORTSTATS][MN=][RK=Port:1]").matches(DataCategory.PORTSTATS,
+                "openflow:1", "TransmittedPackets", Collections.emptyList()));
+        assertTrue(KeyFilter.parse("[NID=][DC=PORTSTATS][MN=][RK=Port:1]").matches(DataCategory.PORTSTATS.name(),
+                "openflow:1", "TransmittedPackets", RECORD_KEYS));
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.spi.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.tsdrlog.RecordAttributesBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
+
+public class LogSearchTest {
+    private static final TSDRLogRecord LOG_RECORD = new TSDRLogRecordBuilder()
+            .setNodeID("node1")
+            .setTimeStamp(1000L)
+            .setTSDRDataCategory(DataCategory.SYSLOG)
+            .setRecordFullText("%LINK-3-UPDOWN: Interface Gi0/1, changed state to down from 10.0.0.1.")
+            .setRecordAttributes(Collections.singletonList(new RecordAttributesBuilder()
+                    .setName("severity")
+                    .setValue("error")
+                    .build()))
+            .build();
+
+    @Test
+    public void testTokenize() {
+        assertEquals(Arrays.asList("link-3-updown", "interface", "gi0", "1", "changed", "state", "to", "down", "from",
+                "10.0.0.1"), LogSearch.tokenize(LOG_RECORD.getRecordFullText()));
+        assertEquals(Collections.emptyList(), LogSearch.tokenize(" -- "));
+        assertEquals(Collections.emptyList(), LogSearch.tokenize(null));
+    }
+
+    @Test
+    public void testParse() {
+        LogSearch search = LogSearch.parse(" Down severity=error  DOWN 10.0.0.1 ");
+        assertEquals(Arrays.asList("down", "10.0.0.1"), search.getTerms());
+        assertEquals(Collections.singletonMap("severity", "error"), search.getAttributes());
+        assertFalse(search.isEmpty());
+        assertTrue(LogSearch.parse(null).isEmpty());
+        assertTrue(LogSearch.parse("  ").isEmpty());
+    }
+
+    @Test
+    public void testMatches() {
+        assertTrue(LogSearch.parse("").matches(LOG_RECORD));
+        assertTrue(LogSearch.parse("link-3-updown down").matches(LOG_RECORD));
+        assertTrue(LogSearch.parse("gi0/1 severity=error").matches(LOG_RECORD));
+        assertFalse(LogSearch.parse("up").matches(LOG_RECORD));
+        assertFalse(LogSearch.parse("severity=warning").matches(LOG_RECORD));
+        assertFalse(LogSearch.parse("facility=local7").matches(LOG_RECORD));
+    }
+}
@@ -1,80 +1,106 @@
 /*
- * Copyright (c) 2016 Frinx s.r.o. and others.  All rights reserved.
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
  *
  * This program and the accompanying materials are made available under the
  * terms of the Eclipse Public License v1.0 which accompanies this distribution,
  * and is available at http://www.eclipse.org/legal/epl-v10.html
  */
+package org.opendaylight.tsdr.spi.util;
 
-package org.opendaylight.tsdr.persistence.elasticsearch;
-
-import com.google.common.collect.Lists;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data.rev160325.storetsdrbinaryrecord.input.TSDRBinaryRecord;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data.rev160325.storetsdrbinaryrecord.input.TSDRBinaryRecordBuilder;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.storetsdrlogrecord.input.TSDRLogRecord;
-import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev160325.storetsdrlogrecord.input.TSDRLogRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecordBuilder;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecordBuilder;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.tsdrrecord.RecordKeys;
 import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.tsdrrecord.RecordKeysBuilder;
 
 /**
- * A utility class for helping records creation.
- *
- * @author Lukas Beles(lbeles@frinx.io)
+ * The records of the data store tests, shared through the test jar of the SPI.
  */
-final class TsdrRecordFactory {
+public final class TsdrRecordFactory {
     private TsdrRecordFactory() {
         throw new AssertionError();
     }
 
+    private static List<RecordKeys> createRecordKeys() {
+        return Collections.singletonList(new RecordKeysBuilder()
+                .setKeyName("TestRKName")
+                .setKeyValue("TestRKValue")
+                .build());
+    }
+
     /**
      * Create the fake {@link TSDRMetricRecord}.
      */
-    static TSDRMetricRecord createMetricRecord() {
+    public static TSDRMetricRecord createMetricRecord() {
         return new TSDRMetricRecordBuilder()
                 .setNodeID("TestNodeID")
                 .setTimeStamp(1257894000000000000L)
                 .setTSDRDataCategory(DataCategory.EXTERNAL)
                 .setMetricName("TestName")
                 .setMetricValue(new BigDecimal(8128))
-                .setRecordKeys(Lists.newArrayList(new RecordKeysBuilder()
-                        .setKeyName("TestRKName")
-                        .setKeyValue("TestRKValue")
-                        .build()))
+                .setRecordKeys(createRecordKeys())
                 .build();
     }
 
     /**
      * Create the fake {@link TSDRLogRecord}.
      */
-    static TSDRLogRecord createLogRecord() {
+    public static TSDRLogRecord createLogRecord() {
         return new TSDRLogRecordBuilder()
                 .setNodeID("TestNodeID")
                 .setTimeStamp(1257894000000000000L)
                 .setTSDRDataCategory(DataCategory.EXTERNAL)
                 .setRecordFullText("Test Text")
-                .setRecordKeys(Lists.newArrayList(new RecordKeysBuilder()
-                        .setKeyName("TestRKName")
-                        .setKeyValue("TestRKValue")
-                        .build()))
+                .setRecordKeys(createRecordKeys())
                 .build();
     }
 
     /**
      * Create the fake {@link TSDRBinaryRecord}.
      */
-    static TSDRBinaryRecord createBinaryRecord() {
+    public static TSDRBinaryRecord createBinaryRecord() {
         return new TSDRBinaryRecordBuilder()
                 .setNodeID("TestNodeID")
                 .setTimeStamp(1257894000000000000L)
                 .setTSDRDataCategory(DataCategory.EXTERNAL)
                 .setData("Test Data".getBytes())
-                .setRecordKeys(Lists.newArrayList(new RecordKeysBuilder()
-                        .setKeyName("TestRKName")
-                        .setKeyValue("TestRKValue")
+                .setRecordKeys(createRecordKeys())
+                .build();
+    }
+
+    /**
+     * Creates the TransmittedPackets sample of a port, in the PORTSTATS category.
+     */
+    public static TSDRMetricRecord createMetricRecord(String nodeId, String port, long timeStamp, double value) {
+        return new TSDRMetricRecordBuilder()
+                .setNodeID(nodeId)
+                .setTimeStamp(timeStamp)
+                .setTSDRDataCategory(DataCategory.PORTSTATS)
+                .setMetricName("TransmittedPackets")
+                .setMetricValue(BigDecimal.valueOf(value))
+                .setRecordKeys(Collections.singletonList(new RecordKeysBuilder()
+                        .setKeyName("Port")
+                        .setKeyValue(port)
                         .build()))
                 .build();
     }
+
+    /**
+     * Creates the samples of port 1 of a node every second from time 0, the value of each being its index.
+     */
+    public static List<TSDRMetricRecord> createMetricRecords(String nodeId, int count) {
+        List<TSDRMetricRecord> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            records.add(createMetricRecord(nodeId, "1", 1000L * i, i));
+        }
+        return records;
+    }
 }
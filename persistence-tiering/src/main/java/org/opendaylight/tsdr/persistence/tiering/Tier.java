@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.tiering;
+
+import org.opendaylight.tsdr.spi.persistence.TSDRBinaryPersistenceService;
+import org.opendaylight.tsdr.spi.persistence.TSDRLogPersistenceService;
+import org.opendaylight.tsdr.spi.persistence.TSDRMetricPersistenceService;
+
+/**
+ * The persistence services of a tier of the tiered data store, registered by a data store whose config file sets
+ * its tier.
+ */
+final class Tier {
+    private final String name;
+    private final TSDRMetricPersistenceService metricService;
+    private final TSDRLogPersistenceService logService;
+    private final TSDRBinaryPersistenceService binaryService;
+
+    Tier(String name, TSDRMetricPersistenceService metricService, TSDRLogPersistenceService logService,
+            TSDRBinaryPersistenceService binaryService) {
+        this.name = name;
+        this.metricService = metricService;
+        this.logService = logService;
+        this.binaryService = binaryService;
+    }
+
+    TSDRMetricPersistenceService getMetricService() {
+        return metricService;
+    }
+
+    TSDRLogPersistenceService getLogService() {
+        return logService;
+    }
+
+    TSDRBinaryPersistenceService getBinaryService() {
+        return binaryService;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
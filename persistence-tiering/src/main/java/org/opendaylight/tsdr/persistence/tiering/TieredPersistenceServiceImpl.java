@@ -0,0 +1,615 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.tiering;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import org.opendaylight.tsdr.spi.model.TSDRConstants;
+import org.opendaylight.tsdr.spi.persistence.TSDRBinaryPersistenceService;
+import org.opendaylight.tsdr.spi.persistence.TSDRLogPersistenceService;
+import org.opendaylight.tsdr.spi.persistence.TSDRMetricPersistenceService;
+import org.opendaylight.tsdr.spi.util.ConfigFileUtil;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data.rev160325.storetsdrbinaryrecord.input.TSDRBinaryRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tiered persistence service implementation, over a hot data store holding the recent records, typically an
+ * embedded one, and a cold data store holding the older records.
+ *
+ * <p>
+ * The records are written to the hot tier and moved to the cold tier in the background every migration-interval
+ * seconds, once older than hot-retention hours: the records up to the new watermark are read from the hot tier by
+ * category, in time windows sized to the number of records a query returns, and written to the cold tier in batches
+ * of migration-batch-size records. The watermark is then saved to the watermark-file, and the migrated records are
+ * purged from the hot tier on the next migration, once the queries which started before the move are done.
+ * </p>
+ *
+ * <p>
+ * The windows are read up to the number of records a query returns, a window holding as many records being read
+ * again in halves, down to a single millisecond whose records are read without limit. The hot data stores not
+ * supporting a limit are read without one, and leave the watermark before such a millisecond, the records from there
+ * on staying in the hot tier, so no record is ever purged before it is copied. The watermark starts at the oldest
+ * record of the hot tier, or hot-retention hours ago if there is none older. It is looked up by the first migration,
+ * the data stores may not be available yet when the service starts; until then the records are written to the hot
+ * tier and read from both tiers.
+ * </p>
+ *
+ * <p>
+ * The queries are routed by their time range, a query spanning the watermark returning the records of the cold tier
+ * followed by the records of the hot tier. The records older than the watermark, collected late, are written
+ * directly to the cold tier, and are only returned once the watermark is past them if the last migration stopped
+ * before its new watermark. A record may be copied twice to the cold tier if a migration fails half way.
+ * </p>
+ */
+@Singleton
+public class TieredPersistenceServiceImpl implements TSDRMetricPersistenceService, TSDRLogPersistenceService,
+        TSDRBinaryPersistenceService, AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(TieredPersistenceServiceImpl.class);
+    private static final String CONF_FILE = ConfigFileUtil.CONFIG_DIR + "tsdr-persistence-tiering.properties";
+    static final String HOT_RETENTION_PROP = "hot-retention";
+    private static final int DEFAULT_HOT_RETENTION = 24;
+    static final String MIGRATION_INTERVAL_PROP = "migration-interval";
+    private static final int DEFAULT_MIGRATION_INTERVAL = 600;
+    static final String MIGRATION_BATCH_SIZE_PROP = "migration-batch-size";
+    private static final int DEFAULT_MIGRATION_BATCH_SIZE = 10000;
+    static final String WATERMARK_FILE_PROP = "watermark-file";
+    private static final String DEFAULT_WATERMARK_FILE = "./tsdr/tiering.watermark";
+
+    private static final long INITIAL_WINDOW = TimeUnit.MINUTES.toMillis(1);
+    private static final long MAX_WINDOW = TimeUnit.DAYS.toMillis(1);
+    private static final int MAX_RESULTS = TSDRConstants.MAX_RESULTS_FROM_LIST_METRICS_COMMAND;
+    // The watermark before the first migration looked up the oldest record of the hot tier
+    private static final long NO_WATERMARK = Long.MIN_VALUE;
+
+    /**
+     * Reads the records of a key in a time range from a tier.
+     */
+    @FunctionalInterface
+    private interface RangeReader<T> {
+        List<T> read(String key, long startTime, long endTime);
+    }
+
+    /**
+     * Reads the records of a key in a time range from a tier, up to a number of records.
+     */
+    @FunctionalInterface
+    private interface LimitedRangeReader<T> {
+        List<T> read(String key, long startTime, long endTime, int maxResults);
+    }
+
+    /**
+     * The copy of the records of a kind from the hot tier to the cold tier. The records read from a time window are
+     * only written up to the time the records of all the kinds were read completely.
+     */
+    private final class KindCopy<T> {
+        private final RangeReader<T> reader;
+        private final LimitedRangeReader<T> limitedReader;
+        private final ToLongFunction<T> timeStamp;
+        private final Consumer<List<T>> writer;
+        private final List<T> readRecords = new ArrayList<>();
+        private List<T> batch = new ArrayList<>();
+        private long count;
+
+        KindCopy(RangeReader<T> reader, LimitedRangeReader<T> limitedReader, ToLongFunction<T> timeStamp,
+                Consumer<List<T>> writer) {
+            this.reader = reader;
+            this.limitedReader = limitedReader;
+            this.timeStamp = timeStamp;
+            this.writer = writer;
+        }
+
+        /**
+         * Reads the records of all the categories in a time window, returning the time up to which all were read.
+         */
+        long read(long startTime, long endTime) {
+            long readTo = endTime;
+            for (DataCategory category : DataCategory.values()) {
+                readTo = read(category.name(), startTime, readTo);
+            }
+            return readTo;
+        }
+
+        private long read(String category, long startTime, long endTime) {
+            if (startTime >= endTime) {
+                return endTime;
+            }
+            List<T> records = readLimited(reader, limitedReader, category, startTime, endTime - 1);
+            if (records.size() < MAX_RESULTS) {
+                readRecords.addAll(records);
+                return endTime;
+            }
+            if (endTime - startTime > 1) {
+                // The query may have been truncated, the window is read again in halves
+                long middle = startTime + (endTime - startTime) / 2;
+                long readTo = read(category, startTime, middle);
+                return readTo < middle ? readTo : read(category, middle, endTime);
+            }
+            records = limitedReader.read(category, startTime, startTime, Integer.MAX_VALUE);
+            if (records == null) {
+                LOG.warn("More than {} {} records at {} cannot be read from the {} tier, they are not migrated",
+                        MAX_RESULTS, category, startTime, hot);
+                return startTime;
+            }
+            readRecords.addAll(records);
+            return endTime;
+        }
+
+        /**
+         * Adds the records read before a time to the batch written to the cold tier, returning the number of records
+         * read from the window.
+         */
+        int write(long readTo) {
+            int readCount = readRecords.size();
+            for (T record : readRecords) {
+                if (timeStamp.applyAsLong(record) < readTo) {
+                    batch.add(record);
+                }
+            }
+            readRecords.clear();
+            if (batch.size() >= batchSize) {
+                flush();
+            }
+            return readCount;
+        }
+
+        long flush() {
+            if (!batch.isEmpty()) {
+                writer.accept(batch);
+                count += batch.size();
+                batch = new ArrayList<>();
+            }
+            return count;
+        }
+    }
+
+    private final Tier hot;
+    private final Tier cold;
+    private final boolean metricsEnabled;
+    private final boolean logsEnabled;
+    private final boolean binariesEnabled;
+    private final long hotRetention;
+    private final int batchSize;
+    private final Path watermarkFile;
+    private final ScheduledExecutorService migrationExecutor;
+    private final Object migrationLock = new Object();
+
+    // The records older than the read watermark are read from the cold tier. The write watermark is moved first, so
+    // the records written while a migration copies the records up to it go to the right tier
+    private final ReadWriteLock routingLock = new ReentrantReadWriteLock();
+    private volatile long readWatermark;
+    private long writeWatermark;
+
+    // Guarded by migrationLock
+    private long hotPurgedWatermark = NO_WATERMARK;
+
+    @Inject
+    public TieredPersistenceServiceImpl(
+            @Named("hotMetricPersistenceService") TSDRMetricPersistenceService hotMetricService,
+            @Named("hotLogPersistenceService") TSDRLogPersistenceService hotLogService,
+            @Named("hotBinaryPersistenceService") TSDRBinaryPersistenceService hotBinaryService,
+            @Named("coldMetricPersistenceService") TSDRMetricPersistenceService coldMetricService,
+            @Named("coldLogPersistenceService") TSDRLogPersistenceService coldLogService,
+            @Named("coldBinaryPersistenceService") TSDRBinaryPersistenceService coldBinaryService)
+            throws IOException {
+        this(new Tier("hot", hotMetricService, hotLogService, hotBinaryService),
+                new Tier("cold", coldMetricService, coldLogService, coldBinaryService), loadConfig());
+    }
+
+    @VisibleForTesting
+    TieredPersistenceServiceImpl(Tier hot, Tier cold, Map<String, String> config) throws IOException {
+        this.hot = hot;
+        this.cold = cold;
+        this.metricsEnabled = ConfigFileUtil.isMetricPersistenceEnabled(config);
+        this.logsEnabled = ConfigFileUtil.isLogPersistenceEnabled(config);
+        this.binariesEnabled = ConfigFileUtil.isBinaryPersistenceEnabled(config);
+        this.hotRetention = TimeUnit.HOURS.toMillis(Math.max(0, getInt(config, HOT_RETENTION_PROP,
+                DEFAULT_HOT_RETENTION)));
+        this.batchSize = Math.max(1, getInt(config, MIGRATION_BATCH_SIZE_PROP, DEFAULT_MIGRATION_BATCH_SIZE));
+        this.watermarkFile = Paths.get(config.getOrDefault(WATERMARK_FILE_PROP, DEFAULT_WATERMARK_FILE).trim());
+
+        Long savedWatermark = loadWatermark(watermarkFile);
+        readWatermark = savedWatermark != null ? savedWatermark : NO_WATERMARK;
+        writeWatermark = readWatermark;
+        if (savedWatermark != null) {
+            LOG.info("TSDR tiered data store initialized, the records before {} are in the cold tier",
+                    new Date(readWatermark));
+        } else {
+            LOG.info("TSDR tiered data store initialized, the watermark is set by the first migration");
+        }
+
+        int migrationInterval = getInt(config, MIGRATION_INTERVAL_PROP, DEFAULT_MIGRATION_INTERVAL);
+        if (migrationInterval > 0) {
+            migrationExecutor = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("TSDR Tiering Migrator-%d").setDaemon(true).build());
+            migrationExecutor.scheduleWithFixedDelay(this::migrateQuietly, migrationInterval, migrationInterval,
+                    TimeUnit.SECONDS);
+        } else {
+            migrationExecutor = null;
+        }
+    }
+
+    /**
+     * Returns the time stamp of the oldest record of the hot tier, or a time if there is none older.
+     */
+    private long findOldestHotRecord(long before) {
+        long oldest = before;
+        for (DataCategory category : DataCategory.values()) {
+            if (metricsEnabled) {
+                oldest = findOldest(category, oldest, hot.getMetricService()::getTSDRMetricRecords,
+                        hot.getMetricService()::getTSDRMetricRecords, TSDRMetricRecord::getTimeStamp);
+            }
+            if (logsEnabled) {
+                oldest = findOldest(category, oldest, hot.getLogService()::getTSDRLogRecords,
+                        hot.getLogService()::getTSDRLogRecords, TSDRLogRecord::getTimeStamp);
+            }
+            if (binariesEnabled) {
+                oldest = findOldest(category, oldest, hot.getBinaryService()::getTSDRBinaryRecords,
+                        hot.getBinaryService()::getTSDRBinaryRecords, TSDRBinaryRecord::getTimeStamp);
+            }
+        }
+        return oldest;
+    }
+
+    private static <T> long findOldest(DataCategory category, long before, RangeReader<T> reader,
+            LimitedRangeReader<T> limitedReader, ToLongFunction<T> timeStamp) {
+        long oldest = before;
+        while (true) {
+            List<T> records = readLimited(reader, limitedReader, category.name(), 0L, oldest - 1);
+            for (T record : records) {
+                oldest = Math.min(oldest, timeStamp.applyAsLong(record));
+            }
+            // The query may have been truncated, the records older than the oldest one returned are read again
+            if (records.size() < MAX_RESULTS) {
+                return oldest;
+            }
+        }
+    }
+
+    /**
+     * Reads the records of a key in a time range from a tier, up to {@link #MAX_RESULTS} records. The records may
+     * have been truncated if as many are returned. The data stores not supporting a limit are read without one, as
+     * their queries return at most as many records.
+     */
+    private static <T> List<T> readLimited(RangeReader<T> reader, LimitedRangeReader<T> limitedReader, String key,
+            long startTime, long endTime) {
+        List<T> records = limitedReader.read(key, startTime, endTime, MAX_RESULTS);
+        return records != null ? records : nonNull(reader.read(key, startTime, endTime));
+    }
+
+    private static int getInt(Map<String, String> config, String prop, int defaultValue) {
+        String value = config.getOrDefault(prop, String.valueOf(defaultValue)).trim();
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            LOG.warn("Invalid {} value {}, using {}", prop, value, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    private static Map<String, String> loadConfig() {
+        try {
+            return ConfigFileUtil.loadConfig(CONF_FILE);
+        } catch (IOException e) {
+            LOG.warn("Error loading config file {}, using the default settings", CONF_FILE, e);
+            return Collections.emptyMap();
+        }
+    }
+
+    private static Long loadWatermark(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        String value = new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim();
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid watermark " + value + " in " + file, e);
+        }
+    }
+
+    private void saveWatermark(long watermark) throws IOException {
+        Path parent = watermarkFile.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        // Written to a temporary file first, so the watermark is never partially written
+        Path tmpFile = watermarkFile.resolveSibling(watermarkFile.getFileName() + ".tmp");
+        Files.write(tmpFile, Long.toString(watermark).getBytes(StandardCharsets.UTF_8));
+        Files.move(tmpFile, watermarkFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @VisibleForTesting
+    long getWatermark() {
+        return readWatermark;
+    }
+
+    @PreDestroy
+    @Override
+    public void close() {
+        if (migrationExecutor != null) {
+            migrationExecutor.shutdownNow();
+        }
+    }
+
+    @SuppressWarnings("checkstyle:IllegalCatch")
+    private void migrateQuietly() {
+        try {
+            migrate(System.currentTimeMillis());
+        } catch (IOException | RuntimeException e) {
+            LOG.error("Failed to migrate the records to the cold tier", e);
+        }
+    }
+
+    /**
+     * Moves the records older than the hot retention from the hot tier to the cold tier.
+     */
+    @VisibleForTesting
+    void migrate(long now) throws IOException {
+        synchronized (migrationLock) {
+            if (readWatermark == NO_WATERMARK) {
+                initWatermark(now);
+            }
+
+            long fromTime = readWatermark;
+            if (hotPurgedWatermark < fromTime) {
+                purgeTier(hot, fromTime);
+                hotPurgedWatermark = fromTime;
+            }
+
+            long toTime = now - hotRetention;
+            if (toTime <= fromTime) {
+                return;
+            }
+
+            routingLock.writeLock().lock();
+            try {
+                // Still ahead of the read watermark if the last migration stopped before its watermark
+                writeWatermark = Math.max(writeWatermark, toTime);
+            } finally {
+                routingLock.writeLock().unlock();
+            }
+
+            List<KindCopy<?>> copies = new ArrayList<>();
+            if (metricsEnabled) {
+                copies.add(new KindCopy<TSDRMetricRecord>(hot.getMetricService()::getTSDRMetricRecords,
+                        hot.getMetricService()::getTSDRMetricRecords, TSDRMetricRecord::getTimeStamp,
+                        cold.getMetricService()::storeMetric));
+            }
+            if (logsEnabled) {
+                copies.add(new KindCopy<TSDRLogRecord>(hot.getLogService()::getTSDRLogRecords,
+                        hot.getLogService()::getTSDRLogRecords, TSDRLogRecord::getTimeStamp,
+                        cold.getLogService()::storeLog));
+            }
+            if (binariesEnabled) {
+                copies.add(new KindCopy<TSDRBinaryRecord>(hot.getBinaryService()::getTSDRBinaryRecords,
+                        hot.getBinaryService()::getTSDRBinaryRecords, TSDRBinaryRecord::getTimeStamp,
+                        cold.getBinaryService()::storeBinary));
+            }
+            long copiedTo = copy(copies, fromTime, toTime);
+            long count = 0;
+            for (KindCopy<?> copy : copies) {
+                count += copy.flush();
+            }
+
+            if (copiedTo > fromTime) {
+                saveWatermark(copiedTo);
+                readWatermark = copiedTo;
+            }
+            LOG.info("Migrated {} records before {} to the cold tier", count, new Date(copiedTo));
+        }
+    }
+
+    /**
+     * Sets the watermark to the oldest record of the hot tier, as nothing was migrated yet and the records older than
+     * the records of the hot tier are in the cold tier.
+     */
+    private void initWatermark(long now) throws IOException {
+        // The records are not written while the hot tier is read, so none is written older than the watermark
+        routingLock.writeLock().lock();
+        try {
+            long watermark = findOldestHotRecord(now - hotRetention);
+            saveWatermark(watermark);
+            readWatermark = watermark;
+            writeWatermark = watermark;
+        } finally {
+            routingLock.writeLock().unlock();
+        }
+        LOG.info("The records before {} are in the cold tier", new Date(readWatermark));
+    }
+
+    /**
+     * Copies the records of a time range by time windows, returning the time up to which they were all copied.
+     */
+    private long copy(List<KindCopy<?>> copies, long fromTime, long toTime) {
+        long window = INITIAL_WINDOW;
+        long startTime = fromTime;
+        while (startTime < toTime) {
+            long endTime = toTime - startTime > window ? startTime + window : toTime;
+            long readTo = endTime;
+            for (KindCopy<?> copy : copies) {
+                readTo = copy.read(startTime, readTo);
+            }
+            int readCount = 0;
+            for (KindCopy<?> copy : copies) {
+                readCount += copy.write(readTo);
+            }
+            if (readTo < endTime) {
+                return readTo;
+            }
+
+            startTime = endTime;
+            if (readCount < MAX_RESULTS / 4) {
+                window = Math.min(window * 2, MAX_WINDOW);
+            } else if (readCount >= MAX_RESULTS) {
+                window = Math.max(window / 2, 1);
+            }
+        }
+        return toTime;
+    }
+
+    // The services of the kinds may be backed by the same data store, the purge of the other kinds then being a no-op
+    private void purgeTier(Tier tier, long retentionTime) {
+        LOG.debug("Purging the {} tier before {}", tier, new Date(retentionTime));
+        if (metricsEnabled) {
+            tier.getMetricService().purge(retentionTime);
+        }
+        if (logsEnabled) {
+            tier.getLogService().purge(retentionTime);
+        }
+        if (binariesEnabled) {
+            tier.getBinaryService().purge(retentionTime);
+        }
+    }
+
+    private void purgeTier(Tier tier, DataCategory category, long retentionTime) {
+        if (metricsEnabled) {
+            tier.getMetricService().purge(category, retentionTime);
+        }
+        if (logsEnabled) {
+            tier.getLogService().purge(category, retentionTime);
+        }
+        if (binariesEnabled) {
+            tier.getBinaryService().purge(category, retentionTime);
+        }
+    }
+
+    private static <T> List<T> nonNull(List<T> list) {
+        return list == null ? Collections.emptyList() : list;
+    }
+
+    private <T> void store(List<T> records, ToLongFunction<T> timeStamp, Consumer<List<T>> hotWriter,
+            Consumer<List<T>> coldWriter) {
+        List<T> coldRecords = new ArrayList<>();
+        routingLock.readLock().lock();
+        try {
+            List<T> hotRecords = new ArrayList<>(records.size());
+            for (T record : records) {
+                (timeStamp.applyAsLong(record) < writeWatermark ? coldRecords : hotRecords).add(record);
+            }
+            if (!hotRecords.isEmpty()) {
+                hotWriter.accept(hotRecords);
+            }
+        } finally {
+            routingLock.readLock().unlock();
+        }
+        // The records older than the write watermark are never copied by a migration
+        if (!coldRecords.isEmpty()) {
+            coldWriter.accept(coldRecords);
+        }
+    }
+
+    private <T> List<T> query(String key, long startTime, long endTime, RangeReader<T> hotReader,
+            RangeReader<T> coldReader) {
+        long watermark = readWatermark;
+        if (watermark == NO_WATERMARK) {
+            // The older records may be in either tier until the first migration
+            List<T> records = new ArrayList<>(nonNull(coldReader.read(key, startTime, endTime)));
+            records.addAll(nonNull(hotReader.read(key, startTime, endTime)));
+            return records;
+        }
+        if (startTime >= watermark) {
+            return hotReader.read(key, startTime, endTime);
+        }
+        if (endTime < watermark) {
+            return coldReader.read(key, startTime, endTime);
+        }
+        List<T> records = new ArrayList<>(nonNull(coldReader.read(key, startTime, watermark - 1)));
+        records.addAll(nonNull(hotReader.read(key, watermark, endTime)));
+        return records;
+    }
+
+    @Override
+    public void storeMetric(TSDRMetricRecord metricRecord) {
+        storeMetric(Collections.singletonList(metricRecord));
+    }
+
+    @Override
+    public void storeMetric(List<TSDRMetricRecord> recordList) {
+        store(recordList, TSDRMetricRecord::getTimeStamp, hot.getMetricService()::storeMetric,
+                cold.getMetricService()::storeMetric);
+    }
+
+    @Override
+    public void storeLog(TSDRLogRecord logRecord) {
+        storeLog(Collections.singletonList(logRecord));
+    }
+
+    @Override
+    public void storeLog(List<TSDRLogRecord> recordList) {
+        store(recordList, TSDRLogRecord::getTimeStamp, hot.getLogService()::storeLog,
+                cold.getLogService()::storeLog);
+    }
+
+    @Override
+    public void storeBinary(TSDRBinaryRecord binaryRecord) {
+        storeBinary(Collections.singletonList(binaryRecord));
+    }
+
+    @Override
+    public void storeBinary(List<TSDRBinaryRecord> recordList) {
+        store(recordList, TSDRBinaryRecord::getTimeStamp, hot.getBinaryService()::storeBinary,
+                cold.getBinaryService()::storeBinary);
+    }
+
+    @Override
+    public List<TSDRMetricRecord> getTSDRMetricRecords(String tsdrMetricKey, long startDateTime, long endDateTime) {
+        return query(tsdrMetricKey, startDateTime, endDateTime, hot.getMetricService()::getTSDRMetricRecords,
+                cold.getMetricService()::getTSDRMetricRecords);
+    }
+
+    @Override
+    public List<TSDRLogRecord> getTSDRLogRecords(String tsdrLogKey, long startTime, long endTime) {
+        return query(tsdrLogKey, startTime, endTime, hot.getLogService()::getTSDRLogRecords,
+                cold.getLogService()::getTSDRLogRecords);
+    }
+
+    @Override
+    public List<TSDRBinaryRecord> getTSDRBinaryRecords(String tsdrBinaryKey, long startTime, long endTime) {
+        return query(tsdrBinaryKey, startTime, endTime, hot.getBinaryService()::getTSDRBinaryRecords,
+                cold.getBinaryService()::getTSDRBinaryRecords);
+    }
+
+    @Override
+    public void purge(DataCategory category, long retentionTime) {
+        LOG.info("Execute Purge with Category {} and earlier than {}.", category.name(), new Date(retentionTime));
+        purgeTier(cold, category, retentionTime);
+        purgeTier(hot, category, retentionTime);
+    }
+
+    @Override
+    public void purge(long retentionTime) {
+        purgeTier(cold, retentionTime);
+        purgeTier(hot, retentionTime);
+    }
+}
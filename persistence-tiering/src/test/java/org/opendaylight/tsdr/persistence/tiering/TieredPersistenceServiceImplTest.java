@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.tiering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import com.google.common.collect.ImmutableMap;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opendaylight.tsdr.spi.model.TSDRConstants;
+import org.opendaylight.tsdr.spi.persistence.TSDRBinaryPersistenceService;
+import org.opendaylight.tsdr.spi.persistence.TSDRLogPersistenceService;
+import org.opendaylight.tsdr.spi.persistence.TSDRMetricPersistenceService;
+import org.opendaylight.tsdr.spi.util.ConfigFileUtil;
+import org.opendaylight.tsdr.spi.util.TsdrRecordFactory;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
+
+/**
+ * Unit tests of the {@link TieredPersistenceServiceImpl}, over mocked tiers holding the metrics in memory.
+ */
+public class TieredPersistenceServiceImplTest {
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long NOW = 100 * HOUR;
+    private static final long WATERMARK = NOW - HOUR;
+    private static final String KEY = DataCategory.PORTSTATS.name();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<TSDRMetricRecord> hotMetrics = new ArrayList<>();
+    private final List<TSDRMetricRecord> coldMetrics = new ArrayList<>();
+    private final List<List<TSDRMetricRecord>> coldBatches = new ArrayList<>();
+    private boolean hotLimitSupported = true;
+    private Path watermarkFile;
+    private Map<String, String> config;
+    private TieredPersistenceServiceImpl service;
+
+    @Before
+    public void setUp() throws Exception {
+        watermarkFile = folder.getRoot().toPath().resolve("tiering.watermark");
+        config = ImmutableMap.of(ConfigFileUtil.METRIC_PERSISTENCE_PROPERTY, "true",
+                TieredPersistenceServiceImpl.HOT_RETENTION_PROP, "1",
+                TieredPersistenceServiceImpl.MIGRATION_INTERVAL_PROP, "0",
+                TieredPersistenceServiceImpl.MIGRATION_BATCH_SIZE_PROP, "1000",
+                TieredPersistenceServiceImpl.WATERMARK_FILE_PROP, watermarkFile.toString());
+        service = createService();
+        // The first migration sets the watermark, there is no record to migrate yet
+        service.migrate(NOW);
+    }
+
+    @After
+    public void tearDown() {
+        service.close();
+    }
+
+    private TieredPersistenceServiceImpl createService() throws Exception {
+        return new TieredPersistenceServiceImpl(createTier("hot", hotMetrics, null, hotLimitSupported),
+                createTier("cold", coldMetrics, coldBatches, true), config);
+    }
+
+    private static List<TSDRMetricRecord> read(List<TSDRMetricRecord> metrics, Object[] arguments, int maxResults) {
+        String key = (String) arguments[0];
+        long startTime = (Long) arguments[1];
+        long endTime = (Long) arguments[2];
+        return metrics.stream().filter(record -> key.equals(record.getTSDRDataCategory().name())
+                && record.getTimeStamp() >= startTime && record.getTimeStamp() <= endTime)
+                .limit(maxResults)
+                .collect(Collectors.toList());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Tier createTier(String name, List<TSDRMetricRecord> metrics,
+            List<List<TSDRMetricRecord>> batches, boolean limitSupported) {
+        TSDRMetricPersistenceService metricService = mock(TSDRMetricPersistenceService.class);
+        doAnswer(invocation -> {
+            List<TSDRMetricRecord> records = (List<TSDRMetricRecord>) invocation.getArguments()[0];
+            metrics.addAll(records);
+            if (batches != null) {
+                batches.add(new ArrayList<>(records));
+            }
+            return null;
+        }).when(metricService).storeMetric(any(List.class));
+        // The data stores supporting a limit are not assumed to truncate the queries without one
+        doAnswer(invocation -> read(metrics, invocation.getArguments(),
+                limitSupported ? Integer.MAX_VALUE : TSDRConstants.MAX_RESULTS_FROM_LIST_METRICS_COMMAND))
+                .when(metricService).getTSDRMetricRecords(anyString(), anyLong(), anyLong());
+        doAnswer(invocation -> limitSupported ? read(metrics, invocation.getArguments(),
+                (Integer) invocation.getArguments()[3]) : null)
+                .when(metricService).getTSDRMetricRecords(anyString(), anyLong(), anyLong(), anyInt());
+        doAnswer(invocation -> {
+            long retentionTime = (Long) invocation.getArguments()[0];
+            metrics.removeIf(record -> record.getTimeStamp() < retentionTime);
+            return null;
+        }).when(metricService).purge(anyLong());
+        return new Tier(name, metricService, mock(TSDRLogPersistenceService.class),
+                mock(TSDRBinaryPersistenceService.class));
+    }
+
+    private static TSDRMetricRecord createMetricRecord(long timeStamp) {
+        return TsdrRecordFactory.createMetricRecord("node1", "1", timeStamp, timeStamp % 1000);
+    }
+
+    private static List<TSDRMetricRecord> createSameTimeRecords(long timeStamp, int count) {
+        List<TSDRMetricRecord> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            records.add(TsdrRecordFactory.createMetricRecord("node1", Integer.toString(i), timeStamp, i));
+        }
+        return records;
+    }
+
+    private List<TSDRMetricRecord> getSortedColdMetrics() {
+        return coldMetrics.stream().sorted(Comparator.comparing(TSDRMetricRecord::getTimeStamp))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void testStoreIsRoutedByTime() throws Exception {
+        assertEquals(WATERMARK, service.getWatermark());
+        assertEquals(Long.toString(WATERMARK), new String(Files.readAllBytes(watermarkFile),
+                StandardCharsets.UTF_8));
+
+        TSDRMetricRecord late = createMetricRecord(WATERMARK - 1);
+        TSDRMetricRecord recent = createMetricRecord(WATERMARK);
+        service.storeMetric(Arrays.asList(late, recent));
+        assertEquals(Collections.singletonList(recent), hotMetrics);
+        assertEquals(Collections.singletonList(late), coldMetrics);
+
+        service.storeMetric(createMetricRecord(WATERMARK + 1));
+        assertEquals(2, hotMetrics.size());
+    }
+
+    @Test
+    public void testQueryIsRoutedByTime() throws Exception {
+        TSDRMetricRecord old = createMetricRecord(WATERMARK - 10);
+        TSDRMetricRecord recent = createMetricRecord(WATERMARK + 10);
+        coldMetrics.add(old);
+        hotMetrics.add(recent);
+        // A record left in the hot tier by a migration until it is purged is not returned twice
+        hotMetrics.add(createMetricRecord(WATERMARK - 20));
+
+        assertEquals(Arrays.asList(old, recent), service.getTSDRMetricRecords(KEY, 0L, Long.MAX_VALUE));
+        assertEquals(Collections.singletonList(old), service.getTSDRMetricRecords(KEY, 0L, WATERMARK - 1));
+        assertEquals(Collections.singletonList(recent), service.getTSDRMetricRecords(KEY, WATERMARK, NOW));
+        assertEquals(0, service.getTSDRMetricRecords(DataCategory.SYSLOG.name(), 0L, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    public void testMigration() throws Exception {
+        // More records in the first minute than a query returns, the time windows are halved
+        List<TSDRMetricRecord> records = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            records.add(createMetricRecord(WATERMARK + 10L * i));
+        }
+        TSDRMetricRecord recent = createMetricRecord(WATERMARK + 2 * HOUR);
+        service.storeMetric(records);
+        service.storeMetric(recent);
+        assertEquals(2501, hotMetrics.size());
+
+        service.migrate(NOW + 2 * HOUR);
+        long watermark = WATERMARK + 2 * HOUR;
+        assertEquals(watermark, service.getWatermark());
+        assertEquals(Long.toString(watermark), new String(Files.readAllBytes(watermarkFile),
+                StandardCharsets.UTF_8));
+        assertEquals(records, getSortedColdMetrics());
+        for (List<TSDRMetricRecord> batch : coldBatches.subList(0, coldBatches.size() - 1)) {
+            assertTrue(batch.size() >= 1000);
+        }
+
+        // The migrated records are only purged from the hot tier on the next migration
+        assertEquals(2501, hotMetrics.size());
+        assertEquals(101, service.getTSDRMetricRecords(KEY, WATERMARK, WATERMARK + 1000).size());
+        service.migrate(NOW + 2 * HOUR);
+        assertEquals(Collections.singletonList(recent), hotMetrics);
+        assertEquals(2500, coldMetrics.size());
+
+        // The records older than the new watermark are written to the cold tier
+        service.storeMetric(createMetricRecord(watermark - 1));
+        assertEquals(2501, coldMetrics.size());
+
+        service.close();
+        service = createService();
+        assertEquals(watermark, service.getWatermark());
+    }
+
+    @Test
+    public void testSameMillisecondRecordsAreMigrated() throws Exception {
+        // More records at the same millisecond than a query returns are read without limit
+        List<TSDRMetricRecord> records = new ArrayList<>(createSameTimeRecords(WATERMARK + 10, 1500));
+        records.add(createMetricRecord(WATERMARK + 20));
+        service.storeMetric(records);
+
+        service.migrate(NOW + HOUR);
+        assertEquals(WATERMARK + HOUR, service.getWatermark());
+        assertEquals(1501, coldMetrics.size());
+        assertTrue(coldMetrics.containsAll(records));
+    }
+
+    @Test
+    public void testSameMillisecondRecordsAreKeptWithoutLimit() throws Exception {
+        service.close();
+        hotLimitSupported = false;
+        service = createService();
+
+        TSDRMetricRecord before = createMetricRecord(WATERMARK + 5);
+        List<TSDRMetricRecord> sameTime = createSameTimeRecords(WATERMARK + 10, 1500);
+        TSDRMetricRecord after = createMetricRecord(WATERMARK + 20);
+        service.storeMetric(before);
+        service.storeMetric(sameTime);
+        service.storeMetric(after);
+
+        // The watermark stops before the records which cannot all be read, which are never purged
+        service.migrate(NOW + HOUR);
+        assertEquals(WATERMARK + 10, service.getWatermark());
+        assertEquals(Collections.singletonList(before), coldMetrics);
+        service.migrate(NOW + HOUR);
+        assertEquals(WATERMARK + 10, service.getWatermark());
+        assertEquals(Collections.singletonList(before), coldMetrics);
+        assertEquals(1501, hotMetrics.size());
+        assertTrue(hotMetrics.containsAll(sameTime));
+    }
+
+    @Test
+    public void testInitialWatermarkIsOldestHotRecord() throws Exception {
+        service.close();
+        Files.delete(watermarkFile);
+        // The newest records are returned first, the oldest one is only found once the query is not truncated
+        List<TSDRMetricRecord> records = new ArrayList<>();
+        for (int i = 1; i <= 2500; i++) {
+            records.add(createMetricRecord(WATERMARK - 10L * i));
+        }
+        hotMetrics.addAll(records);
+        TSDRMetricRecord old = createMetricRecord(WATERMARK - 30000);
+        coldMetrics.add(old);
+
+        // The watermark is only looked up by the first migration, the records are read from both tiers until then
+        service = createService();
+        assertFalse(Files.exists(watermarkFile));
+        assertEquals(Arrays.asList(old, records.get(records.size() - 2), records.get(records.size() - 1)),
+                service.getTSDRMetricRecords(KEY, WATERMARK - 30000, WATERMARK - 24990));
+        service.storeMetric(createMetricRecord(WATERMARK - 26000));
+        assertEquals(2501, hotMetrics.size());
+
+        // The hot history is copied from its oldest record before it is purged
+        service.migrate(NOW);
+        assertEquals(WATERMARK, service.getWatermark());
+        assertEquals(2502, coldMetrics.size());
+        service.migrate(NOW);
+        assertTrue(hotMetrics.isEmpty());
+        assertEquals(old, getSortedColdMetrics().get(0));
+        assertEquals(WATERMARK - 26000, getSortedColdMetrics().get(1).getTimeStamp().longValue());
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.tsdb;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads the bits written by a {@link BitWriter} from a buffer, without moving the position of the buffer.
+ */
+final class BitReader {
+    private final ByteBuffer buffer;
+    private final int offset;
+    private long bitPosition;
+
+    BitReader(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.offset = buffer.position();
+    }
+
+    /**
+     * Reads the given number of bits, returned as the low bits of a long.
+     *
+     * @param count - the number of bits to read, from 0 to 64
+     */
+    long readBits(int count) {
+        long value = 0;
+        int remaining = count;
+        while (remaining > 0) {
+            int current = buffer.get(offset + (int) (bitPosition >>> 3)) & 0xFF;
+            int available = 8 - (int) (bitPosition & 7);
+            int read = Math.min(available, remaining);
+            value = value << read | (current >>> (available - read)) & ((1 << read) - 1);
+            bitPosition += read;
+            remaining -= read;
+        }
+        return value;
+    }
+
+    boolean readBit() {
+        return readBits(1) != 0;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.tsdb;
+
+import java.util.Arrays;
+
+/**
+ * Writes bits into a growing byte array, the most significant bit of each byte first.
+ */
+final class BitWriter {
+    private byte[] bytes = new byte[32];
+    private long bitLength;
+
+    /**
+     * Writes the given number of low bits of a value, from the most significant one.
+     *
+     * @param value - the bits to write
+     * @param count - the number of bits to write, from 0 to 64
+     */
+    void writeBits(long value, int count) {
+        int remaining = count;
+        while (remaining > 0) {
+            int byteIndex = (int) (bitLength >>> 3);
+            if (byteIndex == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            int free = 8 - (int) (bitLength & 7);
+            int written = Math.min(free, remaining);
+            int bits = (int) (value >>> (remaining - written)) & ((1 << written) - 1);
+            bytes[byteIndex] |= bits << (free - written);
+            bitLength += written;
+            remaining -= written;
+        }
+    }
+
+    void writeBit(boolean bit) {
+        writeBits(bit ? 1 : 0, 1);
+    }
+
+    long getBitLength() {
+        return bitLength;
+    }
+
+    /**
+     * Returns a copy of the bytes written so far, the last one padded with zero bits.
+     */
+    byte[] toByteArray() {
+        return Arrays.copyOf(bytes, (int) ((bitLength + 7) >>> 3));
+    }
+}
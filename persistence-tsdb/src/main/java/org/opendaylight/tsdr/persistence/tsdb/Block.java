@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.tsdb;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable block file of chunks, memory-mapped read-only so the chunks are decoded straight from the page
+ * cache.
+ *
+ * <p>
+ * A block starts with a magic number and a version, followed by the encoded samples of its chunks. They are
+ * followed by the index of the chunks, each one with its series id, its kind, its time range, its number of
+ * samples and the offset and length of its samples, and the block ends with the offset of the index and the magic
+ * number again. A block is written to a temporary file which is then moved in place, so a block file is either
+ * complete or absent.
+ * </p>
+ */
+final class Block {
+    static final String SUFFIX = ".tsdb";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int MAGIC = 0x54534442;
+    private static final int VERSION = 1;
+    private static final int HEADER_LENGTH = Integer.BYTES * 2;
+    private static final int FOOTER_LENGTH = Long.BYTES + Integer.BYTES;
+    private static final int INDEX_ENTRY_LENGTH = Integer.BYTES + 1 + Long.BYTES * 2 + Integer.BYTES + Long.BYTES
+            + Integer.BYTES;
+
+    private final Path path;
+    private final long size;
+    private final List<Chunk> chunks;
+    private final Map<Integer, List<Chunk>> chunksBySeries = new HashMap<>();
+    private final long minTime;
+    private final long maxTime;
+
+    private Block(Path path, long size, List<Chunk> chunks) {
+        this.path = path;
+        this.size = size;
+        this.chunks = Collections.unmodifiableList(chunks);
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (Chunk chunk : chunks) {
+            chunksBySeries.computeIfAbsent(chunk.getSeriesId(), id -> new ArrayList<>()).add(chunk);
+            min = Math.min(min, chunk.getMinTime());
+            max = Math.max(max, chunk.getMaxTime());
+        }
+        this.minTime = min;
+        this.maxTime = max;
+    }
+
+    /**
+     * Maps an existing block file.
+     */
+    static Block open(Path path) throws IOException {
+        final MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        int size = buffer.capacity();
+        if (size < HEADER_LENGTH + Integer.BYTES + FOOTER_LENGTH || buffer.getInt(0) != MAGIC
+                || buffer.getInt(size - Integer.BYTES) != MAGIC) {
+            throw new IOException("Not a block file: " + path);
+        }
+        if (buffer.getInt(Integer.BYTES) != VERSION) {
+            throw new IOException("Unsupported version " + buffer.getInt(Integer.BYTES) + " of block " + path);
+        }
+
+        int indexOffset = (int) buffer.getLong(size - FOOTER_LENGTH);
+        int chunkCount = buffer.getInt(indexOffset);
+        List<Chunk> chunks = new ArrayList<>(chunkCount);
+        ByteBuffer index = buffer.duplicate();
+        index.position(indexOffset + Integer.BYTES);
+        for (int i = 0; i < chunkCount; i++) {
+            int seriesId = index.getInt();
+            RecordKind kind = RecordKind.valueOf(index.get());
+            long chunkMinTime = index.getLong();
+            long chunkMaxTime = index.getLong();
+            int count = index.getInt();
+            int offset = (int) index.getLong();
+            int length = index.getInt();
+
+            ByteBuffer data = buffer.duplicate();
+            data.position(offset).limit(offset + length);
+            chunks.add(new Chunk(seriesId, kind, chunkMinTime, chunkMaxTime, count, data.slice()));
+        }
+        return new Block(path, size, chunks);
+    }
+
+    /**
+     * Writes the given chunks to a new block file and maps it.
+     */
+    static Block write(Path path, List<Chunk> chunks) throws IOException {
+        Path tempPath = path.resolveSibling(path.getFileName() + TEMP_SUFFIX);
+        try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            writeFully(channel, header);
+
+            ByteBuffer index = ByteBuffer.allocate(Integer.BYTES + chunks.size() * INDEX_ENTRY_LENGTH
+                    + FOOTER_LENGTH);
+            index.putInt(chunks.size());
+            for (Chunk chunk : chunks) {
+                long offset = channel.position();
+                writeFully(channel, chunk.getData());
+                index.putInt(chunk.getSeriesId());
+                index.put((byte) chunk.getKind().ordinal());
+                index.putLong(chunk.getMinTime());
+                index.putLong(chunk.getMaxTime());
+                index.putInt(chunk.getCount());
+                index.putLong(offset);
+                index.putInt(chunk.getLength());
+            }
+            index.putLong(channel.position());
+            index.putInt(MAGIC);
+            index.flip();
+            writeFully(channel, index);
+            channel.force(true);
+        }
+        Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE);
+        return open(path);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Returns whether a file is a block written halfway, which is left to be deleted.
+     */
+    static boolean isTemporary(Path path) {
+        return path.getFileName().toString().endsWith(SUFFIX + TEMP_SUFFIX);
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the length of the block file.
+     */
+    long getSize() {
+        return size;
+    }
+
+    List<Chunk> getChunks() {
+        return chunks;
+    }
+
+    /**
+     * Returns the chunks of a series, in the order they were written.
+     */
+    List<Chunk> getChunks(int seriesId) {
+        return chunksBySeries.getOrDefault(seriesId, Collections.emptyList());
+    }
+
+    long getMinTime() {
+        return minTime;
+    }
+
+    long getMaxTime() {
+        return maxTime;
+    }
+
+    boolean overlaps(long startTime, long endTime) {
+        return minTime <= endTime && maxTime >= startTime;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.tsdb;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An immutable chunk of encoded samples of a series, held in memory or mapped from a block file.
+ */
+final class Chunk {
+    private final int seriesId;
+    private final RecordKind kind;
+    private final long minTime;
+    private final long maxTime;
+    private final int count;
+    private final ByteBuffer data;
+
+    Chunk(int seriesId, RecordKind kind, long minTime, long maxTime, int count, ByteBuffer data) {
+        this.seriesId = seriesId;
+        this.kind = kind;
+        this.minTime = minTime;
+        this.maxTime = maxTime;
+        this.count = count;
+        this.data = data;
+    }
+
+    int getSeriesId() {
+        return seriesId;
+    }
+
+    RecordKind getKind() {
+        return kind;
+    }
+
+    long getMinTime() {
+        return minTime;
+    }
+
+    long getMaxTime() {
+        return maxTime;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns a read-only view of the encoded samples, positioned at their first byte.
+     */
+    ByteBuffer getData() {
+        return data.asReadOnlyBuffer();
+    }
+
+    int getLength() {
+        return data.remaining();
+    }
+
+    boolean overlaps(long startTime, long endTime) {
+        return minTime <= endTime && maxTime >= startTime;
+    }
+}
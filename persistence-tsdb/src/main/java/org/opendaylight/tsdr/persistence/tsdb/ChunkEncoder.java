@@ -0,0 +1,23 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.tsdb;
+
+/**
+ * Encodes the samples of a series appended to its head chunk.
+ */
+interface ChunkEncoder {
+    /**
+     * Returns the number of samples appended so far.
+     */
+    int getCount();
+
+    /**
+     * Returns the samples appended so far as an immutable chunk, the encoder can still be appended to afterwards.
+     */
+    Chunk toChunk(int seriesId);
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.tsdb;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The compression of the metric samples of a chunk, after the Gorilla paper of Facebook.
+ *
+ * <p>
+ * The first sample is written in full, a 64 bits time stamp and the 64 bits of its double value. Every next time
+ * stamp is written as the difference of its delta to the previous one with the delta before: '0' when the delta
+ * did not change, which is the case of the collectors polling at a fixed interval, else '10', '110' or '1110'
+ * followed by the difference on 7, 9 or 12 bits, or '1111' followed by the 64 bits of the difference.
+ * </p>
+ *
+ * <p>
+ * Every next value is XORed with the previous one: '0' when they are equal, else '10' followed by the meaningful
+ * bits of the XOR when they fit in the window of the previous meaningful bits, else '11' followed by the number of
+ * leading zeros on 5 bits, the number of meaningful bits minus one on 6 bits and the meaningful bits.
+ * </p>
+ */
+final class MetricCodec implements ChunkEncoder {
+    /**
+     * Receives the decoded samples of a chunk.
+     */
+    @FunctionalInterface
+    interface SampleConsumer {
+        void accept(long time, double value);
+    }
+
+    private final BitWriter out = new BitWriter();
+    private int count;
+    private long minTime = Long.MAX_VALUE;
+    private long maxTime = Long.MIN_VALUE;
+    private long previousTime;
+    private long previousDelta;
+    private long previousValue;
+    private int previousLeading = -1;
+    private int previousTrailing;
+
+    void append(long time, double value) {
+        long bits = Double.doubleToLongBits(value);
+        if (count == 0) {
+            out.writeBits(time, 64);
+            out.writeBits(bits, 64);
+        } else {
+            writeTime(time);
+            writeValue(bits);
+        }
+        previousTime = time;
+        previousValue = bits;
+        minTime = Math.min(minTime, time);
+        maxTime = Math.max(maxTime, time);
+        count++;
+    }
+
+    private void writeTime(long time) {
+        long delta = time - previousTime;
+        long deltaOfDelta = delta - previousDelta;
+        if (deltaOfDelta == 0) {
+            out.writeBits(0, 1);
+        } else if (fits(deltaOfDelta, 7)) {
+            out.writeBits(0b10, 2);
+            out.writeBits(deltaOfDelta, 7);
+        } else if (fits(deltaOfDelta, 9)) {
+            out.writeBits(0b110, 3);
+            out.writeBits(deltaOfDelta, 9);
+        } else if (fits(deltaOfDelta, 12)) {
+            out.writeBits(0b1110, 4);
+            out.writeBits(deltaOfDelta, 12);
+        } else {
+            out.writeBits(0b1111, 4);
+            out.writeBits(deltaOfDelta, 64);
+        }
+        previousDelta = delta;
+    }
+
+    private void writeValue(long bits) {
+        long xor = bits ^ previousValue;
+        if (xor == 0) {
+            out.writeBits(0, 1);
+            return;
+        }
+
+        // The leading zeros are written on 5 bits
+        int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+        int trailing = Long.numberOfTrailingZeros(xor);
+        if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+            out.writeBits(0b10, 2);
+            out.writeBits(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+        } else {
+            int meaningful = 64 - leading - trailing;
+            out.writeBits(0b11, 2);
+            out.writeBits(leading, 5);
+            out.writeBits(meaningful - 1, 6);
+            out.writeBits(xor >>> trailing, meaningful);
+            previousLeading = leading;
+            previousTrailing = trailing;
+        }
+    }
+
+    private static boolean fits(long value, int bits) {
+        long bound = 1L << (bits - 1);
+        return value >= -bound && value < bound;
+    }
+
+    @Override
+    public int getCount() {
+        return count;
+    }
+
+    long getBitLength() {
+        return out.getBitLength();
+    }
+
+    @Override
+    public Chunk toChunk(int seriesId) {
+        return new Chunk(seriesId, RecordKind.METRIC, minTime, maxTime, count, ByteBuffer.wrap(out.toByteArray()));
+    }
+
+    /**
+     * Decodes the samples of a metric chunk in the order they were appended.
+     */
+    static void decode(Chunk chunk, SampleConsumer consumer) {
+        BitReader in = new BitReader(chunk.getData());
+        long time = 0;
+        long delta = 0;
+        long value = 0;
+        int leading = 0;
+        int trailing = 0;
+        for (int i = 0; i < chunk.getCount(); i++) {
+            if (i == 0) {
+                time = in.readBits(64);
+                value = in.readBits(64);
+            } else {
+                delta += readDeltaOfDelta(in);
+                time += delta;
+                if (in.readBit()) {
+                    if (in.readBit()) {
+                        leading = (int) in.readBits(5);
+                        trailing = 64 - leading - ((int) in.readBits(6) + 1);
+                    }
+                    value ^= in.readBits(64 - leading - trailing) << trailing;
+                }
+            }
+            consumer.accept(time, Double.longBitsToDouble(value));
+        }
+    }
+
+    private static long readDeltaOfDelta(BitReader in) {
+        if (!in.readBit()) {
+            return 0;
+        }
+        if (!in.readBit()) {
+            return signExtend(in.readBits(7), 7);
+        }
+        if (!in.readBit()) {
+            return signExtend(in.readBits(9), 9);
+        }
+        if (!in.readBit()) {
+            return signExtend(in.readBits(12), 12);
+        }
+        return in.readBits(64);
+    }
+
+    private static long signExtend(long value, int bits) {
+        return value << (64 - bits) >> (64 - bits);
+    }
+}
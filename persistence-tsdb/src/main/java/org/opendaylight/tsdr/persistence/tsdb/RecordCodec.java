@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.tsdb;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The encoding of the log and binary samples of a chunk. Each sample is written as the zig-zag variable length
+ * delta of its time stamp to the previous one, its index, its payload and its attributes, the byte arrays and
+ * strings prefixed by their length plus one so a null is written as a zero length.
+ */
+final class RecordCodec implements ChunkEncoder {
+    private final RecordKind kind;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private int count;
+    private long minTime = Long.MAX_VALUE;
+    private long maxTime = Long.MIN_VALUE;
+    private long previousTime;
+
+    RecordCodec(RecordKind kind) {
+        this.kind = kind;
+    }
+
+    void append(RecordSample sample) {
+        writeVarLong(zigZag(sample.getTime() - previousTime));
+        writeVarLong(zigZag(sample.getIndex()));
+        writeBytes(sample.getPayload());
+        writeVarLong(sample.getAttributes().size());
+        for (Map.Entry<String, String> attribute : sample.getAttributes()) {
+            writeString(attribute.getKey());
+            writeString(attribute.getValue());
+        }
+        previousTime = sample.getTime();
+        minTime = Math.min(minTime, sample.getTime());
+        maxTime = Math.max(maxTime, sample.getTime());
+        count++;
+    }
+
+    private void writeVarLong(long value) {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            out.write((int) (remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        out.write((int) remaining);
+    }
+
+    private void writeBytes(byte[] bytes) {
+        if (bytes == null) {
+            writeVarLong(0);
+        } else {
+            writeVarLong(bytes.length + 1L);
+            out.write(bytes, 0, bytes.length);
+        }
+    }
+
+    private void writeString(String value) {
+        writeBytes(value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long zigZag(long value) {
+        return value << 1 ^ value >> 63;
+    }
+
+    @Override
+    public int getCount() {
+        return count;
+    }
+
+    @Override
+    public Chunk toChunk(int seriesId) {
+        return new Chunk(seriesId, kind, minTime, maxTime, count, ByteBuffer.wrap(out.toByteArray()));
+    }
+
+    /**
+     * Decodes the samples of a log or binary chunk in the order they were appended.
+     */
+    static List<RecordSample> decode(Chunk chunk) {
+        ByteBuffer in = chunk.getData();
+        List<RecordSample> samples = new ArrayList<>(chunk.getCount());
+        long time = 0;
+        for (int i = 0; i < chunk.getCount(); i++) {
+            time += unZigZag(readVarLong(in));
+            int index = (int) unZigZag(readVarLong(in));
+            byte[] payload = readBytes(in);
+            int attributeCount = (int) readVarLong(in);
+            List<Map.Entry<String, String>> attributes = attributeCount == 0 ? Collections.emptyList()
+                    : new ArrayList<>(attributeCount);
+            for (int j = 0; j < attributeCount; j++) {
+                attributes.add(new SimpleImmutableEntry<>(readString(in), readString(in)));
+            }
+            samples.add(new RecordSample(time, index, payload, attributes));
+        }
+        return samples;
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        byte current;
+        do {
+            current = in.get();
+            value |= (long) (current & 0x7F) << shift;
+            shift += 7;
+        } while ((current & 0x80) != 0);
+        return value;
+    }
+
+    @SuppressFBWarnings("PZLA_PREFER_ZERO_LENGTH_ARRAYS")
+    private static byte[] readBytes(ByteBuffer in) {
+        int length = (int) readVarLong(in);
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length - 1];
+        in.get(bytes);
+        return bytes;
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = readBytes(in);
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long unZigZag(long value) {
+        return value >>> 1 ^ -(value & 1);
+    }
+}
@@ -0,0 +1,26 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.tsdb;
+
+/**
+ * The kinds of records of a series, written to the files by their ordinal so new kinds go at the end.
+ */
+enum RecordKind {
+    METRIC,
+    LOG,
+    BINARY;
+
+    private static final RecordKind[] VALUES = values();
+
+    static RecordKind valueOf(int ordinal) {
+        if (ordinal < 0 || ordinal >= VALUES.length) {
+            throw new IllegalArgumentException("Unknown record kind " + ordinal);
+        }
+        return VALUES[ordinal];
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.tsdb;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A log or binary sample of a series: its time stamp, its index, its payload and its attributes. The payload is
+ * shared, not copied, the samples are only passed around within the store.
+ */
+final class RecordSample {
+    private final long time;
+    private final int index;
+    private final byte[] payload;
+    private final List<Map.Entry<String, String>> attributes;
+
+    @SuppressFBWarnings("EI_EXPOSE_REP2")
+    RecordSample(long time, int index, byte[] payload, List<Map.Entry<String, String>> attributes) {
+        this.time = time;
+        this.index = index;
+        this.payload = payload;
+        this.attributes = attributes;
+    }
+
+    long getTime() {
+        return time;
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the payload, the UTF-8 full text of a log or the data of a binary, or null if it has none.
+     */
+    @SuppressFBWarnings("EI_EXPOSE_REP")
+    byte[] getPayload() {
+        return payload;
+    }
+
+    List<Map.Entry<String, String>> getAttributes() {
+        return attributes;
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.tsdb;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.opendaylight.tsdr.spi.util.FormatUtil;
+import org.opendaylight.tsdr.spi.util.KeyFilter;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.tsdrrecord.RecordKeys;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The dictionary of the series, each one given a numeric id the chunks refer to. The series are appended to an
+ * index file as they are created and read back from it on start, a last entry cut short by a crash is dropped.
+ */
+final class SeriesIndex implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(SeriesIndex.class);
+    // An entry is the id, the kind and the length of the UTF-8 key, followed by the key
+    private static final int ENTRY_HEADER_LENGTH = Integer.BYTES + 1 + Integer.BYTES;
+
+    /**
+     * A series of the dictionary, with the parts of its TSDR key it is looked up by.
+     */
+    static final class Series {
+        private final int id;
+        private final RecordKind kind;
+        private final String tsdrKey;
+        private final String category;
+        private final String nodeId;
+        private final String metricName;
+        private final List<RecordKeys> recordKeys;
+
+        Series(int id, RecordKind kind, String tsdrKey) {
+            this.id = id;
+            this.kind = kind;
+            this.tsdrKey = tsdrKey;
+            this.category = FormatUtil.getDataCategoryFromTSDRKey(tsdrKey);
+            this.nodeId = FormatUtil.getNodeIdFromTSDRKey(tsdrKey);
+            this.metricName = FormatUtil.getMetriNameFromTSDRKey(tsdrKey);
+            this.recordKeys = FormatUtil.getRecordKeysFromTSDRKey(tsdrKey);
+        }
+
+        int getId() {
+            return id;
+        }
+
+        RecordKind getKind() {
+            return kind;
+        }
+
+        String getTsdrKey() {
+            return tsdrKey;
+        }
+
+        String getCategory() {
+            return category;
+        }
+
+        String getNodeId() {
+            return nodeId;
+        }
+
+        String getMetricName() {
+            return metricName;
+        }
+
+        List<RecordKeys> getRecordKeys() {
+            return recordKeys;
+        }
+
+        boolean matches(KeyFilter filter) {
+            return filter.matches(category, nodeId, metricName, recordKeys);
+        }
+    }
+
+    private final Map<RecordKind, Map<String, Series>> seriesByKey = new EnumMap<>(RecordKind.class);
+    private final Map<Integer, Series> seriesById = new ConcurrentHashMap<>();
+    private final DataOutputStream out;
+    private int nextId;
+
+    SeriesIndex(Path file) throws IOException {
+        for (RecordKind kind : RecordKind.values()) {
+            seriesByKey.put(kind, new ConcurrentHashMap<>());
+        }
+
+        long validLength = Files.exists(file) ? load(file) : 0;
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (channel.size() > validLength) {
+            LOG.warn("Dropping the incomplete last entry of {}", file);
+            channel.truncate(validLength);
+        }
+        channel.position(validLength);
+        out = new DataOutputStream(Channels.newOutputStream(channel));
+        LOG.info("Loaded {} series from {}", seriesById.size(), file);
+    }
+
+    private long load(Path file) throws IOException {
+        long validLength = 0;
+        try (InputStream fileIn = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(fileIn))) {
+            while (true) {
+                int id = in.readInt();
+                RecordKind kind = RecordKind.valueOf(in.readUnsignedByte());
+                byte[] key = new byte[in.readInt()];
+                in.readFully(key);
+                add(new Series(id, kind, new String(key, StandardCharsets.UTF_8)));
+                nextId = Math.max(nextId, id + 1);
+                validLength += ENTRY_HEADER_LENGTH + key.length;
+            }
+        } catch (EOFException e) {
+            return validLength;
+        }
+    }
+
+    private void add(Series series) {
+        seriesByKey.get(series.getKind()).put(series.getTsdrKey(), series);
+        seriesById.put(series.getId(), series);
+    }
+
+    /**
+     * Returns the series of the given kind and TSDR key, creating it if it does not exist yet.
+     */
+    synchronized Series getOrCreate(RecordKind kind, String tsdrKey) throws IOException {
+        Series series = seriesByKey.get(kind).get(tsdrKey);
+        if (series == null) {
+            series = new Series(nextId, kind, tsdrKey);
+            byte[] key = tsdrKey.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(series.getId());
+            out.writeByte(kind.ordinal());
+            out.writeInt(key.length);
+            out.write(key);
+            out.flush();
+            nextId++;
+            add(series);
+        }
+        return series;
+    }
+
+    /**
+     * Returns the series of the given id, or null if it is unknown.
+     */
+    Series get(int id) {
+        return seriesById.get(id);
+    }
+
+    /**
+     * Returns the series of the given kind matching a TSDR key, which is either a full key, a partial key or a
+     * data category.
+     */
+    List<Series> find(RecordKind kind, String tsdrKey) {
+        Map<String, Series> byKey = seriesByKey.get(kind);
+        Series exact = byKey.get(tsdrKey);
+        if (exact != null) {
+            return Collections.singletonList(exact);
+        }
+
+        KeyFilter filter = KeyFilter.parse(tsdrKey);
+        List<Series> result = new ArrayList<>();
+        for (Series series : byKey.values()) {
+            if (series.matches(filter)) {
+                result.add(series);
+            }
+        }
+        result.sort((s1, s2) -> Integer.compare(s1.getId(), s2.getId()));
+        return result;
+    }
+
+    Collection<Series> getAll() {
+        return seriesById.values();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,802 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.tsdb;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.opendaylight.tsdr.persistence.tsdb.SeriesIndex.Series;
+import org.opendaylight.tsdr.spi.persistence.AggregatingMetricPersistenceService.Bucket;
+import org.opendaylight.tsdr.spi.util.ConfigFileUtil;
+import org.opendaylight.tsdr.spi.util.FormatUtil;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data.rev160325.storetsdrbinaryrecord.input.TSDRBinaryRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data.rev160325.storetsdrbinaryrecord.input.TSDRBinaryRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.tsdrlog.RecordAttributes;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.tsdrlog.RecordAttributesBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.AggregationType;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.Attribute;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Embedded time series store.
+ *
+ * <p>
+ * The samples of each series are appended to an in-memory head, a chunk being encoded: the metrics are compressed
+ * by the {@link MetricCodec} to a couple of bytes per sample for the collectors polling at a fixed interval, the
+ * logs and binaries are encoded by the {@link RecordCodec}. A chunk is sealed once it holds chunk-samples samples,
+ * and the heads of all the series are flushed to a new immutable {@link Block} file once they hold max-head-samples
+ * samples, every flush-interval seconds and on close.
+ * </p>
+ *
+ * <p>
+ * The queries skip the blocks and the chunks out of their time range from their index, and only decode the chunks
+ * of the series they match. The purge rewrites the blocks holding samples of the category older than the retention
+ * time, the chunks of other series being copied as they are. The blocks whose first samples are of the same hour
+ * are merged once a later block starts after that hour, and then the blocks of the same day, so there are a few
+ * dozens of block files for the recent days and one per day for the older ones.
+ * </p>
+ *
+ * <p>
+ * A purge or a compaction writes new block files and never rewrites one, which the queries going on may still be
+ * reading. The blocks in use are listed in a manifest, replaced once the new blocks are written, and the files of
+ * the blocks replaced are deleted then, or on restart if the manifest does not list them.
+ * </p>
+ *
+ * <p>
+ * The samples still in the heads are lost if the process dies, there is no write-ahead log, and the values of the
+ * metrics are stored as doubles.
+ * </p>
+ */
+@Singleton
+public class TsdbStore implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(TsdbStore.class);
+    private static final String CONF_FILE = ConfigFileUtil.CONFIG_DIR + "tsdr-persistence-tsdb.properties";
+    static final String DIRECTORY_PROP = "directory";
+    private static final String DEFAULT_DIRECTORY = "./tsdr/tsdb";
+    static final String CHUNK_SAMPLES_PROP = "chunk-samples";
+    private static final int DEFAULT_CHUNK_SAMPLES = 120;
+    static final String MAX_HEAD_SAMPLES_PROP = "max-head-samples";
+    private static final int DEFAULT_MAX_HEAD_SAMPLES = 1000000;
+    static final String FLUSH_INTERVAL_PROP = "flush-interval";
+    private static final int DEFAULT_FLUSH_INTERVAL = 300;
+
+    private static final String SERIES_INDEX_FILE = "series.idx";
+    private static final String MANIFEST_FILE = "blocks.list";
+    private static final String BLOCK_PREFIX = "block-";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final long[] COMPACTION_WINDOWS = {TimeUnit.HOURS.toMillis(1), TimeUnit.DAYS.toMillis(1)};
+    // Well below the 2 GB a block can map
+    private static final long MAX_COMPACTED_BLOCK_SIZE = 1L << 30;
+
+    /**
+     * The head of a series, its sealed chunks and the chunk being encoded.
+     */
+    private static final class Head {
+        private final List<Chunk> sealed = new ArrayList<>();
+        private ChunkEncoder encoder;
+    }
+
+    private final Path directory;
+    private final int chunkSamples;
+    private final int maxHeadSamples;
+    private final SeriesIndex seriesIndex;
+    private final ScheduledExecutorService flushExecutor;
+    // Held by the purges and the compactions, which replace blocks
+    private final Object purgeLock = new Object();
+    // Held by the flushes, which write their block file without holding this
+    private final Object flushLock = new Object();
+
+    // Replaced as a whole holding this, so the queries see either the blocks replaced or their replacement
+    private volatile List<Block> blocks = Collections.emptyList();
+
+    // Guarded by this
+    private final Map<Integer, Head> heads = new HashMap<>();
+    // The chunks taken from the heads by a flush, until they are in a block
+    private final List<Chunk> flushing = new ArrayList<>();
+    private int headSamples;
+    private long nextBlockNumber;
+
+    @Inject
+    public TsdbStore() throws IOException {
+        this(loadConfig());
+    }
+
+    private TsdbStore(Map<String, String> config) throws IOException {
+        this(Paths.get(config.getOrDefault(DIRECTORY_PROP, DEFAULT_DIRECTORY).trim()),
+                getInt(config, CHUNK_SAMPLES_PROP, DEFAULT_CHUNK_SAMPLES),
+                getInt(config, MAX_HEAD_SAMPLES_PROP, DEFAULT_MAX_HEAD_SAMPLES),
+                getInt(config, FLUSH_INTERVAL_PROP, DEFAULT_FLUSH_INTERVAL));
+    }
+
+    @VisibleForTesting
+    TsdbStore(Path directory, int chunkSamples, int maxHeadSamples, int flushIntervalSeconds) throws IOException {
+        LOG.info("Opening the TSDR time series store in {}...", directory);
+        this.directory = directory;
+        this.chunkSamples = Math.max(1, chunkSamples);
+        this.maxHeadSamples = Math.max(1, maxHeadSamples);
+        Files.createDirectories(directory);
+        this.seriesIndex = new SeriesIndex(directory.resolve(SERIES_INDEX_FILE));
+        openBlocks();
+
+        if (flushIntervalSeconds > 0) {
+            flushExecutor = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("TSDR TSDB Flusher-%d").setDaemon(true).build());
+            flushExecutor.scheduleWithFixedDelay(this::flushQuietly, flushIntervalSeconds, flushIntervalSeconds,
+                    TimeUnit.SECONDS);
+        } else {
+            flushExecutor = null;
+        }
+    }
+
+    private static int getInt(Map<String, String> config, String prop, int defaultValue) {
+        String value = config.getOrDefault(prop, String.valueOf(defaultValue)).trim();
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            LOG.warn("Invalid {} value {}, using {}", prop, value, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    private static Map<String, String> loadConfig() {
+        try {
+            return ConfigFileUtil.loadConfig(CONF_FILE);
+        } catch (IOException e) {
+            LOG.warn("Error loading config file {}, using the default settings", CONF_FILE, e);
+            return Collections.emptyMap();
+        }
+    }
+
+    private synchronized void openBlocks() throws IOException {
+        // The block files are named by their increasing zero-padded number, so they sort in the order of creation
+        Map<String, Path> blockFiles = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, BLOCK_PREFIX + "*")) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                if (Block.isTemporary(path)) {
+                    LOG.warn("Deleting the incomplete block {}", path);
+                    Files.delete(path);
+                } else if (name.endsWith(Block.SUFFIX)) {
+                    blockFiles.put(name, path);
+                    nextBlockNumber = Math.max(nextBlockNumber, Long.parseLong(name.substring(BLOCK_PREFIX.length(),
+                            name.length() - Block.SUFFIX.length())) + 1);
+                }
+            }
+        }
+
+        // The stores of the earlier versions have no manifest, all their blocks are in use
+        Path manifest = directory.resolve(MANIFEST_FILE);
+        Files.deleteIfExists(manifest.resolveSibling(MANIFEST_FILE + TEMP_SUFFIX));
+        List<String> names = Files.exists(manifest) ? Files.readAllLines(manifest, StandardCharsets.UTF_8)
+                : new ArrayList<>(blockFiles.keySet());
+        List<Block> opened = new ArrayList<>(names.size());
+        for (String name : names) {
+            Path path = blockFiles.remove(name);
+            if (path != null) {
+                opened.add(Block.open(path));
+            } else if (!name.isEmpty()) {
+                LOG.warn("The block {} is missing from {}", name, directory);
+            }
+        }
+        for (Path path : blockFiles.values()) {
+            LOG.info("Deleting the block {} replaced by a purge or a compaction", path);
+            Files.delete(path);
+        }
+        blocks = Collections.unmodifiableList(opened);
+        writeManifest();
+        LOG.info("Opened {} blocks from {}", opened.size(), directory);
+    }
+
+    /**
+     * Lists the blocks in use in the manifest, which is replaced atomically. Called holding this.
+     */
+    private void writeManifest() throws IOException {
+        StringBuilder names = new StringBuilder();
+        for (Block block : blocks) {
+            names.append(block.getPath().getFileName()).append('\n');
+        }
+        Path manifest = directory.resolve(MANIFEST_FILE);
+        Path tempPath = manifest.resolveSibling(MANIFEST_FILE + TEMP_SUFFIX);
+        try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(names.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(tempPath, manifest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private synchronized Path newBlockPath() {
+        return directory.resolve(String.format("%s%012d%s", BLOCK_PREFIX, nextBlockNumber++, Block.SUFFIX));
+    }
+
+    /**
+     * Replaces consecutive blocks by the block they were rewritten to, or removes them if it is null, and deletes
+     * their files. The queries still reading the blocks replaced keep their mappings, which outlive the files.
+     */
+    private void replaceBlocks(List<Block> replaced, Block replacement) throws IOException {
+        synchronized (this) {
+            List<Block> newBlocks = new ArrayList<>(blocks);
+            int index = newBlocks.indexOf(replaced.get(0));
+            newBlocks.removeAll(replaced);
+            if (replacement != null) {
+                newBlocks.add(index, replacement);
+            }
+            blocks = Collections.unmodifiableList(newBlocks);
+            writeManifest();
+        }
+        for (Block block : replaced) {
+            try {
+                Files.delete(block.getPath());
+            } catch (IOException e) {
+                LOG.warn("Failed to delete the replaced block {}, it will be deleted on restart", block.getPath(), e);
+            }
+        }
+    }
+
+    public void store(TSDRMetricRecord mr) throws IOException {
+        storeMetrics(Collections.singletonList(mr));
+    }
+
+    public void store(TSDRLogRecord lr) throws IOException {
+        storeLogs(Collections.singletonList(lr));
+    }
+
+    public void store(TSDRBinaryRecord br) throws IOException {
+        storeBinaries(Collections.singletonList(br));
+    }
+
+    public void storeMetrics(List<TSDRMetricRecord> records) throws IOException {
+        synchronized (this) {
+            for (TSDRMetricRecord mr : records) {
+                if (mr.getTimeStamp() == null || mr.getMetricValue() == null) {
+                    LOG.warn("Skipping a metric record without time stamp or value {}", mr);
+                    continue;
+                }
+                Series series = seriesIndex.getOrCreate(RecordKind.METRIC, FormatUtil.getTSDRMetricKey(mr));
+                ((MetricCodec) headEncoder(series)).append(mr.getTimeStamp(), mr.getMetricValue().doubleValue());
+                headSamples++;
+            }
+        }
+        flushIfFull();
+    }
+
+    public void storeLogs(List<TSDRLogRecord> records) throws IOException {
+        synchronized (this) {
+            for (TSDRLogRecord lr : records) {
+                if (lr.getTimeStamp() == null) {
+                    LOG.warn("Skipping a log record without time stamp {}", lr);
+                    continue;
+                }
+                Series series = seriesIndex.getOrCreate(RecordKind.LOG, FormatUtil.getTSDRLogKey(lr));
+                byte[] text = lr.getRecordFullText() == null ? null
+                        : lr.getRecordFullText().getBytes(StandardCharsets.UTF_8);
+                ((RecordCodec) headEncoder(series)).append(new RecordSample(lr.getTimeStamp(),
+                        lr.getIndex() == null ? 0 : lr.getIndex(), text, toEntries(lr.getRecordAttributes())));
+                headSamples++;
+            }
+        }
+        flushIfFull();
+    }
+
+    public void storeBinaries(List<TSDRBinaryRecord> records) throws IOException {
+        synchronized (this) {
+            for (TSDRBinaryRecord br : records) {
+                if (br.getTimeStamp() == null) {
+                    LOG.warn("Skipping a binary record without time stamp {}", br);
+                    continue;
+                }
+                Series series = seriesIndex.getOrCreate(RecordKind.BINARY, FormatUtil.getTSDRBinaryKey(br));
+                ((RecordCodec) headEncoder(series)).append(new RecordSample(br.getTimeStamp(),
+                        br.getIndex() == null ? 0 : br.getIndex(), br.getData(),
+                        toEntries(br.getRecordAttributes())));
+                headSamples++;
+            }
+        }
+        flushIfFull();
+    }
+
+    private static List<Map.Entry<String, String>> toEntries(List<? extends Attribute> attributes) {
+        if (attributes == null || attributes.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Map.Entry<String, String>> entries = new ArrayList<>(attributes.size());
+        for (Attribute attribute : attributes) {
+            entries.add(new SimpleImmutableEntry<>(attribute.getName(), attribute.getValue()));
+        }
+        return entries;
+    }
+
+    /**
+     * Returns the encoder of the head chunk of a series, sealing the current one if it is full.
+     */
+    private synchronized ChunkEncoder headEncoder(Series series) {
+        Head head = heads.computeIfAbsent(series.getId(), id -> new Head());
+        if (head.encoder != null && head.encoder.getCount() >= chunkSamples) {
+            head.sealed.add(head.encoder.toChunk(series.getId()));
+            head.encoder = null;
+        }
+        if (head.encoder == null) {
+            head.encoder = series.getKind() == RecordKind.METRIC ? new MetricCodec()
+                    : new RecordCodec(series.getKind());
+        }
+        return head.encoder;
+    }
+
+    private void flushIfFull() throws IOException {
+        boolean full;
+        synchronized (this) {
+            full = headSamples >= maxHeadSamples;
+        }
+        if (full) {
+            flush();
+            // The compaction is left to the flusher if there is one, rather than holding off the caller
+            if (flushExecutor != null) {
+                flushExecutor.execute(this::compactQuietly);
+            } else {
+                compact();
+            }
+        }
+    }
+
+    @SuppressWarnings("checkstyle:IllegalCatch")
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException | RuntimeException e) {
+            LOG.error("Failed to flush the heads to a new block", e);
+        }
+        compactQuietly();
+    }
+
+    @SuppressWarnings("checkstyle:IllegalCatch")
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (IOException | RuntimeException e) {
+            LOG.error("Failed to compact the blocks", e);
+        }
+    }
+
+    /**
+     * Writes the heads of all the series to a new block file. The chunks of the heads are taken under this, and the
+     * block file is written without it, so the stores and the queries are not held off meanwhile; the queries read
+     * the chunks being flushed until the block is added. The chunks are kept for the next flush if it fails.
+     */
+    public void flush() throws IOException {
+        synchronized (flushLock) {
+            List<Chunk> chunks;
+            synchronized (this) {
+                for (Map.Entry<Integer, Head> entry : heads.entrySet()) {
+                    flushing.addAll(entry.getValue().sealed);
+                    ChunkEncoder encoder = entry.getValue().encoder;
+                    if (encoder != null && encoder.getCount() > 0) {
+                        flushing.add(encoder.toChunk(entry.getKey()));
+                    }
+                }
+                heads.clear();
+                headSamples = 0;
+                if (flushing.isEmpty()) {
+                    return;
+                }
+                chunks = new ArrayList<>(flushing);
+            }
+
+            Path path = newBlockPath();
+            Block block = Block.write(path, chunks);
+            synchronized (this) {
+                List<Block> newBlocks = new ArrayList<>(blocks);
+                newBlocks.add(block);
+                blocks = Collections.unmodifiableList(newBlocks);
+                flushing.clear();
+                writeManifest();
+            }
+            LOG.debug("Flushed {} chunks to {}", chunks.size(), path);
+        }
+    }
+
+    /**
+     * Merges the blocks whose first samples are of the same hour, then of the same day, once the block following
+     * them starts in a later window. The blocks of the last window are left as they are, more may be flushed to it.
+     */
+    @VisibleForTesting
+    void compact() throws IOException {
+        synchronized (purgeLock) {
+            for (long window : COMPACTION_WINDOWS) {
+                List<Block> group = new ArrayList<>();
+                long groupSize = 0;
+                for (Block block : blocks) {
+                    if (!group.isEmpty() && (Math.floorDiv(block.getMinTime(), window)
+                            != Math.floorDiv(group.get(0).getMinTime(), window)
+                            || groupSize + block.getSize() > MAX_COMPACTED_BLOCK_SIZE)) {
+                        mergeBlocks(group);
+                        group.clear();
+                        groupSize = 0;
+                    }
+                    group.add(block);
+                    groupSize += block.getSize();
+                }
+            }
+        }
+    }
+
+    private void mergeBlocks(List<Block> group) throws IOException {
+        if (group.size() < 2) {
+            return;
+        }
+
+        // The chunks are copied as they are, in the order of the blocks
+        List<Chunk> chunks = new ArrayList<>();
+        for (Block block : group) {
+            chunks.addAll(block.getChunks());
+        }
+        Block merged = Block.write(newBlockPath(), chunks);
+        replaceBlocks(group, merged);
+        LOG.debug("Merged {} blocks to {}", group.size(), merged.getPath());
+    }
+
+    /**
+     * Returns the chunks of a series overlapping a time range, the ones of the blocks, then the ones being flushed,
+     * then the ones of its head.
+     */
+    private List<Chunk> getChunks(Series series, long startTime, long endTime) {
+        // The blocks are read along with the heads, so the chunks a flush moves from one to the other are read once
+        List<Block> currentBlocks;
+        List<Chunk> headChunks = new ArrayList<>();
+        synchronized (this) {
+            currentBlocks = blocks;
+            for (Chunk chunk : flushing) {
+                if (chunk.getSeriesId() == series.getId() && chunk.overlaps(startTime, endTime)) {
+                    headChunks.add(chunk);
+                }
+            }
+            Head head = heads.get(series.getId());
+            if (head != null) {
+                for (Chunk chunk : head.sealed) {
+                    if (chunk.overlaps(startTime, endTime)) {
+                        headChunks.add(chunk);
+                    }
+                }
+                if (head.encoder != null && head.encoder.getCount() > 0) {
+                    Chunk chunk = head.encoder.toChunk(series.getId());
+                    if (chunk.overlaps(startTime, endTime)) {
+                        headChunks.add(chunk);
+                    }
+                }
+            }
+        }
+
+        List<Chunk> chunks = new ArrayList<>();
+        for (Block block : currentBlocks) {
+            if (block.overlaps(startTime, endTime)) {
+                for (Chunk chunk : block.getChunks(series.getId())) {
+                    if (chunk.overlaps(startTime, endTime)) {
+                        chunks.add(chunk);
+                    }
+                }
+            }
+        }
+        chunks.addAll(headChunks);
+        return chunks;
+    }
+
+    public List<TSDRMetricRecord> getTSDRMetricRecords(String tsdrMetricKey, long startDateTime, long endDateTime,
+            int recordLimit) {
+        List<TSDRMetricRecord> result = new ArrayList<>();
+        for (Series series : seriesIndex.find(RecordKind.METRIC, tsdrMetricKey)) {
+            List<TSDRMetricRecord> records = new ArrayList<>();
+            for (Chunk chunk : getChunks(series, startDateTime, endDateTime)) {
+                MetricCodec.decode(chunk, (time, value) -> {
+                    if (time >= startDateTime && time <= endDateTime) {
+                        records.add(getTSDRMetricRecord(time, value, series));
+                    }
+                });
+            }
+            if (addSorted(result, records, TSDRMetricRecord::getTimeStamp, recordLimit)) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    public List<TSDRLogRecord> getTSDRLogRecords(String tsdrLogKey, long startDateTime, long endDateTime,
+            int recordLimit) {
+        List<TSDRLogRecord> result = new ArrayList<>();
+        for (Series series : seriesIndex.find(RecordKind.LOG, tsdrLogKey)) {
+            List<TSDRLogRecord> records = new ArrayList<>();
+            for (RecordSample sample : getRecordSamples(series, startDateTime, endDateTime)) {
+                records.add(getTSDRLogRecord(sample, series));
+            }
+            if (addSorted(result, records, TSDRLogRecord::getTimeStamp, recordLimit)) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    public List<TSDRBinaryRecord> getTSDRBinaryRecords(String tsdrBinaryKey, long startDateTime, long endDateTime,
+            int recordLimit) {
+        List<TSDRBinaryRecord> result = new ArrayList<>();
+        for (Series series : seriesIndex.find(RecordKind.BINARY, tsdrBinaryKey)) {
+            List<TSDRBinaryRecord> records = new ArrayList<>();
+            for (RecordSample sample : getRecordSamples(series, startDateTime, endDateTime)) {
+                records.add(getTSDRBinaryRecord(sample, series));
+            }
+            if (addSorted(result, records, TSDRBinaryRecord::getTimeStamp, recordLimit)) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    private List<RecordSample> getRecordSamples(Series series, long startDateTime, long endDateTime) {
+        List<RecordSample> samples = new ArrayList<>();
+        for (Chunk chunk : getChunks(series, startDateTime, endDateTime)) {
+            for (RecordSample sample : RecordCodec.decode(chunk)) {
+                if (sample.getTime() >= startDateTime && sample.getTime() <= endDateTime) {
+                    samples.add(sample);
+                }
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * Adds the records of a series to the result, sorted by time stamp, up to the record limit.
+     *
+     * @return whether the limit is reached
+     */
+    private static <T> boolean addSorted(List<T> result, List<T> records, Function<T, Long> timeStamp,
+            int recordLimit) {
+        // The chunks of a series are mostly in time order already, which the sort takes advantage of
+        records.sort(Comparator.comparing(timeStamp));
+        for (T record : records) {
+            if (result.size() >= recordLimit) {
+                break;
+            }
+            result.add(record);
+        }
+        return result.size() >= recordLimit;
+    }
+
+    /**
+     * Aggregates the metrics of a series by intervals of the given size. Returns null if the key is not the key of a
+     * single series.
+     */
+    public List<Bucket> getAggregatedMetrics(String tsdrMetricKey, long startDateTime, long endDateTime,
+            long interval, AggregationType aggregation) {
+        List<Series> found = seriesIndex.find(RecordKind.METRIC, tsdrMetricKey);
+        if (found.size() != 1 || !found.get(0).getTsdrKey().equals(tsdrMetricKey)) {
+            return null;
+        }
+        if (aggregation != AggregationType.MIN && aggregation != AggregationType.MAX
+                && aggregation != AggregationType.MEAN) {
+            throw new IllegalArgumentException("Unsupported aggregation " + aggregation);
+        }
+
+        // The aggregated value and the number of samples of each interval, by interval number
+        Map<Long, double[]> intervals = new TreeMap<>();
+        for (Chunk chunk : getChunks(found.get(0), startDateTime, endDateTime)) {
+            MetricCodec.decode(chunk, (time, value) -> {
+                if (time < startDateTime || time > endDateTime) {
+                    return;
+                }
+                double[] aggregate = intervals.computeIfAbsent((time - startDateTime) / interval,
+                        key -> new double[] {value, 0});
+                switch (aggregation) {
+                    case MIN:
+                        aggregate[0] = Math.min(aggregate[0], value);
+                        break;
+                    case MAX:
+                        aggregate[0] = Math.max(aggregate[0], value);
+                        break;
+                    default:
+                        aggregate[0] = aggregate[1] == 0 ? value : aggregate[0] + value;
+                        break;
+                }
+                aggregate[1]++;
+            });
+        }
+
+        List<Bucket> result = new ArrayList<>(intervals.size());
+        for (Map.Entry<Long, double[]> entry : intervals.entrySet()) {
+            double[] aggregate = entry.getValue();
+            double value = aggregation == AggregationType.MEAN ? aggregate[0] / aggregate[1] : aggregate[0];
+            result.add(new Bucket(startDateTime + entry.getKey() * interval, BigDecimal.valueOf(value),
+                    (long) aggregate[1]));
+        }
+        return result;
+    }
+
+    private static TSDRMetricRecord getTSDRMetricRecord(long time, double value, Series series) {
+        TSDRMetricRecordBuilder rb = new TSDRMetricRecordBuilder();
+        rb.setMetricName(series.getMetricName());
+        rb.setMetricValue(BigDecimal.valueOf(value));
+        rb.setNodeID(series.getNodeId());
+        rb.setRecordKeys(series.getRecordKeys());
+        rb.setTimeStamp(time);
+        rb.setTSDRDataCategory(DataCategory.valueOf(series.getCategory()));
+        return rb.build();
+    }
+
+    private static TSDRLogRecord getTSDRLogRecord(RecordSample sample, Series series) {
+        List<RecordAttributes> attributes = new ArrayList<>(sample.getAttributes().size());
+        for (Map.Entry<String, String> entry : sample.getAttributes()) {
+            attributes.add(new RecordAttributesBuilder().setName(entry.getKey()).setValue(entry.getValue()).build());
+        }
+
+        TSDRLogRecordBuilder lb = new TSDRLogRecordBuilder();
+        lb.setTSDRDataCategory(DataCategory.valueOf(series.getCategory()));
+        lb.setTimeStamp(sample.getTime());
+        lb.setRecordKeys(series.getRecordKeys());
+        lb.setNodeID(series.getNodeId());
+        lb.setIndex(sample.getIndex());
+        lb.setRecordAttributes(attributes);
+        lb.setRecordFullText(sample.getPayload() == null ? null
+                : new String(sample.getPayload(), StandardCharsets.UTF_8));
+        return lb.build();
+    }
+
+    private static TSDRBinaryRecord getTSDRBinaryRecord(RecordSample sample, Series series) {
+        List<org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data.rev160325.tsdrbinary.RecordAttributes>
+                attributes = new ArrayList<>(sample.getAttributes().size());
+        for (Map.Entry<String, String> entry : sample.getAttributes()) {
+            attributes.add(new org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data.rev160325.tsdrbinary
+                    .RecordAttributesBuilder().setName(entry.getKey()).setValue(entry.getValue()).build());
+        }
+
+        TSDRBinaryRecordBuilder bb = new TSDRBinaryRecordBuilder();
+        bb.setTSDRDataCategory(DataCategory.valueOf(series.getCategory()));
+        bb.setTimeStamp(sample.getTime());
+        bb.setRecordKeys(series.getRecordKeys());
+        bb.setNodeID(series.getNodeId());
+        bb.setIndex(sample.getIndex());
+        bb.setRecordAttributes(attributes);
+        bb.setData(sample.getPayload());
+        return bb.build();
+    }
+
+    /**
+     * Deletes the samples of a data category older than the retention time. The blocks holding such samples are
+     * rewritten without them, one at a time, and the heads are purged last.
+     */
+    public void purge(DataCategory category, long retentionTime) throws IOException {
+        synchronized (purgeLock) {
+            for (Block block : blocks) {
+                if (block.getMinTime() < retentionTime) {
+                    purgeBlock(block, category, retentionTime);
+                }
+            }
+
+            synchronized (this) {
+                for (Map.Entry<Integer, Head> entry : heads.entrySet()) {
+                    Series series = seriesIndex.get(entry.getKey());
+                    if (series == null || !category.name().equals(series.getCategory())) {
+                        continue;
+                    }
+                    Head head = entry.getValue();
+                    if (head.encoder != null && head.encoder.getCount() > 0) {
+                        head.sealed.add(head.encoder.toChunk(entry.getKey()));
+                        head.encoder = null;
+                    }
+                    List<Chunk> kept = new ArrayList<>(head.sealed.size());
+                    for (Chunk chunk : head.sealed) {
+                        Chunk purged = purgeChunk(chunk, category, retentionTime);
+                        if (purged != null) {
+                            kept.add(purged);
+                        }
+                    }
+                    head.sealed.clear();
+                    head.sealed.addAll(kept);
+                }
+            }
+        }
+    }
+
+    private void purgeBlock(Block block, DataCategory category, long retentionTime) throws IOException {
+        boolean changed = false;
+        List<Chunk> kept = new ArrayList<>();
+        for (Chunk chunk : block.getChunks()) {
+            Chunk purged = purgeChunk(chunk, category, retentionTime);
+            changed |= purged != chunk;
+            if (purged != null) {
+                kept.add(purged);
+            }
+        }
+        if (!changed) {
+            return;
+        }
+
+        replaceBlocks(Collections.singletonList(block), kept.isEmpty() ? null : Block.write(newBlockPath(), kept));
+        LOG.debug("Purged {} of the {} samples older than {}", block.getPath(), category, retentionTime);
+    }
+
+    /**
+     * Returns the chunk without the samples of the category older than the retention time: the chunk itself if it
+     * has none, null if it has nothing else, or else a new chunk with the samples kept.
+     */
+    private Chunk purgeChunk(Chunk chunk, DataCategory category, long retentionTime) {
+        Series series = seriesIndex.get(chunk.getSeriesId());
+        if (series == null || !category.name().equals(series.getCategory()) || chunk.getMinTime() >= retentionTime) {
+            return chunk;
+        }
+        if (chunk.getMaxTime() < retentionTime) {
+            return null;
+        }
+
+        if (chunk.getKind() == RecordKind.METRIC) {
+            MetricCodec encoder = new MetricCodec();
+            MetricCodec.decode(chunk, (time, value) -> {
+                if (time >= retentionTime) {
+                    encoder.append(time, value);
+                }
+            });
+            return encoder.toChunk(chunk.getSeriesId());
+        }
+
+        RecordCodec encoder = new RecordCodec(chunk.getKind());
+        for (RecordSample sample : RecordCodec.decode(chunk)) {
+            if (sample.getTime() >= retentionTime) {
+                encoder.append(sample);
+            }
+        }
+        return encoder.toChunk(chunk.getSeriesId());
+    }
+
+    @Override
+    @PreDestroy
+    public void close() {
+        if (flushExecutor != null) {
+            flushExecutor.shutdown();
+        }
+
+        try {
+            flush();
+        } catch (IOException e) {
+            LOG.error("Failed to flush the heads on close", e);
+        }
+        try {
+            seriesIndex.close();
+        } catch (IOException e) {
+            LOG.error("Failed to close the series index", e);
+        }
+    }
+}
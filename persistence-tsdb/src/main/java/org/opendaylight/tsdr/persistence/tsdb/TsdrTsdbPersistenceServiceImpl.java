@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.tsdb;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.opendaylight.tsdr.spi.model.TSDRConstants;
+import org.opendaylight.tsdr.spi.persistence.AggregatingMetricPersistenceService;
+import org.opendaylight.tsdr.spi.persistence.TSDRBinaryPersistenceService;
+import org.opendaylight.tsdr.spi.persistence.TSDRLogPersistenceService;
+import org.opendaylight.tsdr.spi.persistence.TSDRMetricPersistenceService;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data.rev160325.storetsdrbinaryrecord.input.TSDRBinaryRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.AggregationType;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Embedded time series store persistence service implementation.
+ */
+@Singleton
+public class TsdrTsdbPersistenceServiceImpl implements TSDRMetricPersistenceService, TSDRLogPersistenceService,
+        TSDRBinaryPersistenceService, AggregatingMetricPersistenceService {
+    private static final Logger LOG = LoggerFactory.getLogger(TsdrTsdbPersistenceServiceImpl.class);
+
+    private final TsdbStore store;
+
+    @Inject
+    public TsdrTsdbPersistenceServiceImpl(TsdbStore store) {
+        this.store = store;
+        LOG.info("TSDR TSDB Data Store initialized.");
+    }
+
+    @Override
+    public void storeMetric(TSDRMetricRecord metricRecord) {
+        try {
+            store.store(metricRecord);
+        } catch (IOException e) {
+            LOG.error("Failed to store record", e);
+        }
+    }
+
+    @Override
+    public void storeMetric(List<TSDRMetricRecord> metricRecordList) {
+        try {
+            store.storeMetrics(metricRecordList);
+        } catch (IOException e) {
+            LOG.error("Failed to store records", e);
+        }
+    }
+
+    @Override
+    public void storeLog(TSDRLogRecord logRecord) {
+        try {
+            store.store(logRecord);
+        } catch (IOException e) {
+            LOG.error("Failed to store record", e);
+        }
+    }
+
+    @Override
+    public void storeLog(List<TSDRLogRecord> logRecordList) {
+        try {
+            store.storeLogs(logRecordList);
+        } catch (IOException e) {
+            LOG.error("Failed to store records", e);
+        }
+    }
+
+    @Override
+    public void purge(DataCategory category, long retentionTime) {
+        LOG.info("Execute Purge with Category {} and earlier than {}.", category.name(), new Date(retentionTime));
+        try {
+            store.purge(category, retentionTime);
+        } catch (IOException e) {
+            LOG.error("Failed to purge records from the store", e);
+        }
+    }
+
+    @Override
+    public void purge(long retentionTime) {
+        for (DataCategory dataCategory : DataCategory.values()) {
+            try {
+                store.purge(dataCategory, retentionTime);
+            } catch (IOException e) {
+                LOG.error("Failed to purge records from the store", e);
+            }
+        }
+    }
+
+    @Override
+    public List<TSDRMetricRecord> getTSDRMetricRecords(String tsdrMetricKey, long startDateTime, long endDateTime) {
+        return getTSDRMetricRecords(tsdrMetricKey, startDateTime, endDateTime,
+                TSDRConstants.MAX_RESULTS_FROM_LIST_METRICS_COMMAND);
+    }
+
+    @Override
+    public List<TSDRMetricRecord> getTSDRMetricRecords(String tsdrMetricKey, long startDateTime, long endDateTime,
+            int maxResults) {
+        return store.getTSDRMetricRecords(tsdrMetricKey, startDateTime, endDateTime, maxResults);
+    }
+
+    @Override
+    public boolean isAggregationSupported(AggregationType aggregation) {
+        return aggregation == AggregationType.MIN || aggregation == AggregationType.MAX
+                || aggregation == AggregationType.MEAN;
+    }
+
+    @Override
+    public List<Bucket> getTSDRAggregatedMetrics(String tsdrMetricKey, long startDateTime, long endDateTime,
+            long interval, AggregationType aggregation) {
+        return store.getAggregatedMetrics(tsdrMetricKey, startDateTime, endDateTime, interval, aggregation);
+    }
+
+    @Override
+    public List<TSDRLogRecord> getTSDRLogRecords(String tsdrMetricKey, long startTime, long endTime) {
+        return getTSDRLogRecords(tsdrMetricKey, startTime, endTime,
+                TSDRConstants.MAX_RESULTS_FROM_LIST_METRICS_COMMAND);
+    }
+
+    @Override
+    public List<TSDRLogRecord> getTSDRLogRecords(String tsdrMetricKey, long startTime, long endTime, int maxResults) {
+        return store.getTSDRLogRecords(tsdrMetricKey, startTime, endTime, maxResults);
+    }
+
+    @Override
+    public List<TSDRBinaryRecord> getTSDRBinaryRecords(String tsdrMetricKey, long startDateTime, long endDateTime) {
+        return getTSDRBinaryRecords(tsdrMetricKey, startDateTime, endDateTime,
+                TSDRConstants.MAX_RESULTS_FROM_LIST_METRICS_COMMAND);
+    }
+
+    @Override
+    public List<TSDRBinaryRecord> getTSDRBinaryRecords(String tsdrMetricKey, long startDateTime, long endDateTime,
+            int maxResults) {
+        return store.getTSDRBinaryRecords(tsdrMetricKey, startDateTime, endDateTime, maxResults);
+    }
+
+    @Override
+    public void storeBinary(TSDRBinaryRecord binaryRecord) {
+        try {
+            store.store(binaryRecord);
+        } catch (IOException e) {
+            LOG.error("Failed to store record", e);
+        }
+    }
+
+    @Override
+    public void storeBinary(List<TSDRBinaryRecord> recordList) {
+        try {
+            store.storeBinaries(recordList);
+        } catch (IOException e) {
+            LOG.error("Failed to store records", e);
+        }
+    }
+}
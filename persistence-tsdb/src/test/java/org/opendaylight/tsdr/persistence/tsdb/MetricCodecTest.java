@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.tsdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Unit tests of the chunk encodings, the {@link MetricCodec} and the {@link RecordCodec}.
+ */
+public class MetricCodecTest {
+    private static void assertRoundTrip(long[] times, double[] values) {
+        MetricCodec encoder = new MetricCodec();
+        for (int i = 0; i < times.length; i++) {
+            encoder.append(times[i], values[i]);
+        }
+
+        Chunk chunk = encoder.toChunk(7);
+        assertEquals(7, chunk.getSeriesId());
+        assertEquals(times.length, chunk.getCount());
+        List<Long> decodedTimes = new ArrayList<>();
+        List<Double> decodedValues = new ArrayList<>();
+        MetricCodec.decode(chunk, (time, value) -> {
+            decodedTimes.add(time);
+            decodedValues.add(value);
+        });
+        assertEquals(times.length, decodedTimes.size());
+        for (int i = 0; i < times.length; i++) {
+            assertEquals(times[i], decodedTimes.get(i).longValue());
+            assertEquals(Double.doubleToLongBits(values[i]), Double.doubleToLongBits(decodedValues.get(i)));
+        }
+    }
+
+    @Test
+    public void testRegularSamplesAreCompressed() {
+        long[] times = new long[120];
+        double[] values = new double[120];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = 1500000000000L + 30000L * i;
+            values[i] = 1000 + i % 3;
+        }
+        assertRoundTrip(times, values);
+
+        MetricCodec encoder = new MetricCodec();
+        for (int i = 0; i < times.length; i++) {
+            encoder.append(times[i], values[i]);
+        }
+        // A fixed interval and close values take a few bits per sample, against 16 bytes uncompressed
+        assertTrue(encoder.getBitLength() / 8.0 / times.length < 2);
+    }
+
+    @Test
+    public void testIrregularSamples() {
+        Random random = new Random(42);
+        long[] times = new long[500];
+        double[] values = new double[500];
+        long time = -1000L;
+        for (int i = 0; i < times.length; i++) {
+            // Jitters of every size, going back in time now and then
+            time += random.nextInt(5) == 0 ? random.nextLong() % 100000000L : random.nextInt(1 << (i % 14));
+            times[i] = time;
+            values[i] = i % 7 == 0 ? values[Math.max(0, i - 1)] : random.nextGaussian() * Math.pow(10, i % 12 - 6);
+        }
+        values[10] = Double.NaN;
+        values[11] = Double.NEGATIVE_INFINITY;
+        values[12] = -0.0;
+        assertRoundTrip(times, values);
+    }
+
+    @Test
+    public void testSingleSample() {
+        assertRoundTrip(new long[] {Long.MIN_VALUE}, new double[] {Double.MAX_VALUE});
+    }
+
+    @Test
+    public void testRecordRoundTrip() {
+        RecordCodec encoder = new RecordCodec(RecordKind.LOG);
+        encoder.append(new RecordSample(2000L, 1, "Interface eth0 is down".getBytes(StandardCharsets.UTF_8),
+                Collections.singletonList(new SimpleImmutableEntry<>("severity", "error"))));
+        encoder.append(new RecordSample(1000L, -3, null, Collections.singletonList(
+                new SimpleImmutableEntry<>("empty", null))));
+
+        Chunk chunk = encoder.toChunk(3);
+        assertEquals(RecordKind.LOG, chunk.getKind());
+        assertEquals(1000L, chunk.getMinTime());
+        assertEquals(2000L, chunk.getMaxTime());
+        List<RecordSample> samples = RecordCodec.decode(chunk);
+        assertEquals(2, samples.size());
+        assertEquals(2000L, samples.get(0).getTime());
+        assertEquals("Interface eth0 is down", new String(samples.get(0).getPayload(), StandardCharsets.UTF_8));
+        assertEquals("error", samples.get(0).getAttributes().get(0).getValue());
+        assertEquals(1000L, samples.get(1).getTime());
+        assertEquals(-3, samples.get(1).getIndex());
+        assertEquals(null, samples.get(1).getPayload());
+        assertEquals(null, samples.get(1).getAttributes().get(0).getValue());
+    }
+}
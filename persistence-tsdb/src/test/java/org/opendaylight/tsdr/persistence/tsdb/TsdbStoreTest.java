@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2018 Inocybe Technologies and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.tsdr.persistence.tsdb;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.opendaylight.tsdr.spi.util.TsdrRecordFactory.createMetricRecord;
+import static org.opendaylight.tsdr.spi.util.TsdrRecordFactory.createMetricRecords;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opendaylight.tsdr.spi.persistence.AggregatingMetricPersistenceService.Bucket;
+import org.opendaylight.tsdr.spi.util.FormatUtil;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data.rev160325.storetsdrbinaryrecord.input.TSDRBinaryRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.binary.data.rev160325.storetsdrbinaryrecord.input.TSDRBinaryRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.storetsdrlogrecord.input.TSDRLogRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.log.data.rev180701.tsdrlog.RecordAttributesBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.AggregationType;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecord;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.metric.data.rev160325.storetsdrmetricrecord.input.TSDRMetricRecordBuilder;
+import org.opendaylight.yang.gen.v1.opendaylight.tsdr.rev150219.DataCategory;
+
+/**
+ * Unit tests of the {@link TsdbStore}, in a temporary folder.
+ */
+public class TsdbStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+    private TsdbStore store;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = folder.getRoot().toPath();
+        // Chunks of 4 samples, flushed every 10 samples
+        store = new TsdbStore(directory, 4, 10, 0);
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+    }
+
+    private List<String> getBlockFiles() throws IOException {
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "block-*")) {
+            for (Path path : stream) {
+                names.add(path.getFileName().toString());
+            }
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    @Test
+    public void testStoreMetricsAcrossFlushes() throws Exception {
+        // 25 samples: two blocks and a head
+        List<TSDRMetricRecord> records = createMetricRecords("openflow:1", 25);
+        store.storeMetrics(records.subList(0, 12));
+        store.storeMetrics(records.subList(12, 24));
+        store.store(records.get(24));
+
+        String key = FormatUtil.getTSDRMetricKey(records.get(0));
+        List<TSDRMetricRecord> result = store.getTSDRMetricRecords(key, 0L, Long.MAX_VALUE, 100);
+        assertEquals(25, result.size());
+        assertEquals(key, FormatUtil.getTSDRMetricKey(result.get(0)));
+        for (int i = 0; i < 25; i++) {
+            assertEquals(1000L * i, result.get(i).getTimeStamp().longValue());
+            assertEquals(i, result.get(i).getMetricValue().intValue());
+        }
+        assertEquals(6, store.getTSDRMetricRecords(key, 5000L, 10000L, 100).size());
+        assertEquals(3, store.getTSDRMetricRecords(key, 0L, Long.MAX_VALUE, 3).size());
+        assertEquals(0, store.getTSDRMetricRecords(key, 100000L, 200000L, 100).size());
+    }
+
+    @Test
+    public void testRecordsWithoutTimeStampOrValueAreSkipped() throws Exception {
+        List<TSDRMetricRecord> records = createMetricRecords("openflow:1", 12);
+        records.set(3, new TSDRMetricRecordBuilder(records.get(3)).setMetricValue(null).build());
+        records.set(5, new TSDRMetricRecordBuilder(records.get(5)).setTimeStamp(null).build());
+        store.storeMetrics(records);
+        store.store(new TSDRLogRecordBuilder().setNodeID("openflow:1").setTSDRDataCategory(DataCategory.SYSLOG)
+                .setRecordFullText("Interface eth0 is down").setRecordKeys(Collections.emptyList()).build());
+
+        // The 10 samples stored filled the heads, so they were flushed
+        assertEquals(1, getBlockFiles().size());
+        assertEquals(10, store.getTSDRMetricRecords(FormatUtil.getTSDRMetricKey(records.get(0)), 0L, Long.MAX_VALUE,
+                100).size());
+        assertEquals(0, store.getTSDRLogRecords(DataCategory.SYSLOG.name(), 0L, Long.MAX_VALUE, 100).size());
+    }
+
+    @Test
+    public void testStoreIsReopened() throws Exception {
+        List<TSDRMetricRecord> records = createMetricRecords("openflow:1", 15);
+        store.storeMetrics(records);
+        store.close();
+
+        store = new TsdbStore(directory, 4, 10, 0);
+        store.store(createMetricRecord("openflow:1", "1", 15000L, 15));
+        assertEquals(16, store.getTSDRMetricRecords(FormatUtil.getTSDRMetricKey(records.get(0)), 0L, Long.MAX_VALUE,
+                100).size());
+    }
+
+    @Test
+    public void testPartialKeys() throws Exception {
+        store.storeMetrics(Arrays.asList(createMetricRecord("openflow:1", "1", 1000L, 1),
+                createMetricRecord("openflow:1", "2", 1000L, 2), createMetricRecord("openflow:2", "1", 1000L, 3)));
+
+        assertEquals(3, store.getTSDRMetricRecords(DataCategory.PORTSTATS.name(), 0L, Long.MAX_VALUE, 100).size());
+        assertEquals(2, store.getTSDRMetricRecords("[NID=openflow:1][DC=PORTSTATS][MN=][RK=]", 0L, Long.MAX_VALUE,
+                100).size());
+        assertEquals(2, store.getTSDRMetricRecords("[NID=][DC=PORTSTATS][MN=][RK=Port:1]", 0L, Long.MAX_VALUE,
+                100).size());
+        assertEquals(0, store.getTSDRMetricRecords(DataCategory.FLOWSTATS.name(), 0L, Long.MAX_VALUE, 100).size());
+    }
+
+    @Test
+    public void testStoreLogsAndBinaries() throws Exception {
+        TSDRLogRecord log = new TSDRLogRecordBuilder()
+                .setNodeID("openflow:1")
+                .setTimeStamp(1000L)
+                .setTSDRDataCategory(DataCategory.SYSLOG)
+                .setIndex(1)
+                .setRecordFullText("Interface eth0 is down")
+                .setRecordKeys(Collections.emptyList())
+                .setRecordAttributes(Collections.singletonList(new RecordAttributesBuilder()
+                        .setName("severity")
+                        .setValue("error")
+                        .build()))
+                .build();
+        store.store(log);
+        TSDRBinaryRecord binary = new TSDRBinaryRecordBuilder()
+                .setNodeID("openflow:1")
+                .setTimeStamp(2000L)
+                .setTSDRDataCategory(DataCategory.EXTERNAL)
+                .setIndex(0)
+                .setData(new byte[] {1, 2, 3})
+                .setRecordKeys(Collections.emptyList())
+                .build();
+        store.store(binary);
+        store.flush();
+
+        List<TSDRLogRecord> logs = store.getTSDRLogRecords(FormatUtil.getTSDRLogKey(log), 0L, Long.MAX_VALUE, 100);
+        assertEquals(1, logs.size());
+        assertEquals("Interface eth0 is down", logs.get(0).getRecordFullText());
+        assertEquals(1, logs.get(0).getIndex().intValue());
+        assertEquals("error", logs.get(0).getRecordAttributes().get(0).getValue());
+        assertEquals(1, store.getTSDRLogRecords(DataCategory.SYSLOG.name(), 0L, Long.MAX_VALUE, 100).size());
+        assertEquals(0, store.getTSDRLogRecords(DataCategory.EXTERNAL.name(), 0L, Long.MAX_VALUE, 100).size());
+
+        List<TSDRBinaryRecord> binaries = store.getTSDRBinaryRecords(FormatUtil.getTSDRBinaryKey(binary), 0L,
+                Long.MAX_VALUE, 100);
+        assertEquals(1, binaries.size());
+        assertArrayEquals(new byte[] {1, 2, 3}, binaries.get(0).getData());
+    }
+
+    @Test
+    public void testPurge() throws Exception {
+        // 10 samples in a block, 5 in the head
+        List<TSDRMetricRecord> records = createMetricRecords("openflow:1", 15);
+        store.storeMetrics(records.subList(0, 10));
+        store.storeMetrics(records.subList(10, 15));
+
+        store.purge(DataCategory.FLOWSTATS, 5000L);
+        assertEquals(15, store.getTSDRMetricRecords(DataCategory.PORTSTATS.name(), 0L, Long.MAX_VALUE, 100).size());
+        List<String> blockFiles = getBlockFiles();
+        assertEquals(1, blockFiles.size());
+        store.purge(DataCategory.PORTSTATS, 5000L);
+        List<TSDRMetricRecord> result = store.getTSDRMetricRecords(DataCategory.PORTSTATS.name(), 0L, Long.MAX_VALUE,
+                100);
+        assertEquals(10, result.size());
+        assertEquals(5000L, result.get(0).getTimeStamp().longValue());
+
+        // The block is rewritten to a new file, the file which may still be read is deleted
+        List<String> purgedFiles = getBlockFiles();
+        assertEquals(1, purgedFiles.size());
+        assertFalse(blockFiles.equals(purgedFiles));
+
+        // Purging everything deletes the block
+        store.purge(DataCategory.PORTSTATS, Long.MAX_VALUE);
+        assertEquals(0, store.getTSDRMetricRecords(DataCategory.PORTSTATS.name(), 0L, Long.MAX_VALUE, 100).size());
+        store.close();
+        store = new TsdbStore(directory, 4, 10, 0);
+        assertEquals(0, store.getTSDRMetricRecords(DataCategory.PORTSTATS.name(), 0L, Long.MAX_VALUE, 100).size());
+    }
+
+    @Test
+    public void testBlocksAreCompacted() throws Exception {
+        long hour = TimeUnit.HOURS.toMillis(1);
+        // Two blocks of the first hour, two of the second hour and one of the next day
+        long[] times = {0L, hour / 2, hour, hour + 1000L, TimeUnit.DAYS.toMillis(1)};
+        for (int i = 0; i < times.length; i++) {
+            store.store(createMetricRecord("openflow:1", "1", times[i], i));
+            store.flush();
+        }
+        assertEquals(5, getBlockFiles().size());
+
+        // The blocks of each hour are merged, then the blocks of the first day, the next day is not over
+        store.compact();
+        assertEquals(2, getBlockFiles().size());
+        String key = FormatUtil.getTSDRMetricKey(createMetricRecord("openflow:1", "1", 0L, 0));
+        List<TSDRMetricRecord> result = store.getTSDRMetricRecords(key, 0L, Long.MAX_VALUE, 100);
+        assertEquals(5, result.size());
+        for (int i = 0; i < times.length; i++) {
+            assertEquals(times[i], result.get(i).getTimeStamp().longValue());
+            assertEquals(i, result.get(i).getMetricValue().intValue());
+        }
+
+        store.compact();
+        assertEquals(2, getBlockFiles().size());
+        store.close();
+        store = new TsdbStore(directory, 4, 10, 0);
+        assertEquals(5, store.getTSDRMetricRecords(key, 0L, Long.MAX_VALUE, 100).size());
+    }
+
+    @Test
+    public void testBlocksNotInUseAreDeletedOnOpen() throws Exception {
+        store.storeMetrics(createMetricRecords("openflow:1", 5));
+        store.flush();
+        store.close();
+
+        // A block left over by a compaction or a purge which could not delete it
+        Path block = directory.resolve(getBlockFiles().get(0));
+        Files.copy(block, block.resolveSibling("block-000000000099.tsdb"));
+        store = new TsdbStore(directory, 4, 10, 0);
+        assertEquals(1, getBlockFiles().size());
+        assertEquals(5, store.getTSDRMetricRecords(DataCategory.PORTSTATS.name(), 0L, Long.MAX_VALUE, 100).size());
+    }
+
+    @Test
+    public void testAggregatedMetrics() throws Exception {
+        List<TSDRMetricRecord> records = createMetricRecords("openflow:1", 6);
+        store.storeMetrics(records);
+
+        String key = FormatUtil.getTSDRMetricKey(records.get(0));
+        List<Bucket> buckets = store.getAggregatedMetrics(key, 0L, 5000L, 3000L, AggregationType.MAX);
+        assertEquals(2, buckets.size());
+        assertEquals(0L, buckets.get(0).getTimeStamp());
+        assertEquals(2, buckets.get(0).getValue().intValue());
+        assertEquals(3, buckets.get(0).getCount());
+        assertEquals(3000L, buckets.get(1).getTimeStamp());
+        assertEquals(5, buckets.get(1).getValue().intValue());
+        assertEquals(0, store.getAggregatedMetrics(key, 0L, 5000L, 3000L, AggregationType.MEAN).get(1).getValue()
+                .compareTo(new BigDecimal(4)));
+        assertNull(store.getAggregatedMetrics(DataCategory.PORTSTATS.name(), 0L, 5000L, 3000L, AggregationType.MAX));
+    }
+}